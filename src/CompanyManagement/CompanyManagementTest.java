@@ -72,6 +72,22 @@ public class CompanyManagementTest {
         cm.setVehicles(newVehicles);
         logInfo("Vehicles set: " + cm.getVehicles());
 
+        // Test vehicle lookup by position
+        cm.add(v1);
+        Vehicle nearest = cm.findNearestVehicles(new GPSPosition(11, 11), 1).get(0);
+        if (nearest == v1 && cm.findVehiclesWithin(gps2, 1).contains(v2)) {
+            logSuccess("Nearest vehicle found: " + nearest);
+        } else {
+            logError("Wrong nearest vehicle: " + nearest);
+        }
+        v1.setPosition(new GPSPosition(21, 21));
+        if (cm.findNearestVehicles(new GPSPosition(11, 11), 1).get(0) == v2) {
+            logSuccess("Vehicle lookup follows moved vehicles");
+        } else {
+            logError("Vehicle lookup did not follow the moved truck");
+        }
+        cm.remove(v1);
+
         ArrayList<Employee> newEmployees = new ArrayList<>();
         newEmployees.add(ow);
         cm.setEmployees(newEmployees);
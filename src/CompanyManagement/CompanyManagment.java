@@ -3,22 +3,27 @@ package CompanyManagement;
 import Employees.Department;
 import Employees.Employee;
 import Employees.ShiftWorker;
+import Vehicles.FleetIndex;
+import Vehicles.GPSPosition;
 import Vehicles.Vehicle;
 
 import java.util.ArrayList;
+import java.util.List;
 
 public class CompanyManagment {
     private ArrayList<Vehicle> vehicles = new ArrayList<>();
     private ArrayList<Department> departments = new ArrayList<>();
     private ArrayList<Employee> employees = new ArrayList<>();
     private ArrayList<ShiftWorker> shiftWorkers = new ArrayList<>();
+    // Follows the vehicles added and removed here, not changes made to the list from getVehicles()
+    private final FleetIndex fleetIndex = new FleetIndex();
 
 
     public void addVehicle(Vehicle vehicle) {
-        vehicles.add(vehicle);
+        add(vehicle);
     }
     public void removeVehicle(Vehicle vehicle) {
-        vehicles.remove(vehicle);
+        remove(vehicle);
     }
     public void addDepartment(Department department) {
         departments.add(department);
@@ -29,6 +34,7 @@ public class CompanyManagment {
     }
     public void add(Vehicle vehicle) {
         vehicles.add(vehicle);
+        fleetIndex.add(vehicle);
     }
     public void add(Employee employee){
         employees.add(employee);
@@ -51,6 +57,7 @@ public class CompanyManagment {
 
     public void remove(Vehicle vehicle){
         vehicles.remove(vehicle);
+        if (!vehicles.contains(vehicle)) fleetIndex.remove(vehicle);
     }
 
 
@@ -66,6 +73,19 @@ public class CompanyManagment {
     }
     public void setVehicles(ArrayList<Vehicle> vehicles) {
         this.vehicles = vehicles;
+        fleetIndex.clear();
+        for (Vehicle vehicle : vehicles) {
+            fleetIndex.add(vehicle);
+        }
+    }
+
+    // Nearest vehicles first; uses the fleet index instead of checking every vehicle
+    public List<Vehicle> findNearestVehicles(GPSPosition position, int count) {
+        return fleetIndex.findNearest(position, count);
+    }
+
+    public List<Vehicle> findVehiclesWithin(GPSPosition position, double radiusKm) {
+        return fleetIndex.findWithin(position, radiusKm);
     }
 
     public ArrayList<Employee> getEmployees() {
@@ -4,7 +4,7 @@ public class Driver extends ShiftWorker {
     private char license;
     public Driver(int id, String name, double hourlyRate, char license) {
         super(name, hourlyRate);
-        logger.debug("Creating driver with ID: " + id + ", Name: " + name + ", Hourly Rate: " + hourlyRate + ", License: " + license);
+        logger.debug(() -> "Creating driver with ID: " + id + ", Name: " + name + ", Hourly Rate: " + hourlyRate + ", License: " + license);
         setId(id);
         setLicense(license);
     }
@@ -6,8 +6,8 @@ public abstract class Employee {
     protected Logger logger;
 
     public Employee(String name) {
-        this.logger = new Logger(getClass().getSimpleName());
-        logger.debug("Initializing employee with name: " + name);
+        this.logger = new Logger(getClass());
+        logger.debug("Initializing employee with name: {}", name);
         try {
             setName(name);
         } catch (IllegalArgumentException e) {
@@ -24,7 +24,7 @@ public abstract class Employee {
 
     public void setName(String name) {
         try {
-            logger.debug("Attempting to set name: " + name);
+            logger.debug("Attempting to set name: {}", name);
             if (name == null || name.isEmpty()) throw new IllegalArgumentException("Name cannot be empty");
             String[] parts = name.split(" ");
             if (parts.length == 0) throw new IllegalArgumentException("Name must contain at least one part");
@@ -35,7 +35,7 @@ public abstract class Employee {
                     capitalizedName += capitalizedPart + " ";
                 }
             }
-            logger.debug("Capitalized name: " + capitalizedName);
+            logger.debug("Capitalized name: {}", capitalizedName);
             this.name = capitalizedName.trim();
         } catch (IllegalArgumentException e) {
             logger.error("Error setting name: " + e.getMessage());
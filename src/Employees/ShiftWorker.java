@@ -22,7 +22,7 @@ public class ShiftWorker extends Employee {
 
     public void work(int hours) {
         if (hours >= 1) hoursWorked += hours;
-        else logger.error("Invalid hours worked: " + hours + ". Must be greater than or equal to 1.");
+        else logger.error("Invalid hours worked: {}. Must be greater than or equal to 1.", hours);
     }
 
     public int getHoursWorked() {
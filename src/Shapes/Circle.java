@@ -43,7 +43,7 @@ public class Circle extends Shape2D {
      */
     public void setRadius(double radius) {
         if (radius <= 0){
-            logger.error("Radius must be positive, received: " + radius);
+            logger.error("Radius must be positive, received: {}", radius);
             throw new IllegalArgumentException("Radius must be positive");
         }
         this.radius = radius;
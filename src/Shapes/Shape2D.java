@@ -4,7 +4,7 @@ package Shapes;
 import Utils.Logger;
 
 public abstract class Shape2D implements INamed {
-    Logger logger = new Logger(getClass().getSimpleName());
+    Logger logger = new Logger(getClass());
     private double width;
     private double height;
     Shape2D(double width, double height) {
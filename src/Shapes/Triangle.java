@@ -57,7 +57,7 @@ public class Triangle extends Shape2D {
         double a = sides[0], b = sides[1], c = sides[2];
         if( a > 0 && b > 0 && c > 0 && a + b > c && a + c > b && b + c > a) return true;
         else{
-            logger.error("Shapes.Triangle.java/validateTriangle: Invalid triangle sides: " + a + ", " + b + ", " + c);
+            logger.error("Shapes.Triangle.java/validateTriangle: Invalid triangle sides: {}, {}, {}", a, b, c);
             throw new IllegalArgumentException("Invalid triangle sides for sides");
         }
     }
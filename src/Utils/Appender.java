@@ -0,0 +1,28 @@
+package Utils;
+
+/**
+ * Utils.Appender is an output that log records can be routed to with {@link LogRoutes}.
+ * <p>
+ * Built-in appenders: {@link ConsoleAppender},
+ * {@link RollingFileAppender}, {@link MemoryAppender} and {@link JsonLinesAppender}.
+ * Appenders are called on the logging thread, possibly from many threads at
+ * once, so implementations must be thread-safe.
+ */
+public interface Appender {
+
+    /**
+     * Writes one record.
+     * @param record the record
+     */
+    void append(LogRecord record);
+
+    /**
+     * Writes anything the appender has buffered.
+     */
+    default void flush() {}
+
+    /**
+     * Releases the appender's resources. Records appended afterwards are ignored.
+     */
+    default void close() {}
+}
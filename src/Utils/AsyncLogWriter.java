@@ -0,0 +1,397 @@
+package Utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Utils.AsyncLogWriter moves log file I/O off the calling thread.
+ * <p>
+ * Loggers in async mode hand their finished log record, together with the
+ * {@link LogSink} of its file, to a bounded, lock-free ring buffer. A single
+ * background writer thread drains the buffer in batches, writes every record of
+ * a batch and flushes each touched file once per batch.
+ * <p>
+ * Features:
+ * - Bounded multi-producer ring buffer without locks on the logging path
+ * - Overflow policies: BLOCK, DROP_OLDEST, DROP_NEW (with counters)
+ * - Batched writes with one flush per batch
+ * - Clean drain on {@link #drain()}, {@link Logger#close()} and JVM shutdown
+ */
+public final class AsyncLogWriter {
+
+    /**
+     * What a producer does when the ring buffer is full.
+     */
+    public enum OverflowPolicy {
+        /** Wait until the writer has made room. Nothing is lost. */
+        BLOCK,
+        /** Discard the oldest queued line to make room for the new one. */
+        DROP_OLDEST,
+        /** Discard the new line and keep what is already queued. */
+        DROP_NEW
+    }
+
+    public static final int DEFAULT_CAPACITY = 8192;
+    public static final OverflowPolicy DEFAULT_POLICY = OverflowPolicy.BLOCK;
+
+    private static final int BATCH_SIZE = 256;
+    private static final long IDLE_PARK_NANOS = 100_000_000L; // 100ms
+    private static final long WAIT_PARK_NANOS = 50_000L;      // 50µs
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5_000L;
+
+    private static final Object SHARED_LOCK = new Object();
+    private static volatile AsyncLogWriter shared;
+    private static boolean shutdownHookInstalled = false;
+
+    // Ring buffer (bounded MPMC queue with per-slot sequence numbers)
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final LogSink[] targets;
+    private final LogRecord[] records;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    private final OverflowPolicy policy;
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong droppedOldest = new AtomicLong();
+    private final AtomicLong droppedNew = new AtomicLong();
+    private final AtomicLong blockedOffers = new AtomicLong();
+
+    private final Thread writerThread;
+    private volatile boolean running = false;
+    private volatile boolean writerSleeping = false;
+
+    /**
+     * Creates a writer with the given capacity (rounded up to a power of two)
+     * and overflow policy. The writer thread is not started until {@link #start()}.
+     */
+    AsyncLogWriter(int capacity, OverflowPolicy policy) {
+        if (capacity < 2) throw new IllegalArgumentException("Capacity must be at least 2");
+        if (policy == null) throw new IllegalArgumentException("Overflow policy cannot be null");
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.targets = new LogSink[size];
+        this.records = new LogRecord[size];
+        this.policy = policy;
+        this.writerThread = new Thread(this::runWriter, "Utils.Logger-async-writer");
+        this.writerThread.setDaemon(true);
+    }
+
+    // --- Shared instance ---
+
+    /**
+     * Returns the process-wide writer used by loggers in async mode,
+     * creating and starting it with the default settings on first use.
+     * @return the shared writer
+     */
+    public static AsyncLogWriter shared() {
+        AsyncLogWriter writer = shared;
+        if (writer != null) return writer;
+        synchronized (SHARED_LOCK) {
+            if (shared == null) {
+                shared = startShared(DEFAULT_CAPACITY, DEFAULT_POLICY);
+            }
+            return shared;
+        }
+    }
+
+    /**
+     * Returns the shared writer if async mode has been used, without starting one.
+     * @return the shared writer, or null
+     */
+    static AsyncLogWriter current() {
+        return shared;
+    }
+
+    /**
+     * Replaces the shared writer with one using the given capacity and policy.
+     * The previous writer, if any, is drained and stopped, and its drop and
+     * block counts carry over to the new one.
+     * @param capacity ring buffer capacity (rounded up to a power of two)
+     * @param policy overflow policy
+     */
+    public static void configure(int capacity, OverflowPolicy policy) {
+        AsyncLogWriter previous;
+        AsyncLogWriter current;
+        synchronized (SHARED_LOCK) {
+            previous = shared;
+            current = startShared(capacity, policy);
+            shared = current;
+        }
+        if (previous != null) {
+            previous.shutdown();
+            current.droppedOldest.addAndGet(previous.droppedOldest.get());
+            current.droppedNew.addAndGet(previous.droppedNew.get());
+            current.blockedOffers.addAndGet(previous.blockedOffers.get());
+        }
+    }
+
+    private static AsyncLogWriter startShared(int capacity, OverflowPolicy policy) {
+        AsyncLogWriter writer = new AsyncLogWriter(capacity, policy);
+        writer.start();
+        if (!shutdownHookInstalled) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                AsyncLogWriter current = shared;
+                if (current != null) current.shutdown();
+            }, "Utils.Logger-async-shutdown"));
+            shutdownHookInstalled = true;
+        }
+        return writer;
+    }
+
+    // --- Public API ---
+
+    /**
+     * Queues a finished log record for the given sink.
+     * Falls back to a synchronous write if the writer is not running.
+     * @param sink the sink whose file receives the record
+     * @param record the log record
+     * @return true if the record was queued or written, false if it was dropped
+     */
+    boolean submit(LogSink sink, LogRecord record) {
+        if (!running) {
+            sink.write(record);
+            return true;
+        }
+        boolean blocked = false;
+        while (!offer(sink, record)) {
+            if (policy == OverflowPolicy.DROP_NEW) {
+                droppedNew.incrementAndGet();
+                return false;
+            }
+            if (policy == OverflowPolicy.DROP_OLDEST) {
+                if (discardOldest()) droppedOldest.incrementAndGet();
+                continue;
+            }
+            if (!blocked) {
+                blockedOffers.incrementAndGet();
+                blocked = true;
+            }
+            if (!running) {
+                sink.write(record);
+                return true;
+            }
+            LockSupport.unpark(writerThread);
+            LockSupport.parkNanos(this, WAIT_PARK_NANOS);
+        }
+        if (writerSleeping) LockSupport.unpark(writerThread);
+        return true;
+    }
+
+    /**
+     * Blocks until every line queued before this call has been written and flushed.
+     */
+    public void drain() {
+        long target = tail.get();
+        while (completed.get() < target) {
+            if (!running || Thread.currentThread() == writerThread) {
+                writeBatches();
+                continue;
+            }
+            LockSupport.unpark(writerThread);
+            LockSupport.parkNanos(this, WAIT_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Returns the overflow policy of this writer.
+     * @return the overflow policy
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return policy;
+    }
+
+    /**
+     * Returns the ring buffer capacity.
+     * @return number of slots
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Returns the number of lines currently waiting in the buffer.
+     * @return queued line count
+     */
+    public int getQueuedCount() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    /**
+     * Returns how many queued lines were discarded under DROP_OLDEST.
+     * @return dropped-oldest count
+     */
+    public long getDroppedOldestCount() {
+        return droppedOldest.get();
+    }
+
+    /**
+     * Returns how many new lines were discarded under DROP_NEW.
+     * @return dropped-new count
+     */
+    public long getDroppedNewCount() {
+        return droppedNew.get();
+    }
+
+    /**
+     * Returns how many submissions had to wait for space under BLOCK.
+     * @return blocked submission count
+     */
+    public long getBlockedCount() {
+        return blockedOffers.get();
+    }
+
+    // --- Lifecycle ---
+
+    void start() {
+        running = true;
+        writerThread.start();
+    }
+
+    /**
+     * Stops the writer thread after writing everything still queued.
+     */
+    void shutdown() {
+        if (!running) return;
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Anything a late producer slipped in is written on this thread
+        writeBatches();
+    }
+
+    // --- Internal Methods ---
+
+    private void runWriter() {
+        while (running || !isEmpty()) {
+            if (writeBatches() > 0) continue;
+            writerSleeping = true;
+            if (running && isEmpty()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            writerSleeping = false;
+        }
+    }
+
+    /**
+     * Drains the buffer in batches until it is empty.
+     * @return number of lines written
+     */
+    private int writeBatches() {
+        LogSink[] batchTargets = new LogSink[BATCH_SIZE];
+        LogRecord[] batchRecords = new LogRecord[BATCH_SIZE];
+        LogSink[] touched = new LogSink[BATCH_SIZE];
+        int total = 0;
+        int n;
+        while ((n = pollBatch(batchTargets, batchRecords)) > 0) {
+            int touchedCount = 0;
+            for (int i = 0; i < n; i++) {
+                LogSink target = batchTargets[i];
+                try {
+                    target.append(batchRecords[i]);
+                } catch (RuntimeException e) {
+                    System.err.println(Logger.RED + "Utils.AsyncLogWriter: Error writing log line: " + e.getMessage() + Logger.RESET);
+                }
+                if (!contains(touched, touchedCount, target)) touched[touchedCount++] = target;
+                batchTargets[i] = null;
+                batchRecords[i] = null;
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                touched[i].flush();
+                touched[i] = null;
+            }
+            completed.addAndGet(n);
+            total += n;
+        }
+        return total;
+    }
+
+    private static boolean contains(LogSink[] sinks, int count, LogSink sink) {
+        for (int i = count - 1; i >= 0; i--) {
+            if (sinks[i] == sink) return true;
+        }
+        return false;
+    }
+
+    private boolean isEmpty() {
+        return head.get() >= tail.get();
+    }
+
+    private boolean offer(LogSink sink, LogRecord record) {
+        long pos = tail.get();
+        for (;;) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    targets[index] = sink;
+                    records[index] = record;
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false; // full
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Claims the next slot for reading, or returns -1 if the buffer is empty.
+     * The caller must release the slot with {@link #releaseSlot(int, long)}.
+     */
+    private long claimSlot() {
+        long pos = head.get();
+        for (;;) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) return pos;
+                pos = head.get();
+            } else if (diff < 0) {
+                return -1; // empty
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+
+    private void releaseSlot(int index, long pos) {
+        targets[index] = null;
+        records[index] = null;
+        sequences.set(index, pos + mask + 1);
+    }
+
+    private int pollBatch(LogSink[] batchTargets, LogRecord[] batchRecords) {
+        int n = 0;
+        while (n < BATCH_SIZE) {
+            long pos = claimSlot();
+            if (pos < 0) break;
+            int index = (int) (pos & mask);
+            batchTargets[n] = targets[index];
+            batchRecords[n] = records[index];
+            releaseSlot(index, pos);
+            n++;
+        }
+        return n;
+    }
+
+    private boolean discardOldest() {
+        long pos = claimSlot();
+        if (pos < 0) return false;
+        releaseSlot((int) (pos & mask), pos);
+        completed.incrementAndGet();
+        return true;
+    }
+}
@@ -0,0 +1,210 @@
+package Utils;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Utils.BinaryLogOutput writes log records in the compact binary log format.
+ * <p>
+ * File layout: the magic bytes {@code SUDLOG} and a version byte, followed by entries.
+ * Each entry starts with a tag byte:
+ * <pre>
+ * 1 STRING  varint id, varint length, UTF-8 bytes     (defines an interned name)
+ * 2 RECORD  int64 epoch millis (big-endian), byte level,
+ *           varint logger id, varint method id (0 = none),
+ *           varint length, UTF-8 message,
+ *           varint field count, then per field:
+ *             varint key id, byte kind (0 STRING, 1 LONG, 2 DOUBLE, 3 BOOLEAN),
+ *             int64 raw bits for LONG, DOUBLE and BOOLEAN (0/1), or
+ *             varint length + 1 (0 = null) and UTF-8 text for STRING
+ * </pre>
+ * Logger names, method names and field keys are interned per file: each name is
+ * written once as a STRING entry and then referenced by id. A STRING entry may
+ * redefine an id, which happens when a file is appended to by a later run or the
+ * dictionary is reset. Object fields are written as their text. Version 1 files
+ * have no fields in their records; appending to one keeps writing version 1
+ * records, so the file stays readable. {@link LogDecoder} reads both versions.
+ */
+final class BinaryLogOutput implements LogOutput {
+    static final byte[] MAGIC = {'S', 'U', 'D', 'L', 'O', 'G'};
+    static final byte VERSION = 2;
+    static final byte FIRST_VERSION_WITH_FIELDS = 2;
+    static final int TAG_STRING = 1;
+    static final int TAG_RECORD = 2;
+
+    private static final int MAX_DICTIONARY_SIZE = 65_536;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileOutputStream file;
+    private final OutputStream out;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final int version; // of the file; older files are appended to in their own version
+    private int[] keyIds = new int[8];
+    private byte[] buffer = new byte[256];
+    private int length;
+
+    /**
+     * Opens the file and writes the header if the file is new or truncated.
+     * @param path the file to write
+     * @param append true to append, false to truncate
+     * @throws IOException if the file cannot be opened, or is not a binary log of a known version
+     */
+    BinaryLogOutput(Path path, boolean append) throws IOException {
+        boolean needsHeader = !append || !Files.exists(path) || Files.size(path) == 0;
+        this.version = needsHeader ? VERSION : readVersion(path);
+        this.file = new FileOutputStream(path.toFile(), append);
+        this.out = new BufferedOutputStream(file, BUFFER_SIZE);
+        if (needsHeader) {
+            out.write(MAGIC);
+            out.write(VERSION);
+        }
+    }
+
+    @Override
+    public int write(LogRecord record) throws IOException {
+        length = 0;
+        LogFields fields = version >= FIRST_VERSION_WITH_FIELDS ? record.getFields() : LogFields.EMPTY;
+        int fieldCount = fields.size();
+        // Reset before the names of this record are interned, so none of their ids is reused for another
+        if (dictionary.size() + 2 + fieldCount > MAX_DICTIONARY_SIZE) dictionary.clear();
+        int loggerId = intern(record.getLoggerName());
+        int methodId = record.getMethodName() == null ? 0 : intern(record.getMethodName());
+        if (keyIds.length < fieldCount) keyIds = new int[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            keyIds[i] = intern(fields.getKey(i));
+        }
+        putByte(TAG_RECORD);
+        putLong(record.getEpochMillis());
+        putByte(record.getLevel());
+        putVarInt(loggerId);
+        putVarInt(methodId);
+        putString(record.getMessage());
+        if (version >= FIRST_VERSION_WITH_FIELDS) putFields(fields);
+        out.write(buffer, 0, length);
+        return length;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void sync() throws IOException {
+        out.flush();
+        file.getFD().sync();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    // --- Internal Methods ---
+
+    /**
+     * Reads the version of an existing binary log.
+     */
+    private static int readVersion(Path path) throws IOException {
+        byte[] header = new byte[MAGIC.length + 1];
+        try (InputStream in = Files.newInputStream(path)) {
+            if (in.readNBytes(header, 0, header.length) < header.length
+                    || !Arrays.equals(Arrays.copyOf(header, MAGIC.length), MAGIC)) {
+                throw new IOException("Not a binary log file: " + path);
+            }
+        }
+        int version = header[MAGIC.length];
+        if (version < 1 || version > VERSION) throw new IOException("Unsupported binary log version " + version + ": " + path);
+        return version;
+    }
+
+    /**
+     * Writes the fields of a record; their keys are already interned in keyIds.
+     */
+    private void putFields(LogFields fields) {
+        putVarInt(fields.size());
+        for (int i = 0; i < fields.size(); i++) {
+            putVarInt(keyIds[i]);
+            byte kind = fields.kind(i);
+            if (kind == LogFields.LONG || kind == LogFields.DOUBLE || kind == LogFields.BOOLEAN) {
+                putByte(kind);
+                putLong(fields.number(i));
+            } else {
+                Object value = fields.object(i);
+                putByte(LogFields.STRING);
+                if (value == null) {
+                    putVarInt(0);
+                } else {
+                    byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+                    putVarInt(bytes.length + 1);
+                    putBytes(bytes);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the id of a name, writing a STRING entry into the buffer on first use.
+     */
+    private int intern(String name) {
+        String key = name == null ? "" : name;
+        Integer id = dictionary.get(key);
+        if (id != null) return id;
+        int newId = dictionary.size() + 1;
+        dictionary.put(key, newId);
+        putByte(TAG_STRING);
+        putVarInt(newId);
+        putString(key);
+        return newId;
+    }
+
+    private void putString(String s) {
+        byte[] bytes = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+        putVarInt(bytes.length);
+        putBytes(bytes);
+    }
+
+    private void putBytes(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void putByte(int b) {
+        ensureCapacity(1);
+        buffer[length++] = (byte) b;
+    }
+
+    private void putLong(long v) {
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[length++] = (byte) (v >>> shift);
+        }
+    }
+
+    private void putVarInt(int v) {
+        ensureCapacity(5);
+        while ((v & ~0x7F) != 0) {
+            buffer[length++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buffer[length++] = (byte) v;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            byte[] grown = new byte[Math.max(buffer.length * 2, length + extra)];
+            System.arraycopy(buffer, 0, grown, 0, length);
+            buffer = grown;
+        }
+    }
+}
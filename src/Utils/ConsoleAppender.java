@@ -0,0 +1,46 @@
+package Utils;
+
+/**
+ * Utils.ConsoleAppender prints records to standard output with a layout.
+ * <p>
+ * Lines go through the shared {@link ConsoleOutput}, so they follow its
+ * batching and color settings and keep their order with the lines loggers
+ * print to the console themselves.
+ */
+public final class ConsoleAppender implements Appender {
+    private final Layout layout;
+
+    /**
+     * Creates an appender that formats records with the default layout.
+     */
+    public ConsoleAppender() {
+        this(Layout.DEFAULT);
+    }
+
+    /**
+     * Creates an appender that formats records with the given layout.
+     * @param layout the line layout
+     */
+    public ConsoleAppender(Layout layout) {
+        if (layout == null) throw new IllegalArgumentException("Layout cannot be null");
+        this.layout = layout;
+    }
+
+    @Override
+    public void append(LogRecord record) {
+        ConsoleOutput.shared().append(record.getLevel(), layout.format(record));
+    }
+
+    @Override
+    public void flush() {
+        ConsoleOutput.shared().flush();
+    }
+
+    /**
+     * Returns the layout lines are formatted with.
+     * @return the layout
+     */
+    public Layout getLayout() {
+        return layout;
+    }
+}
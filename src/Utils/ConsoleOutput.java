@@ -0,0 +1,325 @@
+package Utils;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Utils.ConsoleOutput writes logger lines to standard output. To route
+ * records to the console with a layout, use {@link ConsoleAppender}.
+ * <p>
+ * By default every line is printed with {@code System.out.println}, which
+ * flushes per line under the stream's lock. In batched mode (see
+ * {@link #configure(int, long)} or {@code -Dlogger.console.batch=true}) lines
+ * are encoded with their pre-encoded color prefix into a private buffer and
+ * written to the stdout file descriptor in one call once the buffer is full or
+ * the flush interval has passed, whichever comes first. Two buffers take turns,
+ * so threads keep appending while a batch is being written.
+ * <p>
+ * ANSI colors are only written when stdout is a terminal
+ * ({@link System#console()} is not null); {@code -Dlogger.console.ansi=true|false}
+ * overrides the detection.
+ * <p>
+ * Batched mode writes to the original stdout, not to a stream installed with
+ * {@link System#setOut(PrintStream)}. It uses a {@link FileOutputStream} rather
+ * than a {@code FileChannel}, because interrupting a thread during a channel
+ * write would close the channel, and with it stdout.
+ */
+public final class ConsoleOutput {
+    public static final int DEFAULT_BATCH_BYTES = 32 * 1024;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 20;
+
+    private static final String[] LEVEL_COLORS = {Logger.PURPLE, Logger.CYAN, Logger.YELLOW, Logger.RED};
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 1_000L;
+
+    private static final Object SHARED_LOCK = new Object();
+    private static volatile ConsoleOutput shared;
+    private static boolean shutdownHookInstalled = false;
+
+    private final boolean ansi;
+    private final int batchBytes; // 0 = println per line
+    private final long flushIntervalNanos;
+    private final String[] colorPrefixes;
+    private final String colorSuffix;
+    private final byte[][] prefixBytes;
+    private final byte[] suffixBytes;
+
+    // Batched mode
+    private final OutputStream out;
+    private final ReentrantLock writeLock = new ReentrantLock(); // held while a batch is written
+    private byte[] buffer;  // guarded by this
+    private byte[] spare;   // the buffer being written, or free; swapped under writeLock
+    private int count;      // guarded by this
+    private Thread flusherThread;
+    private volatile boolean running = false;
+
+    /**
+     * Creates an output. Batched outputs must be started with {@link #start()}.
+     * @param out where batches are written
+     * @param ansi true to color lines
+     * @param batchBytes buffer size in bytes, 0 to print each line with System.out
+     * @param flushIntervalMillis longest time a line waits in the buffer
+     */
+    ConsoleOutput(OutputStream out, boolean ansi, int batchBytes, long flushIntervalMillis) {
+        if (batchBytes < 0) throw new IllegalArgumentException("Batch size cannot be negative");
+        if (batchBytes > 0 && flushIntervalMillis <= 0) throw new IllegalArgumentException("Flush interval must be positive");
+        this.out = out;
+        this.ansi = ansi;
+        this.batchBytes = batchBytes;
+        this.flushIntervalNanos = flushIntervalMillis * 1_000_000L;
+        this.colorPrefixes = new String[LEVEL_COLORS.length];
+        this.prefixBytes = new byte[LEVEL_COLORS.length][];
+        for (int level = 0; level < LEVEL_COLORS.length; level++) {
+            colorPrefixes[level] = ansi ? LEVEL_COLORS[level] : "";
+            prefixBytes[level] = colorPrefixes[level].getBytes(StandardCharsets.UTF_8);
+        }
+        this.colorSuffix = ansi ? Logger.RESET : "";
+        byte[] reset = colorSuffix.getBytes(StandardCharsets.UTF_8);
+        this.suffixBytes = new byte[reset.length + LINE_SEPARATOR.length];
+        System.arraycopy(reset, 0, suffixBytes, 0, reset.length);
+        System.arraycopy(LINE_SEPARATOR, 0, suffixBytes, reset.length, LINE_SEPARATOR.length);
+        if (batchBytes > 0) {
+            this.buffer = new byte[batchBytes];
+            this.spare = new byte[batchBytes];
+        }
+    }
+
+    // --- Shared instance ---
+
+    /**
+     * Returns the process-wide output loggers print to, creating it on first
+     * use from the {@code logger.console.batch} and {@code logger.console.ansi}
+     * system properties.
+     * @return the shared output
+     */
+    public static ConsoleOutput shared() {
+        ConsoleOutput output = shared;
+        if (output != null) return output;
+        synchronized (SHARED_LOCK) {
+            if (shared == null) {
+                boolean batched = Boolean.getBoolean("logger.console.batch");
+                shared = startShared(batched ? DEFAULT_BATCH_BYTES : 0, DEFAULT_FLUSH_INTERVAL_MILLIS);
+            }
+            return shared;
+        }
+    }
+
+    /**
+     * Replaces the shared output. The previous one is flushed and stopped.
+     * @param batchBytes buffer size in bytes, 0 to print and flush every line
+     * @param flushIntervalMillis longest time a line waits in the buffer
+     */
+    public static void configure(int batchBytes, long flushIntervalMillis) {
+        ConsoleOutput previous;
+        synchronized (SHARED_LOCK) {
+            previous = shared;
+            shared = startShared(batchBytes, flushIntervalMillis);
+        }
+        if (previous != null) previous.shutdown();
+    }
+
+    private static ConsoleOutput startShared(int batchBytes, long flushIntervalMillis) {
+        OutputStream stdout = batchBytes > 0 ? new FileOutputStream(FileDescriptor.out) : null;
+        ConsoleOutput output = new ConsoleOutput(stdout, detectAnsi(), batchBytes, flushIntervalMillis);
+        output.start();
+        if (batchBytes > 0 && !shutdownHookInstalled) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                ConsoleOutput current = shared;
+                if (current != null) current.shutdown();
+            }, "Utils.Logger-console-shutdown"));
+            shutdownHookInstalled = true;
+        }
+        return output;
+    }
+
+    /**
+     * Decides whether to write ANSI colors: the {@code logger.console.ansi}
+     * property if set, otherwise whether stdout is a terminal.
+     */
+    static boolean detectAnsi() {
+        String forced = System.getProperty("logger.console.ansi");
+        if (forced != null) return Boolean.parseBoolean(forced);
+        return System.console() != null;
+    }
+
+    // --- Public API ---
+
+    /**
+     * Writes a line in the color of its level.
+     * @param level 0=DEBUG, 1=INFO, 2=WARNING, 3=ERROR
+     * @param line the formatted log line, without line separator
+     */
+    void append(int level, String line) {
+        if (batchBytes == 0) {
+            System.out.println(colorPrefixes[level] + line + colorSuffix);
+            return;
+        }
+        byte[] prefix = prefixBytes[level];
+        int maxLength = prefix.length + line.length() * 3 + suffixBytes.length; // UTF-8 upper bound
+        byte[] batch;
+        int batchLength;
+        byte[] oversized = null;
+        int oversizedLength = 0;
+        synchronized (this) {
+            if (count + maxLength <= buffer.length) {
+                count = encode(buffer, count, prefix, line);
+                return;
+            }
+            writeLock.lock();
+            batch = swapBuffers();
+            batchLength = count;
+            count = 0;
+            if (maxLength <= buffer.length) {
+                count = encode(buffer, 0, prefix, line);
+            } else {
+                oversized = new byte[maxLength]; // written on its own, after the batch
+                oversizedLength = encode(oversized, 0, prefix, line);
+            }
+        }
+        try {
+            writeBatch(batch, batchLength);
+            if (oversized != null) writeBatch(oversized, oversizedLength);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Writes everything buffered so far. Returns once it has reached stdout.
+     */
+    public void flush() {
+        if (batchBytes == 0) return; // println already flushed
+        byte[] batch;
+        int batchLength;
+        synchronized (this) {
+            writeLock.lock();
+            batch = swapBuffers();
+            batchLength = count;
+            count = 0;
+        }
+        try {
+            writeBatch(batch, batchLength);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether lines are colored.
+     * @return true if ANSI color codes are written
+     */
+    public boolean isAnsiEnabled() {
+        return ansi;
+    }
+
+    /**
+     * Returns whether lines are buffered.
+     * @return true in batched mode
+     */
+    public boolean isBatched() {
+        return batchBytes > 0;
+    }
+
+    /**
+     * Returns the buffer size.
+     * @return bytes per batch, 0 if every line is printed directly
+     */
+    public int getBatchBytes() {
+        return batchBytes;
+    }
+
+    // --- Lifecycle ---
+
+    void start() {
+        if (batchBytes == 0 || running) return;
+        running = true;
+        flusherThread = new Thread(this::runFlusher, "Utils.Logger-console-flusher");
+        flusherThread.setDaemon(true);
+        flusherThread.start();
+    }
+
+    /**
+     * Stops the flusher thread and writes what is still buffered.
+     */
+    void shutdown() {
+        if (running) {
+            running = false;
+            LockSupport.unpark(flusherThread);
+            try {
+                flusherThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    // --- Internal Methods ---
+
+    private void runFlusher() {
+        while (running) {
+            LockSupport.parkNanos(this, flushIntervalNanos);
+            if (hasBuffered()) flush();
+        }
+    }
+
+    private synchronized boolean hasBuffered() {
+        return count > 0;
+    }
+
+    /**
+     * Makes the spare buffer current and returns the filled one. Caller holds
+     * this and writeLock, so the spare is not being written.
+     */
+    private byte[] swapBuffers() {
+        byte[] filled = buffer;
+        buffer = spare;
+        spare = filled;
+        return filled;
+    }
+
+    /**
+     * Encodes prefix, line and suffix into the target at the given position.
+     * ASCII lines, the usual case, are copied char by char without a temporary array.
+     * @return the position after the suffix
+     */
+    private int encode(byte[] target, int position, byte[] prefix, String line) {
+        System.arraycopy(prefix, 0, target, position, prefix.length);
+        position += prefix.length;
+        int length = line.length();
+        int start = position;
+        boolean ascii = true;
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            if (c >= 0x80) {
+                ascii = false;
+                break;
+            }
+            target[position++] = (byte) c;
+        }
+        if (!ascii) {
+            byte[] encoded = line.getBytes(StandardCharsets.UTF_8);
+            System.arraycopy(encoded, 0, target, start, encoded.length);
+            position = start + encoded.length;
+        }
+        System.arraycopy(suffixBytes, 0, target, position, suffixBytes.length);
+        return position + suffixBytes.length;
+    }
+
+    private void writeBatch(byte[] batch, int length) {
+        if (length == 0) return;
+        System.out.flush(); // text printed through System.out before these lines goes first
+        try {
+            out.write(batch, 0, length);
+            out.flush();
+        } catch (IOException e) {
+            System.err.println(Logger.RED + "Utils.ConsoleOutput: Error writing to stdout: " + e.getMessage() + Logger.RESET);
+        }
+    }
+}
@@ -0,0 +1,531 @@
+package Utils;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Utils.FlightRecorder keeps the most recent log calls of all loggers, at every
+ * level, in a fixed-size in-memory ring and dumps them when an ERROR is logged.
+ * <p>
+ * Calls are captured before the level check, so a dump shows DEBUG context
+ * even when DEBUG is off. Capturing does no message formatting and no I/O:
+ * the ring stores the time, level, logger name and message pattern, with the
+ * arguments as they were at the call. Primitive arguments go unboxed into
+ * parallel arrays, and strings, boxed primitives and enums are kept as they
+ * are. Only other objects, which may change before a dump, are turned into
+ * their {@code String.valueOf} text at the call. Messages are built from these
+ * values when the ring is dumped. Records of a {@link LogEvent} keep their
+ * fields, with Object values as their text.
+ * <p>
+ * A lazy ({@link Supplier}) message is recorded with the text the logger
+ * builds when its level is enabled; at disabled levels the supplier is not
+ * called and the ring holds a placeholder, unless
+ * {@link #setEvaluateLazyMessages(boolean)} asks for every supplier to be
+ * called at capture.
+ * <p>
+ * The ring is shared by all threads and lock-free: a writer claims a slot with
+ * one atomic increment and publishes it through the slot's sequence number;
+ * readers skip slots that are overwritten while they read them.
+ * <p>
+ * Dumps are written in the binary log format, so
+ * {@code java Utils.LogDecoder flight_....bin} prints them. Automatic dumps
+ * contain the records captured since the previous dump and are at most one
+ * per {@link #DEFAULT_MIN_DUMP_INTERVAL_MILLIS} by default, so a burst of errors
+ * does not turn into a burst of files. They are written on a background
+ * thread, so the thread that logged the error does not wait for the file;
+ * records the ring overwrites before that thread reads them are left out.
+ * Pending dumps are finished at JVM shutdown.
+ * <p>
+ * Off by default. Enable with {@link #enable(int, Path)} or
+ * {@code -Dlogger.flightRecorder=true} (optionally {@code -Dlogger.flightRecorder.dir=path}).
+ */
+public final class FlightRecorder {
+    public static final int DEFAULT_CAPACITY = 4096;
+    public static final long DEFAULT_MIN_DUMP_INTERVAL_MILLIS = 1_000L;
+
+    private static final DateTimeFormatter FILE_DTF = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss_SSS");
+    private static final byte PLAIN = 0, INLINE_ARGS = 1, ARG_ARRAY = 2;       // record kinds
+    private static final byte NO_ARG = 0, LONG = 1, DOUBLE = 2, CHAR = 3, VALUE = 4; // argument kinds
+    static final String LAZY_NOT_EVALUATED = "[lazy message not evaluated]";
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5_000L;
+
+    private static final ExecutorService DUMPER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Utils.FlightRecorder-dump");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static boolean shutdownHookInstalled = false; // guarded by the class
+
+    // Read on every log call; false keeps the cost to one volatile read
+    static volatile boolean enabled = false;
+    private static volatile FlightRecorder active;
+
+    static {
+        if (Boolean.getBoolean("logger.flightRecorder")) {
+            enable(DEFAULT_CAPACITY, Paths.get(System.getProperty("logger.flightRecorder.dir", ".")));
+        }
+    }
+
+    // Ring slots; sequences[i] is the sequence stored in slot i, -1 while it is written
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final long[] times;
+    private final byte[] levels;
+    private final byte[] kinds;
+    private final String[] loggerNames;
+    private final String[] messages;    // pattern, or the message for PLAIN
+    private final byte[] argKinds;      // two arguments per slot, at 2 * slot and 2 * slot + 1
+    private final long[] argBits;       // LONG, DOUBLE (raw bits) and CHAR values
+    private final Object[] argValues;   // VALUE arguments: immutable values or texts
+    private final Object[][] arrayArgs; // arguments for ARG_ARRAY, stored the same way
+    private final LogFields[] fieldSets; // fields of LogEvent records, or null
+    private final AtomicLong next = new AtomicLong();
+
+    private final Path directory;
+    private volatile int dumpLevel = 3;
+    private volatile long minDumpIntervalMillis = DEFAULT_MIN_DUMP_INTERVAL_MILLIS;
+    private volatile boolean evaluateLazyMessages = false;
+    private final AtomicLong nextAutoDumpMillis = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong dumpedUpTo = new AtomicLong(); // first sequence not yet auto-dumped
+    private final AtomicLong dumpCount = new AtomicLong();
+    private volatile Path lastDump;
+
+    private FlightRecorder(int capacity, Path directory) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, -1);
+        }
+        this.times = new long[size];
+        this.levels = new byte[size];
+        this.kinds = new byte[size];
+        this.loggerNames = new String[size];
+        this.messages = new String[size];
+        this.argKinds = new byte[2 * size];
+        this.argBits = new long[2 * size];
+        this.argValues = new Object[2 * size];
+        this.arrayArgs = new Object[size][];
+        this.fieldSets = new LogFields[size];
+        this.directory = directory;
+    }
+
+    // --- Configuration ---
+
+    /**
+     * Starts recording into a new ring, replacing any previous one.
+     * @param capacity number of records kept (rounded up to a power of two)
+     * @param directory where dump files are written
+     */
+    public static synchronized void enable(int capacity, Path directory) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be at least 1");
+        if (directory == null) throw new IllegalArgumentException("Directory cannot be null");
+        active = new FlightRecorder(capacity, directory);
+        enabled = true;
+        if (!shutdownHookInstalled) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> awaitDumps(SHUTDOWN_TIMEOUT_MILLIS),
+                    "Utils.FlightRecorder-shutdown"));
+            shutdownHookInstalled = true;
+        }
+    }
+
+    /**
+     * Stops recording and discards the ring.
+     */
+    public static synchronized void disable() {
+        enabled = false;
+        active = null;
+    }
+
+    /**
+     * Returns whether log calls are being recorded.
+     * @return true if enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets the lowest level that triggers an automatic dump.
+     * @param level 0=DEBUG, 1=INFO, 2=WARNING, 3=ERROR (default), -1 to never dump automatically
+     */
+    public static void setDumpLevel(int level) {
+        if (level < -1 || level > 3) throw new IllegalArgumentException("Invalid log level: " + level);
+        FlightRecorder recorder = requireActive();
+        recorder.dumpLevel = level == -1 ? Integer.MAX_VALUE : level;
+    }
+
+    /**
+     * Sets the shortest time between two automatic dumps.
+     * @param millis minimum interval, 0 to dump on every trigger
+     */
+    public static void setMinDumpInterval(long millis) {
+        if (millis < 0) throw new IllegalArgumentException("Interval cannot be negative");
+        requireActive().minDumpIntervalMillis = millis;
+    }
+
+    /**
+     * Sets whether lazy messages are built for the ring at levels the logger
+     * does not write. Off by default, so a disabled {@code debug(() -> ...)}
+     * costs no more with the recorder on; on, the dump shows their text at the
+     * price of calling every supplier.
+     * @param evaluate true to call every supplier at capture
+     */
+    public static void setEvaluateLazyMessages(boolean evaluate) {
+        requireActive().evaluateLazyMessages = evaluate;
+    }
+
+    // --- Dumps ---
+
+    /**
+     * Writes all records in the ring to a new file in the dump directory.
+     * @return the dump file
+     * @throws IOException if the file cannot be written
+     */
+    public static Path dump() throws IOException {
+        FlightRecorder recorder = requireActive();
+        return recorder.writeDump(recorder.collect(0, recorder.next.get()));
+    }
+
+    /**
+     * Writes all records in the ring to the given file, replacing it.
+     * @param file the dump file
+     * @throws IOException if the file cannot be written
+     */
+    public static void dumpTo(Path file) throws IOException {
+        FlightRecorder recorder = requireActive();
+        writeRecords(file, recorder.collect(0, recorder.next.get()));
+    }
+
+    /**
+     * Returns the records in the ring with their messages built.
+     * @return records, oldest first
+     */
+    public static List<LogRecord> snapshot() {
+        FlightRecorder recorder = active;
+        return recorder == null ? new ArrayList<>() : recorder.collect(0, recorder.next.get());
+    }
+
+    /**
+     * Returns how many dump files were written since recording was enabled.
+     * @return dump count
+     */
+    public static long getDumpCount() {
+        FlightRecorder recorder = active;
+        return recorder == null ? 0 : recorder.dumpCount.get();
+    }
+
+    /**
+     * Returns the most recent dump file.
+     * @return the path, or null if nothing was dumped yet
+     */
+    public static Path getLastDump() {
+        FlightRecorder recorder = active;
+        return recorder == null ? null : recorder.lastDump;
+    }
+
+    /**
+     * Waits until the automatic dumps triggered so far have been written.
+     * @param timeoutMillis longest time to wait
+     * @return false if they were not written within the timeout
+     */
+    static boolean awaitDumps(long timeoutMillis) {
+        try {
+            DUMPER.submit(() -> {}).get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    // --- Capture (called by Logger when enabled) ---
+
+    static void capture(String loggerName, int level, String message) {
+        FlightRecorder recorder = active;
+        if (recorder == null) return;
+        long sequence = recorder.begin(loggerName, level, PLAIN, message);
+        recorder.publish(sequence, level);
+    }
+
+    static void capture(String loggerName, int level, String message, LogFields fields) {
+        FlightRecorder recorder = active;
+        if (recorder == null) return;
+        LogFields kept = fields.isEmpty() ? null : fields.textCopy();
+        long sequence = recorder.begin(loggerName, level, PLAIN, message);
+        recorder.fieldSets[(int) (sequence & recorder.mask)] = kept;
+        recorder.publish(sequence, level);
+    }
+
+    static void capture(String loggerName, int level, String pattern, Object arg) {
+        FlightRecorder recorder = active;
+        if (recorder == null) return;
+        long sequence = recorder.begin(loggerName, level, INLINE_ARGS, pattern);
+        recorder.setValue(sequence, 0, arg);
+        recorder.publish(sequence, level);
+    }
+
+    static void capture(String loggerName, int level, String pattern, Object arg1, Object arg2) {
+        FlightRecorder recorder = active;
+        if (recorder == null) return;
+        long sequence = recorder.begin(loggerName, level, INLINE_ARGS, pattern);
+        recorder.setValue(sequence, 0, arg1);
+        recorder.setValue(sequence, 1, arg2);
+        recorder.publish(sequence, level);
+    }
+
+    static void capture(String loggerName, int level, String pattern, Object[] args) {
+        FlightRecorder recorder = active;
+        if (recorder == null) return;
+        Object[] values = null;
+        if (args != null) {
+            values = new Object[args.length]; // a copy, the caller may reuse its array
+            for (int i = 0; i < args.length; i++) {
+                values[i] = snapshot(args[i]);
+            }
+        }
+        long sequence = recorder.begin(loggerName, level, ARG_ARRAY, pattern);
+        recorder.arrayArgs[(int) (sequence & recorder.mask)] = values;
+        recorder.publish(sequence, level);
+    }
+
+    /**
+     * Builds a lazy message now, so the ring keeps its text as of this call.
+     * At levels the logger does not write, the supplier is only called if
+     * {@link #setEvaluateLazyMessages(boolean)} is on.
+     * @param loggable whether the logger writes this level
+     * @return the message, for the logger to reuse, or null if the supplier was not called or failed
+     */
+    static String capture(String loggerName, int level, Supplier<String> messageSupplier, boolean loggable) {
+        FlightRecorder recorder = active;
+        if (recorder == null || messageSupplier == null) return null;
+        if (!loggable && !recorder.evaluateLazyMessages) {
+            recorder.publish(recorder.begin(loggerName, level, PLAIN, LAZY_NOT_EVALUATED), level);
+            return null;
+        }
+        String message;
+        String recorded;
+        try {
+            message = messageSupplier.get();
+            recorded = message;
+        } catch (RuntimeException e) {
+            message = null; // the logger calls the supplier again and sees the failure itself
+            recorded = "[message failed: " + e + "]";
+        }
+        long sequence = recorder.begin(loggerName, level, PLAIN, recorded);
+        recorder.publish(sequence, level);
+        return message;
+    }
+
+    static void capture(String loggerName, int level, String pattern, long arg) {
+        FlightRecorder recorder = active;
+        if (recorder == null) return;
+        long sequence = recorder.begin(loggerName, level, INLINE_ARGS, pattern);
+        recorder.setBits(sequence, 0, LONG, arg);
+        recorder.publish(sequence, level);
+    }
+
+    static void capture(String loggerName, int level, String pattern, double arg) {
+        FlightRecorder recorder = active;
+        if (recorder == null) return;
+        long sequence = recorder.begin(loggerName, level, INLINE_ARGS, pattern);
+        recorder.setBits(sequence, 0, DOUBLE, Double.doubleToRawLongBits(arg));
+        recorder.publish(sequence, level);
+    }
+
+    static void capture(String loggerName, int level, String pattern, char arg) {
+        FlightRecorder recorder = active;
+        if (recorder == null) return;
+        long sequence = recorder.begin(loggerName, level, INLINE_ARGS, pattern);
+        recorder.setBits(sequence, 0, CHAR, arg);
+        recorder.publish(sequence, level);
+    }
+
+    static void capture(String loggerName, int level, String pattern, double arg1, double arg2) {
+        FlightRecorder recorder = active;
+        if (recorder == null) return;
+        long sequence = recorder.begin(loggerName, level, INLINE_ARGS, pattern);
+        recorder.setBits(sequence, 0, DOUBLE, Double.doubleToRawLongBits(arg1));
+        recorder.setBits(sequence, 1, DOUBLE, Double.doubleToRawLongBits(arg2));
+        recorder.publish(sequence, level);
+    }
+
+    static void capture(String loggerName, int level, String pattern, Object arg1, double arg2) {
+        FlightRecorder recorder = active;
+        if (recorder == null) return;
+        long sequence = recorder.begin(loggerName, level, INLINE_ARGS, pattern);
+        recorder.setValue(sequence, 0, arg1);
+        recorder.setBits(sequence, 1, DOUBLE, Double.doubleToRawLongBits(arg2));
+        recorder.publish(sequence, level);
+    }
+
+    // --- Internal Methods ---
+
+    private static FlightRecorder requireActive() {
+        FlightRecorder recorder = active;
+        if (recorder == null) throw new IllegalStateException("Flight recorder is not enabled");
+        return recorder;
+    }
+
+    /**
+     * Claims the next slot and fills in everything but the arguments. The
+     * slot stays unpublished until {@link #publish}.
+     * @return the slot's sequence
+     */
+    private long begin(String loggerName, int level, byte kind, String message) {
+        long sequence = next.getAndIncrement();
+        int index = (int) (sequence & mask);
+        sequences.set(index, -1);
+        VarHandle.storeStoreFence(); // readers see -1 before any of the new fields
+        times[index] = System.currentTimeMillis();
+        levels[index] = (byte) level;
+        kinds[index] = kind;
+        loggerNames[index] = loggerName;
+        messages[index] = message;
+        argKinds[2 * index] = NO_ARG;
+        argKinds[2 * index + 1] = NO_ARG;
+        argValues[2 * index] = null;
+        argValues[2 * index + 1] = null;
+        arrayArgs[index] = null;
+        fieldSets[index] = null;
+        return sequence;
+    }
+
+    private void setBits(long sequence, int arg, byte kind, long bits) {
+        int slot = 2 * (int) (sequence & mask) + arg;
+        argKinds[slot] = kind;
+        argBits[slot] = bits;
+    }
+
+    private void setValue(long sequence, int arg, Object value) {
+        int slot = 2 * (int) (sequence & mask) + arg;
+        argKinds[slot] = VALUE;
+        argValues[slot] = snapshot(value);
+    }
+
+    /**
+     * Returns an argument as it can be kept until a dump: immutable values
+     * as they are, anything else as its text now.
+     */
+    private static Object snapshot(Object value) {
+        if (value == null || value instanceof String || value instanceof Integer || value instanceof Long
+                || value instanceof Double || value instanceof Boolean || value instanceof Character
+                || value instanceof Float || value instanceof Short || value instanceof Byte
+                || value instanceof Enum<?>) {
+            return value;
+        }
+        return MessageFormatter.toText(value);
+    }
+
+    private void publish(long sequence, int level) {
+        sequences.set((int) (sequence & mask), sequence);
+        if (level >= dumpLevel) autoDump(sequence);
+    }
+
+    /**
+     * Hands the records since the last automatic dump, up to the trigger, to
+     * the dump thread, unless a dump was started less than the minimum
+     * interval ago.
+     */
+    private void autoDump(long triggerSequence) {
+        long now = System.currentTimeMillis();
+        long allowedAt = nextAutoDumpMillis.get();
+        if (now < allowedAt || !nextAutoDumpMillis.compareAndSet(allowedAt, now + minDumpIntervalMillis)) return;
+        long from = dumpedUpTo.getAndAccumulate(triggerSequence + 1, Math::max);
+        if (from > triggerSequence) return; // a later trigger already took this range
+        DUMPER.execute(() -> {
+            try {
+                writeDump(collect(from, triggerSequence + 1));
+            } catch (IOException e) {
+                System.err.println(Logger.RED + "Utils.FlightRecorder: Failed to write dump: " + e.getMessage() + Logger.RESET);
+            }
+        });
+    }
+
+    /**
+     * Reads the published slots in the given sequence range and builds their records.
+     * Slots overwritten before or while being read are left out.
+     * @param fromSequence first sequence, inclusive
+     * @param toSequence last sequence, exclusive
+     */
+    private List<LogRecord> collect(long fromSequence, long toSequence) {
+        long end = toSequence;
+        long start = Math.max(fromSequence, end - (mask + 1));
+        List<LogRecord> records = new ArrayList<>((int) Math.max(0, end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            int index = (int) (sequence & mask);
+            if (sequences.get(index) != sequence) continue;
+            long time = times[index];
+            int level = levels[index];
+            byte kind = kinds[index];
+            String loggerName = loggerNames[index];
+            String message = messages[index];
+            Object[] args = kind == INLINE_ARGS ? inlineArgs(index) : kind == ARG_ARRAY ? arrayArgs[index] : null;
+            LogFields fields = fieldSets[index];
+            VarHandle.loadLoadFence();
+            if (sequences.get(index) != sequence) continue; // overwritten while reading
+            records.add(new LogRecord(time, level, loggerName, null, buildMessage(kind, message, args), fields, null));
+        }
+        return records;
+    }
+
+    // One or two arguments, depending on whether the second was set; only called while dumping
+    private Object[] inlineArgs(int index) {
+        if (argKinds[2 * index + 1] == NO_ARG) return new Object[] {argValue(2 * index)};
+        return new Object[] {argValue(2 * index), argValue(2 * index + 1)};
+    }
+
+    // Boxes a stored argument; only called while dumping
+    private Object argValue(int slot) {
+        switch (argKinds[slot]) {
+            case LONG: return argBits[slot];
+            case DOUBLE: return Double.longBitsToDouble(argBits[slot]);
+            case CHAR: return (char) argBits[slot];
+            case VALUE: return argValues[slot];
+            default: return null;
+        }
+    }
+
+    private static String buildMessage(byte kind, String message, Object[] args) {
+        if (kind == PLAIN) return message;
+        if (kind == INLINE_ARGS && args.length == 1) return MessageFormatter.format(message, args[0]);
+        return MessageFormatter.format(message, args);
+    }
+
+    private Path writeDump(List<LogRecord> records) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve("flight_" + FILE_DTF.format(LocalDateTime.now()) + "_" + dumpCount.get() + ".bin");
+        writeRecords(file, records);
+        dumpCount.incrementAndGet();
+        lastDump = file;
+        return file;
+    }
+
+    private static void writeRecords(Path file, List<LogRecord> records) throws IOException {
+        BinaryLogOutput out = new BinaryLogOutput(file, false);
+        try {
+            for (LogRecord record : records) {
+                out.write(record);
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
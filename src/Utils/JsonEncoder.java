@@ -0,0 +1,231 @@
+package Utils;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Utils.JsonEncoder writes a log record as one JSON object straight into a
+ * reusable byte array, as UTF-8:
+ * <pre>
+ * {"ts":1754150866123,"level":"INFO","logger":"Vehicle","method":"refuel","msg":"...","fields":{"tankLevel":42.5}}
+ * </pre>
+ * "ts" is milliseconds since the epoch. "method" is left out when location
+ * capture is off, "fields" when the record has none.
+ * <p>
+ * Strings are escaped and encoded char by char, and integers and most
+ * decimals are written digit by digit, so encoding creates no intermediate
+ * Strings. Only decimals that need more than six fractional digits to
+ * round-trip, and values of {@link LogEvent#field(String, Object)} fields,
+ * go through toString().
+ * <p>
+ * Not thread-safe; each writer owns its encoder.
+ */
+final class JsonEncoder {
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+    private static final double DECIMAL_SCALE = 1e6;
+    private static final int DECIMAL_DIGITS = 6;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] buffer = new byte[512];
+    private int length;
+
+    /**
+     * Encodes a record, replacing what the buffer held before.
+     * @param record the record
+     * @return number of bytes in {@link #buffer()}
+     */
+    int encode(LogRecord record) {
+        if (buffer.length > MAX_RETAINED_BUFFER) buffer = new byte[512];
+        length = 0;
+        putAscii("{\"ts\":");
+        putLong(record.getEpochMillis());
+        putAscii(",\"level\":\"");
+        putAscii(record.getLevelName());
+        putAscii("\",\"logger\":");
+        putString(record.getLoggerName());
+        if (record.getMethodName() != null) {
+            putAscii(",\"method\":");
+            putString(record.getMethodName());
+        }
+        putAscii(",\"msg\":");
+        putString(record.getMessage());
+        LogFields fields = record.getFields();
+        if (!fields.isEmpty()) {
+            putAscii(",\"fields\":{");
+            for (int i = 0; i < fields.size(); i++) {
+                if (i > 0) putByte(',');
+                putString(fields.getKey(i));
+                putByte(':');
+                putValue(fields, i);
+            }
+            putByte('}');
+        }
+        putByte('}');
+        return length;
+    }
+
+    /**
+     * Returns the array holding the last encoded record.
+     * @return the buffer; only the first {@link #encode(LogRecord)} bytes are valid
+     */
+    byte[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns the last encoded record as a String.
+     * @return the JSON text
+     */
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // --- Internal Methods ---
+
+    private void putValue(LogFields fields, int index) {
+        switch (fields.kind(index)) {
+            case LogFields.LONG -> putLong(fields.number(index));
+            case LogFields.DOUBLE -> putDouble(Double.longBitsToDouble(fields.number(index)));
+            case LogFields.BOOLEAN -> putAscii(fields.number(index) != 0 ? "true" : "false");
+            default -> {
+                Object value = fields.object(index);
+                if (value == null) {
+                    putAscii("null");
+                } else {
+                    putString(value.toString());
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a decimal that reads back as the same double. Values with up to
+     * six fractional digits are written digit by digit.
+     */
+    private void putDouble(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            putString(Double.toString(value)); // JSON has no NaN or Infinity
+            return;
+        }
+        double scaled = value * DECIMAL_SCALE;
+        if (Math.abs(scaled) < 1e15 && scaled == Math.rint(scaled) && (long) scaled / DECIMAL_SCALE == value) {
+            long units = (long) scaled;
+            if (units < 0 || (units == 0 && Double.doubleToRawLongBits(value) < 0)) {
+                putByte('-');
+                units = -units;
+            }
+            putLong(units / (long) DECIMAL_SCALE);
+            putByte('.');
+            long fraction = units % (long) DECIMAL_SCALE;
+            int digits = DECIMAL_DIGITS;
+            while (digits > 1 && fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+            ensureCapacity(digits);
+            for (int i = digits - 1; i >= 0; i--) {
+                buffer[length + i] = (byte) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            length += digits;
+            return;
+        }
+        putAscii(Double.toString(value));
+    }
+
+    private void putLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            putAscii("-9223372036854775808");
+            return;
+        }
+        ensureCapacity(20);
+        if (value < 0) {
+            buffer[length++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) digits++;
+        for (int i = digits - 1; i >= 0; i--) {
+            buffer[length + i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+    }
+
+    /**
+     * Writes a quoted, escaped JSON string, encoding UTF-8 by hand.
+     */
+    private void putString(String value) {
+        if (value == null) {
+            putAscii("null");
+            return;
+        }
+        ensureCapacity(value.length() * 6 + 2); // worst case: every char escaped as \\u00XX
+        buffer[length++] = '"';
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                buffer[length++] = (byte) c;
+            } else if (c < 0x80) {
+                putEscaped(c);
+            } else if (c < 0x800) {
+                buffer[length++] = (byte) (0xC0 | (c >> 6));
+                buffer[length++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[length++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[length++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buffer[length++] = '?'; // unpaired surrogate
+            } else {
+                buffer[length++] = (byte) (0xE0 | (c >> 12));
+                buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        buffer[length++] = '"';
+    }
+
+    private void putEscaped(char c) {
+        buffer[length++] = '\\';
+        switch (c) {
+            case '"' -> buffer[length++] = '"';
+            case '\\' -> buffer[length++] = '\\';
+            case '\n' -> buffer[length++] = 'n';
+            case '\r' -> buffer[length++] = 'r';
+            case '\t' -> buffer[length++] = 't';
+            default -> {
+                buffer[length++] = 'u';
+                buffer[length++] = '0';
+                buffer[length++] = '0';
+                buffer[length++] = HEX[c >> 4];
+                buffer[length++] = HEX[c & 0xF];
+            }
+        }
+    }
+
+    /**
+     * Writes a string known to need no escaping and to be ASCII.
+     */
+    private void putAscii(String text) {
+        ensureCapacity(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            buffer[length++] = (byte) text.charAt(i);
+        }
+    }
+
+    private void putByte(char c) {
+        ensureCapacity(1);
+        buffer[length++] = (byte) c;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            byte[] grown = new byte[Math.max(buffer.length * 2, length + extra)];
+            System.arraycopy(buffer, 0, grown, 0, length);
+            buffer = grown;
+        }
+    }
+}
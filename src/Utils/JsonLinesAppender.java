@@ -0,0 +1,38 @@
+package Utils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Utils.JsonLinesAppender writes each record as one JSON object per line:
+ * <pre>
+ * {"ts":1754150866123,"level":"INFO","logger":"Vehicle","method":"refuel","msg":"...","fields":{"tankLevel":42.5}}
+ * </pre>
+ * "ts" is milliseconds since the epoch, "method" is left out when location
+ * capture is off and "fields" when the record has no structured fields (see
+ * {@link LogEvent}). This is the file format of {@link Logger.FileFormat#JSON};
+ * the file rotates like a {@link RollingFileAppender} and is never indexed.
+ */
+public final class JsonLinesAppender extends RollingFileAppender {
+    private static final ThreadLocal<JsonEncoder> ENCODERS = ThreadLocal.withInitial(JsonEncoder::new);
+
+    /**
+     * Opens a file in append mode.
+     * @param path the file, e.g. log.jsonl
+     * @throws IOException if the file cannot be opened
+     */
+    public JsonLinesAppender(Path path) throws IOException {
+        super(path, Logger.FileFormat.JSON);
+    }
+
+    /**
+     * Renders a record as a JSON object.
+     * @param record the record
+     * @return the JSON text, without line separator
+     */
+    public static String toJson(LogRecord record) {
+        JsonEncoder encoder = ENCODERS.get();
+        encoder.encode(record);
+        return encoder.toString();
+    }
+}
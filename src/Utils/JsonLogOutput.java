@@ -0,0 +1,59 @@
+package Utils;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Utils.JsonLogOutput writes log records as JSON lines, one object per line
+ * (see {@link JsonEncoder} for the schema).
+ * <p>
+ * Records are encoded into the encoder's reused byte array and copied into a
+ * buffered stream, so writing a record creates no Strings.
+ */
+final class JsonLogOutput implements LogOutput {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final FileOutputStream file;
+    private final OutputStream out;
+    private final JsonEncoder encoder = new JsonEncoder();
+
+    /**
+     * Opens the file.
+     * @param path the file to write
+     * @param append true to append, false to truncate
+     * @throws IOException if the file cannot be opened
+     */
+    JsonLogOutput(Path path, boolean append) throws IOException {
+        this.file = new FileOutputStream(path.toFile(), append);
+        this.out = new BufferedOutputStream(file, BUFFER_SIZE);
+    }
+
+    @Override
+    public int write(LogRecord record) throws IOException {
+        int length = encoder.encode(record);
+        out.write(encoder.buffer(), 0, length);
+        out.write(LINE_SEPARATOR);
+        return length + LINE_SEPARATOR.length;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void sync() throws IOException {
+        out.flush();
+        file.getFD().sync();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
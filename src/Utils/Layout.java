@@ -0,0 +1,309 @@
+package Utils;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Utils.Layout turns a {@link LogRecord} into a text line according to a pattern.
+ * <p>
+ * The pattern is compiled once into a sequence of steps that append straight
+ * to a reused StringBuilder, so formatting a line never parses a format string.
+ * Conversions:
+ * <pre>
+ * %d, %date         timestamp, "yyyy-MM-dd HH:mm:ss"
+ * %d{pattern}       timestamp in a DateTimeFormatter pattern; rendered once per
+ *                   second unless it shows fractions (e.g. SSS)
+ * %level, %p        DEBUG, INFO, WARNING or ERROR
+ * %logger, %c       logger name
+ * %method, %M       calling method (empty if location capture is off)
+ * %location         logger.method, or only the logger name
+ * %msg, %m          the message
+ * %fields           structured fields as " key=value" pairs (empty if none)
+ * %n                line separator
+ * %%                a literal %
+ * </pre>
+ * A width between % and the conversion pads it to at least that many
+ * characters, on the right with a leading '-' and on the left otherwise.
+ * Parentheses group several parts under one width, e.g. {@code %-9([%level])}.
+ * <p>
+ * {@link #DEFAULT} is the layout of log.txt:
+ * {@code %d %-9([%level]) %-32([%location]) %msg%fields}.
+ */
+public final class Layout {
+    public static final String DEFAULT_PATTERN = "%d %-9([%level]) %-32([%location]) %msg%fields";
+    public static final Layout DEFAULT = compile(DEFAULT_PATTERN);
+
+    private static final int MAX_CACHED_BUILDER = 8 * 1024;
+    private static final ThreadLocal<StringBuilder> BUILDERS = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    /**
+     * One compiled piece of the pattern.
+     */
+    private interface Step {
+        void append(StringBuilder out, LogRecord record);
+    }
+
+    private final String pattern;
+    private final Step[] steps;
+
+    private Layout(String pattern, Step[] steps) {
+        this.pattern = pattern;
+        this.steps = steps;
+    }
+
+    /**
+     * Compiles a pattern.
+     * @param pattern the pattern, e.g. "%d %level %logger.%method %msg"
+     * @return the layout
+     * @throws IllegalArgumentException if the pattern is malformed or uses an unknown conversion
+     */
+    public static Layout compile(String pattern) {
+        if (pattern == null) throw new IllegalArgumentException("Pattern cannot be null");
+        Parser parser = new Parser(pattern);
+        Step[] steps = parser.parseSequence(false);
+        return new Layout(pattern, steps);
+    }
+
+    /**
+     * Formats a record.
+     * @param record the record
+     * @return the formatted line
+     */
+    public String format(LogRecord record) {
+        StringBuilder out = BUILDERS.get();
+        out.setLength(0);
+        formatTo(out, record);
+        String line = out.toString();
+        if (out.capacity() > MAX_CACHED_BUILDER) BUILDERS.remove(); // do not keep huge messages alive
+        return line;
+    }
+
+    /**
+     * Appends a formatted record to a builder.
+     * @param out the builder
+     * @param record the record
+     */
+    public void formatTo(StringBuilder out, LogRecord record) {
+        for (Step step : steps) {
+            step.append(out, record);
+        }
+    }
+
+    /**
+     * Returns the pattern this layout was compiled from.
+     * @return the pattern
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+
+    // --- Steps ---
+
+    private static final class Literal implements Step {
+        private final String text;
+
+        Literal(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public void append(StringBuilder out, LogRecord record) {
+            out.append(text);
+        }
+    }
+
+    private static final class Timestamp implements Step {
+        private final TimestampCache cache; // null for the default column
+
+        Timestamp(TimestampCache cache) {
+            this.cache = cache;
+        }
+
+        @Override
+        public void append(StringBuilder out, LogRecord record) {
+            out.append(cache == null ? Logger.formatTimestamp(record.getEpochMillis()) : cache.format(record.getEpochMillis()));
+        }
+    }
+
+    // For patterns with fractions of a second, which a per-second cache would print as zero
+    private static final class PreciseTimestamp implements Step {
+        private final DateTimeFormatter formatter;
+        private final ZoneId zone = ZoneId.systemDefault();
+
+        PreciseTimestamp(DateTimeFormatter formatter) {
+            this.formatter = formatter;
+        }
+
+        @Override
+        public void append(StringBuilder out, LogRecord record) {
+            formatter.formatTo(LocalDateTime.ofInstant(Instant.ofEpochMilli(record.getEpochMillis()), zone), out);
+        }
+    }
+
+    private static final class Location implements Step {
+        @Override
+        public void append(StringBuilder out, LogRecord record) {
+            out.append(record.getLoggerName());
+            if (record.getMethodName() != null) out.append('.').append(record.getMethodName());
+        }
+    }
+
+    private static final class Padded implements Step {
+        private final int width;
+        private final boolean leftAlign;
+        private final Step[] inner;
+
+        Padded(int width, boolean leftAlign, Step[] inner) {
+            this.width = width;
+            this.leftAlign = leftAlign;
+            this.inner = inner;
+        }
+
+        @Override
+        public void append(StringBuilder out, LogRecord record) {
+            int start = out.length();
+            for (Step step : inner) {
+                step.append(out, record);
+            }
+            int padding = width - (out.length() - start);
+            if (padding <= 0) return;
+            if (leftAlign) {
+                for (int i = 0; i < padding; i++) out.append(' ');
+            } else {
+                out.insert(start, " ".repeat(padding));
+            }
+        }
+    }
+
+    // --- Parsing ---
+
+    private static final class Parser {
+        private final String pattern;
+        private int position = 0;
+
+        Parser(String pattern) {
+            this.pattern = pattern;
+        }
+
+        /**
+         * Parses steps up to the end of the pattern, or up to the closing
+         * parenthesis of a group.
+         */
+        Step[] parseSequence(boolean inGroup) {
+            List<Step> steps = new ArrayList<>();
+            StringBuilder literal = new StringBuilder();
+            while (position < pattern.length()) {
+                char c = pattern.charAt(position);
+                if (c == ')' && inGroup) {
+                    position++;
+                    flushLiteral(steps, literal);
+                    return steps.toArray(new Step[0]);
+                }
+                position++;
+                if (c != '%') {
+                    literal.append(c);
+                    continue;
+                }
+                if (position < pattern.length() && pattern.charAt(position) == '%') {
+                    literal.append('%');
+                    position++;
+                    continue;
+                }
+                flushLiteral(steps, literal);
+                steps.add(parseConversion());
+            }
+            if (inGroup) throw error("Missing ')'");
+            flushLiteral(steps, literal);
+            return steps.toArray(new Step[0]);
+        }
+
+        private Step parseConversion() {
+            boolean leftAlign = false;
+            if (position < pattern.length() && pattern.charAt(position) == '-') {
+                leftAlign = true;
+                position++;
+            }
+            int width = 0;
+            while (position < pattern.length() && Character.isDigit(pattern.charAt(position))) {
+                width = width * 10 + (pattern.charAt(position++) - '0');
+            }
+            if (position < pattern.length() && pattern.charAt(position) == '(') {
+                position++;
+                Step[] group = parseSequence(true);
+                if (width == 0) return group.length == 1 ? group[0] : new Padded(0, true, group);
+                return new Padded(width, leftAlign, group);
+            }
+            int start = position;
+            while (position < pattern.length() && Character.isLetter(pattern.charAt(position))) {
+                position++;
+            }
+            String word = pattern.substring(start, position);
+            String option = parseOption();
+            Step step = conversion(word, option);
+            return width > 0 ? new Padded(width, leftAlign, new Step[] {step}) : step;
+        }
+
+        private String parseOption() {
+            if (position >= pattern.length() || pattern.charAt(position) != '{') return null;
+            int end = pattern.indexOf('}', position);
+            if (end < 0) throw error("Missing '}'");
+            String option = pattern.substring(position + 1, end);
+            position = end + 1;
+            return option;
+        }
+
+        private Step conversion(String word, String option) {
+            switch (word) {
+                case "d": case "date":
+                    if (option == null) return new Timestamp(null);
+                    try {
+                        if (TimestampCache.hasFractionOfSecond(option)) {
+                            return new PreciseTimestamp(DateTimeFormatter.ofPattern(option));
+                        }
+                        return new Timestamp(new TimestampCache(option));
+                    } catch (IllegalArgumentException e) {
+                        throw error("Invalid date pattern '" + option + "'");
+                    }
+                case "level": case "p":
+                    return (out, record) -> out.append(record.getLevelName());
+                case "logger": case "c":
+                    return (out, record) -> out.append(record.getLoggerName());
+                case "method": case "M":
+                    return (out, record) -> {
+                        if (record.getMethodName() != null) out.append(record.getMethodName());
+                    };
+                case "location":
+                    return new Location();
+                case "msg": case "m":
+                    return (out, record) -> out.append(record.getMessage());
+                case "fields":
+                    return (out, record) -> record.getFields().appendText(out);
+                case "n":
+                    return new Literal(System.lineSeparator());
+                case "":
+                    throw error("Missing conversion after '%'");
+                default:
+                    throw error("Unknown conversion '%" + word + "'");
+            }
+        }
+
+        private static void flushLiteral(List<Step> steps, StringBuilder literal) {
+            if (literal.length() == 0) return;
+            steps.add(new Literal(literal.toString()));
+            literal.setLength(0);
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + position + " in layout pattern \"" + pattern + "\"");
+        }
+    }
+}
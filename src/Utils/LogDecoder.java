@@ -0,0 +1,244 @@
+package Utils;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Utils.LogDecoder reads binary log files written with {@link Logger.FileFormat#BINARY}
+ * and prints them in the usual text layout.
+ * <p>
+ * Gzipped rotated segments (.bin.gz) are detected and read transparently, and
+ * files of both format versions are read; version 1 records have no fields.
+ * Usage:
+ * <pre>
+ * java Utils.LogDecoder [--level LEVEL] [--logger NAME]
+ *                       [--from "yyyy-MM-dd HH:mm:ss"] [--to "yyyy-MM-dd HH:mm:ss"] FILE...
+ * </pre>
+ * --level keeps records at or above the given level, --logger keeps one logger,
+ * --from/--to keep records inside the time range (both inclusive).
+ */
+public final class LogDecoder {
+    private static final DateTimeFormatter FILTER_DTF = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int GZIP_MAGIC_0 = 0x1f;
+    private static final int GZIP_MAGIC_1 = 0x8b;
+
+    private LogDecoder() {}
+
+    public static void main(String[] args) {
+        Predicate<LogRecord> filter = record -> true;
+        List<Path> files = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--level" -> {
+                        int minLevel = parseLevel(value(args, ++i, "--level"));
+                        filter = filter.and(record -> record.getLevel() >= minLevel);
+                    }
+                    case "--logger" -> {
+                        String name = value(args, ++i, "--logger");
+                        filter = filter.and(record -> name.equals(record.getLoggerName()));
+                    }
+                    case "--from" -> {
+                        long from = parseTime(value(args, ++i, "--from"));
+                        filter = filter.and(record -> record.getEpochMillis() >= from);
+                    }
+                    case "--to" -> {
+                        long to = parseTime(value(args, ++i, "--to")) + 999; // whole second inclusive
+                        filter = filter.and(record -> record.getEpochMillis() <= to);
+                    }
+                    default -> files.add(Paths.get(args[i]));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(Logger.RED + "Utils.LogDecoder: " + e.getMessage() + Logger.RESET);
+            System.exit(2);
+        }
+        if (files.isEmpty()) {
+            System.err.println("Usage: java Utils.LogDecoder [--level LEVEL] [--logger NAME] [--from TIME] [--to TIME] FILE...");
+            System.exit(2);
+        }
+
+        Predicate<LogRecord> selected = filter;
+        int failures = 0;
+        for (Path file : files) {
+            try {
+                read(file, record -> {
+                    if (selected.test(record)) System.out.println(record.toLine());
+                });
+            } catch (IOException e) {
+                System.err.println(Logger.RED + "Utils.LogDecoder: " + file + ": " + e.getMessage() + Logger.RESET);
+                failures++;
+            }
+        }
+        if (failures > 0) System.exit(1);
+    }
+
+    /**
+     * Reads all records of a binary log file in file order.
+     * @param file a .bin file or a gzipped .bin.gz segment
+     * @param consumer receives each record
+     * @throws IOException if the file cannot be read or is not a binary log
+     */
+    public static void read(Path file, Consumer<LogRecord> consumer) throws IOException {
+        try (InputStream in = open(file)) {
+            read(in, consumer);
+        }
+    }
+
+    /**
+     * Reads all records of a binary log file and returns the ones matching a filter.
+     * @param file a .bin file or a gzipped .bin.gz segment
+     * @param filter selects the records to keep
+     * @return matching records in file order
+     * @throws IOException if the file cannot be read or is not a binary log
+     */
+    public static List<LogRecord> readAll(Path file, Predicate<LogRecord> filter) throws IOException {
+        List<LogRecord> records = new ArrayList<>();
+        read(file, record -> {
+            if (filter.test(record)) records.add(record);
+        });
+        return records;
+    }
+
+    /**
+     * Reads records from a stream positioned at the file header.
+     * @param stream the binary log data
+     * @param consumer receives each record
+     * @throws IOException if the data cannot be read or is not a binary log
+     */
+    static void read(InputStream stream, Consumer<LogRecord> consumer) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        byte[] magic = new byte[BinaryLogOutput.MAGIC.length];
+        try {
+            in.readFully(magic);
+        } catch (EOFException e) {
+            return; // empty file
+        }
+        if (!Arrays.equals(magic, BinaryLogOutput.MAGIC)) {
+            throw new IOException("Not a binary log file");
+        }
+        int version = in.readUnsignedByte();
+        if (version < 1 || version > BinaryLogOutput.VERSION) {
+            throw new IOException("Unsupported binary log version " + version);
+        }
+        boolean hasFields = version >= BinaryLogOutput.FIRST_VERSION_WITH_FIELDS;
+
+        Map<Integer, String> strings = new HashMap<>();
+        int tag;
+        while ((tag = in.read()) != -1) {
+            if (tag == BinaryLogOutput.TAG_STRING) {
+                int id = readVarInt(in);
+                strings.put(id, readString(in));
+            } else if (tag == BinaryLogOutput.TAG_RECORD) {
+                long epochMillis = in.readLong();
+                int level = in.readUnsignedByte();
+                String loggerName = strings.get(readVarInt(in));
+                int methodId = readVarInt(in);
+                String methodName = methodId == 0 ? null : strings.get(methodId);
+                String message = readString(in);
+                LogFields fields = hasFields ? readFields(in, strings) : LogFields.EMPTY;
+                consumer.accept(new LogRecord(epochMillis, level, loggerName, methodName, message, fields, null));
+            } else {
+                throw new IOException("Corrupt binary log: unknown entry tag " + tag);
+            }
+        }
+    }
+
+    // --- Internal Methods ---
+
+    /**
+     * Opens a file, unwrapping gzip if the file starts with the gzip magic bytes.
+     */
+    private static InputStream open(Path file) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(Files.newInputStream(file), 64 * 1024);
+        in.mark(2);
+        int b0 = in.read();
+        int b1 = in.read();
+        in.reset();
+        if (b0 == GZIP_MAGIC_0 && b1 == GZIP_MAGIC_1) {
+            return new BufferedInputStream(new GZIPInputStream(in), 64 * 1024);
+        }
+        return in;
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Corrupt binary log: varint too long");
+    }
+
+    private static LogFields readFields(DataInputStream in, Map<Integer, String> strings) throws IOException {
+        int count = readVarInt(in);
+        if (count == 0) return LogFields.EMPTY;
+        LogFields fields = new LogFields(count);
+        for (int i = 0; i < count; i++) {
+            String key = strings.get(readVarInt(in));
+            if (key == null) throw new IOException("Corrupt binary log: undefined field key");
+            byte kind = in.readByte();
+            if (kind == LogFields.LONG || kind == LogFields.DOUBLE || kind == LogFields.BOOLEAN) {
+                fields.add(key, kind, in.readLong(), null);
+            } else if (kind == LogFields.STRING) {
+                int lengthPlusOne = readVarInt(in);
+                String value = null;
+                if (lengthPlusOne > 0) {
+                    byte[] bytes = new byte[lengthPlusOne - 1];
+                    in.readFully(bytes);
+                    value = new String(bytes, StandardCharsets.UTF_8);
+                }
+                fields.add(key, kind, 0, value);
+            } else {
+                throw new IOException("Corrupt binary log: unknown field kind " + kind);
+            }
+        }
+        return fields;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static String value(String[] args, int index, String option) {
+        if (index >= args.length) throw new IllegalArgumentException(option + " needs a value");
+        return args[index];
+    }
+
+    static int parseLevel(String level) {
+        for (int i = 0; i <= 3; i++) {
+            if (Logger.levelName(i).equalsIgnoreCase(level)) return i;
+        }
+        throw new IllegalArgumentException("Unknown level " + level);
+    }
+
+    static long parseTime(String time) {
+        try {
+            return LocalDateTime.parse(time, FILTER_DTF).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid time " + time + ", expected yyyy-MM-dd HH:mm:ss");
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package Utils;
+
+/**
+ * Utils.LogEvent builds one log record with structured key-value fields:
+ * <pre>
+ * logger.atInfo()
+ *       .field("vehicleClass", "Truck")
+ *       .field("tankLevel", tankLevel)
+ *       .log("Refueled");
+ * </pre>
+ * Fields appear in the "fields" object of JSON log files
+ * ({@link Logger.FileFormat#JSON}, {@link JsonLinesAppender}) and as
+ * {@code key=value} pairs after the message in text lines. Binary files keep
+ * only the message.
+ * <p>
+ * Each thread reuses one event and its field arrays, so building an event does
+ * not allocate. An event is finished by {@code log(...)} and must not be kept or
+ * shared between threads. If the level is disabled, the {@code at...()} methods
+ * return an event that ignores its fields.
+ */
+public final class LogEvent {
+    private static final LogEvent DISABLED = new LogEvent();
+    private static final ThreadLocal<LogEvent> EVENTS = ThreadLocal.withInitial(LogEvent::new);
+    private static final int MAX_CACHED_FIELDS = 64;
+
+    private LogFields fields = new LogFields(8);
+    private Logger logger; // null for DISABLED and finished events
+    private int level;
+    private boolean inUse = false;
+
+    private LogEvent() {}
+
+    /**
+     * Starts an event on the calling thread's reusable instance.
+     */
+    static LogEvent start(Logger logger, int level) {
+        LogEvent event = EVENTS.get();
+        if (event.inUse) event = new LogEvent(); // an event is built while building another one
+        event.logger = logger;
+        event.level = level;
+        event.inUse = true;
+        return event;
+    }
+
+    /**
+     * Returns the event that ignores fields, for disabled levels.
+     */
+    static LogEvent disabled() {
+        return DISABLED;
+    }
+
+    // --- Fields ---
+
+    /**
+     * Adds a text field.
+     * @param key the field name
+     * @param value the value, may be null
+     * @return this event
+     */
+    public LogEvent field(String key, String value) {
+        if (logger != null) fields.add(key, LogFields.STRING, 0, value);
+        return this;
+    }
+
+    /**
+     * Adds an integer field.
+     * @param key the field name
+     * @param value the value
+     * @return this event
+     */
+    public LogEvent field(String key, long value) {
+        if (logger != null) fields.add(key, LogFields.LONG, value, null);
+        return this;
+    }
+
+    /**
+     * Adds a decimal field.
+     * @param key the field name
+     * @param value the value
+     * @return this event
+     */
+    public LogEvent field(String key, double value) {
+        if (logger != null) fields.add(key, LogFields.DOUBLE, Double.doubleToRawLongBits(value), null);
+        return this;
+    }
+
+    /**
+     * Adds a boolean field.
+     * @param key the field name
+     * @param value the value
+     * @return this event
+     */
+    public LogEvent field(String key, boolean value) {
+        if (logger != null) fields.add(key, LogFields.BOOLEAN, value ? 1 : 0, null);
+        return this;
+    }
+
+    /**
+     * Adds a field whose value is written with toString() when the record is written.
+     * @param key the field name
+     * @param value the value, may be null
+     * @return this event
+     */
+    public LogEvent field(String key, Object value) {
+        if (logger != null) fields.add(key, LogFields.OBJECT, 0, value);
+        return this;
+    }
+
+    // --- Finishing ---
+
+    /**
+     * Logs the event with a message.
+     * @param message the message
+     */
+    public void log(String message) {
+        if (logger == null) return;
+        try {
+            logger.logEvent(level, message, message, fields);
+        } finally {
+            finish();
+        }
+    }
+
+    /**
+     * Logs the event with a message built from a {@code {}} pattern.
+     * @param pattern message pattern
+     * @param arg argument for the placeholder
+     */
+    public void log(String pattern, Object arg) {
+        if (logger == null) return;
+        try {
+            logger.logEvent(level, pattern, MessageFormatter.format(pattern, arg), fields);
+        } finally {
+            finish();
+        }
+    }
+
+    /**
+     * Logs the event with a message built from a {@code {}} pattern.
+     * @param pattern message pattern
+     * @param args arguments for the placeholders
+     */
+    public void log(String pattern, Object... args) {
+        if (logger == null) return;
+        try {
+            logger.logEvent(level, pattern, MessageFormatter.format(pattern, args), fields);
+        } finally {
+            finish();
+        }
+    }
+
+    private void finish() {
+        logger = null;
+        inUse = false;
+        if (fields.size() > MAX_CACHED_FIELDS) {
+            fields = new LogFields(8); // do not keep oversized arrays alive
+        } else {
+            fields.clear();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package Utils;
+
+import java.util.Arrays;
+
+/**
+ * Utils.LogFields holds the key-value fields attached to a log record with
+ * {@link LogEvent#field(String, String)} and its overloads.
+ * <p>
+ * Values are kept unboxed in parallel arrays (no map, no per-field objects),
+ * and the arrays of a thread's {@link LogEvent} are reused from one record to
+ * the next. Records that outlive the log call (async mode, routed appenders)
+ * get their own copy.
+ */
+public final class LogFields {
+    /** Fields of records without any. */
+    public static final LogFields EMPTY = new LogFields(0);
+
+    static final byte STRING = 0;
+    static final byte LONG = 1;
+    static final byte DOUBLE = 2;
+    static final byte BOOLEAN = 3;
+    static final byte OBJECT = 4;
+
+    private String[] keys;
+    private byte[] kinds;
+    private long[] numbers;   // long values, double bits and booleans (0/1)
+    private Object[] objects; // String and Object values
+    private int size;
+
+    LogFields(int capacity) {
+        this.keys = new String[capacity];
+        this.kinds = new byte[capacity];
+        this.numbers = new long[capacity];
+        this.objects = new Object[capacity];
+    }
+
+    // --- Read access ---
+
+    /**
+     * Returns the number of fields.
+     * @return field count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether there are no fields.
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the key of a field.
+     * @param index 0 to size() - 1, in the order the fields were added
+     * @return the key
+     */
+    public String getKey(int index) {
+        checkIndex(index);
+        return keys[index];
+    }
+
+    /**
+     * Returns the value of a field, boxed.
+     * @param index 0 to size() - 1
+     * @return a String, Long, Double, Boolean or the object that was added
+     */
+    public Object getValue(int index) {
+        checkIndex(index);
+        switch (kinds[index]) {
+            case LONG: return numbers[index];
+            case DOUBLE: return Double.longBitsToDouble(numbers[index]);
+            case BOOLEAN: return numbers[index] != 0;
+            default: return objects[index];
+        }
+    }
+
+    /**
+     * Returns the value of the first field with the given key.
+     * @param key the key
+     * @return the boxed value, or null if there is no such field
+     */
+    public Object get(String key) {
+        for (int i = 0; i < size; i++) {
+            if (keys[i].equals(key)) return getValue(i);
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder("{");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) out.append(", ");
+            out.append(keys[i]).append('=').append(getValue(i));
+        }
+        return out.append('}').toString();
+    }
+
+    // --- Package access for LogEvent and encoders ---
+
+    byte kind(int index) {
+        return kinds[index];
+    }
+
+    long number(int index) {
+        return numbers[index];
+    }
+
+    Object object(int index) {
+        return objects[index];
+    }
+
+    void add(String key, byte kind, long number, Object object) {
+        if (key == null) throw new IllegalArgumentException("Field key cannot be null");
+        if (size == keys.length) grow();
+        keys[size] = key;
+        kinds[size] = kind;
+        numbers[size] = number;
+        objects[size] = object;
+        size++;
+    }
+
+    /**
+     * Forgets all fields, keeping the arrays for the next record.
+     */
+    void clear() {
+        Arrays.fill(objects, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Returns an independent copy sized to the current fields.
+     */
+    LogFields copy() {
+        if (size == 0) return EMPTY;
+        LogFields copy = new LogFields(size);
+        System.arraycopy(keys, 0, copy.keys, 0, size);
+        System.arraycopy(kinds, 0, copy.kinds, 0, size);
+        System.arraycopy(numbers, 0, copy.numbers, 0, size);
+        System.arraycopy(objects, 0, copy.objects, 0, size);
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * Returns a copy whose Object values are replaced by their text, for
+     * records kept after the objects may have changed.
+     */
+    LogFields textCopy() {
+        LogFields copy = copy();
+        for (int i = 0; i < copy.size; i++) {
+            if (copy.kinds[i] == OBJECT) {
+                copy.kinds[i] = STRING;
+                if (copy.objects[i] != null) copy.objects[i] = MessageFormatter.toText(copy.objects[i]);
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Appends the fields as " key=value" pairs, as shown in text lines.
+     */
+    void appendText(StringBuilder out) {
+        for (int i = 0; i < size; i++) {
+            out.append(' ').append(keys[i]).append('=');
+            switch (kinds[i]) {
+                case LONG -> out.append(numbers[i]);
+                case DOUBLE -> out.append(Double.longBitsToDouble(numbers[i]));
+                case BOOLEAN -> out.append(numbers[i] != 0);
+                default -> out.append(objects[i]);
+            }
+        }
+    }
+
+    private void grow() {
+        int capacity = Math.max(8, keys.length * 2);
+        keys = Arrays.copyOf(keys, capacity);
+        kinds = Arrays.copyOf(kinds, capacity);
+        numbers = Arrays.copyOf(numbers, capacity);
+        objects = Arrays.copyOf(objects, capacity);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Field index " + index + ", size " + size);
+    }
+}
@@ -0,0 +1,151 @@
+package Utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Utils.LogFileCompressor gzips rotated log segments and prunes old ones
+ * on a single background thread, so rotation never waits for compression.
+ * <p>
+ * A segment "log_part2.txt" becomes "log_part2.txt.gz", and its index
+ * "log_part2.txt.idx" moves along to "log_part2.txt.gz.idx". The .gz file is written
+ * under a temporary name and moved into place before the source is deleted,
+ * so an interrupted run never leaves a truncated archive behind.
+ */
+final class LogFileCompressor {
+    private static final String GZIP_SUFFIX = ".gz";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Utils.Logger-compressor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private LogFileCompressor() {}
+
+    /**
+     * Schedules compression of a rotated segment and retention of old segments.
+     * The sink's current file is looked up when retention runs, so a file the
+     * sink rotated to in the meantime is never deleted.
+     * @param segment the rotated segment to compress, or null to only apply retention
+     * @param sink the sink that rotated
+     * @param maxRetainedSegments number of rotated segments to keep, 0 for unlimited
+     */
+    static void submit(Path segment, LogSink sink, int maxRetainedSegments) {
+        EXECUTOR.execute(() -> {
+            if (segment != null) compress(segment);
+            if (maxRetainedSegments > 0) prune(sink.getBasePath(), sink.getCurrentPath(), maxRetainedSegments);
+        });
+    }
+
+    /**
+     * Blocks until all compression and retention work scheduled so far has finished.
+     */
+    static void awaitIdle() {
+        try {
+            EXECUTOR.submit(() -> {}).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ignored) {}
+    }
+
+    /**
+     * Gzips a file next to itself and deletes the original.
+     * @param source the file to compress
+     */
+    static void compress(Path source) {
+        if (!Files.exists(source)) return;
+        Path target = source.resolveSibling(source.getFileName() + GZIP_SUFFIX);
+        if (Files.exists(target)) {
+            // A previous run left a segment with the same name; keep both
+            target = source.resolveSibling(source.getFileName() + "." + System.currentTimeMillis() + GZIP_SUFFIX);
+        }
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try {
+            try (InputStream in = Files.newInputStream(source);
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp), BUFFER_SIZE)) {
+                in.transferTo(out);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            Path index = LogIndex.indexPath(source);
+            if (Files.exists(index)) {
+                Files.move(index, LogIndex.indexPath(target), StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.delete(source);
+        } catch (IOException e) {
+            System.err.println(Logger.RED + "Utils.Logger: Failed to compress " + source + ": " + e.getMessage() + Logger.RESET);
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {}
+        }
+    }
+
+    /**
+     * Deletes the oldest rotated segments of a log until at most {@code keep} remain.
+     * Both compressed and uncompressed segments count; the current file never does.
+     */
+    static void prune(Path basePath, Path currentPath, int keep) {
+        List<Path> segments = listRotatedSegments(basePath, currentPath);
+        if (segments.size() <= keep) return;
+        segments.sort(Comparator.comparing(LogFileCompressor::lastModified).thenComparing(Path::toString));
+        for (int i = 0; i < segments.size() - keep; i++) {
+            try {
+                Files.deleteIfExists(segments.get(i));
+                Files.deleteIfExists(LogIndex.indexPath(segments.get(i)));
+            } catch (IOException e) {
+                System.err.println(Logger.RED + "Utils.Logger: Failed to delete old log segment " + segments.get(i) + ": " + e.getMessage() + Logger.RESET);
+            }
+        }
+    }
+
+    /**
+     * Lists the rotated segments (base file and _partN files, plain or gzipped)
+     * belonging to a base path, excluding the file currently written.
+     */
+    static List<Path> listRotatedSegments(Path basePath, Path currentPath) {
+        Path absoluteBase = basePath.toAbsolutePath();
+        Path dir = absoluteBase.getParent();
+        String fileName = absoluteBase.getFileName().toString();
+        String extension = LogSink.extensionOf(fileName);
+        String baseName = fileName.substring(0, fileName.length() - extension.length());
+        Pattern segmentPattern = Pattern.compile(Pattern.quote(baseName) + "(_part\\d+)?"
+                + Pattern.quote(extension) + "(\\.\\d+)?(\\.gz)?");
+        Path current = currentPath.toAbsolutePath().normalize();
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path candidate : stream) {
+                String name = candidate.getFileName().toString();
+                if (!segmentPattern.matcher(name).matches()) continue;
+                if (candidate.toAbsolutePath().normalize().equals(current)) continue;
+                segments.add(candidate);
+            }
+        } catch (IOException e) {
+            System.err.println(Logger.RED + "Utils.Logger: Failed to list log segments in " + dir + ": " + e.getMessage() + Logger.RESET);
+        }
+        return segments;
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
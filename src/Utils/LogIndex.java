@@ -0,0 +1,234 @@
+package Utils;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Utils.LogIndex is the sidecar index of one text log file ("log.txt.idx" next to "log.txt").
+ * <p>
+ * The log is cut into blocks of consecutive lines. For every block the index
+ * records its byte range, its time range (second precision, like the text) and
+ * which levels and loggers occur in it. The block list is the sparse
+ * time-to-offset index; on load it is inverted into posting lists (level to
+ * blocks, logger name to blocks), so a query only reads the blocks that can
+ * contain matching lines.
+ * <p>
+ * File layout: the magic bytes {@code SUDIDX} and a version byte, followed by entries:
+ * <pre>
+ * 1 NAME   varint id, varint length, UTF-8 logger name
+ * 2 BLOCK  int64 start offset, varint length, int64 min millis, int64 max millis,
+ *          varint line count, byte flags (bit n = level n present, 0x80 = unindexed),
+ *          varint logger count, varint logger ids
+ * </pre>
+ * An unindexed block covers bytes written while indexing was off; it matches every query.
+ * The index is written by {@link LogIndexWriter}; a partly written last entry is ignored.
+ */
+final class LogIndex {
+    static final byte[] MAGIC = {'S', 'U', 'D', 'I', 'D', 'X'};
+    static final byte VERSION = 1;
+    static final int TAG_NAME = 1;
+    static final int TAG_BLOCK = 2;
+    static final int FLAG_UNINDEXED = 0x80;
+    static final int LEVEL_FLAGS = 0x0F;
+    static final String SUFFIX = ".idx";
+
+    /**
+     * One indexed range of the log file.
+     */
+    static final class Block {
+        final long start;
+        final long end;
+        final long minMillis;
+        final long maxMillis;
+        final int lineCount;
+        final int flags;
+        final int[] loggerIds;
+
+        Block(long start, long end, long minMillis, long maxMillis, int lineCount, int flags, int[] loggerIds) {
+            this.start = start;
+            this.end = end;
+            this.minMillis = minMillis;
+            this.maxMillis = maxMillis;
+            this.lineCount = lineCount;
+            this.flags = flags;
+            this.loggerIds = loggerIds;
+        }
+
+        boolean isUnindexed() {
+            return (flags & FLAG_UNINDEXED) != 0;
+        }
+    }
+
+    private final Map<Integer, String> names;
+    private final List<Block> blocks;
+    private final long validLength;
+    private final BitSet[] levelPostings = new BitSet[4];
+    private final Map<String, BitSet> loggerPostings = new HashMap<>();
+    private final BitSet unindexed = new BitSet();
+
+    private LogIndex(Map<Integer, String> names, List<Block> blocks, long validLength) {
+        this.names = names;
+        this.blocks = blocks;
+        this.validLength = validLength;
+        for (int level = 0; level < levelPostings.length; level++) {
+            levelPostings[level] = new BitSet();
+        }
+        for (int i = 0; i < blocks.size(); i++) {
+            Block block = blocks.get(i);
+            if (block.isUnindexed()) unindexed.set(i);
+            for (int level = 0; level < levelPostings.length; level++) {
+                if ((block.flags & (1 << level)) != 0) levelPostings[level].set(i);
+            }
+            for (int id : block.loggerIds) {
+                loggerPostings.computeIfAbsent(names.get(id), name -> new BitSet()).set(i);
+            }
+        }
+    }
+
+    /**
+     * Returns the index path for a log file: the file name plus ".idx".
+     * @param logFile the log file (plain or gzipped)
+     * @return the sidecar index path
+     */
+    static Path indexPath(Path logFile) {
+        return logFile.resolveSibling(logFile.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Loads an index file.
+     * @param indexFile the .idx file
+     * @return the index, or null if the file does not exist or is not an index
+     * @throws IOException if the file cannot be read
+     */
+    static LogIndex load(Path indexFile) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(indexFile);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (bytes.length < MAGIC.length + 1
+                || !Arrays.equals(Arrays.copyOf(bytes, MAGIC.length), MAGIC)
+                || bytes[MAGIC.length] != VERSION) {
+            return null;
+        }
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        in.position(MAGIC.length + 1);
+        Map<Integer, String> names = new HashMap<>();
+        List<Block> blocks = new ArrayList<>();
+        long validLength = in.position();
+        try {
+            while (in.hasRemaining()) {
+                int tag = in.get();
+                if (tag == TAG_NAME) {
+                    int id = readVarInt(in);
+                    byte[] name = new byte[readVarInt(in)];
+                    in.get(name);
+                    names.put(id, new String(name, StandardCharsets.UTF_8));
+                } else if (tag == TAG_BLOCK) {
+                    long start = in.getLong();
+                    long end = start + readVarInt(in);
+                    long minMillis = in.getLong();
+                    long maxMillis = in.getLong();
+                    int lineCount = readVarInt(in);
+                    int flags = in.get() & 0xFF;
+                    int[] loggerIds = new int[readVarInt(in)];
+                    for (int i = 0; i < loggerIds.length; i++) {
+                        loggerIds[i] = readVarInt(in);
+                    }
+                    blocks.add(new Block(start, end, minMillis, maxMillis, lineCount, flags, loggerIds));
+                } else {
+                    break; // corrupt from here on
+                }
+                validLength = in.position();
+            }
+        } catch (BufferUnderflowException e) {
+            // Last entry was only partly written; everything before it is usable
+        }
+        return new LogIndex(names, blocks, validLength);
+    }
+
+    /**
+     * Returns the blocks in file order.
+     * @return unmodifiable block list
+     */
+    List<Block> getBlocks() {
+        return Collections.unmodifiableList(blocks);
+    }
+
+    /**
+     * Returns the logger names by id.
+     * @return unmodifiable id-to-name map
+     */
+    Map<Integer, String> getNames() {
+        return Collections.unmodifiableMap(names);
+    }
+
+    /**
+     * Returns the number of bytes of the index file that hold complete entries.
+     * @return valid index length
+     */
+    long getValidLength() {
+        return validLength;
+    }
+
+    /**
+     * Returns the end offset of the last block: bytes of the log after it are not indexed yet.
+     * @return end of the indexed part of the log file
+     */
+    long getIndexedEnd() {
+        return blocks.isEmpty() ? 0 : blocks.get(blocks.size() - 1).end;
+    }
+
+    /**
+     * Returns the blocks that may contain lines matching a query.
+     * @param minLevel lowest level to match
+     * @param loggerName logger to match, or null for all
+     * @param fromMillis earliest time, inclusive
+     * @param toMillis latest time, inclusive
+     * @return indexes into {@link #getBlocks()}
+     */
+    BitSet candidates(int minLevel, String loggerName, long fromMillis, long toMillis) {
+        BitSet result = new BitSet();
+        for (int level = Math.max(0, minLevel); level < levelPostings.length; level++) {
+            result.or(levelPostings[level]);
+        }
+        if (loggerName != null) {
+            BitSet logger = loggerPostings.get(loggerName);
+            if (logger == null) {
+                result.clear();
+            } else {
+                result.and(logger);
+            }
+        }
+        long fromSecond = Math.floorDiv(fromMillis, 1000L);
+        for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1)) {
+            Block block = blocks.get(i);
+            if (Math.floorDiv(block.maxMillis, 1000L) < fromSecond || block.minMillis > toMillis) result.clear(i);
+        }
+        result.or(unindexed);
+        return result;
+    }
+
+    static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.get() & 0xFF;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new BufferUnderflowException(); // over-long varint: treat like a torn entry
+    }
+}
@@ -0,0 +1,219 @@
+package Utils;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Utils.LogIndexWriter maintains the {@link LogIndex} of the text log file a
+ * {@link LogSink} is writing.
+ * <p>
+ * The sink reports the byte range of every record it appends. Records are
+ * collected into a block that is written to the index once it holds
+ * {@link #BLOCK_LINES} lines or {@link #BLOCK_BYTES} bytes, or when the file is
+ * closed. Lines after the last written block are simply scanned by queries, so
+ * an index that lags behind the log (or a crash) never hides lines.
+ * <p>
+ * Not thread-safe; the owning sink serializes all calls.
+ */
+final class LogIndexWriter {
+    static final int BLOCK_LINES = 128;
+    static final int BLOCK_BYTES = 32 * 1024;
+
+    private final OutputStream out;
+    private final Map<String, Integer> names = new HashMap<>();
+    private byte[] buffer = new byte[256];
+    private int length;
+
+    // Current block
+    private long blockStart = -1;
+    private long blockEnd;
+    private long minMillis;
+    private long maxMillis;
+    private int lineCount;
+    private int levelFlags;
+    private int[] loggerIds = new int[4];
+    private int loggerCount;
+
+    private LogIndexWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Opens the index of a log file. In append mode an existing index is continued
+     * if it matches the file; bytes the index does not cover become an unindexed
+     * block. Otherwise the index is rebuilt from scratch.
+     * @param logFile the log file being written
+     * @param append true if the log file was opened for appending
+     * @param logLength current length of the log file's content
+     * @return the writer
+     * @throws IOException if the index cannot be read or written
+     */
+    static LogIndexWriter open(Path logFile, boolean append, long logLength) throws IOException {
+        Path indexFile = LogIndex.indexPath(logFile);
+        LogIndex existing = append ? LogIndex.load(indexFile) : null;
+        if (existing != null && existing.getIndexedEnd() <= logLength) {
+            try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.WRITE)) {
+                channel.truncate(existing.getValidLength()); // drop a torn last entry
+            }
+            LogIndexWriter writer = new LogIndexWriter(new BufferedOutputStream(new FileOutputStream(indexFile.toFile(), true)));
+            existing.getNames().forEach((id, name) -> writer.names.put(name, id));
+            writer.writeUnindexed(existing.getIndexedEnd(), logLength);
+            return writer;
+        }
+        LogIndexWriter writer = new LogIndexWriter(new BufferedOutputStream(new FileOutputStream(indexFile.toFile(), false)));
+        writer.out.write(LogIndex.MAGIC);
+        writer.out.write(LogIndex.VERSION);
+        writer.writeUnindexed(0, logLength);
+        return writer;
+    }
+
+    /**
+     * Adds a record the sink just appended to the log file.
+     * @param offset file offset of the record's first byte
+     * @param bytes number of bytes the record occupies
+     * @param record the record
+     * @throws IOException if a finished block cannot be written
+     */
+    void add(long offset, int bytes, LogRecord record) throws IOException {
+        long second = Math.floorDiv(record.getEpochMillis(), 1000L) * 1000L;
+        if (blockStart < 0) {
+            blockStart = offset;
+            minMillis = second;
+            maxMillis = second;
+        } else {
+            minMillis = Math.min(minMillis, second);
+            maxMillis = Math.max(maxMillis, second);
+        }
+        blockEnd = offset + bytes;
+        lineCount++;
+        levelFlags |= (1 << record.getLevel()) & LogIndex.LEVEL_FLAGS;
+        addLogger(record.getLoggerName());
+        if (lineCount >= BLOCK_LINES || blockEnd - blockStart >= BLOCK_BYTES) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Writes the open block and closes the index file.
+     * @throws IOException if writing fails
+     */
+    void close() throws IOException {
+        try {
+            writeBlock();
+        } finally {
+            out.close();
+        }
+    }
+
+    // --- Internal Methods ---
+
+    private void addLogger(String loggerName) {
+        String key = loggerName == null ? "" : loggerName;
+        Integer id = names.get(key);
+        if (id == null) {
+            id = names.size() + 1;
+            names.put(key, id);
+            putByte(LogIndex.TAG_NAME);
+            putVarInt(id);
+            byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+            putVarInt(bytes.length);
+            putBytes(bytes);
+        }
+        for (int i = 0; i < loggerCount; i++) {
+            if (loggerIds[i] == id) return;
+        }
+        if (loggerCount == loggerIds.length) {
+            int[] grown = new int[loggerIds.length * 2];
+            System.arraycopy(loggerIds, 0, grown, 0, loggerCount);
+            loggerIds = grown;
+        }
+        loggerIds[loggerCount++] = id;
+    }
+
+    /**
+     * Writes the buffered NAME entries and the current block, then starts a new block.
+     */
+    private void writeBlock() throws IOException {
+        if (blockStart >= 0) {
+            putBlock(blockStart, blockEnd, minMillis, maxMillis, lineCount, levelFlags, loggerIds, loggerCount);
+        }
+        if (length > 0) {
+            out.write(buffer, 0, length);
+            out.flush();
+            length = 0;
+        }
+        blockStart = -1;
+        lineCount = 0;
+        levelFlags = 0;
+        loggerCount = 0;
+    }
+
+    /**
+     * Writes a block covering bytes whose content is unknown to the index.
+     */
+    private void writeUnindexed(long start, long end) throws IOException {
+        if (end <= start) return;
+        putBlock(start, end, Long.MIN_VALUE, Long.MAX_VALUE, 0,
+                LogIndex.FLAG_UNINDEXED | LogIndex.LEVEL_FLAGS, loggerIds, 0);
+        out.write(buffer, 0, length);
+        out.flush();
+        length = 0;
+    }
+
+    private void putBlock(long start, long end, long min, long max, int lines, int flags, int[] ids, int idCount) {
+        putByte(LogIndex.TAG_BLOCK);
+        putLong(start);
+        putVarInt((int) Math.min(end - start, Integer.MAX_VALUE));
+        putLong(min);
+        putLong(max);
+        putVarInt(lines);
+        putByte(flags);
+        putVarInt(idCount);
+        for (int i = 0; i < idCount; i++) {
+            putVarInt(ids[i]);
+        }
+    }
+
+    private void putByte(int b) {
+        ensureCapacity(1);
+        buffer[length++] = (byte) b;
+    }
+
+    private void putBytes(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void putLong(long v) {
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[length++] = (byte) (v >>> shift);
+        }
+    }
+
+    private void putVarInt(int v) {
+        ensureCapacity(5);
+        while ((v & ~0x7F) != 0) {
+            buffer[length++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buffer[length++] = (byte) v;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            byte[] grown = new byte[Math.max(buffer.length * 2, length + extra)];
+            System.arraycopy(buffer, 0, grown, 0, length);
+            buffer = grown;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package Utils;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Utils.LogLineParser reads text log lines back into {@link LogRecord}s.
+ * <p>
+ * It understands the layout written by {@link Logger}:
+ * {@code yyyy-MM-dd HH:mm:ss [LEVEL]   [Logger.method]                  message},
+ * where the level and location columns are padded to 9 and 32 characters.
+ * Lines that do not start with a timestamp (for example the rest of a
+ * multi-line message) are continuation lines of the record before them.
+ * <p>
+ * Not thread-safe: the parser caches the last parsed second.
+ */
+final class LogLineParser {
+    private static final int TIMESTAMP_LENGTH = 19; // yyyy-MM-dd HH:mm:ss
+    private static final int LEVEL_WIDTH = 9;
+    private static final int LOCATION_WIDTH = 32;
+
+    private final ZoneId zone;
+    private String lastTimestamp;
+    private long lastMillis;
+
+    /**
+     * Creates a parser for timestamps in the system default time zone.
+     */
+    LogLineParser() {
+        this(ZoneId.systemDefault());
+    }
+
+    /**
+     * Creates a parser for timestamps in the given time zone.
+     * @param zone time zone the log was written in
+     */
+    LogLineParser(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * Parses one text line.
+     * @param line the line without its line separator
+     * @return the record (second precision), or null if the line does not start a record
+     */
+    LogRecord parse(String line) {
+        if (line.length() < TIMESTAMP_LENGTH + 4 || !isTimestamp(line)) return null;
+        long epochMillis;
+        try {
+            epochMillis = parseTimestamp(line);
+        } catch (DateTimeException e) {
+            return null;
+        }
+        int levelStart = TIMESTAMP_LENGTH + 1;
+        if (line.charAt(levelStart) != '[') return null;
+        int levelEnd = line.indexOf(']', levelStart);
+        if (levelEnd < 0) return null;
+        int level = levelOf(line, levelStart + 1, levelEnd);
+        if (level < 0) return null;
+
+        int locationStart = levelStart + Math.max(LEVEL_WIDTH, levelEnd + 1 - levelStart) + 1;
+        if (locationStart >= line.length() || line.charAt(locationStart) != '[') return null;
+        int locationEnd = line.indexOf(']', locationStart);
+        if (locationEnd < 0) return null;
+        // Logger names may contain dots ("Shapes.Triangle"), so the method starts after the last one
+        int dot = line.lastIndexOf('.', locationEnd);
+        String loggerName;
+        String methodName = null;
+        if (dot > locationStart) {
+            loggerName = line.substring(locationStart + 1, dot);
+            methodName = line.substring(dot + 1, locationEnd);
+        } else {
+            loggerName = line.substring(locationStart + 1, locationEnd);
+        }
+
+        int messageStart = locationStart + Math.max(LOCATION_WIDTH, locationEnd + 1 - locationStart) + 1;
+        String message = messageStart <= line.length() ? line.substring(messageStart) : "";
+        return new LogRecord(epochMillis, level, loggerName, methodName, message, line);
+    }
+
+    /**
+     * Returns the record extended by a continuation line.
+     * @param record the record the line belongs to
+     * @param line the continuation line
+     * @return a record whose message and text both end with the line
+     */
+    static LogRecord appendContinuation(LogRecord record, String line) {
+        return new LogRecord(record.getEpochMillis(), record.getLevel(), record.getLoggerName(),
+                record.getMethodName(), record.getMessage() + "\n" + line, record.toLine() + "\n" + line);
+    }
+
+    /**
+     * Returns whether a line is filler rather than log content: memory-mapped
+     * files left open by a crashed process end in zero bytes.
+     */
+    static boolean isPadding(String line) {
+        return !line.isEmpty() && line.charAt(0) == '\0';
+    }
+
+    // --- Internal Methods ---
+
+    private static boolean isTimestamp(String line) {
+        for (int i = 0; i < TIMESTAMP_LENGTH; i++) {
+            char c = line.charAt(i);
+            boolean ok = switch (i) {
+                case 4, 7 -> c == '-';
+                case 10 -> c == ' ';
+                case 13, 16 -> c == ':';
+                default -> c >= '0' && c <= '9';
+            };
+            if (!ok) return false;
+        }
+        return line.charAt(TIMESTAMP_LENGTH) == ' ';
+    }
+
+    private static int levelOf(String line, int start, int end) {
+        for (int level = 0; level <= 3; level++) {
+            String name = Logger.levelName(level);
+            if (name.length() == end - start && line.startsWith(name, start)) return level;
+        }
+        return -1;
+    }
+
+    /**
+     * Converts the timestamp column to epoch millis, reusing the result while
+     * consecutive lines share the same second.
+     */
+    private long parseTimestamp(String line) {
+        if (lastTimestamp != null && line.startsWith(lastTimestamp)) return lastMillis;
+        LocalDateTime time = LocalDateTime.of(number(line, 0, 4), number(line, 5, 7), number(line, 8, 10),
+                number(line, 11, 13), number(line, 14, 16), number(line, 17, 19));
+        lastTimestamp = line.substring(0, TIMESTAMP_LENGTH);
+        lastMillis = time.atZone(zone).toInstant().toEpochMilli();
+        return lastMillis;
+    }
+
+    private static int number(String s, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + (s.charAt(i) - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,39 @@
+package Utils;
+
+import java.io.IOException;
+
+/**
+ * Utils.LogOutput is the byte destination behind a {@link LogSink}:
+ * one open file that records are appended to, as text lines or binary entries.
+ * <p>
+ * Implementations are not thread-safe; the owning sink serializes all calls.
+ */
+interface LogOutput {
+
+    /**
+     * Appends a record in the output's format.
+     * @param record the record to append
+     * @return number of bytes appended to the file
+     * @throws IOException if writing fails
+     */
+    int write(LogRecord record) throws IOException;
+
+    /**
+     * Pushes buffered output to the operating system.
+     * @throws IOException if flushing fails
+     */
+    void flush() throws IOException;
+
+    /**
+     * Flushes and forces written data to the storage device, so it survives a
+     * crash of the machine, not only of the process.
+     * @throws IOException if flushing or syncing fails
+     */
+    void sync() throws IOException;
+
+    /**
+     * Flushes and closes the file.
+     * @throws IOException if closing fails
+     */
+    void close() throws IOException;
+}
@@ -0,0 +1,551 @@
+package Utils;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Utils.LogProfiler reads text log files and reports which call sites
+ * ({@code [Logger.method]}) write the most lines and bytes, how the volume is
+ * spread over time, and which call sites are worth demoting or rate-limiting.
+ * <p>
+ * Each file is read once, together with its rotated segments (plain or
+ * gzipped), and memory stays bounded however large the logs are: call sites
+ * are counted with the Space-Saving algorithm, which keeps a fixed number of
+ * counters and, when a new call site arrives while they are all in use, takes
+ * over the counter with the fewest lines. Line counts are then an upper bound,
+ * off by at most the reported error; every call site with more lines than the
+ * smallest counter is guaranteed to be in the table. Bytes of a taken-over
+ * counter start again at zero, so they are a lower bound. The timeline has a
+ * fixed number of buckets whose width doubles when the logs span more time.
+ * Usage:
+ * <pre>
+ * java Utils.LogProfiler [--top N] [--capacity N] LOGFILE...
+ * </pre>
+ * --top sets how many call sites are listed, --capacity how many are tracked.
+ */
+public final class LogProfiler {
+    public static final int DEFAULT_CAPACITY = 1000;
+    public static final int DEFAULT_TOP = 20;
+
+    static final int TIMELINE_BUCKETS = 60;
+    static final double DEMOTE_SHARE = 0.10;         // share of all lines above which DEBUG/INFO sites are demoted
+    static final long RATE_LIMIT_PEAK_PER_SECOND = 50; // peak rate above which sites are rate-limited
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final DateTimeFormatter TIME_DTF = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * Counters of one call site.
+     */
+    public static final class CallSite {
+        private String location;
+        private long lines;
+        private long error;
+        private long bytes;
+        private final long[] linesByLevel = new long[4];
+        private long firstMillis;
+        private long lastMillis;
+        private long currentSecond;
+        private long currentSecondLines;
+        private long peakPerSecond;
+        private int heapIndex;
+
+        /** @return logger and method as written in the log, e.g. Employee.setName */
+        public String getLocation() { return location; }
+        /** @return lines counted, at most {@link #getError()} more than were written */
+        public long getLines() { return lines; }
+        /** @return how many of the counted lines may belong to call sites this counter replaced */
+        public long getError() { return error; }
+        /** @return bytes of the counted lines, including line separators and continuation lines */
+        public long getBytes() { return bytes; }
+        /** @return most frequent level (0=DEBUG ... 3=ERROR) */
+        public int getLevel() {
+            int level = 0;
+            for (int i = 1; i < linesByLevel.length; i++) {
+                if (linesByLevel[i] > linesByLevel[level]) level = i;
+            }
+            return level;
+        }
+        /** @return lines written at the given level */
+        public long getLines(int level) { return linesByLevel[level]; }
+        /** @return highest number of lines written within one second */
+        public long getPeakPerSecond() { return Math.max(peakPerSecond, currentSecondLines); }
+        /** @return average lines per second between the first and last line */
+        public double getAveragePerSecond() {
+            return (lines - error) * 1000.0 / Math.max(1000, lastMillis - firstMillis + 1);
+        }
+
+        private void reset(String location, long error) {
+            this.location = location;
+            this.lines = error;
+            this.error = error;
+            this.bytes = 0;
+            Arrays.fill(linesByLevel, 0);
+            this.firstMillis = Long.MAX_VALUE;
+            this.lastMillis = Long.MIN_VALUE;
+            this.currentSecond = Long.MIN_VALUE;
+            this.currentSecondLines = 0;
+            this.peakPerSecond = 0;
+        }
+
+        private void count(long epochMillis, int level) {
+            lines++;
+            linesByLevel[level]++;
+            firstMillis = Math.min(firstMillis, epochMillis);
+            lastMillis = Math.max(lastMillis, epochMillis);
+            long second = Math.floorDiv(epochMillis, 1000);
+            if (second != currentSecond) {
+                peakPerSecond = Math.max(peakPerSecond, currentSecondLines);
+                currentSecond = second;
+                currentSecondLines = 0;
+            }
+            currentSecondLines++;
+        }
+
+        @Override
+        public String toString() {
+            return location + ": " + lines + (error > 0 ? " (±" + error + ")" : "") + " lines, " + bytes + " bytes";
+        }
+    }
+
+    /**
+     * A change worth making to a call site.
+     */
+    public static final class Suggestion {
+        /** What to do with the call site. */
+        public enum Action { DEMOTE, RATE_LIMIT }
+
+        private final CallSite callSite;
+        private final Action action;
+        private final String advice;
+
+        Suggestion(CallSite callSite, Action action, String advice) {
+            this.callSite = callSite;
+            this.action = action;
+            this.advice = advice;
+        }
+
+        /** @return the call site */
+        public CallSite getCallSite() { return callSite; }
+        /** @return what to do */
+        public Action getAction() { return action; }
+        /** @return the suggestion as text */
+        public String getAdvice() { return advice; }
+
+        @Override
+        public String toString() {
+            return action + " " + callSite.location + ": " + advice;
+        }
+    }
+
+    /**
+     * Lines and bytes per time bucket.
+     */
+    public static final class Timeline {
+        private final long startMillis;
+        private final long bucketMillis;
+        private final long[] lines;
+        private final long[] bytes;
+
+        Timeline(long startMillis, long bucketMillis, long[] lines, long[] bytes) {
+            this.startMillis = startMillis;
+            this.bucketMillis = bucketMillis;
+            this.lines = lines;
+            this.bytes = bytes;
+        }
+
+        /** @return start of the first bucket in epoch millis */
+        public long getStartMillis() { return startMillis; }
+        /** @return width of one bucket */
+        public long getBucketMillis() { return bucketMillis; }
+        /** @return number of buckets up to the last one with lines */
+        public int size() { return lines.length; }
+        /** @return lines in a bucket */
+        public long getLines(int bucket) { return lines[bucket]; }
+        /** @return bytes in a bucket */
+        public long getBytes(int bucket) { return bytes[bucket]; }
+    }
+
+    private final int capacity;
+    private final Map<String, CallSite> sites = new HashMap<>();
+    private final CallSite[] heap; // min-heap on lines, so the counter to take over is at the root
+    private int heapSize = 0;
+
+    private long totalLines;
+    private long totalBytes;
+    private final long[] linesByLevel = new long[4];
+    private long continuationLines;
+    private long skippedLines;
+    private int files;
+    private long lastRecordMillis;
+
+    private long timelineStart = Long.MIN_VALUE;
+    private long bucketMillis = 1000;
+    private long[] bucketLines = new long[TIMELINE_BUCKETS];
+    private long[] bucketBytes = new long[TIMELINE_BUCKETS];
+    private int bucketsUsed = 0;
+
+    /**
+     * Creates a profiler that tracks up to {@link #DEFAULT_CAPACITY} call sites.
+     */
+    public LogProfiler() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a profiler that tracks up to the given number of call sites.
+     * @param capacity number of counters; call sites beyond it share the least used ones
+     */
+    public LogProfiler(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be at least 1");
+        this.capacity = capacity;
+        this.heap = new CallSite[capacity];
+    }
+
+    public static void main(String[] args) {
+        int top = DEFAULT_TOP;
+        int capacity = DEFAULT_CAPACITY;
+        List<Path> logs = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--top" -> top = positive(LogDecoder.value(args, ++i, "--top"), "--top");
+                    case "--capacity" -> capacity = positive(LogDecoder.value(args, ++i, "--capacity"), "--capacity");
+                    default -> logs.add(Paths.get(args[i]));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(Logger.RED + "Utils.LogProfiler: " + e.getMessage() + Logger.RESET);
+            System.exit(2);
+        }
+        if (logs.isEmpty()) {
+            System.err.println("Usage: java Utils.LogProfiler [--top N] [--capacity N] LOGFILE...");
+            System.exit(2);
+        }
+
+        LogProfiler profiler = new LogProfiler(capacity);
+        int failures = 0;
+        for (Path log : logs) {
+            try {
+                profiler.addLog(log);
+            } catch (IOException e) {
+                System.err.println(Logger.RED + "Utils.LogProfiler: " + log + ": " + e.getMessage() + Logger.RESET);
+                failures++;
+            }
+        }
+        profiler.print(System.out, top);
+        if (failures > 0) System.exit(1);
+    }
+
+    // --- Public API ---
+
+    /**
+     * Reads a log file and all of its rotated segments, oldest first.
+     * @param basePath the log file loggers write to, e.g. log.txt
+     * @throws IOException if a file cannot be read
+     */
+    public void addLog(Path basePath) throws IOException {
+        for (Path segment : LogSearch.segmentsOf(basePath)) {
+            addFile(segment);
+        }
+    }
+
+    /**
+     * Reads one file, plain or gzipped.
+     * @param file the file
+     * @throws IOException if the file cannot be read
+     */
+    public void addFile(Path file) throws IOException {
+        InputStream raw = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE);
+        try (InputStream in = file.getFileName().toString().endsWith(".gz") ? new GZIPInputStream(raw, BUFFER_SIZE) : raw) {
+            read(in);
+        }
+        files++;
+    }
+
+    /**
+     * Returns the tracked call sites with the most lines.
+     * @param count how many to return
+     * @return call sites, most lines first
+     */
+    public List<CallSite> getTopCallSites(int count) {
+        List<CallSite> top = new ArrayList<>(sites.values());
+        top.sort(Comparator.comparingLong((CallSite site) -> site.lines).reversed().thenComparing(CallSite::getLocation));
+        return top.subList(0, Math.min(count, top.size()));
+    }
+
+    /**
+     * Returns the tracked call site for a location, if it is in the table.
+     * @param location logger and method, e.g. Employee.setName
+     * @return the call site, or null
+     */
+    public CallSite getCallSite(String location) {
+        return sites.get(location);
+    }
+
+    /**
+     * Suggests changes for the top call sites: DEBUG and INFO sites that write
+     * at least {@link #DEMOTE_SHARE} of all lines are demoted, sites that
+     * reach {@link #RATE_LIMIT_PEAK_PER_SECOND} lines in one second are
+     * rate-limited. WARNING and ERROR sites are only ever rate-limited.
+     * @param count how many top call sites to look at
+     * @return suggestions, most lines first
+     */
+    public List<Suggestion> getSuggestions(int count) {
+        List<Suggestion> suggestions = new ArrayList<>();
+        for (CallSite site : getTopCallSites(count)) {
+            int level = site.getLevel();
+            double share = totalLines == 0 ? 0 : (double) (site.lines - site.error) / totalLines;
+            if (level <= 1 && share >= DEMOTE_SHARE) {
+                String logger = loggerOf(site.location);
+                String advice = level == 1
+                        ? String.format("writes %.0f%% of all lines at INFO; log them at DEBUG", share * 100)
+                        : String.format("writes %.0f%% of all lines at DEBUG; set %s=INFO in the logger configuration", share * 100, logger);
+                suggestions.add(new Suggestion(site, Suggestion.Action.DEMOTE, advice));
+            }
+            if (site.getPeakPerSecond() >= RATE_LIMIT_PEAK_PER_SECOND) {
+                long rate = Math.max(1, Math.round(Math.ceil(site.getAveragePerSecond())));
+                String advice = String.format("peaks at %d lines/s (average %.1f); setRateLimit(%d, %d, %d)",
+                        site.getPeakPerSecond(), site.getAveragePerSecond(), level, rate, RATE_LIMIT_PEAK_PER_SECOND);
+                suggestions.add(new Suggestion(site, Suggestion.Action.RATE_LIMIT, advice));
+            }
+        }
+        return suggestions;
+    }
+
+    /**
+     * Returns lines and bytes over time.
+     * @return the timeline, empty if no record was read
+     */
+    public Timeline getTimeline() {
+        return new Timeline(timelineStart == Long.MIN_VALUE ? 0 : timelineStart, bucketMillis,
+                Arrays.copyOf(bucketLines, bucketsUsed), Arrays.copyOf(bucketBytes, bucketsUsed));
+    }
+
+    /** @return records read */
+    public long getTotalLines() { return totalLines; }
+    /** @return bytes read, uncompressed */
+    public long getTotalBytes() { return totalBytes; }
+    /** @return records read at the given level */
+    public long getTotalLines(int level) { return linesByLevel[level]; }
+    /** @return lines added to the record before them */
+    public long getContinuationLines() { return continuationLines; }
+    /** @return lines before the first record of a file, or in another layout */
+    public long getSkippedLines() { return skippedLines; }
+    /** @return files read */
+    public int getFileCount() { return files; }
+
+    /**
+     * Prints the report: totals, top call sites, timeline and suggestions.
+     * @param out where to print
+     * @param top how many call sites to list
+     */
+    public void print(PrintStream out, int top) {
+        out.printf("%d records, %d bytes in %d files (%d DEBUG, %d INFO, %d WARNING, %d ERROR)%n",
+                totalLines, totalBytes, files, linesByLevel[0], linesByLevel[1], linesByLevel[2], linesByLevel[3]);
+        if (skippedLines > 0) out.printf("%d lines skipped%n", skippedLines);
+        out.println();
+        out.printf("%-40s %12s %7s %12s %8s %8s  %s%n", "Call site", "Lines", "Share", "Bytes", "B/line", "Peak/s", "Level");
+        for (CallSite site : getTopCallSites(top)) {
+            String lines = site.error > 0 ? site.lines + "±" + site.error : String.valueOf(site.lines);
+            out.printf("%-40s %12s %6.1f%% %12d %8d %8d  %s%n", site.location, lines,
+                    totalLines == 0 ? 0.0 : site.lines * 100.0 / totalLines, site.bytes,
+                    site.lines == 0 ? 0 : site.bytes / site.lines, site.getPeakPerSecond(), Logger.levelName(site.getLevel()));
+        }
+
+        Timeline timeline = getTimeline();
+        if (timeline.size() > 0) {
+            out.println();
+            out.printf("Lines per %d s%n", timeline.getBucketMillis() / 1000);
+            long max = Arrays.stream(timeline.lines).max().orElse(1);
+            for (int i = 0; i < timeline.size(); i++) {
+                if (timeline.getLines(i) == 0) continue;
+                String time = TIME_DTF.format(Instant.ofEpochMilli(timeline.getStartMillis() + i * timeline.getBucketMillis())
+                        .atZone(ZoneId.systemDefault()));
+                out.printf("%s %10d %12d  %s%n", time, timeline.getLines(i), timeline.getBytes(i),
+                        "#".repeat((int) Math.max(1, timeline.getLines(i) * 40 / max)));
+            }
+        }
+
+        List<Suggestion> suggestions = getSuggestions(top);
+        if (!suggestions.isEmpty()) {
+            out.println();
+            out.println("Suggestions");
+            for (Suggestion suggestion : suggestions) {
+                out.println("  " + suggestion);
+            }
+        }
+    }
+
+    // --- Internal Methods ---
+
+    /**
+     * Splits the stream into lines and counts them. Continuation lines and
+     * their bytes go to the call site of the record before them.
+     */
+    private void read(InputStream in) throws IOException {
+        LogLineParser parser = new LogLineParser();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        byte[] line = new byte[256];
+        int lineLength = 0;
+        CallSite current = null;
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            for (int i = 0; i < read; i++) {
+                byte b = buffer[i];
+                if (b != '\n') {
+                    if (lineLength == line.length) line = Arrays.copyOf(line, lineLength * 2);
+                    line[lineLength++] = b;
+                    continue;
+                }
+                current = countLine(parser, line, lineLength, current);
+                lineLength = 0;
+            }
+        }
+        if (lineLength > 0) countLine(parser, line, lineLength, current);
+    }
+
+    private CallSite countLine(LogLineParser parser, byte[] line, int length, CallSite current) {
+        if (length > 0 && line[0] == 0) return current; // padding of a memory-mapped file
+        long bytes = length + 1L;
+        totalBytes += bytes;
+        int textLength = length > 0 && line[length - 1] == '\r' ? length - 1 : length;
+        LogRecord record = parser.parse(new String(line, 0, textLength, StandardCharsets.UTF_8));
+        if (record == null) {
+            if (current == null) {
+                skippedLines++;
+            } else {
+                continuationLines++;
+                if (sites.get(current.location) == current) current.bytes += bytes;
+                addToTimeline(lastRecordMillis, 0, bytes);
+            }
+            return current;
+        }
+        String location = record.getMethodName() == null
+                ? record.getLoggerName() : record.getLoggerName() + "." + record.getMethodName();
+        CallSite site = count(location, record.getEpochMillis(), record.getLevel());
+        site.bytes += bytes;
+        totalLines++;
+        linesByLevel[record.getLevel()]++;
+        lastRecordMillis = record.getEpochMillis();
+        addToTimeline(record.getEpochMillis(), 1, bytes);
+        return site;
+    }
+
+    /**
+     * Space-Saving update: counts a line for a call site, taking over the
+     * counter with the fewest lines when the table is full.
+     */
+    private CallSite count(String location, long epochMillis, int level) {
+        CallSite site = sites.get(location);
+        if (site == null) {
+            if (heapSize < capacity) {
+                site = new CallSite();
+                site.reset(location, 0);
+                site.heapIndex = heapSize;
+                heap[heapSize++] = site;
+            } else {
+                site = heap[0];
+                sites.remove(site.location);
+                site.reset(location, site.lines);
+            }
+            sites.put(location, site);
+        }
+        site.count(epochMillis, level);
+        siftDown(site.heapIndex);
+        return site;
+    }
+
+    private void siftDown(int index) {
+        CallSite site = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && heap[child + 1].lines < heap[child].lines) child++;
+            if (heap[child].lines >= site.lines) break;
+            heap[index] = heap[child];
+            heap[index].heapIndex = index;
+            index = child;
+        }
+        heap[index] = site;
+        site.heapIndex = index;
+    }
+
+    /**
+     * Adds lines and bytes to the bucket of a timestamp. Buckets are shifted
+     * for earlier timestamps and merged in pairs when the span no longer fits.
+     */
+    private void addToTimeline(long epochMillis, long lines, long bytes) {
+        if (timelineStart == Long.MIN_VALUE) timelineStart = Math.floorDiv(epochMillis, bucketMillis) * bucketMillis;
+        while (true) {
+            long offset = Math.floorDiv(epochMillis - timelineStart, bucketMillis);
+            if (offset >= 0 && offset < TIMELINE_BUCKETS) {
+                bucketLines[(int) offset] += lines;
+                bucketBytes[(int) offset] += bytes;
+                bucketsUsed = Math.max(bucketsUsed, (int) offset + 1);
+                return;
+            }
+            if (offset < 0 && bucketsUsed - offset <= TIMELINE_BUCKETS) {
+                int shift = (int) -offset;
+                System.arraycopy(bucketLines, 0, bucketLines, shift, bucketsUsed);
+                System.arraycopy(bucketBytes, 0, bucketBytes, shift, bucketsUsed);
+                Arrays.fill(bucketLines, 0, shift, 0);
+                Arrays.fill(bucketBytes, 0, shift, 0);
+                bucketsUsed += shift;
+                timelineStart -= shift * bucketMillis;
+                continue;
+            }
+            widenBuckets();
+        }
+    }
+
+    private void widenBuckets() {
+        long width = bucketMillis * 2;
+        long start = Math.floorDiv(timelineStart, width) * width;
+        long[] lines = new long[TIMELINE_BUCKETS];
+        long[] bytes = new long[TIMELINE_BUCKETS];
+        int used = 0;
+        for (int i = 0; i < bucketsUsed; i++) {
+            int bucket = (int) ((timelineStart + i * bucketMillis - start) / width);
+            lines[bucket] += bucketLines[i];
+            bytes[bucket] += bucketBytes[i];
+            used = bucket + 1;
+        }
+        timelineStart = start;
+        bucketMillis = width;
+        bucketLines = lines;
+        bucketBytes = bytes;
+        bucketsUsed = used;
+    }
+
+    private static String loggerOf(String location) {
+        int dot = location.indexOf('.');
+        return dot < 0 ? location : location.substring(0, dot);
+    }
+
+    private static int positive(String value, String option) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number > 0) return number;
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException(option + " needs a positive number, got '" + value + "'");
+    }
+}
@@ -0,0 +1,94 @@
+package Utils;
+
+/**
+ * Utils.LogRecord is one log event as handed from a {@link Logger} to its file.
+ * <p>
+ * It carries the raw fields (time, level, logger, method, message and any
+ * structured {@link LogFields}) so every output format can be produced from
+ * it, plus the text line the logger already
+ * rendered for the console, so text files do not format it twice.
+ * Records read back by {@link LogDecoder} have no pre-rendered line.
+ */
+public final class LogRecord {
+    private final long epochMillis;
+    private final int level;
+    private final String loggerName;
+    private final String methodName;
+    private final String message;
+    private final LogFields fields;
+    private final String line;
+
+    /**
+     * Creates a record.
+     * @param epochMillis time of the event in milliseconds since the epoch
+     * @param level 0=DEBUG, 1=INFO, 2=WARNING, 3=ERROR
+     * @param loggerName name of the logger
+     * @param methodName calling method, or null if location capture is off
+     * @param message the message
+     * @param line the rendered text line, or null to render on demand
+     */
+    LogRecord(long epochMillis, int level, String loggerName, String methodName, String message, String line) {
+        this(epochMillis, level, loggerName, methodName, message, LogFields.EMPTY, line);
+    }
+
+    /**
+     * Creates a record with structured fields.
+     * @param fields the fields; kept by reference, so pass a copy if the record outlives the log call
+     */
+    LogRecord(long epochMillis, int level, String loggerName, String methodName, String message,
+              LogFields fields, String line) {
+        this.epochMillis = epochMillis;
+        this.level = level;
+        this.loggerName = loggerName;
+        this.methodName = methodName;
+        this.message = message;
+        this.fields = fields == null ? LogFields.EMPTY : fields;
+        this.line = line;
+    }
+
+    public long getEpochMillis() { return epochMillis; }
+    public int getLevel() { return level; }
+    public String getLoggerName() { return loggerName; }
+    public String getMethodName() { return methodName; }
+    public String getMessage() { return message; }
+    public LogFields getFields() { return fields; }
+
+    /**
+     * Gets the level as a string.
+     * @return "DEBUG", "INFO", "WARNING" or "ERROR"
+     */
+    public String getLevelName() {
+        return Logger.levelName(level);
+    }
+
+    /**
+     * Gets the location column as shown in text logs, e.g. [Vehicle.refuel].
+     * @return the location column
+     */
+    public String getLocation() {
+        return methodName == null ? "[" + loggerName + "]" : "[" + loggerName + "." + methodName + "]";
+    }
+
+    /**
+     * Returns the record in the text log layout.
+     * @return the text line
+     */
+    public String toLine() {
+        if (line != null) return line;
+        return Layout.DEFAULT.format(this);
+    }
+
+    /**
+     * Returns a copy of this record with the given rendered line.
+     * @param renderedLine the text line
+     * @return the copy
+     */
+    LogRecord withLine(String renderedLine) {
+        return new LogRecord(epochMillis, level, loggerName, methodName, message, fields, renderedLine);
+    }
+
+    @Override
+    public String toString() {
+        return toLine();
+    }
+}
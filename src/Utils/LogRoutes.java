@@ -0,0 +1,199 @@
+package Utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Utils.LogRoutes sends the records of loggers to additional {@link Appender}s.
+ * <p>
+ * A route connects a logger name, or a dot-separated prefix of one, to an
+ * appender with its own minimum level:
+ * <pre>
+ * LogRoutes.add("root", new ConsoleAppender(Layout.compile("%level %msg")), 1);
+ * LogRoutes.add("Vehicles", new JsonLinesAppender(Paths.get("vehicles.jsonl")), 0);
+ * LogRoutes.add("Shapes.Triangle", errorRing, 3);
+ * </pre>
+ * Unlike level rules in {@link LoggerConfig}, routes add up: a logger writes to
+ * every appender routed from its name, from each of its prefixes and from
+ * {@code root}. If the same appender is reachable through several of them,
+ * the route of the longest name applies. Routes come on top of a logger's own
+ * console and file output, and only see records that pass the logger's level.
+ * <p>
+ * Each logger resolves its routes when it is created and whenever routes change,
+ * and keeps them as an array, so the logging path does no lookups.
+ */
+public final class LogRoutes {
+    private static final String ROOT_KEY = "root";
+    static final Route[] NONE = new Route[0];
+
+    private static final Object LOCK = new Object();
+    private static volatile Map<String, List<Route>> routes = Collections.emptyMap();
+
+    /**
+     * One appender with the minimum level of records it receives.
+     */
+    static final class Route {
+        final Appender appender;
+        final int minLevel;
+
+        Route(Appender appender, int minLevel) {
+            this.appender = appender;
+            this.minLevel = minLevel;
+        }
+
+        /**
+         * Hands a record to the appender if its level is high enough.
+         * Appender failures are reported and do not reach the caller.
+         */
+        void append(LogRecord record) {
+            if (record.getLevel() < minLevel) return;
+            try {
+                appender.append(record);
+            } catch (RuntimeException e) {
+                System.err.println(Logger.RED + "Utils.LogRoutes: Appender " + appender + " failed: " + e + Logger.RESET);
+            }
+        }
+    }
+
+    private LogRoutes() {}
+
+    /**
+     * Routes the records of a logger name and everything below it to an appender.
+     * @param name logger name or prefix, e.g. "Vehicles.Truck", "Vehicles" or "root"
+     * @param appender the appender
+     * @param minLevel lowest level sent to the appender: 0=DEBUG, 1=INFO, 2=WARNING, 3=ERROR
+     */
+    public static void add(String name, Appender appender, int minLevel) {
+        if (name == null || name.isBlank()) throw new IllegalArgumentException("Route name cannot be empty");
+        if (appender == null) throw new IllegalArgumentException("Appender cannot be null");
+        if (minLevel < 0 || minLevel > 3) throw new IllegalArgumentException("Invalid log level: " + minLevel);
+        synchronized (LOCK) {
+            Map<String, List<Route>> updated = copyRoutes();
+            updated.computeIfAbsent(name.trim(), key -> new ArrayList<>()).add(new Route(appender, minLevel));
+            publish(updated);
+        }
+    }
+
+    /**
+     * Removes the routes from a name to an appender. The appender is not closed.
+     * @param name the name it was added for
+     * @param appender the appender
+     * @return true if a route was removed
+     */
+    public static boolean remove(String name, Appender appender) {
+        synchronized (LOCK) {
+            Map<String, List<Route>> updated = copyRoutes();
+            List<Route> list = updated.get(name);
+            if (list == null || !list.removeIf(route -> route.appender == appender)) return false;
+            if (list.isEmpty()) updated.remove(name);
+            publish(updated);
+            return true;
+        }
+    }
+
+    /**
+     * Removes all routes. Appenders are not closed.
+     */
+    public static void clear() {
+        synchronized (LOCK) {
+            publish(new HashMap<>());
+        }
+    }
+
+    /**
+     * Flushes every routed appender.
+     */
+    public static void flushAll() {
+        for (Appender appender : appenders()) {
+            appender.flush();
+        }
+    }
+
+    /**
+     * Removes all routes and closes their appenders.
+     */
+    public static void closeAll() {
+        Set<Appender> appenders;
+        synchronized (LOCK) {
+            appenders = appenders();
+            publish(new HashMap<>());
+        }
+        for (Appender appender : appenders) {
+            appender.close();
+        }
+    }
+
+    // --- Resolution ---
+
+    /**
+     * Gives a new logger its routes. Runs under the same lock as route changes,
+     * so a change made while the logger is being created is not lost.
+     * Call after the logger is registered with {@link LoggerConfig}.
+     */
+    static void attach(Logger logger) {
+        synchronized (LOCK) {
+            logger.setRoutes(resolve(logger.getConfigName()));
+        }
+    }
+
+    /**
+     * Collects the routes that apply to a logger name, most specific name first.
+     * @param name the logger's hierarchical name
+     * @return the routes, or {@link #NONE}
+     */
+    static Route[] resolve(String name) {
+        Map<String, List<Route>> current = routes;
+        if (current.isEmpty()) return NONE;
+        List<Route> resolved = new ArrayList<>();
+        Set<Appender> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        String key = name == null ? "" : name;
+        while (!key.isEmpty()) {
+            addRoutes(resolved, seen, current.get(key));
+            int dot = key.lastIndexOf('.');
+            key = dot > 0 ? key.substring(0, dot) : "";
+        }
+        addRoutes(resolved, seen, current.get(ROOT_KEY));
+        return resolved.isEmpty() ? NONE : resolved.toArray(new Route[0]);
+    }
+
+    // --- Internal Methods ---
+
+    private static void addRoutes(List<Route> resolved, Set<Appender> seen, List<Route> candidates) {
+        if (candidates == null) return;
+        for (Route route : candidates) {
+            if (seen.add(route.appender)) resolved.add(route);
+        }
+    }
+
+    private static Map<String, List<Route>> copyRoutes() {
+        Map<String, List<Route>> copy = new HashMap<>();
+        routes.forEach((key, list) -> copy.put(key, new ArrayList<>(list)));
+        return copy;
+    }
+
+    /**
+     * Makes new routes visible and pushes the resolved routes to every live logger.
+     * Called with LOCK held.
+     */
+    private static void publish(Map<String, List<Route>> updated) {
+        routes = updated;
+        for (Logger logger : LoggerConfig.liveLoggers()) {
+            logger.setRoutes(resolve(logger.getConfigName()));
+        }
+    }
+
+    private static Set<Appender> appenders() {
+        Set<Appender> appenders = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (List<Route> list : routes.values()) {
+            for (Route route : list) {
+                appenders.add(route.appender);
+            }
+        }
+        return appenders;
+    }
+}
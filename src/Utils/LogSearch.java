@@ -0,0 +1,362 @@
+package Utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Utils.LogSearch finds lines in text log files by level, logger and time range.
+ * <p>
+ * A search covers the log file and all of its rotated segments ("_partN",
+ * plain or gzipped). Where a segment has a sidecar {@link LogIndex}, only the
+ * blocks the index marks as possible matches are read; plain files are read
+ * with positioned reads, gzipped ones by skipping ahead in the stream. Segments
+ * without an index, and lines written after the last indexed block, are scanned.
+ * Usage:
+ * <pre>
+ * java Utils.LogSearch [--level LEVEL] [--logger NAME]
+ *                      [--from "yyyy-MM-dd HH:mm:ss"] [--to "yyyy-MM-dd HH:mm:ss"] [--stats] LOGFILE...
+ * </pre>
+ */
+public final class LogSearch {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The lines to look for. All conditions must hold; unset conditions match everything.
+     */
+    public static final class Query {
+        private int minLevel = 0;
+        private String loggerName = null;
+        private long fromMillis = Long.MIN_VALUE;
+        private long toMillis = Long.MAX_VALUE;
+
+        /**
+         * Keeps lines at or above a level.
+         * @param level 0=DEBUG, 1=INFO, 2=WARNING, 3=ERROR
+         * @return this query
+         */
+        public Query minLevel(int level) {
+            this.minLevel = level;
+            return this;
+        }
+
+        /**
+         * Keeps lines of one logger, e.g. "Vehicle".
+         * @param name the logger name as shown in the location column
+         * @return this query
+         */
+        public Query logger(String name) {
+            this.loggerName = name;
+            return this;
+        }
+
+        /**
+         * Keeps lines logged at or after a time (compared at second precision).
+         * @param epochMillis start of the range
+         * @return this query
+         */
+        public Query from(long epochMillis) {
+            this.fromMillis = epochMillis;
+            return this;
+        }
+
+        /**
+         * Keeps lines logged at or before a time.
+         * @param epochMillis end of the range, inclusive
+         * @return this query
+         */
+        public Query to(long epochMillis) {
+            this.toMillis = epochMillis;
+            return this;
+        }
+
+        /**
+         * Checks a parsed record against the query.
+         * @param record the record
+         * @return true if the record matches
+         */
+        public boolean matches(LogRecord record) {
+            return record.getLevel() >= minLevel
+                    && (loggerName == null || loggerName.equals(record.getLoggerName()) || isWholeLocation(record))
+                    && Math.floorDiv(record.getEpochMillis(), 1000L) >= Math.floorDiv(fromMillis, 1000L)
+                    && record.getEpochMillis() <= toMillis;
+        }
+
+        // A line without a method reads "[Shapes.Triangle]" for a dotted logger name, which parses as
+        // logger "Shapes" and method "Triangle"
+        private boolean isWholeLocation(LogRecord record) {
+            String logger = record.getLoggerName();
+            String method = record.getMethodName();
+            return method != null && loggerName.length() == logger.length() + 1 + method.length()
+                    && loggerName.startsWith(logger) && loggerName.charAt(logger.length()) == '.'
+                    && loggerName.endsWith(method);
+        }
+    }
+
+    /**
+     * What a search read and found.
+     */
+    public static final class Stats {
+        private long matches;
+        private long bytesRead;
+        private int segments;
+        private int blocksSkipped;
+
+        /** @return number of matching records */
+        public long getMatches() { return matches; }
+        /** @return log bytes read (uncompressed) */
+        public long getBytesRead() { return bytesRead; }
+        /** @return number of files searched */
+        public int getSegments() { return segments; }
+        /** @return number of index blocks that were not read */
+        public int getBlocksSkipped() { return blocksSkipped; }
+
+        @Override
+        public String toString() {
+            return matches + " matches, " + bytesRead + " bytes read, " + blocksSkipped
+                    + " blocks skipped in " + segments + " files";
+        }
+    }
+
+    private LogSearch() {}
+
+    public static void main(String[] args) {
+        Query query = new Query();
+        List<Path> files = new ArrayList<>();
+        boolean printStats = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--level" -> query.minLevel(LogDecoder.parseLevel(LogDecoder.value(args, ++i, "--level")));
+                    case "--logger" -> query.logger(LogDecoder.value(args, ++i, "--logger"));
+                    case "--from" -> query.from(LogDecoder.parseTime(LogDecoder.value(args, ++i, "--from")));
+                    case "--to" -> query.to(LogDecoder.parseTime(LogDecoder.value(args, ++i, "--to")) + 999); // whole second inclusive
+                    case "--stats" -> printStats = true;
+                    default -> files.add(Paths.get(args[i]));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(Logger.RED + "Utils.LogSearch: " + e.getMessage() + Logger.RESET);
+            System.exit(2);
+        }
+        if (files.isEmpty()) {
+            System.err.println("Usage: java Utils.LogSearch [--level LEVEL] [--logger NAME] [--from TIME] [--to TIME] [--stats] LOGFILE...");
+            System.exit(2);
+        }
+
+        int failures = 0;
+        for (Path file : files) {
+            try {
+                Stats stats = search(file, query, record -> System.out.println(record.toLine()));
+                if (printStats) System.err.println(file + ": " + stats);
+            } catch (IOException e) {
+                System.err.println(Logger.RED + "Utils.LogSearch: " + file + ": " + e.getMessage() + Logger.RESET);
+                failures++;
+            }
+        }
+        if (failures > 0) System.exit(1);
+    }
+
+    /**
+     * Searches a log file and its rotated segments, oldest segment first.
+     * @param basePath the log file loggers write to, e.g. log.txt
+     * @param query the lines to look for
+     * @param consumer receives each matching record; its text is the original line
+     * @return what the search read and found
+     * @throws IOException if a file cannot be read
+     */
+    public static Stats search(Path basePath, Query query, Consumer<LogRecord> consumer) throws IOException {
+        Stats stats = new Stats();
+        LogLineParser parser = new LogLineParser();
+        for (Path segment : segmentsOf(basePath)) {
+            searchSegment(segment, query, parser, record -> {
+                stats.matches++;
+                consumer.accept(record);
+            }, stats);
+            stats.segments++;
+        }
+        return stats;
+    }
+
+    /**
+     * Searches a log file and its rotated segments and collects the matches.
+     * @param basePath the log file loggers write to, e.g. log.txt
+     * @param query the lines to look for
+     * @return matching records, oldest segment first
+     * @throws IOException if a file cannot be read
+     */
+    public static List<LogRecord> searchAll(Path basePath, Query query) throws IOException {
+        List<LogRecord> records = new ArrayList<>();
+        search(basePath, query, records::add);
+        return records;
+    }
+
+    // --- Internal Methods ---
+
+    /**
+     * Lists the base file and its rotated segments, ordered by last modification.
+     */
+    static List<Path> segmentsOf(Path basePath) {
+        List<Path> segments = LogFileCompressor.listRotatedSegments(basePath, basePath);
+        if (Files.exists(basePath)) segments.add(basePath);
+        segments.sort(Comparator.comparing(LogSearch::lastModified).thenComparing(Path::toString));
+        return segments;
+    }
+
+    private static void searchSegment(Path file, Query query, LogLineParser parser,
+                                      Consumer<LogRecord> consumer, Stats stats) throws IOException {
+        boolean gzipped = file.getFileName().toString().endsWith(".gz");
+        long length = gzipped ? Long.MAX_VALUE : Files.size(file);
+        LogIndex index = LogIndex.load(LogIndex.indexPath(file));
+        if (index != null && index.getIndexedEnd() > length) index = null; // index belongs to an older file
+
+        List<long[]> ranges = new ArrayList<>();
+        long indexedEnd = 0;
+        if (index != null) {
+            List<LogIndex.Block> blocks = index.getBlocks();
+            BitSet candidates = index.candidates(query.minLevel, query.loggerName, query.fromMillis, query.toMillis);
+            for (int i = 0; i < blocks.size(); i++) {
+                if (candidates.get(i)) {
+                    addRange(ranges, blocks.get(i).start, blocks.get(i).end);
+                } else {
+                    stats.blocksSkipped++;
+                }
+            }
+            indexedEnd = index.getIndexedEnd();
+        }
+        addRange(ranges, indexedEnd, length); // not yet indexed tail
+
+        if (gzipped) {
+            try (InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE), BUFFER_SIZE)) {
+                long position = 0;
+                for (long[] range : ranges) {
+                    if (!skipFully(in, range[0] - position)) return;
+                    scan(new RangeInputStream(in, range[1] - range[0], stats), query, parser, consumer);
+                    position = range[1];
+                }
+            }
+        } else {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                for (long[] range : ranges) {
+                    channel.position(range[0]);
+                    InputStream in = Channels.newInputStream(channel);
+                    scan(new RangeInputStream(in, range[1] - range[0], stats), query, parser, consumer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the lines of one range and passes on the matching records,
+     * including their continuation lines.
+     */
+    private static void scan(InputStream in, Query query, LogLineParser parser, Consumer<LogRecord> consumer) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+        LogRecord pending = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (LogLineParser.isPadding(line)) continue;
+            LogRecord record = parser.parse(line);
+            if (record == null) {
+                if (pending != null) pending = LogLineParser.appendContinuation(pending, line);
+                continue;
+            }
+            if (pending != null) consumer.accept(pending);
+            pending = query.matches(record) ? record : null;
+        }
+        if (pending != null) consumer.accept(pending);
+    }
+
+    /**
+     * Adds a byte range, merging it with the previous one if they touch.
+     */
+    private static void addRange(List<long[]> ranges, long start, long end) {
+        if (end <= start) return;
+        if (!ranges.isEmpty()) {
+            long[] last = ranges.get(ranges.size() - 1);
+            if (last[1] == start) {
+                last[1] = end;
+                return;
+            }
+        }
+        ranges.add(new long[] {start, end});
+    }
+
+    private static boolean skipFully(InputStream in, long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (in.read() < 0) return false;
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+        return true;
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Reads at most a given number of bytes from a stream it does not own, counting them.
+     */
+    private static final class RangeInputStream extends InputStream {
+        private final InputStream in;
+        private final Stats stats;
+        private long remaining;
+
+        RangeInputStream(InputStream in, long length, Stats stats) {
+            this.in = in;
+            this.remaining = length;
+            this.stats = stats;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+                stats.bytesRead++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) return -1;
+            int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+                stats.bytesRead += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+            // The underlying stream stays open for the next range
+        }
+    }
+}
@@ -0,0 +1,519 @@
+package Utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Utils.LogSink owns the single writer for one physical log file.
+ * <p>
+ * Sinks are handed out by {@link LogSinkRegistry} and shared by every
+ * {@link Logger} that writes to the same path. All writes, flushes and
+ * rotations are synchronized on the sink, so lines from different loggers
+ * never interleave.
+ * <p>
+ * The sink counts the UTF-8 bytes it writes, so size-based rotation needs no
+ * filesystem calls per line. Time-based rotation (hourly/daily) can be combined
+ * with the size limit. Rotated segments are optionally gzipped and pruned by
+ * {@link LogFileCompressor} on a background thread.
+ * <p>
+ * Records go to a {@link LogOutput}: text lines through a buffered writer by
+ * default, or a memory-mapped segment of the file ({@link MappedLogOutput}) when
+ * enabled. Binary sinks write the compact format of {@link BinaryLogOutput},
+ * JSON sinks the JSON lines of {@link JsonLogOutput}.
+ * <p>
+ * How often written lines are flushed is chosen per write by the logger's
+ * {@link Logger.Durability}. Lines whose flush is deferred are flushed by the
+ * next write that is due, or by the background flusher of
+ * {@link LogSinkRegistry} once the flush interval has passed.
+ * <p>
+ * Text sinks also keep a sidecar index ({@link LogIndex}) of every file they
+ * write, so {@link LogSearch} can seek straight to matching lines.
+ */
+final class LogSink {
+    static final long DEFAULT_MAX_FILE_SIZE = 1024 * 1024; // 1MB
+    static final int DEFAULT_FLUSH_LINES = 100;
+    static final long DEFAULT_FLUSH_MILLIS = 1_000L;
+
+    private final Path basePath;
+    private final boolean appendToFile;
+    private final Logger.FileFormat format;
+    private long maxFileSize = DEFAULT_MAX_FILE_SIZE;
+    private Logger.RotationInterval rotationInterval = Logger.RotationInterval.NONE;
+    private boolean compressRotatedFiles = false;
+    private int maxRetainedSegments = 0; // 0 = keep all
+    private boolean memoryMapped = false;
+    private boolean indexEnabled = true;
+    private int flushLines = DEFAULT_FLUSH_LINES;
+    private long flushMillis = DEFAULT_FLUSH_MILLIS;
+
+    private LogOutput output;
+    private LogIndexWriter index;
+    private Path logFilePath;
+    private int logFileIndex = 0;
+    private long bytesWritten = 0;
+    private long nextRotationMillis = Long.MAX_VALUE;
+    private int unflushedLines = 0;
+    private long flushDeadline = Long.MAX_VALUE; // when deferred lines must be flushed
+    private volatile boolean writeError = false; // read without the lock by loggers
+    private boolean closed = false;
+
+    // Guarded by LogSinkRegistry
+    int refCount = 0;
+
+    /**
+     * Opens the sink's file.
+     * @param basePath the path loggers asked for (the registry key)
+     * @param appendToFile true to append to an existing file, false to truncate it
+     * @throws IOException if the file cannot be opened
+     */
+    LogSink(Path basePath, boolean appendToFile) throws IOException {
+        this(basePath, appendToFile, Logger.FileFormat.TEXT);
+    }
+
+    /**
+     * Opens the sink's file in the given format.
+     * @param basePath the path loggers asked for (the registry key)
+     * @param appendToFile true to append to an existing file, false to truncate it
+     * @param format TEXT, BINARY or JSON
+     * @throws IOException if the file cannot be opened
+     */
+    LogSink(Path basePath, boolean appendToFile, Logger.FileFormat format) throws IOException {
+        this.basePath = basePath;
+        this.appendToFile = appendToFile;
+        this.format = format;
+        this.logFilePath = basePath;
+        openLogFile(appendToFile);
+    }
+
+    /**
+     * Returns the path this sink was opened for.
+     * @return the base path
+     */
+    Path getBasePath() {
+        return basePath;
+    }
+
+    /**
+     * Returns the format records are written in.
+     * @return TEXT, BINARY or JSON
+     */
+    Logger.FileFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Returns the file currently written to (differs from the base path after rotation).
+     * @return the current path
+     */
+    synchronized Path getCurrentPath() {
+        return logFilePath;
+    }
+
+    /**
+     * Sets the maximum size of the file in bytes before rotation occurs.
+     * @param maxBytes the maximum file size in bytes
+     */
+    synchronized void setMaxFileSize(long maxBytes) {
+        this.maxFileSize = maxBytes;
+    }
+
+    /**
+     * Sets the time-based rotation interval, in addition to the size limit.
+     * @param interval NONE, HOURLY or DAILY
+     */
+    synchronized void setRotationInterval(Logger.RotationInterval interval) {
+        this.rotationInterval = interval;
+        this.nextRotationMillis = nextRotationBoundary(System.currentTimeMillis());
+    }
+
+    /**
+     * Enables or disables gzip compression of rotated segments.
+     * @param compress true to compress rotated segments in the background
+     */
+    synchronized void setCompressRotatedFiles(boolean compress) {
+        this.compressRotatedFiles = compress;
+    }
+
+    /**
+     * Sets how many rotated segments are kept on disk; older ones are deleted.
+     * @param maxSegments number of segments to keep, 0 for unlimited
+     */
+    synchronized void setMaxRetainedSegments(int maxSegments) {
+        this.maxRetainedSegments = maxSegments;
+    }
+
+    /**
+     * Sets when lines with a deferred flush are flushed (see {@link Logger.Durability#BATCH}).
+     * @param lines flush once this many lines are unflushed
+     * @param millis flush at the latest this long after the first unflushed line
+     */
+    synchronized void setFlushBatch(int lines, long millis) {
+        this.flushLines = lines;
+        this.flushMillis = millis;
+        if (flushDeadline != Long.MAX_VALUE) flushDeadline = Math.min(flushDeadline, System.currentTimeMillis() + millis);
+    }
+
+    /**
+     * Switches between buffered writer output and memory-mapped output.
+     * The current file is closed and reopened in append mode in the new mode.
+     * Binary and JSON sinks ignore this setting.
+     * @param mapped true to append through a memory-mapped segment
+     */
+    synchronized void setMemoryMapped(boolean mapped) {
+        if (mapped == memoryMapped || closed || writeError) return;
+        memoryMapped = mapped;
+        if (format != Logger.FileFormat.TEXT) return; // binary and JSON files always use a stream
+        try {
+            closeOutput();
+            openLogFile(true);
+        } catch (IOException e) {
+            handleWriteError(e);
+        }
+    }
+
+    /**
+     * Enables or disables the sidecar index of the current and future files.
+     * Binary sinks are never indexed.
+     * @param enabled true to maintain a .idx file next to each log file
+     */
+    synchronized void setIndexEnabled(boolean enabled) {
+        if (enabled == indexEnabled || closed || writeError) return;
+        indexEnabled = enabled;
+        if (enabled) {
+            openIndex(true);
+        } else {
+            closeIndex();
+        }
+    }
+
+    /**
+     * Returns whether the sink maintains a sidecar index.
+     * @return true if the current file is indexed
+     */
+    synchronized boolean isIndexEnabled() {
+        return index != null;
+    }
+
+    /**
+     * Returns whether the sink appends through a memory-mapped segment.
+     * @return true if memory-mapped output is active
+     */
+    synchronized boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * Returns the number of bytes in the current file.
+     * @return current file size as tracked by the sink
+     */
+    synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Returns whether a write to this sink has failed.
+     * @return true if the sink stopped writing because of an I/O error
+     */
+    boolean hasWriteError() {
+        return writeError;
+    }
+
+    /**
+     * Writes a log record and flushes it.
+     * @param record the record to write
+     * @return false if the record could not be written
+     */
+    synchronized boolean write(LogRecord record) {
+        return append(record) && flush();
+    }
+
+    /**
+     * Writes a log record and flushes, defers the flush or syncs as the
+     * durability asks.
+     * @param record the record to write
+     * @param durability when the line must reach the file
+     * @return false if the record could not be written
+     */
+    synchronized boolean write(LogRecord record, Logger.Durability durability) {
+        if (!append(record)) return false;
+        switch (durability) {
+            case FSYNC:
+                return sync();
+            case WARNING:
+                if (record.getLevel() >= 2 || isBatchDue()) return flush();
+                break; // other lines are batched
+            case BATCH:
+                if (isBatchDue()) return flush();
+                break;
+            default:
+                return flush();
+        }
+        if (flushDeadline == Long.MAX_VALUE && !closed) {
+            flushDeadline = System.currentTimeMillis() + flushMillis;
+            LogSinkRegistry.scheduleFlush(this);
+        }
+        return true;
+    }
+
+    private boolean isBatchDue() {
+        return unflushedLines >= flushLines || System.currentTimeMillis() >= flushDeadline;
+    }
+
+    /**
+     * Writes a log record without flushing, performing rotation if needed.
+     * @param record the record to write
+     * @return false if the record could not be written
+     */
+    synchronized boolean append(LogRecord record) {
+        if (writeError) return false;
+        if (closed) return true;
+        try {
+            rotateLogFileIfNeeded();
+            long offset = bytesWritten;
+            int length = output.write(record);
+            bytesWritten += length;
+            LoggerMetrics.recordBytesWritten(length);
+            if (index != null) addToIndex(offset, length, record);
+            unflushedLines++;
+            return true;
+        } catch (IOException e) {
+            handleWriteError(e);
+            return false;
+        }
+    }
+
+    /**
+     * Flushes buffered output to the file.
+     * @return false if flushing failed
+     */
+    synchronized boolean flush() {
+        if (writeError) return false;
+        if (closed) return true;
+        try {
+            output.flush();
+            markFlushed();
+            return true;
+        } catch (IOException e) {
+            handleWriteError(e);
+            return false;
+        }
+    }
+
+    /**
+     * Flushes buffered output and forces it to the storage device.
+     * @return false if flushing or syncing failed
+     */
+    synchronized boolean sync() {
+        if (writeError) return false;
+        if (closed) return true;
+        try {
+            output.sync();
+            markFlushed();
+            return true;
+        } catch (IOException e) {
+            handleWriteError(e);
+            return false;
+        }
+    }
+
+    /**
+     * Flushes deferred lines whose flush interval has passed. Called by the
+     * background flusher.
+     * @param now the current time in milliseconds
+     * @return true if nothing is left to flush, false if the flush is not due yet
+     */
+    synchronized boolean flushIfDue(long now) {
+        if (closed || writeError || unflushedLines == 0) {
+            markFlushed();
+            return true;
+        }
+        if (now < flushDeadline) return false;
+        flush();
+        return true;
+    }
+
+    /**
+     * Closes the file. Called by the registry when the last user releases the sink.
+     */
+    synchronized void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            closeOutput();
+        } catch (IOException e) {
+            System.err.println(Logger.RED + "Utils.Logger: Error closing log file: " + e.getMessage() + Logger.RESET);
+        }
+    }
+
+    // --- Internal Methods ---
+
+    private void markFlushed() {
+        unflushedLines = 0;
+        flushDeadline = Long.MAX_VALUE;
+    }
+
+    /**
+     * Opens the current log file and initializes the byte count from its size.
+     */
+    private void openLogFile(boolean append) throws IOException {
+        if (format == Logger.FileFormat.BINARY) {
+            output = new BinaryLogOutput(logFilePath, append);
+            bytesWritten = Files.size(logFilePath);
+        } else if (format == Logger.FileFormat.JSON) {
+            output = new JsonLogOutput(logFilePath, append);
+            bytesWritten = append ? Files.size(logFilePath) : 0;
+        } else if (memoryMapped) {
+            MappedLogOutput mapped = new MappedLogOutput(logFilePath, append, MappedLogOutput.DEFAULT_SEGMENT_SIZE);
+            output = mapped;
+            bytesWritten = mapped.position();
+        } else {
+            output = new StreamLogOutput(logFilePath, append);
+            bytesWritten = append ? Files.size(logFilePath) : 0;
+        }
+        if (indexEnabled) openIndex(append);
+    }
+
+    /**
+     * Closes the index and the output of the current file.
+     */
+    private void closeOutput() throws IOException {
+        closeIndex();
+        output.close();
+    }
+
+    /**
+     * Opens the index of the current file. Index problems never stop logging:
+     * the index is switched off and queries fall back to scanning the file.
+     */
+    private void openIndex(boolean append) {
+        if (format != Logger.FileFormat.TEXT) return;
+        try {
+            index = LogIndexWriter.open(logFilePath, append, bytesWritten);
+        } catch (IOException e) {
+            handleIndexError(e);
+        }
+    }
+
+    private void addToIndex(long offset, int length, LogRecord record) {
+        try {
+            index.add(offset, length, record);
+        } catch (IOException e) {
+            handleIndexError(e);
+        }
+    }
+
+    private void closeIndex() {
+        if (index == null) return;
+        try {
+            index.close();
+        } catch (IOException e) {
+            handleIndexError(e);
+        }
+        index = null;
+    }
+
+    private void handleIndexError(IOException e) {
+        index = null;
+        indexEnabled = false;
+        System.err.println(Logger.RED + "Utils.Logger: Error writing log index, indexing disabled. Error: " + e.getMessage() + Logger.RESET);
+    }
+
+    /**
+     * Rotates to a new file if the byte count reached the limit or the
+     * rotation interval has elapsed.
+     */
+    private void rotateLogFileIfNeeded() throws IOException {
+        if (bytesWritten > 0 && bytesWritten >= maxFileSize) {
+            rotateLogFile();
+        } else if (rotationInterval != Logger.RotationInterval.NONE) {
+            long now = System.currentTimeMillis();
+            if (now >= nextRotationMillis) {
+                nextRotationMillis = nextRotationBoundary(now);
+                if (bytesWritten > 0) rotateLogFile();
+            }
+        }
+    }
+
+    /**
+     * Rotates the log file by closing the current one and creating a new file
+     * with an incremented index. The previous file is handed to the compressor.
+     */
+    private void rotateLogFile() throws IOException {
+        closeOutput();
+        Path rotatedPath = logFilePath;
+        logFileIndex++;
+        logFilePath = segmentPath(basePath, logFileIndex);
+        openLogFile(appendToFile);
+        LoggerMetrics.recordRotation();
+        System.out.println(Logger.YELLOW + "Utils.Logger: Log file rotated to " + logFilePath + Logger.RESET);
+        if (compressRotatedFiles || maxRetainedSegments > 0) {
+            LogFileCompressor.submit(compressRotatedFiles ? rotatedPath : null, this, maxRetainedSegments);
+        }
+    }
+
+    /**
+     * Returns the start of the next hour or day after the given time, in the system time zone.
+     */
+    private long nextRotationBoundary(long nowMillis) {
+        if (rotationInterval == Logger.RotationInterval.NONE) return Long.MAX_VALUE;
+        ChronoUnit unit = rotationInterval == Logger.RotationInterval.HOURLY ? ChronoUnit.HOURS : ChronoUnit.DAYS;
+        ZonedDateTime now = Instant.ofEpochMilli(nowMillis).atZone(ZoneId.systemDefault());
+        return now.truncatedTo(unit).plus(1, unit).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Returns the path of rotated segment {@code index} of a log, e.g. log.txt -> log_part2.txt.
+     * Index 0 is the base path itself.
+     */
+    static Path segmentPath(Path basePath, int index) {
+        if (index == 0) return basePath;
+        String fileName = basePath.getFileName().toString();
+        String extension = extensionOf(fileName);
+        String baseName = fileName.substring(0, fileName.length() - extension.length());
+        return basePath.resolveSibling(baseName + "_part" + index + extension);
+    }
+
+    /**
+     * Returns the extension of a log file name including the dot (".txt", ".bin"), or "".
+     */
+    static String extensionOf(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(dot) : "";
+    }
+
+    /**
+     * Returns the number of bytes the string occupies in UTF-8.
+     */
+    static int utf8Length(String s) {
+        int length = s.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    bytes += 1;
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    bytes += 2; // 4 bytes for the pair, counted over two chars
+                    i++;
+                } else {
+                    bytes += 2;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Handles file write errors by disabling the sink and warning the user.
+     */
+    private void handleWriteError(IOException e) {
+        writeError = true;
+        LoggerMetrics.recordWriteError();
+        System.err.println(Logger.RED + "Utils.Logger: Error writing to log file. File logging disabled. Error: " + e.getMessage() + Logger.RESET);
+    }
+}
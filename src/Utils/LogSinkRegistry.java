@@ -0,0 +1,134 @@
+package Utils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Utils.LogSinkRegistry hands out one shared {@link LogSink} per physical log file.
+ * <p>
+ * Loggers acquire a sink on their first write and release it on close.
+ * Sinks are reference counted: the file is opened by the first acquire
+ * and closed when the last user releases it.
+ * <p>
+ * The registry also runs the background flusher for sinks with deferred
+ * flushes (see {@link Logger.Durability}): a daemon thread that checks them
+ * every {@link #FLUSH_CHECK_MILLIS} and flushes those whose interval has
+ * passed, plus a shutdown hook that flushes them all when the JVM exits.
+ */
+public final class LogSinkRegistry {
+    static final long FLUSH_CHECK_MILLIS = 50;
+
+    private static final Map<Path, LogSink> SINKS = new HashMap<>();
+    // Not guarded by the registry lock: sinks add themselves while holding their own lock
+    private static final Set<LogSink> DEFERRED = ConcurrentHashMap.newKeySet();
+    private static final Object FLUSHER_LOCK = new Object();
+    private static ScheduledExecutorService flusher; // guarded by FLUSHER_LOCK
+
+    private LogSinkRegistry() {}
+
+    /**
+     * Returns the sink for the given path, opening the file if no logger uses it yet.
+     * @param path the log file path
+     * @param appendToFile true to append, false to truncate (only used when opening)
+     * @return the shared sink
+     * @throws IOException if the file cannot be opened
+     */
+    static LogSink acquire(Path path, boolean appendToFile) throws IOException {
+        return acquire(path, appendToFile, Logger.FileFormat.TEXT);
+    }
+
+    /**
+     * Returns the sink for the given path, opening the file in the given format
+     * if no logger uses it yet.
+     * @param path the log file path
+     * @param appendToFile true to append, false to truncate (only used when opening)
+     * @param format TEXT, BINARY or JSON (only used when opening)
+     * @return the shared sink
+     * @throws IOException if the file cannot be opened
+     */
+    static synchronized LogSink acquire(Path path, boolean appendToFile, Logger.FileFormat format) throws IOException {
+        Path key = path.toAbsolutePath().normalize();
+        LogSink sink = SINKS.get(key);
+        if (sink == null) {
+            sink = new LogSink(path, appendToFile, format);
+            SINKS.put(key, sink);
+        }
+        sink.refCount++;
+        return sink;
+    }
+
+    /**
+     * Releases one reference to the sink, closing its file when no user is left.
+     * @param sink the sink to release
+     */
+    static synchronized void release(LogSink sink) {
+        if (sink == null || sink.refCount <= 0) return;
+        sink.refCount--;
+        if (sink.refCount == 0) {
+            SINKS.remove(sink.getBasePath().toAbsolutePath().normalize());
+            sink.close();
+        }
+    }
+
+    /**
+     * Registers a sink with lines whose flush was deferred, starting the
+     * background flusher on first use.
+     * @param sink the sink
+     */
+    static void scheduleFlush(LogSink sink) {
+        DEFERRED.add(sink);
+        synchronized (FLUSHER_LOCK) {
+            if (flusher != null) return;
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "Utils.Logger-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(() -> flushDeferred(false),
+                    FLUSH_CHECK_MILLIS, FLUSH_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> flushDeferred(true), "Utils.Logger-flush-shutdown"));
+        }
+    }
+
+    /**
+     * Flushes deferred lines that are due, or all of them.
+     * @param all true to flush regardless of the interval
+     */
+    static void flushDeferred(boolean all) {
+        long now = all ? Long.MAX_VALUE : System.currentTimeMillis();
+        for (LogSink sink : DEFERRED) {
+            // Removed first: a sink that defers again after its flush adds itself back
+            DEFERRED.remove(sink);
+            try {
+                if (!sink.flushIfDue(now)) DEFERRED.add(sink);
+            } catch (RuntimeException e) {
+                System.err.println(Logger.RED + "Utils.LogSinkRegistry: Deferred flush failed: " + e + Logger.RESET);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of log files currently held open.
+     * @return open sink count
+     */
+    public static synchronized int getOpenSinkCount() {
+        return SINKS.size();
+    }
+
+    /**
+     * Returns how many loggers currently share the file at the given path.
+     * @param path the log file path
+     * @return reference count, or 0 if the file is not open
+     */
+    public static synchronized int getReferenceCount(Path path) {
+        LogSink sink = SINKS.get(path.toAbsolutePath().normalize());
+        return sink == null ? 0 : sink.refCount;
+    }
+}
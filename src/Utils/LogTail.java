@@ -0,0 +1,399 @@
+package Utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Utils.LogTail follows a text log file written by {@link Logger} and
+ * publishes every new record to its subscribers, like {@code tail -f}:
+ * <pre>
+ * LogTail tail = LogTail.follow(Paths.get("log.txt"));
+ * tail.forEach(record -> dashboard.show(record));
+ * ...
+ * tail.close();
+ * </pre>
+ * The tail keeps a {@link FileChannel} position and only reads bytes appended
+ * since the last read. A {@link WatchService} on the directory wakes it when a
+ * file changes; it also checks every {@link #DEFAULT_POLL_MILLIS} ms, because
+ * memory-mapped writes and some file systems raise no events.
+ * <p>
+ * When the sink rotates to the next segment (log.txt, log_part1.txt,
+ * log_part2.txt, ...), the tail finishes the current file and continues at the
+ * start of the next one. If a later process starts over at the base file, the
+ * tail goes back to it; segments it has read before are continued where it
+ * left them. A file that shrinks was truncated and is read again from the start.
+ * <p>
+ * Lines are parsed with {@link LogLineParser}; continuation lines are added
+ * to the record before them, and lines in other layouts are counted and
+ * skipped. Records are published through a {@link SubmissionPublisher}:
+ * when a subscriber's buffer is full, the tail stops reading until it has
+ * caught up, so slow subscribers see every record and the file acts as the
+ * buffer.
+ */
+public final class LogTail implements Flow.Publisher<LogRecord>, AutoCloseable {
+    public static final long DEFAULT_POLL_MILLIS = 250;
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final long BACKPRESSURE_PARK_NANOS = 1_000_000L; // 1ms
+
+    private final Path basePath;
+    private final long pollMillis;
+    private final ExecutorService delivery;
+    private final SubmissionPublisher<LogRecord> publisher;
+    private final int bufferCapacity;
+    private final LogLineParser parser = new LogLineParser();
+    private final Thread thread;
+    private volatile boolean running = false;
+    private WatchService watcher;
+
+    // Owned by the tail thread
+    private FileChannel channel;
+    private int segmentIndex;
+    private final Map<Integer, Long> leftAt = new HashMap<>(); // segment index -> position when the tail moved on
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private byte[] lineBuffer = new byte[256];
+    private int lineLength = 0;
+    private LogRecord pending; // last record, waiting for continuation lines
+
+    private volatile Path currentPath;
+    private volatile long position;
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong unparsed = new AtomicLong();
+
+    /**
+     * Creates a tail. It starts reading when {@link #start()} is called.
+     * @param basePath the log file loggers write to, e.g. log.txt
+     * @param fromStart true to publish what the uncompressed segments already hold, oldest first;
+     *                  false to start at the end of the one written last
+     * @param bufferCapacity records buffered per subscriber before the tail waits
+     * @param pollMillis longest time between two checks for new data
+     */
+    public LogTail(Path basePath, boolean fromStart, int bufferCapacity, long pollMillis) {
+        if (basePath == null) throw new IllegalArgumentException("Path cannot be null");
+        if (bufferCapacity < 1) throw new IllegalArgumentException("Buffer capacity must be at least 1");
+        if (pollMillis < 1) throw new IllegalArgumentException("Poll interval must be positive");
+        this.basePath = basePath.toAbsolutePath().normalize();
+        this.pollMillis = pollMillis;
+        this.delivery = Executors.newCachedThreadPool(runnable -> {
+            Thread worker = new Thread(runnable, "Utils.LogTail-delivery");
+            worker.setDaemon(true);
+            return worker;
+        });
+        this.publisher = new SubmissionPublisher<>(delivery, bufferCapacity);
+        this.bufferCapacity = bufferCapacity;
+        this.segmentIndex = scanSegments(fromStart);
+        this.currentPath = LogSink.segmentPath(this.basePath, segmentIndex);
+        this.position = fromStart ? 0 : sizeOf(currentPath);
+        this.thread = new Thread(this::run, "Utils.LogTail-" + this.basePath.getFileName());
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Follows a log file from its current end, with the default buffer and poll interval.
+     * @param basePath the log file loggers write to
+     * @return the started tail
+     * @throws IOException if the directory cannot be watched
+     */
+    public static LogTail follow(Path basePath) throws IOException {
+        LogTail tail = new LogTail(basePath, false, Flow.defaultBufferSize(), DEFAULT_POLL_MILLIS);
+        tail.start();
+        return tail;
+    }
+
+    // --- Public API ---
+
+    /**
+     * Starts the tail thread.
+     * @throws IOException if the directory cannot be watched
+     */
+    public synchronized void start() throws IOException {
+        if (running) return;
+        watcher = basePath.getFileSystem().newWatchService();
+        basePath.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        running = true;
+        thread.start();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super LogRecord> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    /**
+     * Subscribes an action that runs for every record.
+     * @param action the action
+     * @return completes when the tail is closed
+     */
+    public CompletableFuture<Void> forEach(Consumer<? super LogRecord> action) {
+        return publisher.consume(action);
+    }
+
+    /**
+     * Stops following and completes all subscribers.
+     */
+    @Override
+    public void close() {
+        boolean wasRunning;
+        synchronized (this) {
+            wasRunning = running;
+            running = false;
+        }
+        if (wasRunning) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+            thread.interrupt();
+            try {
+                thread.join(1_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        publisher.close();
+        delivery.shutdown(); // lets subscribers finish what is buffered
+    }
+
+    /**
+     * Returns the file currently followed.
+     * @return the base file or one of its _partN segments
+     */
+    public Path getCurrentPath() {
+        return currentPath;
+    }
+
+    /**
+     * Returns the offset in the current file up to which lines have been read.
+     * @return byte position
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns how many records were published.
+     * @return published record count
+     */
+    public long getPublishedCount() {
+        return published.get();
+    }
+
+    /**
+     * Returns how many lines were skipped because they are not in the log layout.
+     * @return unparsed line count
+     */
+    public long getUnparsedCount() {
+        return unparsed.get();
+    }
+
+    // --- Internal Methods ---
+
+    private void run() {
+        try {
+            while (running) {
+                readAvailable();
+                awaitChange();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        } catch (IOException e) {
+            if (running) System.err.println(Logger.RED + "Utils.LogTail: Stopped following " + currentPath + ": " + e.getMessage() + Logger.RESET);
+        } finally {
+            closeChannel();
+        }
+    }
+
+    /**
+     * Waits for a change in the directory, at most one poll interval.
+     */
+    private void awaitChange() throws InterruptedException {
+        WatchKey key = watcher.poll(pollMillis, TimeUnit.MILLISECONDS);
+        if (key == null) return;
+        key.pollEvents(); // which file changed does not matter: the next read checks all candidates
+        key.reset();
+    }
+
+    /**
+     * Reads the current file to its end, moving on to the next segment, or back
+     * to the base file, for as long as there is one with new data.
+     */
+    private void readAvailable() throws IOException, InterruptedException {
+        while (running) {
+            readCurrent();
+            int next = segmentIndex + 1;
+            if (Files.exists(LogSink.segmentPath(basePath, next))) {
+                switchTo(next);
+            } else if (segmentIndex > 0 && sizeOf(basePath) > leftAt.getOrDefault(0, 0L)) {
+                switchTo(0); // a new process started over at the base file
+            } else {
+                break;
+            }
+        }
+        publishPending();
+    }
+
+    private void readCurrent() throws IOException, InterruptedException {
+        if (channel == null) {
+            if (!Files.exists(currentPath)) return;
+            channel = FileChannel.open(currentPath, StandardOpenOption.READ);
+        }
+        if (channel.size() < position) { // truncated
+            position = 0;
+            lineLength = 0;
+        }
+        while (running) {
+            readBuffer.clear();
+            int read = channel.read(readBuffer, position);
+            if (read <= 0) return;
+            int consumed = consumeLines(readBuffer.array(), read);
+            position += consumed;
+            if (consumed < read) return; // stopped at padding of a memory-mapped file
+        }
+    }
+
+    /**
+     * Splits bytes into lines. Stops at a zero byte, where a memory-mapped file
+     * has not been written yet.
+     * @return number of bytes consumed
+     */
+    private int consumeLines(byte[] bytes, int length) throws InterruptedException {
+        for (int i = 0; i < length; i++) {
+            byte b = bytes[i];
+            if (b == 0) return i;
+            if (b == '\n') {
+                handleLine(decodeLine());
+                lineLength = 0;
+            } else {
+                if (lineLength == lineBuffer.length) lineBuffer = Arrays.copyOf(lineBuffer, lineLength * 2);
+                lineBuffer[lineLength++] = b;
+            }
+        }
+        return length;
+    }
+
+    private String decodeLine() {
+        int length = lineLength;
+        if (length > 0 && lineBuffer[length - 1] == '\r') length--;
+        return new String(lineBuffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private void handleLine(String line) throws InterruptedException {
+        LogRecord record = parser.parse(line);
+        if (record == null) {
+            if (pending != null) {
+                pending = LogLineParser.appendContinuation(pending, line);
+            } else if (!line.isEmpty()) {
+                unparsed.incrementAndGet();
+            }
+            return;
+        }
+        publishPending();
+        pending = record;
+    }
+
+    /**
+     * Publishes the held-back record. Waits while a subscriber's buffer is
+     * full; unlike a blocking submit, the wait ends when the tail is closed.
+     */
+    private void publishPending() throws InterruptedException {
+        if (pending == null) return;
+        while (publisher.estimateMaximumLag() >= bufferCapacity) {
+            if (!running || Thread.interrupted()) throw new InterruptedException();
+            LockSupport.parkNanos(this, BACKPRESSURE_PARK_NANOS);
+        }
+        LogRecord record = pending;
+        pending = null;
+        publisher.submit(record); // does not block: this thread is the only publisher
+        published.incrementAndGet();
+    }
+
+    /**
+     * Moves to another segment, at the position it was left at, or its start.
+     */
+    private void switchTo(int index) throws InterruptedException {
+        publishPending();
+        leftAt.put(segmentIndex, position);
+        closeChannel();
+        lineLength = 0;
+        segmentIndex = index;
+        currentPath = LogSink.segmentPath(basePath, index);
+        Long previous = leftAt.remove(index);
+        position = previous == null || previous > sizeOf(currentPath) ? 0 : previous;
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // read-only channel, nothing to lose
+        }
+        channel = null;
+    }
+
+    /**
+     * Finds the segment to start at: the oldest one when replaying, otherwise
+     * the one written most recently, with the others marked as read to their
+     * end so the tail starts where loggers currently write.
+     */
+    private int scanSegments(boolean fromStart) {
+        String fileName = basePath.getFileName().toString();
+        String extension = LogSink.extensionOf(fileName);
+        Pattern partPattern = Pattern.compile(Pattern.quote(fileName.substring(0, fileName.length() - extension.length()))
+                + "_part(\\d+)" + Pattern.quote(extension));
+        int oldest = -1;
+        int latest = 0;
+        for (Path segment : LogSearch.segmentsOf(basePath)) { // oldest first
+            String name = segment.getFileName().toString();
+            int index;
+            if (name.equals(fileName)) {
+                index = 0;
+            } else {
+                Matcher matcher = partPattern.matcher(name);
+                if (!matcher.matches()) continue; // compressed or numbered backup
+                index = Integer.parseInt(matcher.group(1));
+            }
+            leftAt.put(index, sizeOf(segment));
+            if (oldest < 0) oldest = index;
+            latest = index;
+        }
+        if (fromStart) {
+            leftAt.clear();
+            return Math.max(oldest, 0);
+        }
+        leftAt.remove(latest);
+        return latest;
+    }
+
+    private static long sizeOf(Path path) {
+        try {
+            return Files.exists(path) ? Files.size(path) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
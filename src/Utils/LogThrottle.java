@@ -0,0 +1,172 @@
+package Utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Utils.LogThrottle limits how many lines a logger name may emit per level.
+ * <p>
+ * Two mechanisms, both off by default and configured per level:
+ * <ul>
+ * <li>Duplicate suppression: a message identical to the previous one (same level
+ *   and same text, or same {@code {}} pattern) within the window is not written;
+ *   when a different message arrives or the window has passed, one summary line
+ *   "Previous message repeated N times (pattern: ...)" is written first.</li>
+ * <li>Rate limiting: a token bucket per level (lock-free, kept as the theoretical
+ *   arrival time of the next token) admits a steady rate with a burst allowance;
+ *   the first line admitted after a suppressed stretch is preceded by a summary
+ *   of how many lines were dropped.</li>
+ * </ul>
+ * One throttle is shared by all loggers with the same name, so the many
+ * per-object loggers of e.g. Triangle are limited together. Summaries are
+ * written at the level of the lines they stand for and are never throttled.
+ * With nothing configured the check is a single volatile read.
+ */
+final class LogThrottle {
+    private static final ConcurrentHashMap<String, LogThrottle> BY_NAME = new ConcurrentHashMap<>();
+
+    private final RateLimiter[] rateLimits = new RateLimiter[4];
+    private final long[] dedupWindowNanos = new long[4];
+    private volatile boolean active = false;
+
+    // Duplicate tracking, guarded by this
+    private String lastKey;
+    private int lastLevel = -1;
+    private long lastEmittedNanos;
+    private long repeats;
+
+    /**
+     * Token bucket as a generic cell rate algorithm: one atomic timestamp, no lock.
+     */
+    private static final class RateLimiter {
+        final long intervalNanos;
+        final long burstToleranceNanos;
+        final AtomicLong nextFreeNanos = new AtomicLong(Long.MIN_VALUE);
+        final AtomicLong suppressed = new AtomicLong();
+
+        RateLimiter(double permitsPerSecond, int burst) {
+            this.intervalNanos = Math.max(1, (long) (1_000_000_000L / permitsPerSecond));
+            this.burstToleranceNanos = intervalNanos * (Math.max(1, burst) - 1);
+        }
+
+        boolean tryAcquire(long now) {
+            for (;;) {
+                long next = nextFreeNanos.get();
+                long base = Math.max(next, now);
+                if (base - now > burstToleranceNanos) return false;
+                if (nextFreeNanos.compareAndSet(next, base + intervalNanos)) return true;
+            }
+        }
+    }
+
+    private LogThrottle() {}
+
+    /**
+     * Returns the throttle shared by all loggers with the given name.
+     * @param loggerName the logger name
+     * @return the shared throttle
+     */
+    static LogThrottle forName(String loggerName) {
+        return BY_NAME.computeIfAbsent(String.valueOf(loggerName), name -> new LogThrottle());
+    }
+
+    /**
+     * Sets the rate limit for one level.
+     * @param level 0=DEBUG, 1=INFO, 2=WARNING, 3=ERROR
+     * @param permitsPerSecond sustained lines per second, 0 or less to remove the limit
+     * @param burst lines allowed at once before the rate applies
+     */
+    synchronized void setRateLimit(int level, double permitsPerSecond, int burst) {
+        rateLimits[level] = permitsPerSecond > 0 ? new RateLimiter(permitsPerSecond, burst) : null;
+        updateActive();
+    }
+
+    /**
+     * Sets the duplicate suppression window for one level.
+     * @param level 0=DEBUG, 1=INFO, 2=WARNING, 3=ERROR
+     * @param windowMillis how long repeats are collapsed, 0 to switch off
+     */
+    synchronized void setDuplicateWindow(int level, long windowMillis) {
+        dedupWindowNanos[level] = Math.max(0, windowMillis) * 1_000_000L;
+        updateActive();
+    }
+
+    /**
+     * Decides whether a line may be written, writing pending summary lines through the logger.
+     * @param level the line's level
+     * @param key the message pattern or text used to recognize repeats
+     * @param logger the logger that writes summaries
+     * @return true if the line should be written
+     */
+    boolean admit(int level, String key, Logger logger) {
+        if (!active) return true;
+        long now = System.nanoTime();
+
+        String repeatSummary = null;
+        int summaryLevel = 0;
+        if (dedupWindowNanos[level] > 0) {
+            synchronized (this) {
+                if (level == lastLevel && key.equals(lastKey) && now - lastEmittedNanos < dedupWindowNanos[level]) {
+                    repeats++;
+                    LoggerMetrics.recordThrottled(level);
+                    return false;
+                }
+                if (repeats > 0) {
+                    repeatSummary = repeatSummary();
+                    summaryLevel = lastLevel;
+                }
+                lastKey = key;
+                lastLevel = level;
+                lastEmittedNanos = now;
+                repeats = 0;
+            }
+        }
+        if (repeatSummary != null) logger.logSummary(summaryLevel, repeatSummary);
+
+        RateLimiter limiter = rateLimits[level];
+        if (limiter == null) return true;
+        if (!limiter.tryAcquire(now)) {
+            limiter.suppressed.incrementAndGet();
+            LoggerMetrics.recordThrottled(level);
+            return false;
+        }
+        long dropped = limiter.suppressed.getAndSet(0);
+        if (dropped > 0) {
+            logger.logSummary(level, "Rate limit: " + dropped + " " + Logger.levelName(level) + " messages suppressed");
+        }
+        return true;
+    }
+
+    /**
+     * Writes the summary of repeats still pending, e.g. when a logger closes.
+     * @param logger the logger that writes the summary
+     */
+    void flush(Logger logger) {
+        if (!active) return;
+        String repeatSummary = null;
+        int summaryLevel = 0;
+        synchronized (this) {
+            if (repeats > 0) {
+                repeatSummary = repeatSummary();
+                summaryLevel = lastLevel;
+                repeats = 0;
+            }
+            lastKey = null;
+            lastLevel = -1;
+        }
+        if (repeatSummary != null) logger.logSummary(summaryLevel, repeatSummary);
+    }
+
+    // The key is the {} pattern, not the text of any one repeat, so it is labelled as such
+    private String repeatSummary() {
+        return "Previous message repeated " + repeats + " times (pattern: " + lastKey + ")";
+    }
+
+    private void updateActive() {
+        boolean any = false;
+        for (int level = 0; level < rateLimits.length; level++) {
+            if (rateLimits[level] != null || dedupWindowNanos[level] > 0) any = true;
+        }
+        active = any;
+    }
+}
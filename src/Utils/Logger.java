@@ -1,11 +1,14 @@
 package Utils;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * Utils.Logger is a flexible, thread-safe logging utility with support for
@@ -15,11 +18,107 @@ import java.time.format.DateTimeFormatter;
  * - Log levels: DEBUG, INFO, WARNING, ERROR, OFF
  * - Console and file output
  * - File appending or rolling log file with timestamp
- * - Automatic log rotation based on file size (default 1MB)
+ * - Automatic log rotation based on file size (default 1MB) and optionally time
+ *   (hourly/daily), with background gzip compression and retention of rotated segments
  * - Thread safety for file operations
- * - ANSI color-coded console output
+ * - Per-logger durability: flush every line, in batches, on warnings, or fsync
+ *   (see {@link Durability})
+ * - Optional memory-mapped file output for high-volume logging
+ * - Optional compact binary file format (see {@link FileFormat} and {@link LogDecoder})
+ * - Sidecar index of text log files for fast searches (see {@link LogSearch})
+ * - Following log files as they grow, across rotation (see {@link LogTail})
+ * - Call-site volume and rate report with demotion hints (see {@link LogProfiler})
+ * - One shared, lazily opened writer per log file (see {@link LogSinkRegistry})
+ * - ANSI color-coded console output, switched off when stdout is not a terminal,
+ *   with optional batched writes (see {@link ConsoleOutput})
+ * - Lazy ({@link Supplier}) and {@code {}}-parameterized messages that are only
+ *   built when the level is enabled
+ * - Optional async mode: file writes are handed to a background writer
+ *   (see {@link AsyncLogWriter}), or staged per thread for a writer that producers
+ *   never contend on (see {@link StagedLogWriter})
+ * - Caller location via {@link StackWalker}, configurable per logger
+ *   (see {@link LocationCapture})
+ * - Built-in counters and write-latency histogram (see {@link LoggerMetrics})
+ * - Central, hot-reloadable level configuration per logger name and package
+ *   (see {@link LoggerConfig})
+ * - Optional per-level rate limiting and duplicate suppression (see {@link LogThrottle})
+ * - Line layouts compiled from patterns (see {@link Layout}) and routing to further
+ *   appenders per logger name and level (see {@link LogRoutes})
+ * - Structured key-value fields ({@link #atInfo()} and {@link LogEvent}) and a
+ *   JSON-lines file format (see {@link FileFormat#JSON})
  */
 public class Logger {
+
+    /**
+     * How much caller location a logger records for each line.
+     */
+    public enum LocationCapture {
+        /** No stack walk; the location column shows only the logger name. */
+        NONE,
+        /** Logger name and calling method, e.g. [Vehicle.refuel] (default). */
+        CLASS_AND_METHOD,
+        /** Logger name, calling method and source line, e.g. [Vehicle.refuel:165]. */
+        FULL
+    }
+
+    /**
+     * Encoding of the log file.
+     */
+    public enum FileFormat {
+        /** Human-readable text lines in log.txt (default). */
+        TEXT(".txt"),
+        /** Compact binary records in log.bin; read back with {@link LogDecoder}. */
+        BINARY(".bin"),
+        /** One JSON object per line in log.jsonl, including structured fields (see {@link JsonEncoder}). */
+        JSON(".jsonl");
+
+        private final String extension;
+
+        FileFormat(String extension) {
+            this.extension = extension;
+        }
+
+        /**
+         * Returns the file extension used for this format, including the dot.
+         * @return ".txt", ".bin" or ".jsonl"
+         */
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /**
+     * When a logger's file lines are flushed to the operating system, and
+     * whether they are forced to disk. Chosen per logger; lines of loggers
+     * sharing a file are flushed together whenever any of them flushes.
+     * Async and staged mode flush once per writer batch instead.
+     */
+    public enum Durability {
+        /** Flush after every line (default). */
+        LINE,
+        /**
+         * Flush once a number of lines is unflushed or a time has passed since the
+         * first of them, whichever comes first (see {@link #setFlushBatch(int, long)}).
+         */
+        BATCH,
+        /** Flush with every WARNING or ERROR line; other lines follow in batches. */
+        WARNING,
+        /** Flush and force every line to the storage device (fsync), e.g. for audit logs. */
+        FSYNC
+    }
+
+    /**
+     * Time-based rotation schedule, applied in addition to the size limit.
+     */
+    public enum RotationInterval {
+        /** Rotate on size only (default). */
+        NONE,
+        /** Also rotate at the start of every hour. */
+        HOURLY,
+        /** Also rotate at midnight. */
+        DAILY
+    }
+
     // ANSI color constants
     public static final String RESET = "\u001B[0m";
     public static final String RED = "\u001B[31m";
@@ -29,32 +128,91 @@ public class Logger {
     public static final String PURPLE = "\u001B[35m";
     public static final String CYAN = "\u001B[36m";
 
-    private static final DateTimeFormatter LOG_DTF = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final TimestampCache TIMESTAMPS = new TimestampCache("yyyy-MM-dd HH:mm:ss");
     private static final DateTimeFormatter FILE_DTF = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
     private static final String[] LOG_LEVELS = {"DEBUG", "INFO", "WARNING", "ERROR"};
-    private static final long DEFAULT_MAX_FILE_SIZE = 1024 * 1024; // 1MB
+
+    // Caller capture: walk lazily and stop at the first frame outside Logger
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+    private static final String LOGGER_CLASS = Logger.class.getName();
+    private static final String LOGGER_NESTED_PREFIX = LOGGER_CLASS + "$";
+    private static final String EVENT_CLASS = LogEvent.class.getName();
+    private static final Predicate<StackWalker.StackFrame> IS_CALLER_FRAME = frame -> {
+        String className = frame.getClassName();
+        return !className.equals(LOGGER_CLASS) && !className.startsWith(LOGGER_NESTED_PREFIX)
+                && !className.equals(EVENT_CLASS);
+    };
+    private static final Function<Stream<StackWalker.StackFrame>, StackWalker.StackFrame> FIND_CALLER =
+            frames -> frames.filter(IS_CALLER_FRAME).findFirst().orElse(null);
+
+    static {
+        if (Boolean.getBoolean("logger.jmx")) LoggerMetrics.registerMBean();
+    }
+
+    private static final int DEFAULT_LOG_LEVEL = 0;
+    private static final int OFF_THRESHOLD = Integer.MAX_VALUE;
 
     private final String loggerName;
-    private int logLevel = 0; // 0=DEBUG, 1=INFO, 2=WARNING, 3=ERROR, -1=OFF
+    private final String configName; // name matched against LoggerConfig rules
+    private final LongAdder emittedCounter;
+    private final LogThrottle throttle; // shared by all loggers with this name
+    private volatile LocationCapture locationCapture = LocationCapture.CLASS_AND_METHOD;
+    private volatile Layout layout = Layout.DEFAULT;
+    private volatile LogRoutes.Route[] routes = LogRoutes.NONE; // extra appenders, see LogRoutes
+    private volatile int logLevel = DEFAULT_LOG_LEVEL; // 0=DEBUG, 1=INFO, 2=WARNING, 3=ERROR, -1=OFF
+    // Lowest level that is logged (OFF_THRESHOLD when off), so the level check is one compare
+    private volatile int threshold = DEFAULT_LOG_LEVEL;
+    private volatile boolean levelFromConfig = false;
 
     private boolean consoleLoggingEnabled = true;
     private boolean fileLoggingEnabled = true;
     private boolean appendToFile = true;
-    private long maxFileSize = DEFAULT_MAX_FILE_SIZE;
+    private FileFormat fileFormat = FileFormat.TEXT;
+    // Rotation settings for the shared file; unset values keep the sink's current setting
+    private long maxFileSize = 0;
+    private RotationInterval rotationInterval = null;
+    private Boolean compressRotatedFiles = null;
+    private int maxRetainedSegments = -1;
+    private Boolean memoryMapped = null;
+    private Boolean indexEnabled = null;
+    private int flushLines = 0;
+    private long flushMillis = 0;
+    private volatile Durability durability = Durability.LINE;
+    private volatile boolean asyncEnabled = false;
+    private volatile boolean stagedEnabled = false;
 
-    private BufferedWriter logWriter;
     private Path logFilePath;
+    private volatile LogSink sink; // acquired on the first write that passes the level check
     private boolean fileWriteError = false;
-    private int logFileIndex = 0;
 
     /**
      * Constructs a new Utils.Logger instance with the given name.
      * The logger will write to console and to a file (log.txt if appending, or timestamped file if not).
-     * @param loggerName a string identifying the logger (shown in output)
+     * The file is shared with other loggers using the same path and is only opened on the first write.
+     * @param loggerName a string identifying the logger (shown in output and matched by {@link LoggerConfig})
      */
     public Logger(String loggerName) {
+        this(loggerName, loggerName);
+    }
+
+    /**
+     * Constructs a new Utils.Logger for a class. Output shows the simple class name,
+     * while {@link LoggerConfig} rules match the fully qualified name, so a
+     * package-level rule such as {@code Vehicles=WARNING} applies.
+     * @param type the class that logs
+     */
+    public Logger(Class<?> type) {
+        this(type.getSimpleName(), type.getName());
+    }
+
+    private Logger(String loggerName, String configName) {
         this.loggerName = loggerName;
+        this.configName = configName;
+        this.emittedCounter = LoggerMetrics.emittedCounter(loggerName);
+        this.throttle = LogThrottle.forName(loggerName);
         initializeLogFile();
+        applyConfiguredLevel(LoggerConfig.register(this));
+        LogRoutes.attach(this);
     }
 
     // --- Public API ---
@@ -64,13 +222,14 @@ public class Logger {
      * @param logLevel the log level
      */
     public void setLogLevel(int logLevel) {
+        levelFromConfig = false;
         if ((logLevel >= 0 && logLevel < LOG_LEVELS.length) || logLevel == -1) {
             handleLogLevelChange(logLevel);
-            this.logLevel = logLevel;
+            updateLevel(logLevel);
         } else if (this.logLevel != -1) {
             error("Invalid log level: " + logLevel);
             warning("Automatic resolution: Set log level to -1");
-            this.logLevel = -1;
+            updateLevel(-1);
         }
     }
 
@@ -82,6 +241,14 @@ public class Logger {
         return logLevel;
     }
 
+    /**
+     * Gets the name shown in the location column.
+     * @return the logger name
+     */
+    public String getLoggerName() {
+        return loggerName;
+    }
+
     /**
      * Gets the current log level as a string.
      * @return log level string ("DEBUG", "INFO", "WARNING", "ERROR", "OFF")
@@ -97,10 +264,143 @@ public class Logger {
 
     /**
      * Sets the maximum size of the log file in bytes before rotation occurs.
+     * The limit applies to the file shared by all loggers writing to the same path.
      * @param maxBytes the maximum file size in bytes
      */
     public void setMaxFileSize(long maxBytes) {
-        this.maxFileSize = maxBytes;
+        synchronized (this) {
+            this.maxFileSize = maxBytes;
+            if (sink != null) sink.setMaxFileSize(maxBytes);
+        }
+    }
+
+    /**
+     * Sets the time-based rotation interval, applied in addition to the size limit.
+     * Like the size limit, it applies to the file shared by all loggers writing to the same path.
+     * @param interval NONE, HOURLY or DAILY
+     */
+    public void setRotationInterval(RotationInterval interval) {
+        if (interval == null) throw new IllegalArgumentException("Rotation interval cannot be null");
+        synchronized (this) {
+            this.rotationInterval = interval;
+            if (sink != null) sink.setRotationInterval(interval);
+        }
+    }
+
+    /**
+     * Enables or disables gzip compression of rotated segments (log_partN.txt becomes
+     * log_partN.txt.gz). Compression runs on a background thread.
+     * @param compress true to compress rotated segments
+     */
+    public void setCompressRotatedFiles(boolean compress) {
+        synchronized (this) {
+            this.compressRotatedFiles = compress;
+            if (sink != null) sink.setCompressRotatedFiles(compress);
+        }
+    }
+
+    /**
+     * Sets how many rotated segments are kept on disk. After each rotation the
+     * oldest segments beyond this number are deleted.
+     * @param maxSegments number of rotated segments to keep, 0 for unlimited
+     */
+    public void setMaxRetainedSegments(int maxSegments) {
+        if (maxSegments < 0) throw new IllegalArgumentException("Retained segment count cannot be negative");
+        synchronized (this) {
+            this.maxRetainedSegments = maxSegments;
+            if (sink != null) sink.setMaxRetainedSegments(maxSegments);
+        }
+    }
+
+    /**
+     * Switches the log file between buffered writer output (default) and
+     * memory-mapped output, which appends into a pre-sized mapped segment of the
+     * file and maps the next segment when it fills. Unused bytes at the end of the
+     * last segment are truncated when the file is closed or rotated.
+     * Applies to the file shared by all loggers writing to the same path.
+     * @param enabled true for memory-mapped output
+     */
+    public void setMemoryMappedEnabled(boolean enabled) {
+        synchronized (this) {
+            this.memoryMapped = enabled;
+            if (sink != null) sink.setMemoryMapped(enabled);
+        }
+    }
+
+    /**
+     * Enables or disables the sidecar index ("log.txt.idx") written next to each
+     * text log file and its rotated segments. The index is on by default and lets
+     * {@link LogSearch} read only the parts of a file that can match a query.
+     * Applies to the file shared by all loggers writing to the same path.
+     * @param enabled true to maintain the index
+     */
+    public void setIndexEnabled(boolean enabled) {
+        synchronized (this) {
+            this.indexEnabled = enabled;
+            if (sink != null) sink.setIndexEnabled(enabled);
+        }
+    }
+
+    /**
+     * Sets when this logger's file lines are flushed. BATCH trades the last
+     * lines before a crash for fewer syscalls, FSYNC makes every line survive a
+     * power loss at the cost of a disk sync per line.
+     * @param durability LINE (default), BATCH, WARNING or FSYNC
+     */
+    public void setDurability(Durability durability) {
+        if (durability == null) throw new IllegalArgumentException("Durability cannot be null");
+        this.durability = durability;
+    }
+
+    /**
+     * Returns when this logger's file lines are flushed.
+     * @return the durability
+     */
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Sets the batch limits of the BATCH and WARNING durabilities (defaults:
+     * 100 lines, 1000 ms). Like the size limit, they apply to the file shared
+     * by all loggers writing to the same path.
+     * @param lines flush once this many lines are unflushed
+     * @param millis flush at the latest this long after the first unflushed line
+     */
+    public void setFlushBatch(int lines, long millis) {
+        if (lines < 1) throw new IllegalArgumentException("Flush batch must be at least 1 line");
+        if (millis < 1) throw new IllegalArgumentException("Flush interval must be positive");
+        synchronized (this) {
+            this.flushLines = lines;
+            this.flushMillis = millis;
+            if (sink != null) sink.setFlushBatch(lines, millis);
+        }
+    }
+
+    /**
+     * Limits how many lines of a level all loggers with this name may write:
+     * a burst of lines is allowed at once, after that the given rate. Dropped lines
+     * are counted and reported in one summary line when lines are admitted again.
+     * @param level 0=DEBUG, 1=INFO, 2=WARNING, 3=ERROR
+     * @param messagesPerSecond sustained rate, 0 to remove the limit
+     * @param burst lines allowed at once
+     */
+    public void setRateLimit(int level, double messagesPerSecond, int burst) {
+        checkLevel(level);
+        throttle.setRateLimit(level, messagesPerSecond, burst);
+    }
+
+    /**
+     * Collapses repeats of the same message of a level (same text, or same
+     * {@code {}} pattern) for all loggers with this name. Repeats within the
+     * window are dropped and reported as one "Previous message repeated N times"
+     * line before the next different message, or when the logger is closed.
+     * @param level 0=DEBUG, 1=INFO, 2=WARNING, 3=ERROR
+     * @param windowMillis how long repeats are collapsed, 0 to switch off
+     */
+    public void setDuplicateSuppression(int level, long windowMillis) {
+        checkLevel(level);
+        throttle.setDuplicateWindow(level, windowMillis);
     }
 
     /**
@@ -129,6 +429,27 @@ public class Logger {
         reinitializeLogFile();
     }
 
+    /**
+     * Sets the log file format. BINARY writes compact records to log.bin
+     * (or a timestamped .bin file) instead of text lines to log.txt, JSON
+     * writes JSON lines to log.jsonl.
+     * Re-initializes the log file.
+     * @param format TEXT, BINARY or JSON
+     */
+    public void setFileFormat(FileFormat format) {
+        if (format == null) throw new IllegalArgumentException("File format cannot be null");
+        this.fileFormat = format;
+        reinitializeLogFile();
+    }
+
+    /**
+     * Returns the log file format.
+     * @return TEXT, BINARY or JSON
+     */
+    public FileFormat getFileFormat() {
+        return fileFormat;
+    }
+
     /**
      * Returns whether file appending is enabled.
      * @return true if in append mode, false if new file per run
@@ -138,16 +459,105 @@ public class Logger {
     }
 
     /**
-     * Closes the logger's file handle. Should be called at app shutdown.
+     * Sets how much caller location is captured for each line.
+     * NONE skips the stack walk entirely, which suits high-volume loggers.
+     * @param capture the location capture mode
+     */
+    public void setLocationCapture(LocationCapture capture) {
+        if (capture == null) throw new IllegalArgumentException("Location capture cannot be null");
+        this.locationCapture = capture;
+    }
+
+    /**
+     * Returns the caller location capture mode.
+     * @return the location capture mode
+     */
+    public LocationCapture getLocationCapture() {
+        return locationCapture;
+    }
+
+    /**
+     * Sets the layout of this logger's console and text file lines.
+     * {@link LogSearch} and the log index only understand {@link Layout#DEFAULT}.
+     * @param layout the compiled layout
+     */
+    public void setLayout(Layout layout) {
+        if (layout == null) throw new IllegalArgumentException("Layout cannot be null");
+        this.layout = layout;
+    }
+
+    /**
+     * Returns the layout of this logger's console and text file lines.
+     * @return the layout
+     */
+    public Layout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Enables or disables async mode. In async mode, file writes are queued to the
+     * shared {@link AsyncLogWriter} and performed on its background thread;
+     * console output stays on the calling thread.
+     * Disabling async mode waits until the queued lines are written.
+     * @param enabled true to enable, false to write on the calling thread
+     */
+    public void setAsyncEnabled(boolean enabled) {
+        if (!enabled && asyncEnabled) {
+            AsyncLogWriter.shared().drain();
+        }
+        this.asyncEnabled = enabled;
+    }
+
+    /**
+     * Returns whether async mode is enabled.
+     * @return true if file writes go through the background writer
+     */
+    public boolean isAsyncEnabled() {
+        return asyncEnabled;
+    }
+
+    /**
+     * Enables or disables staged mode. In staged mode, each calling thread
+     * keeps its finished records in its own buffer of the shared
+     * {@link StagedLogWriter}, which writes them on its background thread.
+     * Unlike async mode, threads sharing this logger never wait for each other.
+     * Takes precedence over async mode. Disabling staged mode waits until the
+     * staged lines are written.
+     * @param enabled true to enable, false to write on the calling thread
+     */
+    public void setStagedEnabled(boolean enabled) {
+        if (!enabled && stagedEnabled) {
+            StagedLogWriter.shared().drain();
+        }
+        this.stagedEnabled = enabled;
+    }
+
+    /**
+     * Returns whether staged mode is enabled.
+     * @return true if file writes go through per-thread staging buffers
+     */
+    public boolean isStagedEnabled() {
+        return stagedEnabled;
+    }
+
+    /**
+     * Releases the logger's file handle. Should be called at app shutdown.
+     * The shared file is closed once the last logger using it is closed.
+     * In async and staged mode, queued lines are written before the file is
+     * released; lines with a deferred flush and batched console output are flushed.
      */
     public void close() {
-        synchronized (this) {
-            try {
-                if (logWriter != null) logWriter.close();
-            } catch (IOException e) {
-                System.err.println(RED + "Utils.Logger: Error closing log file: " + e.getMessage() + RESET);
-            }
+        throttle.flush(this);
+        if (asyncEnabled) {
+            AsyncLogWriter.shared().drain();
+        }
+        if (stagedEnabled) {
+            StagedLogWriter.shared().drain();
         }
+        ConsoleOutput.shared().flush();
+        LogSink current = sink;
+        if (current != null && durability != Durability.LINE) current.flush();
+        releaseSink();
     }
 
     /**
@@ -155,7 +565,8 @@ public class Logger {
      * @param message message to log
      */
     public void debug(String message) {
-        log(0, message, PURPLE);
+        if (FlightRecorder.enabled) FlightRecorder.capture(loggerName, 0, message);
+        if (shouldLog(0) && admit(0, message)) log(0, message);
     }
 
     /**
@@ -163,7 +574,8 @@ public class Logger {
      * @param message message to log
      */
     public void info(String message) {
-        log(1, message, CYAN);
+        if (FlightRecorder.enabled) FlightRecorder.capture(loggerName, 1, message);
+        if (shouldLog(1) && admit(1, message)) log(1, message);
     }
 
     /**
@@ -171,7 +583,8 @@ public class Logger {
      * @param message message to log
      */
     public void warning(String message) {
-        log(2, message, YELLOW);
+        if (FlightRecorder.enabled) FlightRecorder.capture(loggerName, 2, message);
+        if (shouldLog(2) && admit(2, message)) log(2, message);
     }
 
     /**
@@ -179,112 +592,545 @@ public class Logger {
      * @param message message to log
      */
     public void error(String message) {
-        log(3, message, RED);
+        if (FlightRecorder.enabled) FlightRecorder.capture(loggerName, 3, message);
+        if (shouldLog(3) && admit(3, message)) log(3, message);
+    }
+
+    /**
+     * Logs a DEBUG message built by the supplier, which is only called if DEBUG is enabled.
+     * @param messageSupplier supplies the message to log
+     */
+    public void debug(Supplier<String> messageSupplier) {
+        boolean loggable = shouldLog(0);
+        String captured = FlightRecorder.enabled ? FlightRecorder.capture(loggerName, 0, messageSupplier, loggable) : null;
+        if (loggable && messageSupplier != null) logIfAdmitted(0, captured != null ? captured : messageSupplier.get());
+    }
+
+    /**
+     * Logs a DEBUG message, replacing the {} placeholder in the pattern with the argument.
+     * @param pattern message pattern
+     * @param arg placeholder value
+     */
+    public void debug(String pattern, Object arg) {
+        if (FlightRecorder.enabled) FlightRecorder.capture(loggerName, 0, pattern, arg);
+        if (shouldLog(0) && admit(0, pattern)) log(0, MessageFormatter.format(pattern, arg));
+    }
+
+    /**
+     * Logs a DEBUG message, replacing the {} placeholders in the pattern with the arguments.
+     * @param pattern message pattern
+     * @param arg1 first placeholder value
+     * @param arg2 second placeholder value
+     */
+    public void debug(String pattern, Object arg1, Object arg2) {
+        if (FlightRecorder.enabled) FlightRecorder.capture(loggerName, 0, pattern, arg1, arg2);
+        if (shouldLog(0) && admit(0, pattern)) log(0, MessageFormatter.format(pattern, arg1, arg2));
+    }
+
+    /**
+     * Logs a DEBUG message, replacing the {} placeholders in the pattern with the arguments.
+     * @param pattern message pattern
+     * @param args placeholder values
+     */
+    public void debug(String pattern, Object... args) {
+        if (FlightRecorder.enabled) FlightRecorder.capture(loggerName, 0, pattern, args);
+        if (shouldLog(0) && admit(0, pattern)) log(0, MessageFormatter.format(pattern, args));
+    }
+
+    /**
+     * Logs a INFO message built by the supplier, which is only called if INFO is enabled.
+     * @param messageSupplier supplies the message to log
+     */
+    public void info(Supplier<String> messageSupplier) {
+        boolean loggable = shouldLog(1);
+        String captured = FlightRecorder.enabled ? FlightRecorder.capture(loggerName, 1, messageSupplier, loggable) : null;
+        if (loggable && messageSupplier != null) logIfAdmitted(1, captured != null ? captured : messageSupplier.get());
+    }
+
+    /**
+     * Logs a INFO message, replacing the {} placeholder in the pattern with the argument.
+     * @param pattern message pattern
+     * @param arg placeholder value
+     */
+    public void info(String pattern, Object arg) {
+        if (FlightRecorder.enabled) FlightRecorder.capture(loggerName, 1, pattern, arg);
+        if (shouldLog(1) && admit(1, pattern)) log(1, MessageFormatter.format(pattern, arg));
+    }
+
+    /**
+     * Logs a INFO message, replacing the {} placeholders in the pattern with the arguments.
+     * @param pattern message pattern
+     * @param arg1 first placeholder value
+     * @param arg2 second placeholder value
+     */
+    public void info(String pattern, Object arg1, Object arg2) {
+        if (FlightRecorder.enabled) FlightRecorder.capture(loggerName, 1, pattern, arg1, arg2);
+        if (shouldLog(1) && admit(1, pattern)) log(1, MessageFormatter.format(pattern, arg1, arg2));
+    }
+
+    /**
+     * Logs a INFO message, replacing the {} placeholders in the pattern with the arguments.
+     * @param pattern message pattern
+     * @param args placeholder values
+     */
+    public void info(String pattern, Object... args) {
+        if (FlightRecorder.enabled) FlightRecorder.capture(loggerName, 1, pattern, args);
+        if (shouldLog(1) && admit(1, pattern)) log(1, MessageFormatter.format(pattern, args));
+    }
+
+    /**
+     * Logs a WARNING message built by the supplier, which is only called if WARNING is enabled.
+     * @param messageSupplier supplies the message to log
+     */
+    public void warning(Supplier<String> messageSupplier) {
+        boolean loggable = shouldLog(2);
+        String captured = FlightRecorder.enabled ? FlightRecorder.capture(loggerName, 2, messageSupplier, loggable) : null;
+        if (loggable && messageSupplier != null) logIfAdmitted(2, captured != null ? captured : messageSupplier.get());
+    }
+
+    /**
+     * Logs a WARNING message, replacing the {} placeholder in the pattern with the argument.
+     * @param pattern message pattern
+     * @param arg placeholder value
+     */
+    public void warning(String pattern, Object arg) {
+        if (FlightRecorder.enabled) FlightRecorder.capture(loggerName, 2, pattern, arg);
+        if (shouldLog(2) && admit(2, pattern)) log(2, MessageFormatter.format(pattern, arg));
+    }
+
+    /**
+     * Logs a WARNING message, replacing the {} placeholders in the pattern with the arguments.
+     * @param pattern message pattern
+     * @param arg1 first placeholder value
+     * @param arg2 second placeholder value
+     */
+    public void warning(String pattern, Object arg1, Object arg2) {
+        if (FlightRecorder.enabled) FlightRecorder.capture(loggerName, 2, pattern, arg1, arg2);
+        if (shouldLog(2) && admit(2, pattern)) log(2, MessageFormatter.format(pattern, arg1, arg2));
+    }
+
+    /**
+     * Logs a WARNING message, replacing the {} placeholders in the pattern with the arguments.
+     * @param pattern message pattern
+     * @param args placeholder values
+     */
+    public void warning(String pattern, Object... args) {
+        if (FlightRecorder.enabled) FlightRecorder.capture(loggerName, 2, pattern, args);
+        if (shouldLog(2) && admit(2, pattern)) log(2, MessageFormatter.format(pattern, args));
+    }
+
+    /**
+     * Logs a ERROR message built by the supplier, which is only called if ERROR is enabled.
+     * @param messageSupplier supplies the message to log
+     */
+    public void error(Supplier<String> messageSupplier) {
+        boolean loggable = shouldLog(3);
+        String captured = FlightRecorder.enabled ? FlightRecorder.capture(loggerName, 3, messageSupplier, loggable) : null;
+        if (loggable && messageSupplier != null) logIfAdmitted(3, captured != null ? captured : messageSupplier.get());
+    }
+
+    /**
+     * Logs a ERROR message, replacing the {} placeholder in the pattern with the argument.
+     * @param pattern message pattern
+     * @param arg placeholder value
+     */
+    public void error(String pattern, Object arg) {
+        if (FlightRecorder.enabled) FlightRecorder.capture(loggerName, 3, pattern, arg);
+        if (shouldLog(3) && admit(3, pattern)) log(3, MessageFormatter.format(pattern, arg));
+    }
+
+    /**
+     * Logs a ERROR message, replacing the {} placeholders in the pattern with the arguments.
+     * @param pattern message pattern
+     * @param arg1 first placeholder value
+     * @param arg2 second placeholder value
+     */
+    public void error(String pattern, Object arg1, Object arg2) {
+        if (FlightRecorder.enabled) FlightRecorder.capture(loggerName, 3, pattern, arg1, arg2);
+        if (shouldLog(3) && admit(3, pattern)) log(3, MessageFormatter.format(pattern, arg1, arg2));
+    }
+
+    /**
+     * Logs a ERROR message, replacing the {} placeholders in the pattern with the arguments.
+     * @param pattern message pattern
+     * @param args placeholder values
+     */
+    public void error(String pattern, Object... args) {
+        if (FlightRecorder.enabled) FlightRecorder.capture(loggerName, 3, pattern, args);
+        if (shouldLog(3) && admit(3, pattern)) log(3, MessageFormatter.format(pattern, args));
+    }
+
+    // Primitive overloads for the hot DEBUG path: no boxing when DEBUG is disabled.
+
+    /**
+     * Logs a DEBUG message with one integral placeholder value.
+     * @param pattern message pattern
+     * @param arg placeholder value
+     */
+    public void debug(String pattern, long arg) {
+        if (FlightRecorder.enabled) FlightRecorder.capture(loggerName, 0, pattern, arg);
+        if (shouldLog(0) && admit(0, pattern)) log(0, MessageFormatter.format(pattern, arg));
+    }
+
+    /**
+     * Logs a DEBUG message with one floating-point placeholder value.
+     * @param pattern message pattern
+     * @param arg placeholder value
+     */
+    public void debug(String pattern, double arg) {
+        if (FlightRecorder.enabled) FlightRecorder.capture(loggerName, 0, pattern, arg);
+        if (shouldLog(0) && admit(0, pattern)) log(0, MessageFormatter.format(pattern, arg));
+    }
+
+    /**
+     * Logs a DEBUG message with one character placeholder value.
+     * @param pattern message pattern
+     * @param arg placeholder value
+     */
+    public void debug(String pattern, char arg) {
+        if (FlightRecorder.enabled) FlightRecorder.capture(loggerName, 0, pattern, arg);
+        if (shouldLog(0) && admit(0, pattern)) log(0, MessageFormatter.format(pattern, arg));
+    }
+
+    /**
+     * Logs a DEBUG message with two floating-point placeholder values.
+     * @param pattern message pattern
+     * @param arg1 first placeholder value
+     * @param arg2 second placeholder value
+     */
+    public void debug(String pattern, double arg1, double arg2) {
+        if (FlightRecorder.enabled) FlightRecorder.capture(loggerName, 0, pattern, arg1, arg2);
+        if (shouldLog(0) && admit(0, pattern)) log(0, MessageFormatter.format(pattern, arg1, arg2));
+    }
+
+    /**
+     * Logs a DEBUG message with an object and a floating-point placeholder value.
+     * @param pattern message pattern
+     * @param arg1 first placeholder value
+     * @param arg2 second placeholder value
+     */
+    public void debug(String pattern, Object arg1, double arg2) {
+        if (FlightRecorder.enabled) FlightRecorder.capture(loggerName, 0, pattern, arg1, arg2);
+        if (shouldLog(0) && admit(0, pattern)) log(0, MessageFormatter.format(pattern, arg1, arg2));
+    }
+
+    // --- Structured events ---
+
+    /**
+     * Starts a DEBUG event with structured fields, e.g.
+     * {@code logger.atDebug().field("km", km).log("Driving")}.
+     * @return the event; ignores its fields if DEBUG is disabled
+     */
+    public LogEvent atDebug() {
+        return startEvent(0);
+    }
+
+    /**
+     * Starts an INFO event with structured fields.
+     * @return the event; ignores its fields if INFO is disabled
+     */
+    public LogEvent atInfo() {
+        return startEvent(1);
+    }
+
+    /**
+     * Starts a WARNING event with structured fields.
+     * @return the event; ignores its fields if WARNING is disabled
+     */
+    public LogEvent atWarning() {
+        return startEvent(2);
+    }
+
+    /**
+     * Starts an ERROR event with structured fields.
+     * @return the event; ignores its fields if ERROR is disabled
+     */
+    public LogEvent atError() {
+        return startEvent(3);
+    }
+
+    /**
+     * Returns whether messages of the given level are currently logged.
+     * @param level 0=DEBUG, 1=INFO, 2=WARNING, 3=ERROR
+     * @return true if the level is enabled
+     */
+    public boolean isEnabled(int level) {
+        return level >= 0 && level < LOG_LEVELS.length && isLoggable(level);
+    }
+
+    /**
+     * Returns whether DEBUG messages are currently logged.
+     * @return true if DEBUG is enabled
+     */
+    public boolean isDebugEnabled() {
+        return isLoggable(0);
     }
 
     // --- Internal Methods ---
 
+    /**
+     * Returns whether a message of the given level passes the level check.
+     * Internal callers only pass valid levels, so this is a single compare.
+     */
+    private boolean isLoggable(int level) {
+        return level >= threshold;
+    }
+
+    /**
+     * Asks the throttle whether a line may be written.
+     */
+    private boolean admit(int level, String key) {
+        return throttle.admit(level, key == null ? "" : key, this);
+    }
+
+    private void logIfAdmitted(int level, String message) {
+        if (admit(level, message)) log(level, message);
+    }
+
+    /**
+     * Hands out the thread's event, or the no-op event if nothing would record it.
+     */
+    private LogEvent startEvent(int level) {
+        if (isLoggable(level) || FlightRecorder.enabled) return LogEvent.start(this, level);
+        LoggerMetrics.recordSuppressed(level);
+        return LogEvent.disabled();
+    }
+
+    /**
+     * Logs a finished {@link LogEvent}. The key is the message pattern, used
+     * for duplicate suppression like the pattern of a {@code {}} message.
+     */
+    void logEvent(int level, String key, String message, LogFields fields) {
+        if (FlightRecorder.enabled) FlightRecorder.capture(loggerName, level, message, fields);
+        if (shouldLog(level) && admit(level, key)) log(level, message, fields);
+    }
+
+    /**
+     * Writes a throttle summary line, bypassing the throttle.
+     */
+    void logSummary(int level, String message) {
+        log(level, message);
+    }
+
+    private static void checkLevel(int level) {
+        if (level < 0 || level >= LOG_LEVELS.length) {
+            throw new IllegalArgumentException("Invalid log level: " + level);
+        }
+    }
+
+    /**
+     * Stores a new level and the threshold derived from it.
+     */
+    private void updateLevel(int level) {
+        this.logLevel = level;
+        this.threshold = level == -1 ? OFF_THRESHOLD : level;
+    }
+
+    /**
+     * Applies the level {@link LoggerConfig} resolved for this logger. Without a
+     * matching rule, a level that came from an earlier configuration falls back
+     * to the default; a level set with {@link #setLogLevel(int)} is kept.
+     * @param level the configured level, or {@link LoggerConfig#NOT_SET}
+     */
+    void applyConfiguredLevel(int level) {
+        if (level != LoggerConfig.NOT_SET) {
+            updateLevel(level);
+            levelFromConfig = true;
+        } else if (levelFromConfig) {
+            updateLevel(DEFAULT_LOG_LEVEL);
+            levelFromConfig = false;
+        }
+    }
+
+    /**
+     * Replaces the appenders this logger routes to. Called by {@link LogRoutes}.
+     */
+    void setRoutes(LogRoutes.Route[] routes) {
+        this.routes = routes;
+    }
+
+    /**
+     * Returns the name configuration rules are matched against.
+     * @return the fully qualified class name or the name given to the constructor
+     */
+    String getConfigName() {
+        return configName;
+    }
+
+    /**
+     * Returns whether a log call of the given level goes ahead, counting it as
+     * suppressed in {@link LoggerMetrics} if it does not.
+     */
+    private boolean shouldLog(int level) {
+        if (isLoggable(level)) return true;
+        LoggerMetrics.recordSuppressed(level);
+        return false;
+    }
+
     /**
      * Logs a message to the appropriate outputs if enabled and level is met.
      * Applies thread safety for file writes.
      */
-    private void log(int level, String message, String color) {
-        if (logLevel == -1) return;
-        if (level < logLevel || level >= LOG_LEVELS.length || message == null) return;
+    private void log(int level, String message) {
+        log(level, message, LogFields.EMPTY);
+    }
+
+    /**
+     * Logs a message with structured fields. The fields belong to the calling
+     * thread's event, so records that outlive this call get a copy.
+     */
+    private void log(int level, String message, LogFields fields) {
+        if (!shouldLog(level) || message == null) return;
+        LoggerMetrics.recordEmitted(level);
+        emittedCounter.increment();
 
-        String timestamp = LOG_DTF.format(LocalDateTime.now());
-        String methodName = getCallingMethodName();
-        String logLine = formatLogLine(timestamp, LOG_LEVELS[level], loggerName, methodName, message);
+        LogRoutes.Route[] currentRoutes = routes;
+        if (!fields.isEmpty() && (asyncEnabled || stagedEnabled || currentRoutes.length > 0)) fields = fields.copy();
+        LogRecord record = new LogRecord(System.currentTimeMillis(), level, loggerName, getCallerMethod(), message, fields, null);
+        // Binary files store the raw fields, so the text line is only built when someone reads it
+        if (consoleLoggingEnabled || fileFormat == FileFormat.TEXT) {
+            record = record.withLine(layout.format(record));
+        }
 
         if (consoleLoggingEnabled) {
-            printToConsole(logLine, color);
+            printToConsole(record.toLine(), level);
         }
         if (fileLoggingEnabled && !fileWriteError) {
-            writeToFile(logLine);
+            writeToFile(record);
+        }
+        for (LogRoutes.Route route : currentRoutes) {
+            route.append(record);
         }
     }
 
     /**
-     * Gets the name of the calling method for log context.
-     * @return method name as a string
+     * Gets the calling method for log context. The stack walk stops at the
+     * first frame outside Logger.
+     * @return method name ("method:line" in FULL mode), or null if capture is off
      */
-    private String getCallingMethodName() {
-        StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
-        for (StackTraceElement ste : stackTrace) {
-            if (!ste.getClassName().equals(Logger.class.getName()) &&
-                    !ste.getClassName().equals(Thread.class.getName())) {
-                return ste.getMethodName();
-            }
+    private String getCallerMethod() {
+        LocationCapture capture = locationCapture;
+        if (capture == LocationCapture.NONE) return null;
+        StackWalker.StackFrame caller = STACK_WALKER.walk(FIND_CALLER);
+        String methodName = caller != null ? caller.getMethodName() : "UnknownMethod";
+        if (capture == LocationCapture.FULL) {
+            return methodName + ":" + (caller != null ? caller.getLineNumber() : -1);
         }
-        return "UnknownMethod";
+        return methodName;
+    }
+
+    /**
+     * Returns the name of a log level.
+     */
+    static String levelName(int level) {
+        return level >= 0 && level < LOG_LEVELS.length ? LOG_LEVELS[level] : "OFF";
+    }
+
+    /**
+     * Formats an epoch-millis time as the timestamp column. The rendered text
+     * is cached and only rebuilt when the second changes.
+     */
+    static String formatTimestamp(long epochMillis) {
+        return TIMESTAMPS.format(epochMillis);
     }
 
     /**
      * Formats a log line for output.
      */
-    private String formatLogLine(String timestamp, String level, String loggerName, String methodName, String message) {
+    static String formatLogLine(String timestamp, String level, String location, String message) {
         return String.format("%s %-9s %-32s %s",
                 timestamp,
                 "[" + level + "]",
-                "[" + loggerName + "." + methodName + "]",
+                location,
                 message);
     }
 
     /**
-     * Prints a log line to the console with color.
+     * Prints a log line to the console in its level's color.
+     */
+    private void printToConsole(String logLine, int level) {
+        ConsoleOutput.shared().append(level, logLine);
+    }
+
+    /**
+     * Writes a log record to the shared log file, directly or through the
+     * staged or async writer.
      */
-    private void printToConsole(String logLine, String color) {
-        System.out.println(color + logLine + RESET);
+    private void writeToFile(LogRecord record) {
+        LogSink fileSink = acquireSink();
+        if (fileSink == null) return;
+        long start = System.nanoTime();
+        if (stagedEnabled) {
+            StagedLogWriter.shared().submit(fileSink, record);
+        } else if (asyncEnabled) {
+            AsyncLogWriter.shared().submit(fileSink, record);
+        } else if (!fileSink.write(record, durability)) {
+            handleFileWriteError();
+        }
+        LoggerMetrics.recordWriteLatency(System.nanoTime() - start);
     }
 
     /**
-     * Writes a log line to the log file, performing rotation if needed.
-     * Synchronized for thread safety.
+     * Returns this logger's sink, acquiring it from the registry on first use.
+     * Once acquired, the sink is read without taking the logger's lock, so
+     * threads sharing a logger do not queue here.
+     * @return the sink, or null if file logging failed
      */
-    private void writeToFile(String logLine) {
+    private LogSink acquireSink() {
+        LogSink current = sink;
+        if (current != null && !current.hasWriteError()) return current;
         synchronized (this) {
-            if (fileWriteError || logWriter == null) return;
-            try {
-                rotateLogFileIfNeeded();
-                logWriter.write(logLine);
-                logWriter.newLine();
-                logWriter.flush();
-            } catch (IOException e) {
-                handleFileWriteError(e);
+            if (sink == null) {
+                try {
+                    sink = LogSinkRegistry.acquire(logFilePath, appendToFile, fileFormat);
+                    applySinkSettings(sink);
+                } catch (IOException e) {
+                    fileWriteError = true;
+                    fileLoggingEnabled = false;
+                    LoggerMetrics.recordWriteError();
+                    System.err.println(RED + "Utils.Logger: Failed to initialize log file. File logging disabled. Error: " + e.getMessage() + RESET);
+                    return null;
+                }
+            } else if (sink.hasWriteError()) {
+                handleFileWriteError();
+                return null;
             }
+            return sink;
         }
     }
 
     /**
-     * Checks the log file size and rotates to a new file if over the limit.
+     * Pushes the rotation settings configured on this logger to its sink.
      */
-    private void rotateLogFileIfNeeded() throws IOException {
-        if (logFilePath != null && Files.exists(logFilePath) && Files.size(logFilePath) >= maxFileSize) {
-            rotateLogFile();
-        }
+    private void applySinkSettings(LogSink target) {
+        if (maxFileSize > 0) target.setMaxFileSize(maxFileSize);
+        if (rotationInterval != null) target.setRotationInterval(rotationInterval);
+        if (compressRotatedFiles != null) target.setCompressRotatedFiles(compressRotatedFiles);
+        if (maxRetainedSegments >= 0) target.setMaxRetainedSegments(maxRetainedSegments);
+        if (memoryMapped != null) target.setMemoryMapped(memoryMapped);
+        if (indexEnabled != null) target.setIndexEnabled(indexEnabled);
+        if (flushLines > 0) target.setFlushBatch(flushLines, flushMillis);
     }
 
     /**
-     * Rotates the log file by closing the current one and creating a new file
-     * with an incremented index.
+     * Releases this logger's reference to its sink, if it holds one.
      */
-    private void rotateLogFile() throws IOException {
-        logWriter.close();
-        logFileIndex++;
-        String baseName = logFilePath.getFileName().toString().replaceAll("\\.txt$", "");
-        Path newPath = Paths.get(baseName + "_part" + logFileIndex + ".txt");
-        logFilePath = newPath;
-        logWriter = new BufferedWriter(new FileWriter(logFilePath.toFile(), appendToFile));
-        System.out.println(YELLOW + "Utils.Logger: Log file rotated to " + logFilePath + RESET);
+    private void releaseSink() {
+        synchronized (this) {
+            if (sink != null) {
+                LogSinkRegistry.release(sink);
+                sink = null;
+            }
+        }
     }
 
     /**
-     * Handles file write errors by disabling file logging and warning the user.
+     * Handles file write errors by disabling file logging for this logger.
+     * The sink has already reported the error.
      */
-    private void handleFileWriteError(IOException e) {
+    private void handleFileWriteError() {
         fileWriteError = true;
         fileLoggingEnabled = false;
-        System.err.println(RED + "Utils.Logger: Error writing to log file. File logging disabled. Error: " + e.getMessage() + RESET);
     }
 
     /**
@@ -298,46 +1144,34 @@ public class Logger {
                             "[INFO]",
                             "[" + loggerName + "]",
                             "Logging is now turned OFF."
-                    ), CYAN);
+                    ), 1);
         } else if (newLogLevel != -1) {
             info("Log level set to: " + LOG_LEVELS[newLogLevel]);
         }
     }
 
     /**
-     * Initializes the log file. Uses "log.txt" in append mode, or a timestamped
-     * file for new-per-run mode.
+     * Initializes the log file path. Uses "log.txt" in append mode, or a timestamped
+     * file for new-per-run mode. The file itself is opened on the first write.
      */
     private void initializeLogFile() {
         synchronized (this) {
-            try {
-                if (appendToFile) {
-                    logFilePath = Paths.get("log.txt"); // Always append to this file
-                } else {
-                    String baseName = "log_" + FILE_DTF.format(LocalDateTime.now());
-                    logFilePath = Paths.get(baseName + ".txt"); // New file per run
-                }
-                logWriter = new BufferedWriter(new FileWriter(logFilePath.toFile(), appendToFile));
-                logFileIndex = 0;
-                fileWriteError = false;
-            } catch (IOException e) {
-                fileWriteError = true;
-                fileLoggingEnabled = false;
-                System.err.println(RED + "Utils.Logger: Failed to initialize log file. File logging disabled. Error: " + e.getMessage() + RESET);
+            if (appendToFile) {
+                logFilePath = Paths.get("log" + fileFormat.getExtension()); // Always append to this file
+            } else {
+                String baseName = "log_" + FILE_DTF.format(LocalDateTime.now());
+                logFilePath = Paths.get(baseName + fileFormat.getExtension()); // New file per run
             }
+            fileWriteError = false;
         }
     }
 
     /**
-     * Re-initializes the log file, closing the previous writer if present.
+     * Re-initializes the log file, releasing the previous sink if present.
      */
     private void reinitializeLogFile() {
         synchronized (this) {
-            try {
-                if (logWriter != null) {
-                    logWriter.close();
-                }
-            } catch (IOException ignored) {}
+            releaseSink();
             initializeLogFile();
         }
     }
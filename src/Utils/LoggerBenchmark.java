@@ -0,0 +1,361 @@
+package Utils;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.stream.Stream;
+
+/**
+ * Simple timing comparisons for Utils.Logger internals.
+ * Run with: java Utils.LoggerBenchmark
+ * <p>
+ * Each benchmark runs a warm-up round before the measured rounds and prints
+ * the average cost per line. Numbers are indicative only; run on an idle machine.
+ */
+public class LoggerBenchmark {
+    // Colored output
+    private static final String RESET = "\u001B[0m";
+    private static final String CYAN = "\u001B[36m";
+    private static final String GREEN = "\u001B[32m";
+
+    private static final int LINES = 500_000;
+    private static final int ROUNDS = 5;
+    private static final String SAMPLE_LINE =
+            "2025-08-02 18:07:46 [DEBUG]   [PassengerVehicle.refuel]        Tank level after refueling: 50.0";
+    private static final LogRecord SAMPLE_RECORD = new LogRecord(System.currentTimeMillis(), 0,
+            "PassengerVehicle", "refuel", "Tank level after refueling: 50.0", SAMPLE_LINE);
+
+    private static final int TIMESTAMPS = 5_000_000;
+    private static final int THREADS = 4;
+    private static final int CONSOLE_LINES = 200_000;
+    private static final int CONTENTION_LINES = 256_000;
+    private static final int[] CONTENTION_THREADS = {1, 4, 16, 64};
+    private static final int FSYNC_LINES = 2_000;
+
+    // Keeps results alive so the JIT cannot drop the measured work
+    private static volatile int sink;
+
+    public static void main(String[] args) throws IOException {
+        benchmarkFileOutputs();
+        benchmarkTimestamps();
+        benchmarkConsole();
+        benchmarkLayouts();
+        benchmarkJson();
+        benchmarkContention();
+        benchmarkDurability();
+    }
+
+    // --- File output: buffered writer vs memory-mapped ---
+
+    private static void benchmarkFileOutputs() throws IOException {
+        printHeader("File output: BufferedWriter vs MappedByteBuffer (" + LINES + " lines, flush per line)");
+        Path dir = Files.createTempDirectory("logger-benchmark");
+        double writer = measureSink(dir.resolve("writer.txt"), false);
+        double mapped = measureSink(dir.resolve("mapped.txt"), true);
+        printResult("BufferedWriter", writer);
+        printResult("MappedByteBuffer", mapped);
+        printSpeedup(writer, mapped);
+        Files.deleteIfExists(dir);
+    }
+
+    private static double measureSink(Path path, boolean memoryMapped) throws IOException {
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round <= ROUNDS; round++) {
+            LogSink sink = new LogSink(path, false);
+            sink.setMaxFileSize(Long.MAX_VALUE);
+            sink.setMemoryMapped(memoryMapped);
+            long start = System.nanoTime();
+            for (int i = 0; i < LINES; i++) {
+                sink.write(SAMPLE_RECORD);
+            }
+            sink.close();
+            double nanosPerLine = (System.nanoTime() - start) / (double) LINES;
+            if (round > 0) best = Math.min(best, nanosPerLine); // round 0 is warm-up
+        }
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(LogIndex.indexPath(path));
+        return best;
+    }
+
+    // --- Timestamp column: format per line vs cached per second ---
+
+    private static void benchmarkTimestamps() {
+        printHeader("Timestamp column: DateTimeFormatter per line vs TimestampCache (" + TIMESTAMPS + " lines)");
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        TimestampCache cache = new TimestampCache("yyyy-MM-dd HH:mm:ss");
+        Runnable perLine = () -> {
+            int total = 0;
+            for (int i = 0; i < TIMESTAMPS; i++) {
+                total += formatter.format(LocalDateTime.now()).length();
+            }
+            sink = total;
+        };
+        Runnable cached = () -> {
+            int total = 0;
+            for (int i = 0; i < TIMESTAMPS; i++) {
+                total += cache.now().length();
+            }
+            sink = total;
+        };
+        double direct = measure(perLine, 1, TIMESTAMPS);
+        double fast = measure(cached, 1, TIMESTAMPS);
+        printResult("Format per line", direct);
+        printResult("TimestampCache", fast);
+        printSpeedup(direct, fast);
+        double directThreads = measure(perLine, THREADS, TIMESTAMPS);
+        double fastThreads = measure(cached, THREADS, TIMESTAMPS);
+        printResult("Format per line, " + THREADS + " thr", directThreads);
+        printResult("TimestampCache, " + THREADS + " thr", fastThreads);
+        printSpeedup(directThreads, fastThreads);
+    }
+
+    // --- Console: println per line vs batched ConsoleOutput ---
+
+    /**
+     * Both variants write to a file instead of the terminal, so the numbers show
+     * the cost of locking and per-line flushing rather than of the terminal itself.
+     */
+    private static void benchmarkConsole() throws IOException {
+        printHeader("Console output: println per line vs batched ConsoleOutput (" + CONSOLE_LINES + " lines/thread)");
+        Path dir = Files.createTempDirectory("logger-benchmark");
+        Path printed = dir.resolve("println.txt");
+        Path batched = dir.resolve("batched.txt");
+        PrintStream originalOut = System.out;
+        PrintStream fileOut = new PrintStream(new FileOutputStream(printed.toFile()), true);
+        ConsoleOutput direct = new ConsoleOutput(null, true, 0, ConsoleOutput.DEFAULT_FLUSH_INTERVAL_MILLIS);
+        ConsoleOutput buffered = new ConsoleOutput(new FileOutputStream(batched.toFile()), true,
+                ConsoleOutput.DEFAULT_BATCH_BYTES, ConsoleOutput.DEFAULT_FLUSH_INTERVAL_MILLIS);
+        buffered.start();
+        Runnable perLine = () -> {
+            for (int i = 0; i < CONSOLE_LINES; i++) {
+                direct.append(1, SAMPLE_LINE);
+            }
+        };
+        Runnable perBatch = () -> {
+            for (int i = 0; i < CONSOLE_LINES; i++) {
+                buffered.append(1, SAMPLE_LINE);
+            }
+            buffered.flush();
+        };
+        double[] results = new double[4];
+        System.setOut(fileOut);
+        try {
+            results[0] = measure(perLine, 1, CONSOLE_LINES);
+            results[2] = measure(perLine, THREADS, CONSOLE_LINES);
+        } finally {
+            System.setOut(originalOut);
+            fileOut.close();
+        }
+        results[1] = measure(perBatch, 1, CONSOLE_LINES);
+        results[3] = measure(perBatch, THREADS, CONSOLE_LINES);
+        buffered.shutdown();
+        printResult("println per line", results[0]);
+        printResult("ConsoleOutput batched", results[1]);
+        printSpeedup(results[0], results[1]);
+        printResult("println, " + THREADS + " thr", results[2]);
+        printResult("batched, " + THREADS + " thr", results[3]);
+        printSpeedup(results[2], results[3]);
+        Files.deleteIfExists(printed);
+        Files.deleteIfExists(batched);
+        Files.deleteIfExists(dir);
+    }
+
+    // --- Line layout: String.format per line vs compiled Layout ---
+
+    private static void benchmarkLayouts() {
+        printHeader("Line layout: String.format vs compiled Layout (" + LINES + " lines)");
+        LogRecord record = new LogRecord(SAMPLE_RECORD.getEpochMillis(), 0, "PassengerVehicle", "refuel",
+                "Tank level after refueling: 50.0", null);
+        Runnable formatted = () -> {
+            int total = 0;
+            for (int i = 0; i < LINES; i++) {
+                total += Logger.formatLogLine(Logger.formatTimestamp(record.getEpochMillis()), record.getLevelName(),
+                        record.getLocation(), record.getMessage()).length();
+            }
+            sink = total;
+        };
+        Runnable compiled = () -> {
+            int total = 0;
+            for (int i = 0; i < LINES; i++) {
+                total += Layout.DEFAULT.format(record).length();
+            }
+            sink = total;
+        };
+        double format = measure(formatted, 1, LINES);
+        double layout = measure(compiled, 1, LINES);
+        printResult("String.format", format);
+        printResult("Layout.DEFAULT", layout);
+        printSpeedup(format, layout);
+    }
+
+    // --- JSON lines: String per record vs reused byte buffer ---
+
+    private static void benchmarkJson() {
+        printHeader("JSON lines: String + getBytes vs JsonEncoder byte buffer (" + LINES + " lines)");
+        LogFields fields = new LogFields(4);
+        fields.add("vehicleClass", LogFields.STRING, 0, "PassengerVehicle");
+        fields.add("tankLevel", LogFields.DOUBLE, Double.doubleToRawLongBits(50.0), null);
+        fields.add("employeeId", LogFields.LONG, 5002, null);
+        LogRecord record = new LogRecord(SAMPLE_RECORD.getEpochMillis(), 0, "PassengerVehicle", "refuel",
+                "Tank level after refueling: 50.0", fields, null);
+        Runnable viaString = () -> {
+            int total = 0;
+            for (int i = 0; i < LINES; i++) {
+                total += JsonLinesAppender.toJson(record).getBytes(StandardCharsets.UTF_8).length;
+            }
+            sink = total;
+        };
+        Runnable viaBuffer = () -> {
+            JsonEncoder encoder = new JsonEncoder();
+            int total = 0;
+            for (int i = 0; i < LINES; i++) {
+                total += encoder.encode(record);
+            }
+            sink = total;
+        };
+        double strings = measure(viaString, 1, LINES);
+        double buffer = measure(viaBuffer, 1, LINES);
+        printResult("String + getBytes", strings);
+        printResult("JsonEncoder", buffer);
+        printSpeedup(strings, buffer);
+    }
+
+    // --- Many threads, one file: synchronized sink vs shared ring vs per-thread stages ---
+
+    /**
+     * All threads write one file. The synchronized path is what a logger does
+     * without async or staged mode: every thread takes the sink's lock and
+     * flushes its line. The queued variants include draining to the file, so
+     * the numbers are end-to-end. Total lines are split across the threads.
+     */
+    private static void benchmarkContention() throws IOException {
+        printHeader("Contention: synchronized sink vs AsyncLogWriter vs StagedLogWriter (" + CONTENTION_LINES + " lines total)");
+        Path dir = Files.createTempDirectory("logger-benchmark");
+        for (int threads : CONTENTION_THREADS) {
+            int perThread = CONTENTION_LINES / threads;
+            LogSink sink = new LogSink(dir.resolve("contention.txt"), false);
+            sink.setMaxFileSize(Long.MAX_VALUE);
+            sink.setIndexEnabled(false);
+            AsyncLogWriter ring = new AsyncLogWriter(AsyncLogWriter.DEFAULT_CAPACITY, AsyncLogWriter.OverflowPolicy.BLOCK);
+            ring.start();
+            StagedLogWriter staged = new StagedLogWriter(StagedLogWriter.DEFAULT_STAGE_CAPACITY);
+            staged.start();
+            Runnable locked = () -> {
+                for (int i = 0; i < perThread; i++) {
+                    sink.write(SAMPLE_RECORD);
+                }
+            };
+            Runnable queued = () -> {
+                for (int i = 0; i < perThread; i++) {
+                    ring.submit(sink, SAMPLE_RECORD);
+                }
+                ring.drain();
+            };
+            Runnable perThreadStage = () -> {
+                for (int i = 0; i < perThread; i++) {
+                    staged.submit(sink, SAMPLE_RECORD);
+                }
+                staged.drain();
+            };
+            double direct = measure(locked, threads, CONTENTION_LINES);
+            double async = measure(queued, threads, CONTENTION_LINES);
+            double stage = measure(perThreadStage, threads, CONTENTION_LINES);
+            ring.shutdown();
+            staged.shutdown();
+            sink.close();
+            printResult("synchronized, " + threads + " thr", direct);
+            printResult("AsyncLogWriter, " + threads + " thr", async);
+            printResult("StagedLogWriter, " + threads + " thr", stage);
+            printSpeedup(direct, stage);
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    // --- Durability: flush per line vs batched vs fsync ---
+
+    private static void benchmarkDurability() throws IOException {
+        printHeader("Durability: flush per line vs BATCH vs WARNING vs FSYNC (" + LINES + " INFO lines, FSYNC " + FSYNC_LINES + ")");
+        Path dir = Files.createTempDirectory("logger-benchmark");
+        Path file = dir.resolve("durability.txt");
+        double line = measureDurability(file, Logger.Durability.LINE, LINES);
+        double batch = measureDurability(file, Logger.Durability.BATCH, LINES);
+        double warning = measureDurability(file, Logger.Durability.WARNING, LINES);
+        double fsync = measureDurability(file, Logger.Durability.FSYNC, FSYNC_LINES);
+        printResult("LINE", line);
+        printResult("BATCH (100 lines/1s)", batch);
+        printResult("WARNING", warning);
+        printResult("FSYNC", fsync);
+        printSpeedup(line, batch);
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(dir);
+    }
+
+    private static double measureDurability(Path path, Logger.Durability durability, int lines) throws IOException {
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round <= ROUNDS; round++) {
+            LogSink sink = new LogSink(path, false);
+            sink.setMaxFileSize(Long.MAX_VALUE);
+            sink.setIndexEnabled(false);
+            long start = System.nanoTime();
+            for (int i = 0; i < lines; i++) {
+                sink.write(SAMPLE_RECORD, durability);
+            }
+            sink.close();
+            double nanosPerLine = (System.nanoTime() - start) / (double) lines;
+            if (round > 0) best = Math.min(best, nanosPerLine); // round 0 is warm-up
+        }
+        Files.deleteIfExists(LogIndex.indexPath(path));
+        return best;
+    }
+
+    /**
+     * Runs the task on the given number of threads at once and returns the best
+     * wall-clock nanoseconds per line (per thread) over the measured rounds.
+     */
+    private static double measure(Runnable task, int threads, int lines) {
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round <= ROUNDS; round++) {
+            Thread[] workers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                workers[t] = new Thread(task);
+            }
+            long start = System.nanoTime();
+            for (Thread worker : workers) worker.start();
+            for (Thread worker : workers) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return best;
+                }
+            }
+            double nanosPerLine = (System.nanoTime() - start) / (double) lines;
+            if (round > 0) best = Math.min(best, nanosPerLine); // round 0 is warm-up
+        }
+        return best;
+    }
+
+    // --- Output helpers ---
+
+    private static void printHeader(String title) {
+        System.out.println(CYAN + "== " + title + RESET);
+    }
+
+    private static void printResult(String name, double nanosPerLine) {
+        System.out.printf("  %-24s %10.1f ns/line%n", name, nanosPerLine);
+    }
+
+    private static void printSpeedup(double baseline, double candidate) {
+        System.out.println(GREEN + String.format("  Speedup: %.2fx", baseline / candidate) + RESET);
+    }
+}
@@ -0,0 +1,261 @@
+package Utils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Utils.LoggerConfig sets log levels centrally from a properties file.
+ * <p>
+ * Each key is a logger name or a prefix of one, each value a level:
+ * <pre>
+ * root=INFO
+ * Vehicles=WARNING
+ * Shapes.Triangle=ERROR
+ * </pre>
+ * A logger takes the level of the longest key that equals its name or is a
+ * dot-separated prefix of it; {@code root} applies when nothing else matches.
+ * Loggers created with {@link Logger#Logger(Class)} are matched by their fully
+ * qualified class name (e.g. "Vehicles.PassengerVehicle").
+ * <p>
+ * The level is resolved once per logger, when the logger is created and when
+ * the configuration changes, and stored as the logger's plain int threshold;
+ * the logging path only reads that field. {@link #watch(Path)} reloads the file
+ * on a background thread whenever it changes. Starting with
+ * {@code -Dlogger.config=path} watches the given file from startup.
+ * <p>
+ * A level set with {@link Logger#setLogLevel(int)} stays until the next
+ * configuration change that has a rule for the logger.
+ */
+public final class LoggerConfig {
+    /** Returned by {@link #resolve(String)} when no rule matches. */
+    public static final int NOT_SET = Integer.MIN_VALUE;
+    private static final String ROOT_KEY = "root";
+
+    private static final Set<Logger> LOGGERS = Collections.newSetFromMap(new WeakHashMap<>());
+    private static volatile LoggerConfig active = new LoggerConfig(Collections.emptyMap());
+    private static WatchService watchService;
+    private static Thread watchThread;
+
+    private final Map<String, Integer> levels;
+
+    static {
+        String configured = System.getProperty("logger.config");
+        if (configured != null && !configured.isBlank()) {
+            try {
+                watch(Paths.get(configured));
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println(Logger.RED + "Utils.LoggerConfig: Could not load " + configured + ": " + e.getMessage() + Logger.RESET);
+            }
+        }
+    }
+
+    private LoggerConfig(Map<String, Integer> levels) {
+        this.levels = levels;
+    }
+
+    // --- Parsing and resolution ---
+
+    /**
+     * Builds a configuration from properties.
+     * @param properties logger name or prefix to level name (DEBUG, INFO, WARNING, ERROR, OFF) or number
+     * @return the configuration
+     * @throws IllegalArgumentException if a level is not recognized
+     */
+    public static LoggerConfig parse(Properties properties) {
+        Map<String, Integer> levels = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            levels.put(key.trim(), parseLevel(key, properties.getProperty(key).trim()));
+        }
+        return new LoggerConfig(Collections.unmodifiableMap(levels));
+    }
+
+    /**
+     * Reads a configuration from a properties file.
+     * @param file the file
+     * @return the configuration
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a level is not recognized
+     */
+    public static LoggerConfig read(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return parse(properties);
+    }
+
+    /**
+     * Returns the level configured for a logger name.
+     * @param name the logger's hierarchical name, e.g. "Shapes.Triangle"
+     * @return 0=DEBUG, 1=INFO, 2=WARNING, 3=ERROR, -1=OFF, or {@link #NOT_SET}
+     */
+    public int resolve(String name) {
+        String key = name == null ? "" : name;
+        while (!key.isEmpty()) {
+            Integer level = levels.get(key);
+            if (level != null) return level;
+            int dot = key.lastIndexOf('.');
+            key = dot > 0 ? key.substring(0, dot) : "";
+        }
+        Integer root = levels.get(ROOT_KEY);
+        return root != null ? root : NOT_SET;
+    }
+
+    // --- Active configuration ---
+
+    /**
+     * Returns the configuration currently applied to all loggers.
+     * @return the active configuration
+     */
+    public static LoggerConfig getActive() {
+        return active;
+    }
+
+    /**
+     * Makes a configuration active and updates the threshold of every live logger.
+     * @param config the configuration
+     */
+    public static void apply(LoggerConfig config) {
+        List<Logger> loggers;
+        synchronized (LOGGERS) {
+            active = config;
+            loggers = new ArrayList<>(LOGGERS);
+        }
+        for (Logger logger : loggers) {
+            logger.applyConfiguredLevel(config.resolve(logger.getConfigName()));
+        }
+    }
+
+    /**
+     * Reads a properties file and applies it once.
+     * @param file the file
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a level is not recognized
+     */
+    public static void load(Path file) throws IOException {
+        apply(read(file));
+    }
+
+    /**
+     * Applies a properties file and keeps applying it whenever it changes.
+     * A file that fails to parse is reported and the previous levels stay in effect.
+     * Replaces any file watched before.
+     * @param file the file
+     * @throws IOException if the file cannot be read or watched
+     * @throws IllegalArgumentException if a level is not recognized
+     */
+    public static synchronized void watch(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath().normalize();
+        load(absolute);
+        stopWatching();
+        WatchService service = FileSystems.getDefault().newWatchService();
+        absolute.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        Thread thread = new Thread(() -> watchLoop(service, absolute), "Utils.LoggerConfig-watcher");
+        thread.setDaemon(true);
+        watchService = service;
+        watchThread = thread;
+        thread.start();
+    }
+
+    /**
+     * Stops reloading the watched file. Levels already applied stay in effect.
+     */
+    public static synchronized void stopWatching() {
+        if (watchService == null) return;
+        try {
+            watchService.close();
+            watchThread.join(1000);
+        } catch (IOException ignored) {
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        watchService = null;
+        watchThread = null;
+    }
+
+    // --- Logger registration ---
+
+    /**
+     * Tracks a new logger for future configuration changes and returns its configured level.
+     * Loggers are held weakly, so short-lived per-entity loggers can still be collected.
+     */
+    static int register(Logger logger) {
+        synchronized (LOGGERS) {
+            LOGGERS.add(logger);
+            return active.resolve(logger.getConfigName());
+        }
+    }
+
+    /**
+     * Returns the loggers that are still in use.
+     */
+    static List<Logger> liveLoggers() {
+        synchronized (LOGGERS) {
+            return new ArrayList<>(LOGGERS);
+        }
+    }
+
+    // --- Internal Methods ---
+
+    private static void watchLoop(WatchService service, Path file) {
+        Path fileName = file.getFileName();
+        try {
+            for (;;) {
+                WatchKey key = service.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (fileName.equals(event.context())) changed = true;
+                }
+                key.reset();
+                if (!changed) continue;
+                Thread.sleep(50); // let the editor finish writing
+                while (key.pollEvents().size() > 0) {
+                    key.reset();
+                }
+                try {
+                    load(file);
+                    System.out.println(Logger.YELLOW + "Utils.LoggerConfig: Reloaded " + file + Logger.RESET);
+                } catch (IOException | IllegalArgumentException e) {
+                    System.err.println(Logger.RED + "Utils.LoggerConfig: Failed to reload " + file
+                            + ", keeping previous levels: " + e.getMessage() + Logger.RESET);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // stopWatching() closed the service
+        }
+    }
+
+    private static int parseLevel(String key, String value) {
+        switch (value.toUpperCase()) {
+            case "DEBUG": return 0;
+            case "INFO": return 1;
+            case "WARNING": case "WARN": return 2;
+            case "ERROR": return 3;
+            case "OFF": return -1;
+            default:
+                try {
+                    int level = Integer.parseInt(value);
+                    if (level >= -1 && level <= 3) return level;
+                } catch (NumberFormatException ignored) {}
+                throw new IllegalArgumentException("Invalid level '" + value + "' for " + key);
+        }
+    }
+}
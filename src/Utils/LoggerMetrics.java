@@ -0,0 +1,333 @@
+package Utils;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Utils.LoggerMetrics counts what logging costs the process.
+ * <p>
+ * It tracks lines emitted per level and per logger name, log calls suppressed by
+ * the level check, lines dropped by a {@link LogThrottle}, bytes written,
+ * rotations, write errors, lines dropped by the async writer, and a latency
+ * histogram of file writes as seen by the logging thread (the direct write in
+ * sync mode, the hand-off in async mode).
+ * <p>
+ * Counters and latency buckets are {@link LongAdder}s, so logging threads never
+ * contend on them.
+ * Read them with {@link #snapshot()}, or over JMX after {@link #registerMBean()}
+ * (done automatically when the system property {@code logger.jmx} is "true").
+ * Latencies are kept in power-of-two buckets: bucket n holds writes that took
+ * 2^(n-1) to 2^n - 1 nanoseconds, so percentiles are reported as bucket upper bounds.
+ */
+public final class LoggerMetrics implements LoggerMetricsMXBean {
+    static final int LATENCY_BUCKETS = 48; // the last bucket also holds anything slower than ~39 hours
+
+    private static final String OBJECT_NAME = "Utils:type=LoggerMetrics";
+    private static final LoggerMetrics INSTANCE = new LoggerMetrics();
+    private static boolean registered = false;
+
+    private static final LongAdder[] EMITTED = newAdders(4);
+    private static final LongAdder[] SUPPRESSED = newAdders(4);
+    private static final LongAdder[] THROTTLED = newAdders(4);
+    private static final ConcurrentHashMap<String, LongAdder> EMITTED_BY_LOGGER = new ConcurrentHashMap<>();
+    private static final LongAdder BYTES_WRITTEN = new LongAdder();
+    private static final LongAdder ROTATIONS = new LongAdder();
+    private static final LongAdder WRITE_ERRORS = new LongAdder();
+    private static final LongAdder[] LATENCY = newAdders(LATENCY_BUCKETS);
+    private static final LongAdder LATENCY_SUM = new LongAdder();
+    private static final LongAccumulator LATENCY_MAX = new LongAccumulator(Math::max, 0);
+    private static volatile long asyncDroppedBaseline = 0;
+
+    private LoggerMetrics() {}
+
+    /**
+     * An immutable copy of all counters at one point in time.
+     */
+    public static final class Snapshot {
+        private final long[] emitted;
+        private final long[] suppressed;
+        private final long[] throttled;
+        private final Map<String, Long> emittedByLogger;
+        private final long bytesWritten;
+        private final long rotations;
+        private final long writeErrors;
+        private final long asyncDropped;
+        private final long[] latencyBuckets;
+        private final long latencySum;
+        private final long latencyMax;
+
+        private Snapshot() {
+            emitted = sum(EMITTED);
+            suppressed = sum(SUPPRESSED);
+            throttled = sum(THROTTLED);
+            Map<String, Long> byLogger = new TreeMap<>();
+            EMITTED_BY_LOGGER.forEach((name, count) -> byLogger.put(name, count.sum()));
+            emittedByLogger = Collections.unmodifiableMap(byLogger);
+            bytesWritten = BYTES_WRITTEN.sum();
+            rotations = ROTATIONS.sum();
+            writeErrors = WRITE_ERRORS.sum();
+            asyncDropped = Math.max(0, asyncDroppedTotal() - asyncDroppedBaseline);
+            latencyBuckets = new long[LATENCY_BUCKETS];
+            for (int i = 0; i < LATENCY_BUCKETS; i++) {
+                latencyBuckets[i] = LATENCY[i].sum();
+            }
+            latencySum = LATENCY_SUM.sum();
+            latencyMax = LATENCY_MAX.get();
+        }
+
+        /**
+         * Returns the lines emitted at one level.
+         * @param level 0=DEBUG, 1=INFO, 2=WARNING, 3=ERROR
+         * @return emitted line count
+         */
+        public long getEmitted(int level) {
+            return emitted[level];
+        }
+
+        /** @return lines emitted at all levels */
+        public long getEmittedTotal() {
+            return emitted[0] + emitted[1] + emitted[2] + emitted[3];
+        }
+
+        /** @return lines emitted per logger name, sorted by name */
+        public Map<String, Long> getEmittedByLogger() {
+            return emittedByLogger;
+        }
+
+        /**
+         * Returns the log calls at one level dropped by the level check.
+         * @param level 0=DEBUG, 1=INFO, 2=WARNING, 3=ERROR
+         * @return suppressed call count
+         */
+        public long getSuppressed(int level) {
+            return suppressed[level];
+        }
+
+        /** @return log calls dropped by the level check at all levels */
+        public long getSuppressedTotal() {
+            return suppressed[0] + suppressed[1] + suppressed[2] + suppressed[3];
+        }
+
+        /**
+         * Returns the lines at one level dropped by rate limiting or duplicate suppression.
+         * @param level 0=DEBUG, 1=INFO, 2=WARNING, 3=ERROR
+         * @return throttled line count
+         */
+        public long getThrottled(int level) {
+            return throttled[level];
+        }
+
+        /** @return lines dropped by rate limiting or duplicate suppression at all levels */
+        public long getThrottledTotal() {
+            return throttled[0] + throttled[1] + throttled[2] + throttled[3];
+        }
+
+        /** @return bytes written to log files */
+        public long getBytesWritten() { return bytesWritten; }
+        /** @return log file rotations */
+        public long getRotations() { return rotations; }
+        /** @return failed log file opens and writes */
+        public long getWriteErrors() { return writeErrors; }
+        /** @return lines the async writer discarded because its buffer was full */
+        public long getAsyncDropped() { return asyncDropped; }
+
+        /** @return number of timed file writes */
+        public long getWriteCount() {
+            long count = 0;
+            for (long bucket : latencyBuckets) count += bucket;
+            return count;
+        }
+
+        /** @return mean file write time in nanoseconds, 0 if nothing was written */
+        public double getWriteLatencyMeanNanos() {
+            long count = getWriteCount();
+            return count == 0 ? 0 : (double) latencySum / count;
+        }
+
+        /** @return slowest file write in nanoseconds */
+        public long getWriteLatencyMaxNanos() { return latencyMax; }
+
+        /**
+         * Returns an upper bound for the given percentile of file write times.
+         * @param percentile between 0 and 100
+         * @return upper bound of the histogram bucket holding the percentile, in nanoseconds
+         */
+        public long getWriteLatencyPercentileNanos(double percentile) {
+            long count = getWriteCount();
+            if (count == 0) return 0;
+            long rank = (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100.0);
+            long seen = 0;
+            for (int i = 0; i < LATENCY_BUCKETS; i++) {
+                seen += latencyBuckets[i];
+                if (seen >= Math.max(1, rank)) return Math.min(bucketUpperBound(i), latencyMax);
+            }
+            return latencyMax;
+        }
+
+        /**
+         * Returns the latency histogram: entry n counts writes of 2^(n-1) to 2^n - 1 nanoseconds.
+         * @return copy of the bucket counts
+         */
+        public long[] getWriteLatencyBuckets() {
+            return latencyBuckets.clone();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Lines: %d (DEBUG %d, INFO %d, WARNING %d, ERROR %d), suppressed %d, throttled %d, async dropped %d%n"
+                            + "Files: %d bytes, %d rotations, %d write errors%n"
+                            + "Write latency: %d writes, mean %.0f ns, p50 %d ns, p99 %d ns, max %d ns%n"
+                            + "By logger: %s",
+                    getEmittedTotal(), emitted[0], emitted[1], emitted[2], emitted[3], getSuppressedTotal(), getThrottledTotal(), asyncDropped,
+                    bytesWritten, rotations, writeErrors,
+                    getWriteCount(), getWriteLatencyMeanNanos(), getWriteLatencyPercentileNanos(50),
+                    getWriteLatencyPercentileNanos(99), latencyMax,
+                    emittedByLogger);
+        }
+    }
+
+    // --- Public API ---
+
+    /**
+     * Returns the current values of all counters.
+     * @return a snapshot
+     */
+    public static Snapshot snapshot() {
+        return new Snapshot();
+    }
+
+    /**
+     * Sets all counters back to zero.
+     */
+    public static void resetAll() {
+        for (int i = 0; i < 4; i++) {
+            EMITTED[i].reset();
+            SUPPRESSED[i].reset();
+            THROTTLED[i].reset();
+        }
+        EMITTED_BY_LOGGER.values().forEach(LongAdder::reset);
+        BYTES_WRITTEN.reset();
+        ROTATIONS.reset();
+        WRITE_ERRORS.reset();
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            LATENCY[i].reset();
+        }
+        LATENCY_SUM.reset();
+        LATENCY_MAX.reset();
+        asyncDroppedBaseline = asyncDroppedTotal();
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server as {@code Utils:type=LoggerMetrics}.
+     * Calling it again has no effect.
+     */
+    public static synchronized void registerMBean() {
+        if (registered) return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) server.registerMBean(INSTANCE, name);
+            registered = true;
+        } catch (JMException e) {
+            System.err.println(Logger.RED + "Utils.Logger: Failed to register metrics MBean: " + e.getMessage() + Logger.RESET);
+        }
+    }
+
+    // --- Recording (called by Logger and LogSink) ---
+
+    /**
+     * Returns the counter of emitted lines for a logger name; loggers keep it to
+     * avoid a map lookup per line.
+     */
+    static LongAdder emittedCounter(String loggerName) {
+        return EMITTED_BY_LOGGER.computeIfAbsent(String.valueOf(loggerName), name -> new LongAdder());
+    }
+
+    static void recordEmitted(int level) {
+        EMITTED[level].increment();
+    }
+
+    static void recordSuppressed(int level) {
+        if (level >= 0 && level < SUPPRESSED.length) SUPPRESSED[level].increment();
+    }
+
+    static void recordThrottled(int level) {
+        THROTTLED[level].increment();
+    }
+
+    static void recordBytesWritten(long bytes) {
+        BYTES_WRITTEN.add(bytes);
+    }
+
+    static void recordRotation() {
+        ROTATIONS.increment();
+    }
+
+    static void recordWriteError() {
+        WRITE_ERRORS.increment();
+    }
+
+    static void recordWriteLatency(long nanos) {
+        if (nanos < 0) nanos = 0;
+        int bucket = Math.min(LATENCY_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+        LATENCY[bucket].increment();
+        LATENCY_SUM.add(nanos);
+        LATENCY_MAX.accumulate(nanos);
+    }
+
+    // --- LoggerMetricsMXBean ---
+
+    @Override public long getLinesEmitted() { return snapshot().getEmittedTotal(); }
+    @Override public long getDebugLines() { return EMITTED[0].sum(); }
+    @Override public long getInfoLines() { return EMITTED[1].sum(); }
+    @Override public long getWarningLines() { return EMITTED[2].sum(); }
+    @Override public long getErrorLines() { return EMITTED[3].sum(); }
+    @Override public Map<String, Long> getLinesByLogger() { return snapshot().getEmittedByLogger(); }
+    @Override public long getLinesSuppressed() { return snapshot().getSuppressedTotal(); }
+    @Override public long getLinesThrottled() { return snapshot().getThrottledTotal(); }
+    @Override public long getBytesWritten() { return BYTES_WRITTEN.sum(); }
+    @Override public long getRotations() { return ROTATIONS.sum(); }
+    @Override public long getWriteErrors() { return WRITE_ERRORS.sum(); }
+    @Override public long getAsyncDropped() { return snapshot().getAsyncDropped(); }
+    @Override public long getWriteCount() { return snapshot().getWriteCount(); }
+    @Override public double getWriteLatencyMeanNanos() { return snapshot().getWriteLatencyMeanNanos(); }
+    @Override public long getWriteLatencyP50Nanos() { return snapshot().getWriteLatencyPercentileNanos(50); }
+    @Override public long getWriteLatencyP99Nanos() { return snapshot().getWriteLatencyPercentileNanos(99); }
+    @Override public long getWriteLatencyMaxNanos() { return LATENCY_MAX.get(); }
+    @Override public void reset() { resetAll(); }
+
+    // --- Internal Methods ---
+
+    private static long bucketUpperBound(int bucket) {
+        return bucket == 0 ? 0 : (1L << bucket) - 1;
+    }
+
+    private static long asyncDroppedTotal() {
+        AsyncLogWriter writer = AsyncLogWriter.current();
+        return writer == null ? 0 : writer.getDroppedNewCount() + writer.getDroppedOldestCount();
+    }
+
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static long[] sum(LongAdder[] adders) {
+        long[] sums = new long[adders.length];
+        for (int i = 0; i < adders.length; i++) {
+            sums[i] = adders[i].sum();
+        }
+        return sums;
+    }
+}
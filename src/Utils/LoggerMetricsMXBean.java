@@ -0,0 +1,64 @@
+package Utils;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link LoggerMetrics}, registered as {@code Utils:type=LoggerMetrics}.
+ * All counts are totals since process start or the last {@link #reset()}.
+ */
+public interface LoggerMetricsMXBean {
+
+    /** @return lines written to console or file, all levels */
+    long getLinesEmitted();
+
+    /** @return DEBUG lines emitted */
+    long getDebugLines();
+
+    /** @return INFO lines emitted */
+    long getInfoLines();
+
+    /** @return WARNING lines emitted */
+    long getWarningLines();
+
+    /** @return ERROR lines emitted */
+    long getErrorLines();
+
+    /** @return lines emitted per logger name */
+    Map<String, Long> getLinesByLogger();
+
+    /** @return log calls dropped because their level was disabled */
+    long getLinesSuppressed();
+
+    /** @return lines dropped by rate limiting or duplicate suppression */
+    long getLinesThrottled();
+
+    /** @return bytes written to log files */
+    long getBytesWritten();
+
+    /** @return log file rotations */
+    long getRotations();
+
+    /** @return failed log file opens and writes */
+    long getWriteErrors();
+
+    /** @return lines the async writer discarded because its buffer was full */
+    long getAsyncDropped();
+
+    /** @return number of timed file writes */
+    long getWriteCount();
+
+    /** @return mean time of a file write in nanoseconds */
+    double getWriteLatencyMeanNanos();
+
+    /** @return median file write time in nanoseconds (bucket upper bound) */
+    long getWriteLatencyP50Nanos();
+
+    /** @return 99th percentile file write time in nanoseconds (bucket upper bound) */
+    long getWriteLatencyP99Nanos();
+
+    /** @return slowest file write in nanoseconds */
+    long getWriteLatencyMaxNanos();
+
+    /** Sets all counters back to zero. */
+    void reset();
+}
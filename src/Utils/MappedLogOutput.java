@@ -0,0 +1,150 @@
+package Utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Utils.MappedLogOutput appends text lines into a memory-mapped segment of the log file.
+ * <p>
+ * The file is grown one pre-sized segment at a time; lines are UTF-8 encoded
+ * straight into the mapping, so a write is a memory copy with no system call.
+ * When a segment fills, the next one is mapped. On close, the unused tail of
+ * the last segment is truncated away.
+ * <p>
+ * While the file is open its size on disk includes the unused, zero-filled
+ * part of the current segment. If the process dies before {@link #close()},
+ * those trailing zero bytes remain; reopening in append mode skips them.
+ */
+final class MappedLogOutput implements LogOutput {
+    static final int DEFAULT_SEGMENT_SIZE = 1024 * 1024; // 1MB
+    private static final int TAIL_SCAN_CHUNK = 8 * 1024;
+
+    private final FileChannel channel;
+    private final int segmentSize;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CharBuffer lineSeparator = CharBuffer.wrap(System.lineSeparator());
+
+    private MappedByteBuffer segment;
+    private long segmentStart;
+
+    /**
+     * Opens the file and maps the first segment at the end of its content.
+     * @param path the file to write
+     * @param append true to append, false to truncate
+     * @param segmentSize bytes mapped at a time
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    MappedLogOutput(Path path, boolean append, int segmentSize) throws IOException {
+        if (segmentSize <= 0) throw new IllegalArgumentException("Segment size must be positive");
+        this.segmentSize = segmentSize;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (!append) channel.truncate(0);
+        mapSegment(append ? contentEnd() : 0);
+    }
+
+    @Override
+    public int write(LogRecord record) throws IOException {
+        long start = position();
+        encode(CharBuffer.wrap(record.toLine()));
+        lineSeparator.rewind();
+        encode(lineSeparator);
+        return (int) (position() - start);
+    }
+
+    /**
+     * Mapped writes are visible to other readers of the file immediately,
+     * so there is nothing to push. Forcing to disk is a durability decision.
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Forces the written part of the current segment to the storage device.
+     */
+    @Override
+    public void sync() {
+        segment.force(0, segment.position());
+    }
+
+    @Override
+    public void close() throws IOException {
+        long end = position();
+        segment = null;
+        channel.truncate(end);
+        channel.close();
+    }
+
+    /**
+     * Returns the logical end of the written data.
+     * @return file offset after the last written byte
+     */
+    long position() {
+        return segmentStart + segment.position();
+    }
+
+    /**
+     * Returns the channel of the mapped file.
+     * @return the file channel
+     */
+    FileChannel channel() {
+        return channel;
+    }
+
+    // --- Internal Methods ---
+
+    private void encode(CharBuffer chars) throws IOException {
+        encoder.reset();
+        for (;;) {
+            CoderResult result = encoder.encode(chars, segment, true);
+            if (result.isOverflow()) {
+                mapSegment(position());
+            } else if (result.isUnderflow()) {
+                if (encoder.flush(segment).isOverflow()) {
+                    mapSegment(position());
+                    encoder.flush(segment);
+                }
+                return;
+            } else {
+                result.throwException();
+            }
+        }
+    }
+
+    private void mapSegment(long start) throws IOException {
+        segmentStart = start;
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, start, segmentSize);
+    }
+
+    /**
+     * Finds the end of the real content, skipping zero bytes a previous
+     * unclean shutdown may have left after it.
+     */
+    private long contentEnd() throws IOException {
+        long end = channel.size();
+        ByteBuffer chunk = ByteBuffer.allocate(TAIL_SCAN_CHUNK);
+        long scanned = 0;
+        while (end > 0 && scanned < segmentSize) {
+            int length = (int) Math.min(TAIL_SCAN_CHUNK, end);
+            chunk.clear().limit(length);
+            channel.read(chunk, end - length);
+            for (int i = length - 1; i >= 0; i--) {
+                if (chunk.get(i) != 0) return end - length + i + 1;
+            }
+            end -= length;
+            scanned += length;
+        }
+        return end;
+    }
+}
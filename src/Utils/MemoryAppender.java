@@ -0,0 +1,93 @@
+package Utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Utils.MemoryAppender keeps the most recent records in a fixed-size ring.
+ * <p>
+ * Useful for tests and for showing recent activity (e.g. the last lines
+ * before an error) without reading the log file. When the ring is full,
+ * each new record replaces the oldest one.
+ */
+public final class MemoryAppender implements Appender {
+    private final LogRecord[] ring;
+    private final Layout layout;
+    private long appended = 0; // guarded by this
+
+    /**
+     * Creates a ring for the given number of records, formatted with the default layout.
+     * @param capacity number of records kept
+     */
+    public MemoryAppender(int capacity) {
+        this(capacity, Layout.DEFAULT);
+    }
+
+    /**
+     * Creates a ring for the given number of records.
+     * @param capacity number of records kept
+     * @param layout layout used by {@link #getLines()}
+     */
+    public MemoryAppender(int capacity, Layout layout) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be at least 1");
+        if (layout == null) throw new IllegalArgumentException("Layout cannot be null");
+        this.ring = new LogRecord[capacity];
+        this.layout = layout;
+    }
+
+    @Override
+    public synchronized void append(LogRecord record) {
+        ring[(int) (appended % ring.length)] = record;
+        appended++;
+    }
+
+    /**
+     * Returns the records in the ring.
+     * @return records, oldest first
+     */
+    public synchronized List<LogRecord> getRecords() {
+        int size = (int) Math.min(appended, ring.length);
+        List<LogRecord> records = new ArrayList<>(size);
+        for (long i = appended - size; i < appended; i++) {
+            records.add(ring[(int) (i % ring.length)]);
+        }
+        return records;
+    }
+
+    /**
+     * Returns the records in the ring formatted with this appender's layout.
+     * @return lines, oldest first
+     */
+    public List<String> getLines() {
+        List<String> lines = new ArrayList<>();
+        for (LogRecord record : getRecords()) {
+            lines.add(layout.format(record));
+        }
+        return lines;
+    }
+
+    /**
+     * Returns how many records were appended in total, including those already overwritten.
+     * @return appended record count
+     */
+    public synchronized long getAppendedCount() {
+        return appended;
+    }
+
+    /**
+     * Returns the number of records the ring holds.
+     * @return capacity
+     */
+    public int getCapacity() {
+        return ring.length;
+    }
+
+    /**
+     * Empties the ring.
+     */
+    public synchronized void clear() {
+        Arrays.fill(ring, null);
+        appended = 0;
+    }
+}
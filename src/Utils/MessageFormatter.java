@@ -0,0 +1,175 @@
+package Utils;
+
+import java.util.Arrays;
+
+/**
+ * Utils.MessageFormatter fills {@code {}} placeholders in log message patterns.
+ * <p>
+ * Arguments replace the placeholders from left to right; extra arguments are
+ * ignored and unmatched placeholders are kept as {@code {}}. Formatting happens
+ * in a reusable per-thread buffer, so the only allocation is the final String.
+ * Primitive arguments are appended without boxing and render exactly like
+ * string concatenation would (e.g. {@code 12.5}, {@code 'B'}).
+ */
+final class MessageFormatter {
+    private static final String PLACEHOLDER = "{}";
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFFER =
+            ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_CAPACITY));
+
+    private MessageFormatter() {}
+
+    static String format(String pattern, Object arg) {
+        StringBuilder sb = buffer();
+        int pos = appendUntilPlaceholder(sb, pattern, 0);
+        if (pos >= 0) {
+            appendObject(sb, arg);
+            appendRest(sb, pattern, pos);
+        }
+        return finish(sb);
+    }
+
+    static String format(String pattern, Object arg1, Object arg2) {
+        StringBuilder sb = buffer();
+        int pos = appendUntilPlaceholder(sb, pattern, 0);
+        if (pos >= 0) {
+            appendObject(sb, arg1);
+            pos = appendUntilPlaceholder(sb, pattern, pos);
+            if (pos >= 0) {
+                appendObject(sb, arg2);
+                appendRest(sb, pattern, pos);
+            }
+        }
+        return finish(sb);
+    }
+
+    static String format(String pattern, Object[] args) {
+        StringBuilder sb = buffer();
+        int pos = 0;
+        int argCount = args == null ? 0 : args.length;
+        for (int i = 0; i < argCount; i++) {
+            pos = appendUntilPlaceholder(sb, pattern, pos);
+            if (pos < 0) return finish(sb);
+            appendObject(sb, args[i]);
+        }
+        appendRest(sb, pattern, pos);
+        return finish(sb);
+    }
+
+    static String format(String pattern, long arg) {
+        StringBuilder sb = buffer();
+        int pos = appendUntilPlaceholder(sb, pattern, 0);
+        if (pos >= 0) {
+            sb.append(arg);
+            appendRest(sb, pattern, pos);
+        }
+        return finish(sb);
+    }
+
+    static String format(String pattern, double arg) {
+        StringBuilder sb = buffer();
+        int pos = appendUntilPlaceholder(sb, pattern, 0);
+        if (pos >= 0) {
+            sb.append(arg);
+            appendRest(sb, pattern, pos);
+        }
+        return finish(sb);
+    }
+
+    static String format(String pattern, char arg) {
+        StringBuilder sb = buffer();
+        int pos = appendUntilPlaceholder(sb, pattern, 0);
+        if (pos >= 0) {
+            sb.append(arg);
+            appendRest(sb, pattern, pos);
+        }
+        return finish(sb);
+    }
+
+    static String format(String pattern, double arg1, double arg2) {
+        StringBuilder sb = buffer();
+        int pos = appendUntilPlaceholder(sb, pattern, 0);
+        if (pos >= 0) {
+            sb.append(arg1);
+            pos = appendUntilPlaceholder(sb, pattern, pos);
+            if (pos >= 0) {
+                sb.append(arg2);
+                appendRest(sb, pattern, pos);
+            }
+        }
+        return finish(sb);
+    }
+
+    static String format(String pattern, Object arg1, double arg2) {
+        StringBuilder sb = buffer();
+        int pos = appendUntilPlaceholder(sb, pattern, 0);
+        if (pos >= 0) {
+            appendObject(sb, arg1);
+            pos = appendUntilPlaceholder(sb, pattern, pos);
+            if (pos >= 0) {
+                sb.append(arg2);
+                appendRest(sb, pattern, pos);
+            }
+        }
+        return finish(sb);
+    }
+
+    // --- Internal Methods ---
+
+    private static StringBuilder buffer() {
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        return sb;
+    }
+
+    /**
+     * Copies the returned message out of the buffer. Buffers that grew past
+     * the retained limit are replaced so one huge message does not pin memory.
+     */
+    private static String finish(StringBuilder sb) {
+        String result = sb.toString();
+        if (sb.capacity() > MAX_RETAINED_CAPACITY) {
+            BUFFER.set(new StringBuilder(INITIAL_CAPACITY));
+        }
+        return result;
+    }
+
+    /**
+     * Appends the pattern from {@code from} up to the next placeholder.
+     * @return index just after the placeholder, or -1 if there is none (the rest was appended)
+     */
+    private static int appendUntilPlaceholder(StringBuilder sb, String pattern, int from) {
+        if (pattern == null) {
+            if (from == 0) sb.append("null");
+            return -1;
+        }
+        int index = pattern.indexOf(PLACEHOLDER, from);
+        if (index < 0) {
+            sb.append(pattern, from, pattern.length());
+            return -1;
+        }
+        sb.append(pattern, from, index);
+        return index + PLACEHOLDER.length();
+    }
+
+    private static void appendRest(StringBuilder sb, String pattern, int from) {
+        if (pattern != null && from >= 0) {
+            sb.append(pattern, from, pattern.length());
+        }
+    }
+
+    // The text appendObject would append, for callers that keep it for later
+    static String toText(Object arg) {
+        return arg instanceof Object[] ? Arrays.deepToString((Object[]) arg) : String.valueOf(arg);
+    }
+
+    private static void appendObject(StringBuilder sb, Object arg) {
+        if (arg instanceof Object[]) {
+            sb.append(Arrays.deepToString((Object[]) arg));
+        } else {
+            sb.append(arg);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package Utils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Utils.RollingFileAppender writes records as text lines to a file that is
+ * rotated by size and optionally by time.
+ * <p>
+ * The file is opened through {@link LogSinkRegistry}, so an appender for
+ * log.txt shares the writer, rotation and index of the loggers' own output.
+ * Each line is flushed when written. Rotation settings apply to the shared
+ * sink, exactly as the matching {@link Logger} setters do.
+ * <p>
+ * {@link LogSearch} can only read lines in the {@link Layout#DEFAULT} layout;
+ * files written with another layout are not indexed.
+ */
+public class RollingFileAppender implements Appender {
+    private final Layout layout; // null when the sink encodes records itself
+    private final LogSink sink;
+    private boolean closed = false; // guarded by this
+
+    /**
+     * Opens a file in append mode, writing the default layout.
+     * @param path the file
+     * @throws IOException if the file cannot be opened
+     */
+    public RollingFileAppender(Path path) throws IOException {
+        this(path, Layout.DEFAULT);
+    }
+
+    /**
+     * Opens a file in append mode.
+     * @param path the file
+     * @param layout the line layout
+     * @throws IOException if the file cannot be opened
+     */
+    public RollingFileAppender(Path path, Layout layout) throws IOException {
+        if (layout == null) throw new IllegalArgumentException("Layout cannot be null");
+        this.layout = layout;
+        this.sink = LogSinkRegistry.acquire(path, true);
+        if (layout != Layout.DEFAULT) sink.setIndexEnabled(false);
+    }
+
+    /**
+     * Opens a file in append mode in a non-text format; records are written
+     * as the sink encodes them.
+     * @param path the file
+     * @param format BINARY or JSON
+     * @throws IOException if the file cannot be opened
+     */
+    RollingFileAppender(Path path, Logger.FileFormat format) throws IOException {
+        this.layout = null;
+        this.sink = LogSinkRegistry.acquire(path, true, format);
+    }
+
+    @Override
+    public void append(LogRecord record) {
+        LogRecord line = layout == null ? record : record.withLine(layout.format(record));
+        synchronized (this) {
+            if (!closed) sink.write(line);
+        }
+    }
+
+    @Override
+    public void flush() {
+        sink.flush();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        LogSinkRegistry.release(sink);
+    }
+
+    /**
+     * Sets the maximum file size before rotation.
+     * @param maxBytes size limit in bytes
+     */
+    public void setMaxFileSize(long maxBytes) {
+        sink.setMaxFileSize(maxBytes);
+    }
+
+    /**
+     * Sets time-based rotation in addition to the size limit.
+     * @param interval NONE, HOURLY or DAILY
+     */
+    public void setRotationInterval(Logger.RotationInterval interval) {
+        if (interval == null) throw new IllegalArgumentException("Rotation interval cannot be null");
+        sink.setRotationInterval(interval);
+    }
+
+    /**
+     * Enables or disables gzip compression of rotated segments.
+     * @param compress true to compress rotated segments in the background
+     */
+    public void setCompressRotatedFiles(boolean compress) {
+        sink.setCompressRotatedFiles(compress);
+    }
+
+    /**
+     * Sets how many rotated segments are kept.
+     * @param maxSegments number of segments to keep, 0 for unlimited
+     */
+    public void setMaxRetainedSegments(int maxSegments) {
+        if (maxSegments < 0) throw new IllegalArgumentException("Retained segment count cannot be negative");
+        sink.setMaxRetainedSegments(maxSegments);
+    }
+
+    /**
+     * Returns the file currently written to.
+     * @return the current path (differs from the opened path after rotation)
+     */
+    public Path getCurrentPath() {
+        return sink.getCurrentPath();
+    }
+}
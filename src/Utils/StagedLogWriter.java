@@ -0,0 +1,378 @@
+package Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Utils.StagedLogWriter writes log files on one background thread, fed by
+ * per-thread staging buffers instead of one shared queue.
+ * <p>
+ * Every thread that logs in staged mode gets its own bounded ring (a
+ * {@link Stage}). The thread renders its line on its own stack, as usual, and
+ * stores the finished record in its ring with plain writes and one ordered
+ * store of its publish counter: no lock, no CAS and no cache line shared with
+ * other producers. The writer thread visits all rings in turn, so together they
+ * form a multi-producer, single-consumer queue. Threads only meet each other
+ * once, when their ring is first linked into the writer's list.
+ * <p>
+ * Records of one thread are written in the order they were logged. Records of
+ * different threads may be interleaved differently than their timestamps,
+ * within one writer round. When a thread's ring is full, that thread (and only
+ * that thread) waits: it writes a round itself if the writer is idle, so a
+ * busy producer is not stalled by the writer's wake-up latency. Rings of
+ * finished threads are unlinked once empty.
+ * <p>
+ * Compared to {@link AsyncLogWriter}, which shares one ring among all threads
+ * and offers overflow policies, this writer trades the policies for
+ * producers that never contend with each other.
+ */
+public final class StagedLogWriter {
+    public static final int DEFAULT_STAGE_CAPACITY = 1024;
+
+    private static final long IDLE_PARK_NANOS = 100_000_000L; // 100ms
+    private static final long WAIT_PARK_NANOS = 50_000L;      // 50µs
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5_000L;
+
+    private static final Object SHARED_LOCK = new Object();
+    private static volatile StagedLogWriter shared;
+    private static boolean shutdownHookInstalled = false;
+
+    /**
+     * One thread's staging ring. The owner is the only producer, the writer
+     * thread the only consumer.
+     */
+    static final class Stage {
+        final Thread owner;
+        final int mask;
+        final LogSink[] targets;
+        final LogRecord[] records;
+        final AtomicLong published = new AtomicLong(); // written by the owner
+        final AtomicLong consumed = new AtomicLong();  // written by the writer
+        long tail = 0;           // owner only: next slot to fill
+        long cachedConsumed = 0; // owner only: last seen value of consumed
+        volatile Stage next;     // writer list; changed by the writer except at the head
+
+        Stage(Thread owner, int capacity) {
+            this.owner = owner;
+            this.mask = capacity - 1;
+            this.targets = new LogSink[capacity];
+            this.records = new LogRecord[capacity];
+        }
+
+        long pending() {
+            return published.get() - consumed.get();
+        }
+    }
+
+    private final int stageCapacity;
+    private final ThreadLocal<Stage> stages = new ThreadLocal<>();
+    private final AtomicReference<Stage> head = new AtomicReference<>();
+    private final AtomicLong blockedSubmits = new AtomicLong();
+    private final ReentrantLock roundLock = new ReentrantLock(); // one consumer at a time
+
+    private final Thread writerThread;
+    private volatile boolean running = false;
+    private volatile boolean writerSleeping = false;
+
+    /**
+     * Creates a writer whose threads each stage up to the given number of records
+     * (rounded up to a power of two). The writer thread is not started until {@link #start()}.
+     */
+    StagedLogWriter(int stageCapacity) {
+        if (stageCapacity < 2) throw new IllegalArgumentException("Stage capacity must be at least 2");
+        this.stageCapacity = Integer.highestOneBit(stageCapacity - 1) << 1;
+        this.writerThread = new Thread(this::runWriter, "Utils.Logger-staged-writer");
+        this.writerThread.setDaemon(true);
+    }
+
+    // --- Shared instance ---
+
+    /**
+     * Returns the process-wide writer used by loggers in staged mode,
+     * creating and starting it with the default capacity on first use.
+     * @return the shared writer
+     */
+    public static StagedLogWriter shared() {
+        StagedLogWriter writer = shared;
+        if (writer != null) return writer;
+        synchronized (SHARED_LOCK) {
+            if (shared == null) {
+                shared = startShared(DEFAULT_STAGE_CAPACITY);
+            }
+            return shared;
+        }
+    }
+
+    /**
+     * Replaces the shared writer with one using the given capacity per thread.
+     * The previous writer, if any, is drained and stopped.
+     * @param stageCapacity records each thread can stage (rounded up to a power of two)
+     */
+    public static void configure(int stageCapacity) {
+        StagedLogWriter previous;
+        synchronized (SHARED_LOCK) {
+            previous = shared;
+            shared = startShared(stageCapacity);
+        }
+        if (previous != null) previous.shutdown();
+    }
+
+    private static StagedLogWriter startShared(int stageCapacity) {
+        StagedLogWriter writer = new StagedLogWriter(stageCapacity);
+        writer.start();
+        if (!shutdownHookInstalled) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                StagedLogWriter current = shared;
+                if (current != null) current.shutdown();
+            }, "Utils.Logger-staged-shutdown"));
+            shutdownHookInstalled = true;
+        }
+        return writer;
+    }
+
+    // --- Public API ---
+
+    /**
+     * Stages a finished log record for the given sink in the calling thread's ring.
+     * Falls back to a synchronous write if the writer is not running.
+     * @param sink the sink whose file receives the record
+     * @param record the log record
+     */
+    void submit(LogSink sink, LogRecord record) {
+        if (!running) {
+            sink.write(record);
+            return;
+        }
+        Stage stage = stages.get();
+        if (stage == null) stage = register();
+        long tail = stage.tail;
+        if (tail - stage.cachedConsumed > stage.mask) {
+            stage.cachedConsumed = stage.consumed.get();
+            if (tail - stage.cachedConsumed > stage.mask && !awaitSpace(stage, tail)) {
+                sink.write(record);
+                return;
+            }
+        }
+        int index = (int) (tail & stage.mask);
+        stage.targets[index] = sink;
+        stage.records[index] = record;
+        stage.tail = tail + 1;
+        stage.published.set(tail + 1); // publishes the slot; also orders the read below
+        if (writerSleeping) LockSupport.unpark(writerThread);
+    }
+
+    /**
+     * Blocks until every record staged by any thread before this call has been
+     * written and flushed.
+     */
+    public void drain() {
+        List<Stage> waiting = new ArrayList<>();
+        List<Long> targets = new ArrayList<>();
+        for (Stage stage = head.get(); stage != null; stage = stage.next) {
+            waiting.add(stage);
+            targets.add(stage.published.get());
+        }
+        for (int i = 0; i < waiting.size(); i++) {
+            Stage stage = waiting.get(i);
+            while (stage.consumed.get() < targets.get(i)) {
+                if (!running) {
+                    writeRound();
+                } else if (!tryWriteRound()) {
+                    LockSupport.unpark(writerThread);
+                    LockSupport.parkNanos(this, WAIT_PARK_NANOS);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of records each thread can stage.
+     * @return ring capacity per thread
+     */
+    public int getStageCapacity() {
+        return stageCapacity;
+    }
+
+    /**
+     * Returns the number of threads with a staging ring.
+     * @return linked ring count
+     */
+    public int getStageCount() {
+        int count = 0;
+        for (Stage stage = head.get(); stage != null; stage = stage.next) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of records staged but not yet written, over all threads.
+     * @return queued record count
+     */
+    public long getQueuedCount() {
+        long queued = 0;
+        for (Stage stage = head.get(); stage != null; stage = stage.next) {
+            queued += stage.pending();
+        }
+        return queued;
+    }
+
+    /**
+     * Returns how many submissions had to wait because their thread's ring was full.
+     * @return blocked submission count
+     */
+    public long getBlockedCount() {
+        return blockedSubmits.get();
+    }
+
+    // --- Lifecycle ---
+
+    void start() {
+        running = true;
+        writerThread.start();
+    }
+
+    /**
+     * Stops the writer thread after writing everything still staged.
+     */
+    void shutdown() {
+        if (!running) return;
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Anything a late producer slipped in is written on this thread
+        writeRound();
+    }
+
+    // --- Internal Methods ---
+
+    /**
+     * Creates the calling thread's ring and links it into the writer's list.
+     */
+    private Stage register() {
+        Stage stage = new Stage(Thread.currentThread(), stageCapacity);
+        Stage first;
+        do {
+            first = head.get();
+            stage.next = first;
+        } while (!head.compareAndSet(first, stage));
+        stages.set(stage);
+        return stage;
+    }
+
+    /**
+     * Waits until a slot in the ring is free, writing a round on this thread
+     * whenever no other thread is writing one.
+     * @return false if the writer stopped while waiting
+     */
+    private boolean awaitSpace(Stage stage, long tail) {
+        blockedSubmits.incrementAndGet();
+        while (tail - stage.cachedConsumed > stage.mask) {
+            if (!running) return false;
+            if (!tryWriteRound()) {
+                LockSupport.unpark(writerThread);
+                LockSupport.parkNanos(this, WAIT_PARK_NANOS);
+            }
+            stage.cachedConsumed = stage.consumed.get();
+        }
+        return true;
+    }
+
+    /**
+     * Writes a round unless another thread is writing one.
+     * @return true if this thread wrote the round
+     */
+    private boolean tryWriteRound() {
+        if (!roundLock.tryLock()) return false;
+        try {
+            writeRoundLocked();
+            return true;
+        } finally {
+            roundLock.unlock();
+        }
+    }
+
+    private void runWriter() {
+        while (running || hasPending()) {
+            if (writeRound() > 0) continue;
+            writerSleeping = true;
+            if (running && !hasPending()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            writerSleeping = false;
+        }
+    }
+
+    private boolean hasPending() {
+        for (Stage stage = head.get(); stage != null; stage = stage.next) {
+            if (stage.pending() > 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Writes what every ring holds, flushes each touched file once and unlinks
+     * empty rings of finished threads.
+     * @return number of records written
+     */
+    private int writeRound() {
+        roundLock.lock();
+        try {
+            return writeRoundLocked();
+        } finally {
+            roundLock.unlock();
+        }
+    }
+
+    private int writeRoundLocked() {
+        List<LogSink> touched = new ArrayList<>();
+        int total = 0;
+        Stage previous = null;
+        for (Stage stage = head.get(); stage != null; stage = stage.next) {
+            total += writeStage(stage, touched);
+            if (previous != null && !stage.owner.isAlive() && stage.pending() == 0) {
+                previous.next = stage.next; // the head is never unlinked, producers only touch the head
+            } else {
+                previous = stage;
+            }
+        }
+        for (LogSink sink : touched) {
+            sink.flush();
+        }
+        return total;
+    }
+
+    private static int writeStage(Stage stage, List<LogSink> touched) {
+        long from = stage.consumed.get();
+        long to = stage.published.get();
+        for (long position = from; position < to; position++) {
+            int index = (int) (position & stage.mask);
+            LogSink target = stage.targets[index];
+            try {
+                target.append(stage.records[index]);
+            } catch (RuntimeException e) {
+                System.err.println(Logger.RED + "Utils.StagedLogWriter: Error writing log line: " + e.getMessage() + Logger.RESET);
+            }
+            if (!containsSink(touched, target)) touched.add(target);
+            stage.targets[index] = null;
+            stage.records[index] = null;
+        }
+        if (to > from) stage.consumed.set(to);
+        return (int) (to - from);
+    }
+
+    private static boolean containsSink(List<LogSink> sinks, LogSink sink) {
+        for (int i = sinks.size() - 1; i >= 0; i--) {
+            if (sinks.get(i) == sink) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,59 @@
+package Utils;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Utils.StreamLogOutput writes text lines through a buffered UTF-8 writer.
+ * This is the default output of a {@link LogSink}.
+ */
+final class StreamLogOutput implements LogOutput {
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    private static final int LINE_SEPARATOR_LENGTH = LINE_SEPARATOR.length();
+
+    private final FileOutputStream file;
+    private final BufferedWriter writer;
+
+    /**
+     * Opens the file for writing.
+     * @param path the file to write
+     * @param append true to append, false to truncate
+     * @throws IOException if the file cannot be opened
+     */
+    StreamLogOutput(Path path, boolean append) throws IOException {
+        this.file = new FileOutputStream(path.toFile(), append);
+        this.writer = new BufferedWriter(new OutputStreamWriter(file, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public int write(LogRecord record) throws IOException {
+        String line = record.toLine();
+        writer.write(line);
+        writer.write(LINE_SEPARATOR);
+        return LogSink.utf8Length(line) + LINE_SEPARATOR_LENGTH;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    /**
+     * Syncs through the file descriptor rather than a FileChannel, whose
+     * force() would close the file if the logging thread is interrupted.
+     */
+    @Override
+    public void sync() throws IOException {
+        writer.flush();
+        file.getFD().sync();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
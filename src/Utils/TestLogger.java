@@ -0,0 +1,1284 @@
+package Utils;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Test suite for Utils.Logger and its helpers.
+ * Each test writes uniquely tagged lines and checks them in log.txt.
+ */
+public class TestLogger {
+    // Colored logging methods
+    private static final String RESET = "\u001B[0m";
+    private static final String GREEN = "\u001B[32m";
+    private static final String YELLOW = "\u001B[33m";
+    private static final String CYAN = "\u001B[36m";
+    private static final String RED = "\u001B[31m";
+
+    private static void logInfo(String msg) {
+        System.out.println(CYAN + msg + RESET);
+    }
+    private static void logSuccess(String msg) {
+        System.out.println(GREEN + msg + RESET);
+    }
+    private static void logWarn(String msg) {
+        System.out.println(YELLOW + msg + RESET);
+    }
+    private static void logError(String msg) {
+        System.out.println(RED + msg + RESET);
+    }
+
+    private static int count_errors = 0;
+    private static int count_success = 0;
+    private static void check(String name, Object actual, Object expected) {
+        if ((actual == null && expected == null) || (actual != null && actual.equals(expected))) {
+            count_success++;
+            logSuccess(name + " OK (" + actual + ")");
+        } else {
+            count_errors++;
+            logError(name + " ERROR: expected " + expected + ", got " + actual);
+        }
+    }
+
+    private static final String RUN_ID = Long.toString(System.nanoTime(), 36);
+
+    public static void main(String[] args) {
+        testAsyncWritesEverything();
+        testAsyncDropNew();
+        testAsyncDropOldest();
+        testAsyncBlock();
+        testAsyncConfigureKeepsCounts();
+        testStagedWrites();
+        testStagedBackpressure();
+        testSharedSinks();
+        testMessageFormatting();
+        testLazyMessages();
+        testLocationCapture();
+        testRotationAndCompression();
+        testMemoryMappedOutput();
+        testDurability();
+        testBinaryFormat();
+        testTimestampCache();
+        testIndexedSearch();
+        testLogTail();
+        testCallSiteProfiler();
+        testMetrics();
+        testLoggerConfig();
+        testThrottling();
+        testConsoleOutput();
+        testLayoutsAndRoutes();
+        testStructuredFields();
+        testFlightRecorder();
+        System.out.println("Successful tests: " + count_success + ", Failed tests: " + count_errors);
+        if (count_errors > 0) System.exit(1);
+    }
+
+    // --- Async mode ---
+
+    private static void testAsyncWritesEverything() {
+        logInfo("Async mode: every line reaches the file");
+        String tag = tag("async-all");
+        Logger logger = quietLogger("AsyncTest");
+        logger.setAsyncEnabled(true);
+        check("Async enabled", logger.isAsyncEnabled(), true);
+        for (int i = 0; i < 1000; i++) {
+            logger.info(tag + " line " + i);
+        }
+        logger.close();
+        check("Async lines written", countLines(tag), 1000L);
+    }
+
+    private static void testAsyncDropNew() {
+        logInfo("Async mode: DROP_NEW discards new lines when full");
+        String tag = tag("drop-new");
+        LogSink sink = acquireLogSink();
+        AsyncLogWriter writer = new AsyncLogWriter(4, AsyncLogWriter.OverflowPolicy.DROP_NEW);
+        writer.start();
+        int total = 50;
+        // Holding the sink's monitor stalls the writer thread, so the ring fills up
+        synchronized (sink) {
+            for (int i = 0; i < total; i++) {
+                writer.submit(sink, record(tag + " line " + i));
+            }
+        }
+        writer.drain();
+        writer.shutdown();
+        long written = countLines(tag);
+        check("DROP_NEW dropped some lines", writer.getDroppedNewCount() > 0, true);
+        check("DROP_NEW written + dropped", written + writer.getDroppedNewCount(), (long) total);
+        check("DROP_NEW kept first line", countLines(tag + " line 0"), 1L);
+        LogSinkRegistry.release(sink);
+    }
+
+    private static void testAsyncDropOldest() {
+        logInfo("Async mode: DROP_OLDEST discards queued lines when full");
+        String tag = tag("drop-oldest");
+        LogSink sink = acquireLogSink();
+        AsyncLogWriter writer = new AsyncLogWriter(4, AsyncLogWriter.OverflowPolicy.DROP_OLDEST);
+        writer.start();
+        int total = 50;
+        synchronized (sink) {
+            for (int i = 0; i < total; i++) {
+                writer.submit(sink, record(tag + " line " + i + ";"));
+            }
+        }
+        writer.drain();
+        writer.shutdown();
+        long written = countLines(tag);
+        check("DROP_OLDEST dropped some lines", writer.getDroppedOldestCount() > 0, true);
+        check("DROP_OLDEST written + dropped", written + writer.getDroppedOldestCount(), (long) total);
+        check("DROP_OLDEST kept last line", countLines(tag + " line " + (total - 1) + ";"), 1L);
+        LogSinkRegistry.release(sink);
+    }
+
+    private static void testAsyncBlock() {
+        logInfo("Async mode: BLOCK waits for space and loses nothing");
+        String tag = tag("block");
+        LogSink sink = acquireLogSink();
+        AsyncLogWriter writer = new AsyncLogWriter(4, AsyncLogWriter.OverflowPolicy.BLOCK);
+        writer.start();
+        int total = 500;
+        for (int i = 0; i < total; i++) {
+            writer.submit(sink, record(tag + " line " + i));
+        }
+        writer.drain();
+        writer.shutdown();
+        check("BLOCK lines written", countLines(tag), (long) total);
+        check("BLOCK dropped nothing", writer.getDroppedNewCount() + writer.getDroppedOldestCount(), 0L);
+        LogSinkRegistry.release(sink);
+    }
+
+    private static void testAsyncConfigureKeepsCounts() {
+        logInfo("Async mode: reconfiguring keeps the drop count");
+        String tag = tag("reconfigure");
+        LogSink sink = acquireLogSink();
+        AsyncLogWriter.configure(4, AsyncLogWriter.OverflowPolicy.DROP_NEW);
+        AsyncLogWriter previous = AsyncLogWriter.shared();
+        synchronized (sink) {
+            for (int i = 0; i < 50; i++) {
+                previous.submit(sink, record(tag + " line " + i));
+            }
+        }
+        long dropped = previous.getDroppedNewCount();
+        check("Reconfigure dropped some lines", dropped > 0, true);
+        AsyncLogWriter.configure(AsyncLogWriter.DEFAULT_CAPACITY, AsyncLogWriter.DEFAULT_POLICY);
+        check("Reconfigure carries drop count", AsyncLogWriter.shared().getDroppedNewCount(), dropped);
+        LogSinkRegistry.release(sink);
+    }
+
+    // --- Staged mode ---
+
+    private static void testStagedWrites() {
+        logInfo("Staged mode: per-thread buffers, order kept per thread");
+        String tag = tag("staged");
+        Logger logger = quietLogger("StagedTest");
+        logger.setStagedEnabled(true);
+        check("Staged enabled", logger.isStagedEnabled(), true);
+        int threads = 8;
+        int perThread = 500;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    logger.info(tag + " t" + id + " line " + i + ";");
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        logger.close();
+        check("Staged lines written", countLines(tag), (long) threads * perThread);
+        try {
+            int[] next = new int[threads];
+            boolean ordered = true;
+            for (String line : Files.readAllLines(Paths.get("log.txt"))) {
+                int at = line.indexOf(tag + " t");
+                if (at < 0) continue;
+                String[] parts = line.substring(at + tag.length() + 2).split(" line |;");
+                int thread = Integer.parseInt(parts[0]);
+                ordered &= Integer.parseInt(parts[1]) == next[thread]++;
+            }
+            check("Staged order per thread", ordered, true);
+        } catch (IOException e) {
+            logError("Could not read log.txt: " + e.getMessage());
+            count_errors++;
+        }
+        StagedLogWriter writer = StagedLogWriter.shared();
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (writer.getStageCount() > 2 && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        check("Finished threads unlinked", writer.getStageCount() <= 2, true);
+        check("Nothing left staged", writer.getQueuedCount(), 0L);
+    }
+
+    private static void testStagedBackpressure() {
+        logInfo("Staged mode: a full stage waits for the writer and loses nothing");
+        String tag = tag("staged-full");
+        LogSink sink = acquireLogSink();
+        StagedLogWriter writer = new StagedLogWriter(4);
+        writer.start();
+        int total = 50;
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < total; i++) {
+                writer.submit(sink, record(tag + " line " + i));
+            }
+        });
+        // Holding the sink's monitor stalls the writer thread, so the stage fills up
+        synchronized (sink) {
+            producer.start();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            producer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer.drain();
+        writer.shutdown();
+        check("Staged capacity", writer.getStageCapacity(), 4);
+        check("Full stage blocked", writer.getBlockedCount() > 0, true);
+        check("Full stage lines written", countLines(tag), (long) total);
+        LogSinkRegistry.release(sink);
+    }
+
+    // --- Shared sinks ---
+
+    private static void testSharedSinks() {
+        logInfo("Shared sinks: one file handle per path, opened lazily");
+        String tag = tag("shared");
+        Path logFile = Paths.get("log.txt");
+        int before = LogSinkRegistry.getReferenceCount(logFile);
+        Logger[] loggers = new Logger[100];
+        for (int i = 0; i < loggers.length; i++) {
+            loggers[i] = quietLogger("SharedTest" + i);
+        }
+        check("No file opened before first write", LogSinkRegistry.getReferenceCount(logFile), before);
+        Logger silent = quietLogger("SharedTestOff");
+        silent.setLogLevel(-1);
+        silent.error(tag + " suppressed");
+        check("Suppressed line opens no file", LogSinkRegistry.getReferenceCount(logFile), before);
+        for (Logger logger : loggers) {
+            logger.warning(tag + " from " + logger.getLogLevelString());
+        }
+        check("All loggers share one sink", LogSinkRegistry.getReferenceCount(logFile), before + loggers.length);
+        check("Lines from all loggers written", countLines(tag), (long) loggers.length);
+        for (Logger logger : loggers) {
+            logger.close();
+        }
+        check("Sink released after last close", LogSinkRegistry.getReferenceCount(logFile), before);
+    }
+
+    // --- Lazy and parameterized messages ---
+
+    private static void testMessageFormatting() {
+        logInfo("Parameterized messages: {} placeholders");
+        check("Double placeholder", MessageFormatter.format("Tank level: {}", 12.5), "Tank level: 12.5");
+        check("Two doubles", MessageFormatter.format("Loaded {} units. Total: {}", 3.0, 7.25), "Loaded 3.0 units. Total: 7.25");
+        check("Char placeholder", MessageFormatter.format("License: {}", 'B'), "License: B");
+        check("Long placeholder", MessageFormatter.format("ID {}", 5001L), "ID 5001");
+        check("Null argument", MessageFormatter.format("Driver: {}", (Object) null), "Driver: null");
+        check("Missing argument keeps placeholder", MessageFormatter.format("{} and {}", "a"), "a and {}");
+        check("Extra arguments ignored", MessageFormatter.format("only {}", new Object[]{"a", "b"}), "only a");
+        check("Varargs", MessageFormatter.format("{}-{}-{}", new Object[]{1, "x", 2.5}), "1-x-2.5");
+        check("Matches concatenation", MessageFormatter.format("v={}", 0.1 + 0.2), "v=" + (0.1 + 0.2));
+    }
+
+    private static void testLazyMessages() {
+        logInfo("Lazy messages: nothing is built when the level is disabled");
+        String tag = tag("lazy");
+        Logger logger = quietLogger("LazyTest");
+        logger.setLogLevel(2);
+        int[] calls = {0};
+        logger.debug(() -> { calls[0]++; return tag + " debug"; });
+        logger.info(() -> { calls[0]++; return tag + " info"; });
+        check("Supplier not called when disabled", calls[0], 0);
+        check("Debug disabled", logger.isDebugEnabled(), false);
+        logger.warning(() -> { calls[0]++; return tag + " warning"; });
+        check("Supplier called when enabled", calls[0], 1);
+        logger.error("{} tank {} of {}", tag, 40.5, 60);
+        logger.close();
+        check("Supplier line written", countLines(tag + " warning"), 1L);
+        check("Pattern line written", countLines(tag + " tank 40.5 of 60"), 1L);
+    }
+
+    // --- Caller location ---
+
+    private static void testLocationCapture() {
+        logInfo("Caller location: StackWalker capture modes");
+        String tag = tag("location");
+        Logger logger = quietLogger("LocTest");
+        check("Default capture", logger.getLocationCapture(), Logger.LocationCapture.CLASS_AND_METHOD);
+        logger.info(tag + " default");
+        logger.info(tag + " default again");
+        logger.setLocationCapture(Logger.LocationCapture.FULL);
+        logger.info(tag + " full");
+        logger.setLocationCapture(Logger.LocationCapture.NONE);
+        logger.info(tag + " none");
+        logger.close();
+        check("Class and method", countLines("[LocTest.testLocationCapture]", tag + " default"), 2L);
+        check("Full adds line number", countLines("[LocTest.testLocationCapture:", tag + " full"), 1L);
+        check("None shows logger only", countLines("[LocTest]                        " + tag + " none"), 1L);
+    }
+
+    // --- Rotation ---
+
+    private static void testRotationAndCompression() {
+        logInfo("Rotation: byte-counted, gzip-compressed, retention-limited");
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("logger-rotation");
+            LogSink sink = LogSinkRegistry.acquire(dir.resolve("rot.txt"), true);
+            sink.setMaxFileSize(400);
+            sink.setCompressRotatedFiles(true);
+            sink.setMaxRetainedSegments(2);
+            for (int i = 0; i < 60; i++) {
+                sink.write(record("rotation test line " + i + " äöü"));
+            }
+            Path current = sink.getCurrentPath();
+            check("Byte count matches file size", sink.getBytesWritten(), Files.size(current));
+            check("Rotated to a _part file", current.getFileName().toString().startsWith("rot_part"), true);
+            LogSinkRegistry.release(sink);
+            LogFileCompressor.awaitIdle();
+            List<Path> segments = LogFileCompressor.listRotatedSegments(dir.resolve("rot.txt"), current);
+            check("Retention keeps 2 segments", segments.size(), 2);
+            check("Segments are gzipped", segments.stream().allMatch(p -> p.toString().endsWith(".gz")), true);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(segments.get(0))), "UTF-8"))) {
+                check("Gzipped segment readable", reader.readLine().startsWith("rotation test line"), true);
+            }
+        } catch (IOException e) {
+            check("Rotation test I/O", e.getMessage(), null);
+        } finally {
+            deleteTree(dir);
+        }
+    }
+
+    private static void testMemoryMappedOutput() {
+        logInfo("Memory-mapped output: segments, append and truncation");
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("logger-mapped");
+            Path file = dir.resolve("mapped.txt");
+            LogSink sink = new LogSink(file, false);
+            sink.setMemoryMapped(true);
+            for (int i = 0; i < 20; i++) {
+                sink.write(record("mapped line " + i));
+            }
+            long written = sink.getBytesWritten();
+            sink.close();
+            check("Unused segment bytes truncated", Files.size(file), written);
+            LogSink reopened = new LogSink(file, true);
+            reopened.setMemoryMapped(true);
+            reopened.write(record("mapped line appended"));
+            reopened.close();
+            List<String> lines = Files.readAllLines(file);
+            check("Mapped append keeps lines", lines.size(), 21);
+            check("Mapped append at the end", lines.get(20), "mapped line appended");
+
+            Path rotating = dir.resolve("maprot.txt");
+            LogSink small = new LogSink(rotating, false);
+            small.setMemoryMapped(true);
+            small.setMaxFileSize(100);
+            for (int i = 0; i < 30; i++) {
+                small.write(record("rotating mapped line " + i));
+            }
+            small.close();
+            check("Rotated mapped segment truncated", Files.readAllLines(rotating).get(0), "rotating mapped line 0");
+            check("Rotated mapped segment has no padding", Files.size(rotating) < MappedLogOutput.DEFAULT_SEGMENT_SIZE, true);
+        } catch (IOException e) {
+            check("Mapped output I/O", e.getMessage(), null);
+        } finally {
+            deleteTree(dir);
+        }
+    }
+
+    // --- Durability ---
+
+    private static void testDurability() {
+        logInfo("Durability: batched, warning-triggered and synced flushes");
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("logger-durability");
+            Path file = dir.resolve("durable.txt");
+            LogSink sink = new LogSink(file, false);
+            sink.setFlushBatch(5, 60_000);
+            for (int i = 0; i < 4; i++) {
+                sink.write(record("batched " + i), Logger.Durability.BATCH);
+            }
+            check("Batch not flushed yet", Files.readAllLines(file).size(), 0);
+            sink.write(record("batched 4"), Logger.Durability.BATCH);
+            check("Batch flushed at line limit", Files.readAllLines(file).size(), 5);
+
+            sink.write(record("info"), Logger.Durability.WARNING);
+            check("Info line deferred", Files.readAllLines(file).size(), 5);
+            sink.write(new LogRecord(System.currentTimeMillis(), 2, "Test", null, "warning", null), Logger.Durability.WARNING);
+            check("Warning flushes earlier lines", Files.readAllLines(file).size(), 7);
+
+            sink.write(record("synced"), Logger.Durability.FSYNC);
+            check("Synced line written", Files.readAllLines(file).size(), 8);
+
+            sink.setFlushBatch(1000, 100);
+            long start = System.currentTimeMillis();
+            sink.write(record("timed"), Logger.Durability.BATCH);
+            check("Timed line deferred", Files.readAllLines(file).size(), 8);
+            while (Files.readAllLines(file).size() < 9 && System.currentTimeMillis() - start < 5_000) {
+                Thread.sleep(10);
+            }
+            check("Background flush after interval", Files.readAllLines(file).size(), 9);
+            check("Not flushed before interval", System.currentTimeMillis() - start >= 100, true);
+            sink.close();
+
+            Logger logger = quietLogger("DurabilityTest");
+            check("Default durability", logger.getDurability(), Logger.Durability.LINE);
+            logger.setDurability(Logger.Durability.BATCH);
+            logger.setFlushBatch(1000, 60_000);
+            String tag = tag("durability");
+            logger.info(tag + " batched");
+            logger.close();
+            check("Close flushes batched lines", countLines(tag + " batched"), 1L);
+        } catch (IOException e) {
+            check("Durability I/O", e.getMessage(), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            deleteTree(dir);
+        }
+    }
+
+    // --- Binary format ---
+
+    private static void testBinaryFormat() {
+        logInfo("Binary format: round trip through LogDecoder");
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("logger-binary");
+            Path file = dir.resolve("log.bin");
+            long t0 = System.currentTimeMillis() - 60_000;
+            LogSink sink = new LogSink(file, false, Logger.FileFormat.BINARY);
+            sink.write(new LogRecord(t0, 0, "Vehicle", "refuel", "Tank level: 50.0 äöü", null));
+            sink.write(new LogRecord(t0 + 1000, 3, "Truck", null, "Overloaded", null));
+            sink.write(new LogRecord(t0 + 2000, 1, "Vehicle", "drive", "Driving 12.5 km", null));
+            sink.close();
+            LogSink appended = new LogSink(file, true, Logger.FileFormat.BINARY);
+            appended.write(new LogRecord(t0 + 3000, 2, "Vehicle", "refuel", "Appended", null));
+            appended.close();
+            check("Binary smaller than text", Files.size(file) < 4 * 60, true);
+
+            List<LogRecord> all = LogDecoder.readAll(file, r -> true);
+            check("Decoded record count", all.size(), 4);
+            check("Decoded message", all.get(0).getMessage(), "Tank level: 50.0 äöü");
+            check("Decoded method", all.get(0).getMethodName(), "refuel");
+            check("Decoded no method", all.get(1).getMethodName(), null);
+            check("Decoded time", all.get(1).getEpochMillis(), t0 + 1000);
+            check("Decoded after append", all.get(3).getLoggerName() + "." + all.get(3).getMethodName(), "Vehicle.refuel");
+            String expectedLine = Logger.formatLogLine(Logger.formatTimestamp(t0 + 1000), "ERROR", "[Truck]", "Overloaded");
+            check("Text layout", all.get(1).toLine(), expectedLine);
+            check("Level filter", LogDecoder.readAll(file, r -> r.getLevel() >= 2).size(), 2);
+            check("Logger filter", LogDecoder.readAll(file, r -> r.getLoggerName().equals("Vehicle")).size(), 3);
+
+            Path withFields = dir.resolve("fields.bin");
+            LogFields fields = new LogFields(4);
+            fields.add("vehicleClass", LogFields.STRING, 0, "Truck");
+            fields.add("tankLevel", LogFields.DOUBLE, Double.doubleToRawLongBits(42.5), null);
+            fields.add("trips", LogFields.LONG, 7, null);
+            fields.add("loaded", LogFields.BOOLEAN, 1, null);
+            fields.add("position", LogFields.OBJECT, 0, new StringBuilder("10.0,50.0"));
+            fields.add("driver", LogFields.STRING, 0, null);
+            LogRecord original = new LogRecord(t0, 1, "Truck", "drive", "Driving", fields, null);
+            LogSink fieldSink = new LogSink(withFields, false, Logger.FileFormat.BINARY);
+            fieldSink.write(original);
+            fieldSink.write(new LogRecord(t0 + 1000, 1, "Truck", "drive", "No fields", null));
+            fieldSink.close();
+            List<LogRecord> decoded = LogDecoder.readAll(withFields, r -> true);
+            LogFields read = decoded.get(0).getFields();
+            check("Decoded field count", read.size(), 6);
+            check("Decoded field values", read.get("vehicleClass") + "|" + read.get("tankLevel") + "|" + read.get("trips")
+                    + "|" + read.get("loaded") + "|" + read.get("position") + "|" + read.get("driver"),
+                    "Truck|42.5|7|true|10.0,50.0|null");
+            check("Decoded field types", read.get("tankLevel") instanceof Double && read.get("trips") instanceof Long, true);
+            check("Decoded fields render like the original", decoded.get(0).toLine(), original.toLine());
+            check("Record without fields", decoded.get(1).getFields().isEmpty(), true);
+
+            Path legacy = dir.resolve("legacy.bin");
+            ByteArrayOutputStream v1 = new ByteArrayOutputStream();
+            v1.write(BinaryLogOutput.MAGIC);
+            v1.write(1);
+            v1.write(new byte[] {BinaryLogOutput.TAG_STRING, 1, 3, 'O', 'l', 'd'});
+            v1.write(new byte[] {BinaryLogOutput.TAG_RECORD, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 0, 2, 'h', 'i'});
+            Files.write(legacy, v1.toByteArray());
+            LogSink legacySink = new LogSink(legacy, true, Logger.FileFormat.BINARY);
+            legacySink.write(original);
+            legacySink.close();
+            List<LogRecord> legacyRecords = LogDecoder.readAll(legacy, r -> true);
+            check("Version 1 file still read", legacyRecords.size() == 2 && legacyRecords.get(0).getMessage().equals("hi"), true);
+            check("Append to version 1 file stays version 1", legacyRecords.get(1).getFields().isEmpty()
+                    && legacyRecords.get(1).getMessage().equals("Driving"), true);
+        } catch (IOException e) {
+            check("Binary format I/O", e.getMessage(), null);
+        } finally {
+            deleteTree(dir);
+        }
+    }
+
+    // --- Timestamp cache ---
+
+    private static void testTimestampCache() {
+        logInfo("Timestamp cache: renders once per second, matches the formatter");
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        ZoneId zone = ZoneId.of("Europe/Berlin");
+        TimestampCache cache = new TimestampCache(formatter, zone);
+        long base = 1_754_150_866_000L; // 2025-08-02 18:07:46 in Berlin
+        String first = cache.format(base + 10);
+        check("Rendered text", first, "2025-08-02 18:07:46");
+        check("Same second reuses text", cache.format(base + 999) == first, true);
+        check("Next second re-renders", cache.format(base + 1000), "2025-08-02 18:07:47");
+        check("Earlier second renders correctly", cache.format(base - 1), "2025-08-02 18:07:45");
+        check("Negative epoch", cache.format(-1), formatter.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(-1), zone)));
+
+        // Many threads racing across second boundaries must always see matching text
+        AtomicInteger mismatches = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            int offset = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    long millis = base + (i * 37L + offset * 101L) % 5000;
+                    String expected = formatter.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), zone));
+                    if (!expected.equals(cache.format(millis))) mismatches.incrementAndGet();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        check("Concurrent mismatches", mismatches.get(), 0);
+    }
+
+    // --- Indexed search ---
+
+    private static void testIndexedSearch() {
+        logInfo("Indexed search: posting lists and time blocks across rotated segments");
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("logger-index");
+            Path base = dir.resolve("app.txt");
+            String[] loggers = {"Vehicle", "Employee", "Truck"};
+            long t0 = 1_754_150_866_000L;
+            LogSink sink = new LogSink(base, false);
+            sink.setMaxFileSize(20_000);
+            sink.setCompressRotatedFiles(true);
+            long expected = 0;
+            for (int i = 0; i < 3000; i++) {
+                int level = i % 400 == 5 ? 3 : 1;
+                String logger = loggers[i % 3];
+                String message = "event " + i + (i == 1205 ? "\n  continued" : "");
+                sink.write(new LogRecord(t0 + i * 1000L + 123, level, logger, "work", message, null));
+                if (level == 3 && logger.equals("Truck") && i >= 1000 && i <= 2000) expected++;
+            }
+            sink.close();
+            LogFileCompressor.awaitIdle();
+            check("Index written next to log", Files.exists(LogIndex.indexPath(sink.getCurrentPath())), true);
+            check("Index moved with gzipped segment", Files.exists(dir.resolve("app_part1.txt.gz.idx")), true);
+
+            LogSearch.Query query = new LogSearch.Query().minLevel(3).logger("Truck")
+                    .from(t0 + 1000 * 1000L).to(t0 + 2000 * 1000L);
+            List<LogRecord> found = new java.util.ArrayList<>();
+            LogSearch.Stats indexed = LogSearch.search(base, query, found::add);
+            check("Indexed matches", indexed.getMatches(), expected);
+            check("Match is ERROR from Truck", found.get(0).getLevel() == 3 && found.get(0).getLoggerName().equals("Truck"), true);
+            check("Continuation line kept", found.stream().anyMatch(r -> r.getMessage().equals("event 1205\n  continued")), true);
+            check("Blocks skipped", indexed.getBlocksSkipped() > 0, true);
+
+            try (java.util.stream.Stream<Path> files = Files.list(dir)) {
+                for (Path index : files.filter(p -> p.toString().endsWith(".idx")).toList()) {
+                    Files.delete(index);
+                }
+            }
+            LogSearch.Stats scanned = LogSearch.search(base, query, r -> {});
+            check("Scan finds the same", scanned.getMatches(), expected);
+            check("Index reads less", indexed.getBytesRead() * 4 < scanned.getBytesRead(), true);
+
+            Path dotted = dir.resolve("dotted.txt");
+            LogSink dottedSink = new LogSink(dotted, false);
+            dottedSink.write(new LogRecord(t0, 1, "Shapes.Triangle", "area", "triangle area", null));
+            dottedSink.write(new LogRecord(t0, 1, "Shapes", "area", "shape area", null));
+            dottedSink.write(new LogRecord(t0, 1, "Shapes.Triangle", null, "triangle without method", null));
+            dottedSink.close();
+            List<LogRecord> triangles = new java.util.ArrayList<>();
+            LogSearch.search(dotted, new LogSearch.Query().logger("Shapes.Triangle"), triangles::add);
+            check("Dotted logger found through index", triangles.size(), 2);
+            check("Dotted logger parsed whole", triangles.get(0).getLoggerName() + "#" + triangles.get(0).getMethodName(),
+                    "Shapes.Triangle#area");
+            check("Parent logger not matched", triangles.stream().noneMatch(r -> r.getMessage().equals("shape area")), true);
+        } catch (IOException e) {
+            check("Indexed search I/O", e.getMessage(), null);
+        } finally {
+            deleteTree(dir);
+        }
+    }
+
+    // --- Tail ---
+
+    private static void testLogTail() {
+        logInfo("Tail: follows appended records across rotation, with backpressure");
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("logger-tail");
+            Path base = dir.resolve("app.txt");
+            LogSink sink = new LogSink(base, false);
+            sink.setMaxFileSize(600);
+            long t0 = System.currentTimeMillis();
+            sink.write(new LogRecord(t0, 1, "Tail", "run", "before start", null));
+
+            List<LogRecord> seen = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+            LogTail tail = new LogTail(base, true, 4, 20);
+            java.util.concurrent.CompletableFuture<Void> done = tail.forEach(seen::add);
+            tail.start();
+            int total = 40;
+            for (int i = 0; i < total; i++) {
+                String message = "tail event " + i + (i == 7 ? "\n  continued" : "");
+                sink.write(new LogRecord(t0 + i, i % 5 == 0 ? 2 : 1, "Tail", "run", message, null));
+            }
+            check("Tail saw every record", awaitCount(seen, total + 1), true);
+            check("Tail kept order", seen.get(total).getMessage(), "tail event " + (total - 1));
+            check("Tail saw existing record", seen.get(0).getMessage(), "before start");
+            check("Tail merged continuation", seen.get(8).getMessage(), "tail event 7\n  continued");
+            check("Tail parsed level", seen.get(1).getLevel(), 2);
+            check("Tail followed rotation", tail.getCurrentPath().getFileName().toString().startsWith("app_part"), true);
+            check("Tail published count", tail.getPublishedCount(), (long) total + 1);
+            check("Tail unparsed count", tail.getUnparsedCount(), 0L);
+            tail.close();
+            check("Tail completes subscribers on close", awaitDone(done), true);
+
+            // A subscriber that takes one record at a time holds the reader back
+            LogTail slow = new LogTail(base, true, 2, 20);
+            java.util.concurrent.atomic.AtomicReference<java.util.concurrent.Flow.Subscription> subscription =
+                    new java.util.concurrent.atomic.AtomicReference<>();
+            List<LogRecord> slowSeen = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+            slow.subscribe(new java.util.concurrent.Flow.Subscriber<LogRecord>() {
+                public void onSubscribe(java.util.concurrent.Flow.Subscription s) { subscription.set(s); s.request(1); }
+                public void onNext(LogRecord record) { slowSeen.add(record); }
+                public void onError(Throwable throwable) {}
+                public void onComplete() {}
+            });
+            slow.start();
+            Thread.sleep(300);
+            check("Slow subscriber got one", slowSeen.size(), 1);
+            check("Reader held back", slow.getPublishedCount() < total + 1, true);
+            subscription.get().request(Long.MAX_VALUE);
+            check("Slow subscriber caught up", awaitCount(slowSeen, total + 1), true);
+            slow.close();
+            sink.close();
+        } catch (IOException e) {
+            check("Tail I/O", e.getMessage(), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            deleteTree(dir);
+        }
+    }
+
+    private static boolean awaitCount(List<?> list, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (list.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        return list.size() == count;
+    }
+
+    private static boolean awaitDone(java.util.concurrent.CompletableFuture<Void> future) {
+        try {
+            future.get(5, java.util.concurrent.TimeUnit.SECONDS);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    // --- Profiler ---
+
+    private static void testCallSiteProfiler() {
+        logInfo("Profiler: lines, bytes and rates per call site in bounded memory");
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("logger-profile");
+            Path base = dir.resolve("app.txt");
+            long t0 = 1_754_150_866_000L;
+            LogSink sink = new LogSink(base, false);
+            sink.setMaxFileSize(8_000);
+            sink.setCompressRotatedFiles(true);
+            int rare = 0;
+            for (int i = 0; i < 600; i++) {
+                // 400 hot lines within 4 seconds, interleaved with 200 lines from 100 rare call sites
+                if (i % 3 == 2) {
+                    String site = "method" + (rare++ % 100);
+                    sink.write(new LogRecord(t0 + i * 10L, 2, "Rare", site, "rare " + i, null));
+                } else {
+                    String message = "hot " + i + (i == 301 ? "\n  continued" : "");
+                    sink.write(new LogRecord(t0 + i * 10L, 1, "Hot", "loop", message, null));
+                }
+            }
+            sink.close();
+            LogFileCompressor.awaitIdle();
+
+            LogProfiler exact = new LogProfiler();
+            exact.addLog(base);
+            long fileBytes = 0;
+            for (Path segment : LogSearch.segmentsOf(base)) {
+                fileBytes += segment.toString().endsWith(".gz") ? 0 : Files.size(segment);
+            }
+            check("Profiler read rotated segments", exact.getFileCount() > 1, true);
+            check("Profiler total lines", exact.getTotalLines(), 600L);
+            check("Profiler WARNING lines", exact.getTotalLines(2), 200L);
+            check("Profiler continuation lines", exact.getContinuationLines(), 1L);
+            check("Profiler bytes at least plain segments", exact.getTotalBytes() > fileBytes, true);
+            LogProfiler.CallSite hot = exact.getTopCallSites(1).get(0);
+            check("Profiler hottest site", hot.getLocation(), "Hot.loop");
+            check("Profiler hot lines exact", hot.getLines() + "/" + hot.getError(), "400/0");
+            check("Profiler hot peak per second", hot.getPeakPerSecond(), 67L);
+            long siteBytes = exact.getTopCallSites(1000).stream().mapToLong(LogProfiler.CallSite::getBytes).sum();
+            check("Profiler bytes add up", siteBytes, exact.getTotalBytes());
+            long timelineLines = 0;
+            LogProfiler.Timeline timeline = exact.getTimeline();
+            for (int i = 0; i < timeline.size(); i++) timelineLines += timeline.getLines(i);
+            check("Profiler timeline lines", timelineLines, 600L);
+            check("Profiler timeline buckets", timeline.size(), 6);
+            List<LogProfiler.Suggestion> suggestions = exact.getSuggestions(5);
+            check("Profiler demotes hot INFO site", suggestions.stream().anyMatch(s ->
+                    s.getCallSite() == hot && s.getAction() == LogProfiler.Suggestion.Action.DEMOTE), true);
+            check("Profiler rate-limits hot site", suggestions.stream().anyMatch(s ->
+                    s.getCallSite() == hot && s.getAction() == LogProfiler.Suggestion.Action.RATE_LIMIT), true);
+            check("Profiler leaves rare sites alone", suggestions.stream().allMatch(s -> s.getCallSite() == hot), true);
+
+            LogProfiler bounded = new LogProfiler(8);
+            bounded.addLog(base);
+            LogProfiler.CallSite boundedHot = bounded.getTopCallSites(1).get(0);
+            check("Bounded profiler keeps hot site", boundedHot.getLocation(), "Hot.loop");
+            check("Bounded count within error", boundedHot.getLines() - boundedHot.getError() <= 400
+                    && boundedHot.getLines() >= 400, true);
+            check("Bounded table size", bounded.getTopCallSites(1000).size(), 8);
+        } catch (IOException e) {
+            check("Profiler I/O", e.getMessage(), null);
+        } finally {
+            deleteTree(dir);
+        }
+    }
+
+    // --- Metrics ---
+
+    private static void testMetrics() {
+        logInfo("Metrics: per-level counts, suppression, bytes, latency and JMX");
+        String name = "MetricsTest-" + RUN_ID;
+        Logger logger = quietLogger(name);
+        logger.setLogLevel(2);
+        LoggerMetrics.Snapshot before = LoggerMetrics.snapshot();
+        for (int i = 0; i < 3; i++) logger.debug("metrics debug {}", i);
+        for (int i = 0; i < 2; i++) logger.info("metrics info");
+        for (int i = 0; i < 4; i++) logger.warning(tag("metrics") + " warning {}", i);
+        logger.error(tag("metrics") + " error");
+        LoggerMetrics.Snapshot after = LoggerMetrics.snapshot();
+        logger.close();
+
+        check("WARNING lines counted", after.getEmitted(2) - before.getEmitted(2), 4L);
+        check("ERROR lines counted", after.getEmitted(3) - before.getEmitted(3), 1L);
+        check("Lines per logger", after.getEmittedByLogger().get(name) - before.getEmittedByLogger().getOrDefault(name, 0L), 5L);
+        check("Suppressed DEBUG", after.getSuppressed(0) - before.getSuppressed(0), 3L);
+        check("Suppressed INFO", after.getSuppressed(1) - before.getSuppressed(1), 2L);
+        check("Timed writes", after.getWriteCount() - before.getWriteCount(), 5L);
+        check("Bytes counted", after.getBytesWritten() - before.getBytesWritten() > 5 * 60, true);
+        check("Rotations counted", after.getRotations() > 0, true);
+        check("Latency percentiles ordered", after.getWriteLatencyPercentileNanos(50) <= after.getWriteLatencyPercentileNanos(99)
+                && after.getWriteLatencyPercentileNanos(99) <= after.getWriteLatencyMaxNanos(), true);
+
+        LoggerMetrics.registerMBean();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            Object errors = server.getAttribute(new ObjectName("Utils:type=LoggerMetrics"), "ErrorLines");
+            check("JMX ErrorLines", errors, LoggerMetrics.snapshot().getEmitted(3));
+        } catch (JMException e) {
+            check("JMX access", e.getMessage(), null);
+        }
+    }
+
+    // --- Level configuration ---
+
+    private static void testLoggerConfig() {
+        logInfo("Level configuration: prefixes, class loggers and hot reload");
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("logger-config");
+            Path file = dir.resolve("logger.properties");
+            Files.writeString(file, "root=INFO\nCfgTest=WARNING\nCfgTest.Deep=ERROR\nUtils.TestLogger=OFF\n");
+            LoggerConfig.watch(file);
+
+            Logger explicit = quietLogger("Explicit-" + RUN_ID);
+            explicit.setLogLevel(0);
+            Logger pkg = quietLogger("CfgTest.Sub");
+            Logger deep = quietLogger("CfgTest.Deep.Leaf");
+            Logger other = quietLogger("CfgTestOther");
+            Logger byClass = new Logger(TestLogger.class);
+            byClass.setConsoleLoggingEnabled(false);
+            check("Prefix rule", pkg.getLogLevel(), 2);
+            check("Longest prefix wins", deep.getLogLevel(), 3);
+            check("Prefix needs a dot boundary", other.getLogLevel(), 1);
+            check("Class logger matched by full name", byClass.getLogLevel(), -1);
+            check("Class logger shows simple name", byClass.getLoggerName(), "TestLogger");
+            check("Disabled check", pkg.isDebugEnabled(), false);
+
+            Files.writeString(file, "CfgTest=DEBUG\n");
+            boolean reloaded = false;
+            for (int i = 0; i < 100 && !reloaded; i++) {
+                Thread.sleep(50);
+                reloaded = pkg.getLogLevel() == 0;
+            }
+            check("Hot reload applied", reloaded, true);
+            check("Reload updates nested logger", deep.getLogLevel(), 0);
+            check("Removed rule falls back to default", byClass.getLogLevel(), 0);
+            check("Explicit level kept", explicit.getLogLevel(), 0);
+
+            Files.writeString(file, "CfgTest=LOUD\n");
+            Thread.sleep(300);
+            check("Bad file keeps previous levels", pkg.getLogLevel(), 0);
+        } catch (IOException e) {
+            check("Config test I/O", e.getMessage(), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            LoggerConfig.stopWatching();
+            LoggerConfig.apply(LoggerConfig.parse(new java.util.Properties()));
+            deleteTree(dir);
+        }
+    }
+
+    // --- Throttling ---
+
+    private static void testThrottling() {
+        logInfo("Throttling: duplicate suppression and rate limiting");
+        String tag = tag("throttle");
+        Logger dedup = quietLogger("DedupTest-" + RUN_ID);
+        dedup.setDuplicateSuppression(3, 60_000);
+        Logger sameName = quietLogger("DedupTest-" + RUN_ID);
+        for (int i = 0; i < 500; i++) {
+            dedup.error(tag + " bad sides: {}", i);
+            sameName.error(tag + " bad sides: {}", i);
+        }
+        dedup.error(tag + " different problem");
+        dedup.close();
+        sameName.close();
+        check("Repeats collapsed", countLines(tag + " bad sides"), 2L); // first line + summary
+        check("Summary counts repeats", countLines("Previous message repeated 999 times (pattern: " + tag + " bad sides: {})"), 1L);
+        check("Different message written", countLines(tag + " different problem"), 1L);
+
+        String rateTag = tag("rate");
+        Logger limited = quietLogger("RateTest-" + RUN_ID);
+        limited.setRateLimit(2, 5, 3);
+        for (int i = 0; i < 200; i++) {
+            limited.warning(rateTag + " flood {}", i);
+        }
+        long admitted = countLines(rateTag + " flood");
+        check("Burst admitted, flood dropped", admitted >= 3 && admitted <= 5, true);
+        try {
+            Thread.sleep(300);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        limited.warning(rateTag + " after pause");
+        check("Suppression summary written", countLines("[RateTest-" + RUN_ID, "WARNING messages suppressed"), 1L);
+        check("Line after pause written", countLines(rateTag + " after pause"), 1L);
+        limited.info(rateTag + " info not limited");
+        check("Other levels unaffected", countLines(rateTag + " info not limited"), 1L);
+        limited.close();
+    }
+
+    // --- Console output ---
+
+    private static void testConsoleOutput() {
+        logInfo("Console output: batched, pre-colored output");
+        String line = Logger.formatLogLine("2025-08-02 18:07:46", "INFO", "[ConsoleTest.run]", "hello");
+        ByteArrayOutputStream plainOut = new ByteArrayOutputStream();
+        ConsoleOutput plain = new ConsoleOutput(plainOut, false, 1024, 60_000);
+        plain.append(1, line);
+        check("Batched line held back", plainOut.size(), 0);
+        plain.flush();
+        check("Plain line without ANSI", plainOut.toString(StandardCharsets.UTF_8), line + System.lineSeparator());
+
+        ByteArrayOutputStream colorOut = new ByteArrayOutputStream();
+        ConsoleOutput colored = new ConsoleOutput(colorOut, true, 1024, 60_000);
+        colored.append(3, "Grüße " + line);
+        colored.flush();
+        check("Colored line", colorOut.toString(StandardCharsets.UTF_8),
+                Logger.RED + "Grüße " + line + Logger.RESET + System.lineSeparator());
+
+        ByteArrayOutputStream smallOut = new ByteArrayOutputStream();
+        ConsoleOutput small = new ConsoleOutput(smallOut, false, 512, 60_000);
+        for (int i = 0; i < 100; i++) {
+            small.append(0, "line " + i);
+        }
+        check("Full buffer written", smallOut.size() > 0, true);
+        small.append(0, "x".repeat(2000));
+        small.flush();
+        String[] written = smallOut.toString(StandardCharsets.UTF_8).split(System.lineSeparator());
+        check("Oversized line kept in order", written.length == 101 && written[99].equals("line 99")
+                && written[100].length() == 2000, true);
+
+        ByteArrayOutputStream sharedOut = new ByteArrayOutputStream();
+        ConsoleOutput concurrent = new ConsoleOutput(sharedOut, false, 4096, 5);
+        concurrent.start();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    concurrent.append(1, "thread " + id + " line " + i);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        String[] lines = sharedOut.toString(StandardCharsets.UTF_8).split(System.lineSeparator());
+        check("Interval flush wrote every line", lines.length, 4000);
+        check("Lines not torn", java.util.Arrays.stream(lines).allMatch(l -> l.matches("thread \\d line \\d+")), true);
+        concurrent.shutdown();
+    }
+
+    // --- Layouts and appender routes ---
+
+    private static void testLayoutsAndRoutes() {
+        logInfo("Layouts: compiled patterns and routes to appenders");
+        long time = System.currentTimeMillis();
+        LogRecord withMethod = new LogRecord(time, 2, "Truck", "drive", "Overloaded", null);
+        LogRecord withoutMethod = new LogRecord(time, 0, "Truck", null, "Overloaded", null);
+        check("Default layout, method", Layout.DEFAULT.format(withMethod),
+                Logger.formatLogLine(Logger.formatTimestamp(time), "WARNING", "[Truck.drive]", "Overloaded"));
+        check("Default layout, no method", Layout.DEFAULT.format(withoutMethod),
+                Logger.formatLogLine(Logger.formatTimestamp(time), "DEBUG", "[Truck]", "Overloaded"));
+        Layout custom = Layout.compile("%d{yyyy} %-7level|%6logger|%logger.%method %msg 100%%");
+        String year = DateTimeFormatter.ofPattern("yyyy").format(Instant.ofEpochMilli(time).atZone(ZoneId.systemDefault()));
+        check("Custom layout", custom.format(withMethod), year + " WARNING| Truck|Truck.drive Overloaded 100%");
+        LogRecord precise = new LogRecord(1_754_150_866_123L, 1, "Truck", null, "Overloaded", null);
+        String millis = DateTimeFormatter.ofPattern("HH:mm:ss.SSS").format(Instant.ofEpochMilli(1_754_150_866_123L).atZone(ZoneId.systemDefault()));
+        check("Date pattern with milliseconds", Layout.compile("%d{HH:mm:ss.SSS} %msg").format(precise), millis + " Overloaded");
+        check("Quoted S is not a fraction", Layout.compile("%d{'Sec' ss}").format(precise), "Sec 46");
+        for (String bad : new String[] {"%foo", "%-9([%level]", "%", "%d{yyyy"}) {
+            boolean rejected = false;
+            try {
+                Layout.compile(bad);
+            } catch (IllegalArgumentException e) {
+                rejected = true;
+            }
+            check("Rejects " + bad, rejected, true);
+        }
+        check("Console appender keeps its layout", new ConsoleAppender(custom).getLayout(), custom);
+
+        String tag = tag("routes");
+        String parent = "RouteTest-" + RUN_ID;
+        MemoryAppender warnings = new MemoryAppender(10);
+        MemoryAppender everything = new MemoryAppender(3, Layout.compile("%level %msg"));
+        LogRoutes.add(parent, warnings, 2);
+        Logger child = quietLogger(parent + ".Child"); // created after the route was added
+        LogRoutes.add(parent + ".Child", everything, 0);
+        LogRoutes.add(parent, everything, 3); // the more specific route wins
+        child.debug(tag + " debug");
+        child.warning(tag + " warning");
+        child.error(tag + " error");
+        child.info(tag + " info");
+        check("Route threshold", warnings.getRecords().size(), 2);
+        check("Routed record level", warnings.getRecords().get(0).getLevel(), 2);
+        check("Appender reached once", everything.getAppendedCount(), 4L);
+        check("Ring keeps newest", everything.getLines(),
+                List.of("WARNING " + tag + " warning", "ERROR " + tag + " error", "INFO " + tag + " info"));
+        Logger other = quietLogger(parent + "Other");
+        other.error(tag + " not a child");
+        check("Prefix matches whole names only", warnings.getRecords().size(), 2);
+        check("Route removed", LogRoutes.remove(parent, warnings), true);
+        child.error(tag + " after removal");
+        check("Removed route gets nothing", warnings.getRecords().size(), 2);
+        LogRoutes.clear();
+        child.error(tag + " after clear");
+        check("Cleared routes get nothing", everything.getAppendedCount(), 5L);
+
+        child.setLayout(Layout.compile("%level|%logger|%msg"));
+        child.error(tag + " custom file layout");
+        check("Logger layout used for file", countLines("ERROR|" + parent + ".Child|" + tag + " custom file layout"), 1L);
+        child.close();
+        other.close();
+
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("logger-appenders");
+            Path jsonPath = dir.resolve("log.jsonl");
+            JsonLinesAppender json = new JsonLinesAppender(jsonPath);
+            json.append(new LogRecord(time, 3, "Shape2D", null, "Bad \"side\"\n\tlength", null));
+            json.close();
+            check("JSON line", Files.readAllLines(jsonPath).get(0),
+                    "{\"ts\":" + time + ",\"level\":\"ERROR\",\"logger\":\"Shape2D\",\"msg\":\"Bad \\\"side\\\"\\n\\tlength\"}");
+
+            Path rollingPath = dir.resolve("rolling.txt");
+            RollingFileAppender rolling = new RollingFileAppender(rollingPath, Layout.compile("%level %msg"));
+            rolling.setMaxFileSize(100);
+            for (int i = 0; i < 20; i++) {
+                rolling.append(new LogRecord(time, 1, "Test", null, "rolling line " + i, null));
+            }
+            Path current = rolling.getCurrentPath();
+            rolling.close();
+            check("Rolling appender rotated", current.equals(rollingPath), false);
+            check("Rolling appender layout", Files.readAllLines(current).get(0).startsWith("INFO rolling line "), true);
+        } catch (IOException e) {
+            logError("Appender files failed: " + e.getMessage());
+            count_errors++;
+        } finally {
+            deleteTree(dir);
+        }
+    }
+
+    // --- Structured fields ---
+
+    private static void testStructuredFields() {
+        logInfo("Structured fields: JSON lines and key=value text");
+        String tag = tag("fields");
+        long time = System.currentTimeMillis();
+        LogFields fields = new LogFields(2);
+        fields.add("city", LogFields.STRING, 0, "Köln \"Süd\"\u0001");
+        fields.add("count", LogFields.LONG, -42, null);
+        fields.add("level", LogFields.DOUBLE, Double.doubleToRawLongBits(42.5), null);
+        fields.add("tenth", LogFields.DOUBLE, Double.doubleToRawLongBits(0.1), null);
+        fields.add("tiny", LogFields.DOUBLE, Double.doubleToRawLongBits(1e-9), null);
+        fields.add("nan", LogFields.DOUBLE, Double.doubleToRawLongBits(Double.NaN), null);
+        fields.add("full", LogFields.BOOLEAN, 1, null);
+        fields.add("owner", LogFields.OBJECT, 0, null);
+        fields.add("emoji", LogFields.STRING, 0, "\uD83D\uDE97");
+        LogRecord record = new LogRecord(time, 1, "Vehicle", "refuel", "Refueled", fields, null);
+        check("JSON encoding", JsonLinesAppender.toJson(record),
+                "{\"ts\":" + time + ",\"level\":\"INFO\",\"logger\":\"Vehicle\",\"method\":\"refuel\",\"msg\":\"Refueled\","
+                        + "\"fields\":{\"city\":\"Köln \\\"Süd\\\"\\u0001\",\"count\":-42,\"level\":42.5,\"tenth\":0.1,"
+                        + "\"tiny\":1.0E-9,\"nan\":\"NaN\",\"full\":true,\"owner\":null,\"emoji\":\"\uD83D\uDE97\"}}");
+        check("Field lookup", fields.get("level"), 42.5);
+        check("Copy is independent", fields.copy().size(), fields.size());
+
+        Logger logger = quietLogger("FieldsTest-" + RUN_ID);
+        MemoryAppender memory = new MemoryAppender(8);
+        LogRoutes.add(logger.getConfigName(), memory, 0);
+        logger.atInfo().field("vehicleClass", "Truck").field("tankLevel", 50.0).field("full", false)
+                .log("{} refueled", tag);
+        check("Fields in text line", countLines(tag + " refueled vehicleClass=Truck tankLevel=50.0 full=false"), 1L);
+        check("Fields in text line location", countLines("[FieldsTest-" + RUN_ID + ".testStructuredFields]", tag + " refueled"), 1L);
+        LogFields routed = memory.getRecords().get(0).getFields();
+        logger.atInfo().field("other", 1).log(tag + " second");
+        check("Routed record keeps its fields", routed.toString(), "{vehicleClass=Truck, tankLevel=50.0, full=false}");
+        check("Next event starts empty", memory.getRecords().get(1).getFields().toString(), "{other=1}");
+        LogRoutes.remove(logger.getConfigName(), memory);
+
+        logger.setLogLevel(2);
+        LogEvent disabled = logger.atInfo();
+        disabled.field("ignored", 1).log(tag + " disabled");
+        check("Disabled level returns no-op event", disabled == logger.atDebug(), true);
+        check("Disabled event not written", countLines(tag + " disabled"), 0L);
+
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("logger-fields");
+            Path jsonPath = dir.resolve("events.jsonl");
+            JsonLinesAppender json = new JsonLinesAppender(jsonPath);
+            LogRoutes.add(logger.getConfigName(), json, 2);
+            logger.atWarning().field("km", 12).field("fuel", 3.25).log("Low fuel");
+            LogRoutes.remove(logger.getConfigName(), json);
+            json.close();
+            String line = Files.readAllLines(jsonPath).get(0);
+            check("JSON file fields", line.endsWith("\"method\":\"testStructuredFields\",\"msg\":\"Low fuel\",\"fields\":{\"km\":12,\"fuel\":3.25}}"), true);
+            check("JSON file schema", line.startsWith("{\"ts\":") && line.contains(",\"level\":\"WARNING\",\"logger\":\"FieldsTest-"), true);
+        } catch (IOException e) {
+            logError("Structured field files failed: " + e.getMessage());
+            count_errors++;
+        } finally {
+            deleteTree(dir);
+        }
+        logger.close();
+    }
+
+    // --- Flight recorder ---
+
+    private static void testFlightRecorder() {
+        logInfo("Flight recorder: debug context dumped on error");
+        String tag = tag("flight");
+        check("Off by default", FlightRecorder.isEnabled(), false);
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("logger-flight");
+            FlightRecorder.enable(16, dir);
+            FlightRecorder.setMinDumpInterval(0);
+            Logger logger = quietLogger("FlightTest-" + RUN_ID);
+            logger.setLogLevel(3);
+            for (int i = 0; i < 40; i++) {
+                logger.debug("{} step {}", tag, i);
+            }
+            logger.info(() -> tag + " lazy info");
+            List<LogRecord> ring = FlightRecorder.snapshot();
+            check("Ring keeps capacity", ring.size(), 16);
+            check("Lazy message at disabled level not built", ring.get(15).getMessage(), FlightRecorder.LAZY_NOT_EVALUATED);
+            check("Debug recorded while off", ring.get(14).getMessage(), tag + " step 39.0");
+            check("Debug not written to file", countLines(tag + " step"), 0L);
+            check("No dump before error", FlightRecorder.getDumpCount(), 0L);
+
+            logger.error("{} out of fuel", tag);
+            check("Dump written in background", FlightRecorder.awaitDumps(5_000), true);
+            check("Error triggers dump", FlightRecorder.getDumpCount(), 1L);
+            List<LogRecord> dumped = LogDecoder.readAll(FlightRecorder.getLastDump(), r -> true);
+            check("Dump has context and error", dumped.size(), 16);
+            check("Dump ends with error", dumped.get(15).getLevel() == 3
+                    && dumped.get(15).getMessage().equals(tag + " out of fuel"), true);
+            check("Dump keeps debug level", dumped.get(0).getLevelName(), "DEBUG");
+
+            logger.debug("{} after dump", tag);
+            logger.error("{} second error", tag);
+            FlightRecorder.awaitDumps(5_000);
+            List<LogRecord> second = LogDecoder.readAll(FlightRecorder.getLastDump(), r -> true);
+            check("Next dump starts after previous", second.size(), 2);
+
+            FlightRecorder.setMinDumpInterval(60_000);
+            logger.error("{} third error", tag);
+            logger.error("{} fourth error", tag);
+            FlightRecorder.awaitDumps(5_000);
+            check("Dumps rate limited", FlightRecorder.getDumpCount(), 3L);
+
+            Path manual = dir.resolve("manual.bin");
+            FlightRecorder.dumpTo(manual);
+            check("Manual dump", LogDecoder.readAll(manual, r -> true).size(), 16);
+
+            StringBuilder mutable = new StringBuilder("tank 50");
+            logger.debug("{} state {}", tag, mutable);
+            mutable.setLength(0);
+            mutable.append("tank 0");
+            int[] calls = {0};
+            FlightRecorder.setEvaluateLazyMessages(true);
+            logger.debug(() -> tag + " lazy " + ++calls[0]);
+            logger.debug("{} km", 12L);
+            logger.debug("{} fuel", 2.5);
+            logger.debug("{} of {}", tag, new Object[] {"list", 3});
+            List<LogRecord> snapshot = FlightRecorder.snapshot();
+            int last = snapshot.size() - 1;
+            check("Argument kept as logged", snapshot.get(last - 4).getMessage(), tag + " state tank 50");
+            check("Supplier run once at capture", calls[0], 1);
+            check("Supplier text recorded", snapshot.get(last - 3).getMessage(), tag + " lazy 1");
+            check("Primitive arguments recorded", snapshot.get(last - 2).getMessage() + "|" + snapshot.get(last - 1).getMessage(),
+                    "12 km|2.5 fuel");
+            check("Array argument recorded", snapshot.get(last).getMessage(), tag + " of [list, 3]");
+            logger.setLogLevel(0);
+            StringBuilder cargo = new StringBuilder("empty");
+            logger.atInfo().field("cargo", cargo).field("tankLevel", 40.0).log(tag + " event");
+            cargo.setLength(0);
+            cargo.append("full");
+            Path eventDump = dir.resolve("event.bin");
+            FlightRecorder.dumpTo(eventDump);
+            List<LogRecord> withEvent = LogDecoder.readAll(eventDump, r -> true);
+            check("Dump keeps event fields", withEvent.get(withEvent.size() - 1).getFields().toString(),
+                    "{cargo=empty, tankLevel=40.0}");
+            logger.close();
+        } catch (IOException e) {
+            logError("Flight recorder files failed: " + e.getMessage());
+            count_errors++;
+        } finally {
+            FlightRecorder.disable();
+            deleteTree(dir);
+        }
+        check("Disabled", FlightRecorder.isEnabled(), false);
+    }
+
+    // --- Helpers ---
+
+    private static LogSink acquireLogSink() {
+        try {
+            LogSink sink = LogSinkRegistry.acquire(Paths.get("log.txt"), true);
+            sink.setMaxFileSize(Long.MAX_VALUE);
+            return sink;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not open log.txt", e);
+        }
+    }
+
+    private static LogRecord record(String text) {
+        return new LogRecord(System.currentTimeMillis(), 1, "Test", null, text, text);
+    }
+
+    private static Logger quietLogger(String name) {
+        Logger logger = new Logger(name);
+        logger.setConsoleLoggingEnabled(false);
+        logger.setMaxFileSize(Long.MAX_VALUE);
+        return logger;
+    }
+
+    // Deletes a test directory and everything in it; leftovers only cost a warning
+    private static void deleteTree(Path dir) {
+        if (dir == null) return;
+        try (java.util.stream.Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(java.util.Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            logWarn("Could not delete " + dir + ": " + e.getMessage());
+        }
+    }
+
+    private static String tag(String test) {
+        return "[" + test + "-" + RUN_ID + "]";
+    }
+
+    private static long countLines(String... needles) {
+        try {
+            List<String> lines = Files.readAllLines(Paths.get("log.txt"));
+            return lines.stream().filter(l -> java.util.Arrays.stream(needles).allMatch(l::contains)).count();
+        } catch (IOException e) {
+            logWarn("Could not read log.txt: " + e.getMessage());
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package Utils;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Utils.TimestampCache renders the "yyyy-MM-dd HH:mm:ss" timestamp column and
+ * reuses the rendered string until the second rolls over.
+ * <p>
+ * The last rendered second and its text are kept together in one immutable
+ * entry published through a volatile field, so any number of threads can read
+ * it without locking. When the second changes, the thread that notices renders
+ * the new text and publishes a fresh entry; concurrent threads may render the
+ * same second twice, which is harmless.
+ */
+final class TimestampCache {
+    private final DateTimeFormatter formatter;
+    private final ZoneId zone;
+    private volatile Entry current = new Entry(Long.MIN_VALUE, null);
+
+    /**
+     * Creates a cache for the given pattern in the system default time zone.
+     * @param pattern a DateTimeFormatter pattern with at most second precision
+     */
+    TimestampCache(String pattern) {
+        this(DateTimeFormatter.ofPattern(pattern), ZoneId.systemDefault());
+    }
+
+    /**
+     * Creates a cache for the given formatter and time zone.
+     * @param formatter formatter with at most second precision
+     * @param zone time zone used to render
+     */
+    TimestampCache(DateTimeFormatter formatter, ZoneId zone) {
+        this.formatter = formatter;
+        this.zone = zone;
+    }
+
+    /**
+     * Returns the rendered timestamp for the current time.
+     * @return the timestamp text
+     */
+    String now() {
+        return format(System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the rendered timestamp for a point in time. Consecutive calls
+     * within the same second return the same string instance.
+     * @param epochMillis milliseconds since the epoch
+     * @return the timestamp text
+     */
+    String format(long epochMillis) {
+        long second = Math.floorDiv(epochMillis, 1000L);
+        Entry entry = current;
+        if (entry.second == second) return entry.text;
+        String text = formatter.format(LocalDateTime.ofInstant(Instant.ofEpochSecond(second), zone));
+        current = new Entry(second, text);
+        return text;
+    }
+
+    /**
+     * Returns whether a DateTimeFormatter pattern shows anything finer than
+     * seconds (S, n, N or A outside quoted text), which this cache cannot render.
+     * @param pattern the pattern
+     * @return true if the pattern needs the milliseconds
+     */
+    static boolean hasFractionOfSecond(String pattern) {
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted && (c == 'S' || c == 'n' || c == 'N' || c == 'A')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Entry {
+        final long second;
+        final String text;
+
+        Entry(long second, String text) {
+            this.second = second;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+// Spatial index over vehicle positions for nearest-vehicle and radius queries.
+package Vehicles;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Vehicles.FleetIndex keeps vehicles in a latitude/longitude grid so that
+ * radius and k-nearest queries only look at the cells near the query point
+ * instead of every vehicle.
+ * <p>
+ * Cells are {@code cellDegrees} wide in both directions and are only stored
+ * when they hold a vehicle. A radius query covers the cells of the spherical
+ * cap around the point: its latitude band, and in longitude the half width
+ * {@code asin(sin(r/R) / cos(lat))}, wrapping across 0°/360° as the
+ * project's 0-360° longitudes require. If the cap contains a pole, whole
+ * latitude rows are covered. Candidates are then checked with
+ * {@link GPSPosition#distanceInKm}. A k-nearest query runs radius queries
+ * with a doubling radius until it has k vehicles, so the k nearest are
+ * always among them.
+ * <p>
+ * The index registers a {@link PositionListener} on each vehicle and moves
+ * it to its new cell on {@link Vehicle#setPosition} and {@link Vehicle#drive}.
+ * Changing a vehicle's GPSPosition object directly is not seen; call
+ * {@link #update(Vehicle)} after doing so. Methods are synchronized.
+ */
+public class FleetIndex {
+    public static final double DEFAULT_CELL_DEGREES = 1.0;
+    static final double EARTH_RADIUS_KM = 6371; // same as GPSPosition.distanceInKm
+    private static final double KM_PER_DEGREE = EARTH_RADIUS_KM * Math.PI / 180;
+    private static final double EPSILON_DEGREES = 1e-9;
+
+    private final double cellDegrees;
+    private final int latCells;
+    private final int lonCells;
+    private final Map<Integer, List<Entry>> cells = new HashMap<>();
+    private final Map<Vehicle, Entry> entries = new IdentityHashMap<>();
+    private final PositionListener listener = (vehicle, oldPosition, newPosition) -> update(vehicle);
+    private int lastCandidateCount = 0;
+
+    // Indexed copy of a vehicle's position, so a query never sees a half-moved vehicle
+    private static final class Entry {
+        final Vehicle vehicle;
+        double latitude;
+        double longitude;
+        int cell;
+        int slot; // index in the cell's list, for O(1) removal
+
+        Entry(Vehicle vehicle) {
+            this.vehicle = vehicle;
+        }
+    }
+
+    // A vehicle with its distance, used to sort results
+    private record Hit(Vehicle vehicle, double distanceKm) {}
+
+    public FleetIndex() {
+        this(DEFAULT_CELL_DEGREES);
+    }
+
+    /**
+     * Creates an index with the given cell size.
+     * @param cellDegrees cell width and height in degrees; must divide 180
+     */
+    public FleetIndex(double cellDegrees) {
+        double rows = 180 / cellDegrees;
+        if (!(cellDegrees > 0) || cellDegrees > 180 || Math.abs(rows - Math.rint(rows)) > 1e-9) {
+            throw new IllegalArgumentException("Cell size must divide 180°.");
+        }
+        this.cellDegrees = cellDegrees;
+        this.latCells = (int) Math.rint(rows);
+        this.lonCells = 2 * latCells;
+    }
+
+    /**
+     * Adds a vehicle and starts following its moves.
+     * @return false if the vehicle was already in the index
+     */
+    public synchronized boolean add(Vehicle vehicle) {
+        if (vehicle == null) throw new IllegalArgumentException("Vehicle cannot be null");
+        if (entries.containsKey(vehicle)) return false;
+        Entry entry = new Entry(vehicle);
+        entries.put(vehicle, entry);
+        place(entry, vehicle.getPosition());
+        vehicle.addPositionListener(listener);
+        return true;
+    }
+
+    /**
+     * Removes a vehicle and stops following its moves.
+     * @return false if the vehicle was not in the index
+     */
+    public synchronized boolean remove(Vehicle vehicle) {
+        Entry entry = entries.remove(vehicle);
+        if (entry == null) return false;
+        unplace(entry);
+        vehicle.removePositionListener(listener);
+        return true;
+    }
+
+    /**
+     * Reads the vehicle's position again and moves it to its cell.
+     * @return false if the vehicle is not in the index
+     */
+    public synchronized boolean update(Vehicle vehicle) {
+        Entry entry = entries.get(vehicle);
+        if (entry == null) return false;
+        GPSPosition position = vehicle.getPosition();
+        if (cellOf(position.getLatitude(), position.getLongitude()) == entry.cell) {
+            entry.latitude = position.getLatitude();
+            entry.longitude = position.getLongitude();
+        } else {
+            unplace(entry);
+            place(entry, position);
+        }
+        return true;
+    }
+
+    public synchronized boolean contains(Vehicle vehicle) {
+        return entries.containsKey(vehicle);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        for (Vehicle vehicle : entries.keySet()) {
+            vehicle.removePositionListener(listener);
+        }
+        entries.clear();
+        cells.clear();
+    }
+
+    public double getCellDegrees() {
+        return cellDegrees;
+    }
+
+    /**
+     * Finds all vehicles within a distance of a point.
+     * @param center the point
+     * @param radiusKm the distance in km
+     * @return the vehicles, nearest first
+     */
+    public synchronized List<Vehicle> findWithin(GPSPosition center, double radiusKm) {
+        if (center == null) throw new IllegalArgumentException("Position cannot be null");
+        if (radiusKm < 0 || Double.isNaN(radiusKm)) throw new IllegalArgumentException("Radius must not be negative");
+        return vehiclesOf(within(center.getLatitude(), center.getLongitude(), radiusKm));
+    }
+
+    /**
+     * Finds the vehicles nearest to a point.
+     * @param center the point
+     * @param k how many vehicles to return
+     * @return up to k vehicles, nearest first
+     */
+    public synchronized List<Vehicle> findNearest(GPSPosition center, int k) {
+        if (center == null) throw new IllegalArgumentException("Position cannot be null");
+        if (k < 0) throw new IllegalArgumentException("k must not be negative");
+        if (k == 0 || entries.isEmpty()) return new ArrayList<>();
+        double latitude = center.getLatitude();
+        double longitude = center.getLongitude();
+        double maxRadius = Math.PI * EARTH_RADIUS_KM + 1; // half the circumference reaches every point
+        double radius = cellDegrees * KM_PER_DEGREE;
+        int candidates = 0;
+        List<Hit> hits;
+        while (true) {
+            hits = within(latitude, longitude, radius);
+            candidates += lastCandidateCount;
+            if (hits.size() >= k || hits.size() == entries.size() || radius >= maxRadius) break;
+            radius = Math.min(radius * 2, maxRadius);
+        }
+        lastCandidateCount = candidates;
+        return vehiclesOf(hits.subList(0, Math.min(k, hits.size())));
+    }
+
+    // Number of vehicles whose distance the last query computed
+    synchronized int getLastCandidateCount() {
+        return lastCandidateCount;
+    }
+
+    // --- Internal Methods ---
+
+    private List<Hit> within(double latitude, double longitude, double radiusKm) {
+        double angle = radiusKm / EARTH_RADIUS_KM;
+        double angleDegrees = Math.toDegrees(angle) + EPSILON_DEGREES;
+        double south = latitude - angleDegrees;
+        double north = latitude + angleDegrees;
+        int firstRow = rowOf(Math.max(south, -90));
+        int lastRow = rowOf(Math.min(north, 90));
+        int firstColumn;
+        int lastColumn;
+        if (angle >= Math.PI / 2 || south <= -90 || north >= 90) {
+            firstColumn = 0; // the cap contains a pole or reaches the far side: full rows
+            lastColumn = lonCells - 1;
+        } else {
+            double halfWidth = Math.toDegrees(Math.asin(Math.sin(angle) / Math.cos(Math.toRadians(latitude)))) + EPSILON_DEGREES;
+            firstColumn = (int) Math.floor((longitude - halfWidth) / cellDegrees); // may be negative: wraps below 0°
+            lastColumn = (int) Math.floor((longitude + halfWidth) / cellDegrees);  // may pass lonCells: wraps above 360°
+        }
+
+        List<Hit> hits = new ArrayList<>();
+        int candidates = 0;
+        long coveredCells = (long) (lastRow - firstRow + 1) * (lastColumn - firstColumn + 1);
+        if (coveredCells > cells.size()) {
+            // Fewer occupied cells than covered ones: check each occupied cell instead
+            for (Map.Entry<Integer, List<Entry>> cell : cells.entrySet()) {
+                int row = cell.getKey() / lonCells;
+                int column = cell.getKey() % lonCells;
+                if (row < firstRow || row > lastRow || !columnCovered(column, firstColumn, lastColumn)) continue;
+                candidates += collect(cell.getValue(), latitude, longitude, radiusKm, hits);
+            }
+        } else {
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    List<Entry> cell = cells.get(row * lonCells + Math.floorMod(column, lonCells));
+                    if (cell != null) candidates += collect(cell, latitude, longitude, radiusKm, hits);
+                }
+            }
+        }
+        lastCandidateCount = candidates;
+        hits.sort(Comparator.comparingDouble(Hit::distanceKm));
+        return hits;
+    }
+
+    private static int collect(List<Entry> cell, double latitude, double longitude, double radiusKm, List<Hit> hits) {
+        for (int i = 0; i < cell.size(); i++) {
+            Entry entry = cell.get(i);
+            double distance = GPSPosition.distanceInKm(latitude, longitude, entry.latitude, entry.longitude);
+            if (distance <= radiusKm) hits.add(new Hit(entry.vehicle, distance));
+        }
+        return cell.size();
+    }
+
+    private boolean columnCovered(int column, int firstColumn, int lastColumn) {
+        if (lastColumn - firstColumn + 1 >= lonCells) return true;
+        int offset = Math.floorMod(column - firstColumn, lonCells);
+        return offset <= lastColumn - firstColumn;
+    }
+
+    private void place(Entry entry, GPSPosition position) {
+        entry.latitude = position.getLatitude();
+        entry.longitude = position.getLongitude();
+        entry.cell = cellOf(entry.latitude, entry.longitude);
+        List<Entry> cell = cells.computeIfAbsent(entry.cell, key -> new ArrayList<>());
+        entry.slot = cell.size();
+        cell.add(entry);
+    }
+
+    private void unplace(Entry entry) {
+        List<Entry> cell = cells.get(entry.cell);
+        Entry last = cell.remove(cell.size() - 1);
+        if (last != entry) {
+            cell.set(entry.slot, last);
+            last.slot = entry.slot;
+        }
+        if (cell.isEmpty()) cells.remove(entry.cell);
+    }
+
+    private int cellOf(double latitude, double longitude) {
+        int column = Math.min((int) (longitude / cellDegrees), lonCells - 1);
+        return rowOf(latitude) * lonCells + column;
+    }
+
+    private int rowOf(double latitude) {
+        return Math.min((int) Math.floor((latitude + 90) / cellDegrees), latCells - 1); // 90° belongs to the top row
+    }
+
+    private static List<Vehicle> vehiclesOf(List<Hit> hits) {
+        List<Vehicle> vehicles = new ArrayList<>(hits.size());
+        for (Hit hit : hits) {
+            vehicles.add(hit.vehicle());
+        }
+        return vehicles;
+    }
+}
@@ -0,0 +1,306 @@
+// Batch great-circle distances over coordinate arrays.
+package Vehicles;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Vehicles.GeoDistance computes many distances at once: from one point to
+ * many ({@link #oneToMany}) or between all pairs of two sets
+ * ({@link #manyToMany}).
+ * <p>
+ * Coordinates are passed as {@link Points}: plain latitude and longitude
+ * arrays from which the sines and cosines of the half angles are computed
+ * once per point. The haversine terms of a pair then follow from the angle
+ * difference identities with multiplications only, leaving the final
+ * {@code atan2} per pair instead of the conversions and seven
+ * trigonometric calls of {@link GPSPosition#distanceInKm}. Results
+ * agree with it to about 1e-9 km. Longitudes may be in the project's
+ * 0-360° range; pairs across 0°/360° are measured the short way.
+ * <p>
+ * Batches of at least {@link #PARALLEL_THRESHOLD} pairs are split into
+ * ranges and computed on the common fork/join pool.
+ * <p>
+ * {@link Method#EQUIRECTANGULAR} treats the short hop as flat, with the
+ * longitude difference scaled by the cosine of the mean latitude, and needs
+ * no trigonometric call at all. Its relative error is below
+ * {@link #equirectangularErrorBound}: {@code (d/R)^2 * (1 + tan^2(lat)) / 8}
+ * for hops of d km with both ends within the latitude, e.g. 0.006% for
+ * 100 km at 45° and 0.1% for 100 km at 80°. It is not meant for long
+ * distances or for routes over a pole.
+ */
+public final class GeoDistance {
+    public static final double EARTH_RADIUS_KM = 6371; // same as GPSPosition.distanceInKm
+    public static final int PARALLEL_THRESHOLD = 1 << 15;
+    static final int MIN_SPLIT_PAIRS = 1 << 13;
+
+    /** How a distance is computed. */
+    public enum Method {
+        /** Great-circle distance by the haversine formula. */
+        HAVERSINE,
+        /** Flat approximation for short hops, see the class comment. */
+        EQUIRECTANGULAR
+    }
+
+    /**
+     * Coordinates in structure-of-arrays form, with the per-point terms of
+     * the distance formulas computed once.
+     */
+    public static final class Points {
+        final double[] latitudes;
+        final double[] longitudes;
+        final double[] sinHalfLat;
+        final double[] cosHalfLat;
+        final double[] sinHalfLon;
+        final double[] cosHalfLon;
+        final double[] cosLat;
+        final double[] latRadians;
+        final double[] lonRadians;
+
+        private Points(double[] latitudes, double[] longitudes) {
+            int size = latitudes.length;
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+            sinHalfLat = new double[size];
+            cosHalfLat = new double[size];
+            sinHalfLon = new double[size];
+            cosHalfLon = new double[size];
+            cosLat = new double[size];
+            latRadians = new double[size];
+            lonRadians = new double[size];
+            for (int i = 0; i < size; i++) {
+                double lat = Math.toRadians(latitudes[i]);
+                double lon = Math.toRadians(longitudes[i]);
+                sinHalfLat[i] = Math.sin(lat / 2);
+                cosHalfLat[i] = Math.cos(lat / 2);
+                sinHalfLon[i] = Math.sin(lon / 2);
+                cosHalfLon[i] = Math.cos(lon / 2);
+                cosLat[i] = Math.cos(lat);
+                latRadians[i] = lat;
+                lonRadians[i] = lon;
+            }
+        }
+
+        /**
+         * Prepares points from coordinate arrays. The arrays are not copied.
+         * @param latitudes latitudes in degrees, -90 to 90
+         * @param longitudes longitudes in degrees, same length
+         */
+        public static Points of(double[] latitudes, double[] longitudes) {
+            if (latitudes == null || longitudes == null) throw new IllegalArgumentException("Coordinates cannot be null");
+            if (latitudes.length != longitudes.length) throw new IllegalArgumentException("Latitude and longitude arrays must have the same length");
+            for (int i = 0; i < latitudes.length; i++) {
+                if (!(latitudes[i] >= -90 && latitudes[i] <= 90)) {
+                    throw new IllegalArgumentException("Latitude must be between -90° and 90°.");
+                }
+                if (!Double.isFinite(longitudes[i])) throw new IllegalArgumentException("Longitude must be finite.");
+            }
+            return new Points(latitudes, longitudes);
+        }
+
+        /**
+         * Prepares points from positions.
+         */
+        public static Points of(List<GPSPosition> positions) {
+            double[] latitudes = new double[positions.size()];
+            double[] longitudes = new double[positions.size()];
+            for (int i = 0; i < latitudes.length; i++) {
+                latitudes[i] = positions.get(i).getLatitude();
+                longitudes[i] = positions.get(i).getLongitude();
+            }
+            return new Points(latitudes, longitudes);
+        }
+
+        public int size() {
+            return latitudes.length;
+        }
+
+        public double getLatitude(int index) { return latitudes[index]; }
+        public double getLongitude(int index) { return longitudes[index]; }
+    }
+
+    private GeoDistance() {}
+
+    /**
+     * Distances from one point to each target.
+     * @param latitude latitude of the point in degrees
+     * @param longitude longitude of the point in degrees
+     * @param targets the targets
+     * @param method how to compute the distances
+     * @return distances in km, in target order
+     */
+    public static double[] oneToMany(double latitude, double longitude, Points targets, Method method) {
+        double[] distances = new double[targets.size()];
+        oneToMany(latitude, longitude, targets, method, distances);
+        return distances;
+    }
+
+    /**
+     * Distances from one point to each target, written to an existing array.
+     * @param distances receives the distances in km; at least targets.size() long
+     */
+    public static void oneToMany(double latitude, double longitude, Points targets, Method method, double[] distances) {
+        Points origin = Points.of(new double[] {latitude}, new double[] {longitude});
+        compute(origin, targets, method, distances);
+    }
+
+    /**
+     * Distances between every origin and every target.
+     * @param origins the rows
+     * @param targets the columns
+     * @param method how to compute the distances
+     * @return distances in km, row by row: entry {@code i * targets.size() + j}
+     *         is the distance from origin i to target j
+     */
+    public static double[] manyToMany(Points origins, Points targets, Method method) {
+        long pairs = (long) origins.size() * targets.size();
+        if (pairs > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("Distance matrix too large: " + pairs + " entries");
+        double[] distances = new double[(int) pairs];
+        compute(origins, targets, method, distances);
+        return distances;
+    }
+
+    /**
+     * Distances along a path through the points in order.
+     * @param path the waypoints
+     * @return entry i is the distance in km from the first point to point i
+     *         over all points in between; entry 0 is 0
+     */
+    public static double[] cumulativeKm(Points path) {
+        double[] cumulative = new double[path.size()];
+        for (int i = 1; i < cumulative.length; i++) {
+            cumulative[i] = cumulative[i - 1] + haversine(path, i - 1, path, i);
+        }
+        return cumulative;
+    }
+
+    /**
+     * Upper bound of the relative error of {@link Method#EQUIRECTANGULAR}.
+     * @param distanceKm longest hop
+     * @param maxLatitude largest absolute latitude of either end, below 90°
+     * @return relative error bound, e.g. 1e-4 for 0.01%
+     */
+    public static double equirectangularErrorBound(double distanceKm, double maxLatitude) {
+        double angle = distanceKm / EARTH_RADIUS_KM;
+        double tan = Math.tan(Math.toRadians(Math.abs(maxLatitude)));
+        return angle * angle * (1 + tan * tan) / 8;
+    }
+
+    // --- Internal Methods ---
+
+    private static void compute(Points origins, Points targets, Method method, double[] distances) {
+        if (method == null) throw new IllegalArgumentException("Method cannot be null");
+        int pairs = origins.size() * targets.size();
+        if (distances.length < pairs) throw new IllegalArgumentException("Result array too short");
+        if (pairs < PARALLEL_THRESHOLD) {
+            computeRange(origins, targets, method, distances, 0, pairs);
+        } else {
+            ForkJoinPool.commonPool().invoke(new RangeTask(origins, targets, method, distances, 0, pairs));
+        }
+    }
+
+    // Splits a range of matrix entries in halves until they are small enough to compute directly
+    private static final class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Points origins;
+        private final Points targets;
+        private final Method method;
+        private final double[] distances;
+        private final int start;
+        private final int end;
+
+        RangeTask(Points origins, Points targets, Method method, double[] distances, int start, int end) {
+            this.origins = origins;
+            this.targets = targets;
+            this.method = method;
+            this.distances = distances;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= MIN_SPLIT_PAIRS) {
+                computeRange(origins, targets, method, distances, start, end);
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new RangeTask(origins, targets, method, distances, start, middle),
+                    new RangeTask(origins, targets, method, distances, middle, end));
+        }
+    }
+
+    /**
+     * Computes matrix entries [start, end), walking origin by origin.
+     */
+    static void computeRange(Points origins, Points targets, Method method, double[] distances, int start, int end) {
+        int columns = targets.size();
+        if (columns == 0) return;
+        int row = start / columns;
+        int column = start % columns;
+        int index = start;
+        while (index < end) {
+            int rowEnd = Math.min(end, index + columns - column);
+            if (method == Method.HAVERSINE) {
+                haversineRow(origins, row, targets, column, distances, index, rowEnd);
+            } else {
+                equirectangularRow(origins, row, targets, column, distances, index, rowEnd);
+            }
+            index = rowEnd;
+            row++;
+            column = 0;
+        }
+    }
+
+    private static void haversineRow(Points origins, int row, Points targets, int column,
+                                     double[] distances, int index, int end) {
+        double sinHalfLat = origins.sinHalfLat[row];
+        double cosHalfLat = origins.cosHalfLat[row];
+        double sinHalfLon = origins.sinHalfLon[row];
+        double cosHalfLon = origins.cosHalfLon[row];
+        double cosLat = origins.cosLat[row];
+        double[] targetSinHalfLat = targets.sinHalfLat;
+        double[] targetCosHalfLat = targets.cosHalfLat;
+        double[] targetSinHalfLon = targets.sinHalfLon;
+        double[] targetCosHalfLon = targets.cosHalfLon;
+        double[] targetCosLat = targets.cosLat;
+        for (int j = column; index < end; j++, index++) {
+            // sin((b - a) / 2) = sin(b/2)cos(a/2) - cos(b/2)sin(a/2)
+            double sinDLat = targetSinHalfLat[j] * cosHalfLat - targetCosHalfLat[j] * sinHalfLat;
+            double sinDLon = targetSinHalfLon[j] * cosHalfLon - targetCosHalfLon[j] * sinHalfLon;
+            double a = sinDLat * sinDLat + cosLat * targetCosLat[j] * sinDLon * sinDLon;
+            distances[index] = 2 * EARTH_RADIUS_KM * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        }
+    }
+
+    // Haversine distance of one pair, with the same terms as haversineRow
+    static double haversine(Points a, int i, Points b, int j) {
+        double sinDLat = b.sinHalfLat[j] * a.cosHalfLat[i] - b.cosHalfLat[j] * a.sinHalfLat[i];
+        double sinDLon = b.sinHalfLon[j] * a.cosHalfLon[i] - b.cosHalfLon[j] * a.sinHalfLon[i];
+        double h = sinDLat * sinDLat + a.cosLat[i] * b.cosLat[j] * sinDLon * sinDLon;
+        return 2 * EARTH_RADIUS_KM * Math.atan2(Math.sqrt(h), Math.sqrt(1 - h));
+    }
+
+    private static void equirectangularRow(Points origins, int row, Points targets, int column,
+                                           double[] distances, int index, int end) {
+        double sinHalfLat = origins.sinHalfLat[row];
+        double cosHalfLat = origins.cosHalfLat[row];
+        double lat = origins.latRadians[row];
+        double lon = origins.lonRadians[row];
+        double[] targetSinHalfLat = targets.sinHalfLat;
+        double[] targetCosHalfLat = targets.cosHalfLat;
+        double[] targetLatRadians = targets.latRadians;
+        double[] targetLonRadians = targets.lonRadians;
+        for (int j = column; index < end; j++, index++) {
+            double dLon = targetLonRadians[j] - lon;
+            dLon -= 2 * Math.PI * Math.rint(dLon / (2 * Math.PI)); // the short way across 0°/360°
+            // cos((a + b) / 2) = cos(a/2)cos(b/2) - sin(a/2)sin(b/2)
+            double cosMeanLat = cosHalfLat * targetCosHalfLat[j] - sinHalfLat * targetSinHalfLat[j];
+            double x = dLon * cosMeanLat;
+            double y = targetLatRadians[j] - lat;
+            distances[index] = EARTH_RADIUS_KM * Math.sqrt(x * x + y * y);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+// A GPS position quantized into one long, with an immutable view object.
+package Vehicles;
+
+/**
+ * Vehicles.PackedPosition stores a position in a single {@code long}:
+ * the latitude in the upper 32 bits as a signed count of 1e-7 degrees,
+ * the longitude in the lower 32 bits as an unsigned count of 1e-7 degrees
+ * (0 to below 360°). One step is about 1.1 cm at the equator, so a fix
+ * costs 8 bytes in an array instead of a GPSPosition object.
+ * <p>
+ * The static methods work on the raw {@code long}; instances are immutable
+ * views of one, e.g. for keys in maps or for passing a position around
+ * without unpacking it.
+ */
+public final class PackedPosition {
+    public static final double DEGREES_PER_STEP = 1e-7;
+    private static final double STEPS_PER_DEGREE = 1e7;
+    private static final long LONGITUDE_STEPS = 3_600_000_000L; // 360°
+
+    private final long packed;
+
+    private PackedPosition(long packed) {
+        this.packed = packed;
+    }
+
+    public static PackedPosition of(long packed) {
+        latitude(packed); // validates the latitude part
+        if ((packed & 0xFFFF_FFFFL) >= LONGITUDE_STEPS) throw new IllegalArgumentException("Not a packed position: " + packed);
+        return new PackedPosition(packed);
+    }
+
+    public static PackedPosition of(GPSPosition position) {
+        return new PackedPosition(pack(position));
+    }
+
+    /**
+     * Packs a position, rounding to the nearest step. Longitudes that round
+     * up to 360° become 0°.
+     */
+    public static long pack(double longitude, double latitude) {
+        if (!(longitude >= 0 && longitude < 360)) throw new IllegalArgumentException("Longitude must be between 0° and 360°.");
+        if (!(latitude >= -90 && latitude <= 90)) throw new IllegalArgumentException("Latitude must be between -90° and 90°.");
+        long latitudeSteps = Math.round(latitude * STEPS_PER_DEGREE);
+        long longitudeSteps = Math.round(longitude * STEPS_PER_DEGREE) % LONGITUDE_STEPS;
+        return (latitudeSteps << 32) | longitudeSteps;
+    }
+
+    public static long pack(GPSPosition position) {
+        if (position == null) throw new IllegalArgumentException("Position cannot be null");
+        return pack(position.getLongitude(), position.getLatitude());
+    }
+
+    public static double latitude(long packed) {
+        int steps = (int) (packed >> 32);
+        if (steps < -900_000_000 || steps > 900_000_000) throw new IllegalArgumentException("Not a packed position: " + packed);
+        return steps / STEPS_PER_DEGREE; // division is exact at the ends, e.g. 90°
+    }
+
+    public static double longitude(long packed) {
+        return (packed & 0xFFFF_FFFFL) / STEPS_PER_DEGREE;
+    }
+
+    public static GPSPosition toGPSPosition(long packed) {
+        return new GPSPosition(longitude(packed), latitude(packed));
+    }
+
+    public static double distanceInKm(long from, long to) {
+        return GPSPosition.distanceInKm(latitude(from), longitude(from), latitude(to), longitude(to));
+    }
+
+    public long getPacked() { return packed; }
+    public double getLatitude() { return latitude(packed); }
+    public double getLongitude() { return longitude(packed); }
+    public GPSPosition toGPSPosition() { return toGPSPosition(packed); }
+
+    public double distanceInKm(PackedPosition other) {
+        return distanceInKm(packed, other.packed);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof PackedPosition && ((PackedPosition) other).packed == packed;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(packed);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PackedPosition{longitude=%.7f, latitude=%.7f}", getLongitude(), getLatitude());
+    }
+}
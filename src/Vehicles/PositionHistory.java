@@ -0,0 +1,174 @@
+// Fixed-size ring of a vehicle's recent positions and their times.
+package Vehicles;
+
+/**
+ * Vehicles.PositionHistory keeps the latest {@code capacity} fixes of a
+ * vehicle in two primitive arrays: positions as {@link PackedPosition} longs
+ * and times as int milliseconds relative to a base time, 12 bytes per fix.
+ * With the object and the two array headers a history costs about
+ * 72 + 12 * capacity bytes: for 100k vehicles 26 MB with the default 16
+ * fixes and 12 MB with 4. GPSPosition and timestamp objects for the same
+ * fixes take about four times as much. The 72 bytes per vehicle alone are
+ * 7 MB for 100k vehicles, so this layout does not get a fleet's history
+ * down to a few MB.
+ * <p>
+ * Fixes are indexed from 0, the oldest kept, to size() - 1, the latest, in
+ * time order. A fix may arrive late; it is inserted at its place. All kept
+ * fixes lie within {@link #MAX_SPAN_MILLIS} (about 24.8 days) of the latest
+ * one: a later fix drops the ones that fall out of that span, and an earlier
+ * one is not kept. Methods are synchronized, so one thread may record while
+ * others read.
+ */
+public final class PositionHistory {
+    public static final int DEFAULT_CAPACITY = 16;
+    public static final long MAX_SPAN_MILLIS = Integer.MAX_VALUE; // time range the int offsets can hold
+
+    private final long[] positions;
+    private final int[] offsets; // milliseconds after baseMillis
+    private long baseMillis;
+    private int start = 0;       // slot of the oldest fix
+    private int size = 0;
+
+    public PositionHistory() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public PositionHistory(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be at least 1");
+        this.positions = new long[capacity];
+        this.offsets = new int[capacity];
+    }
+
+    /**
+     * Adds a fix at its place in time order, dropping the oldest fix if the
+     * ring is full.
+     * @param epochMillis time of the fix
+     * @param packed position from {@link PackedPosition#pack}
+     * @return false if the fix was not kept: it is older than every fix in a
+     *         full ring, or more than MAX_SPAN_MILLIS before the latest fix
+     */
+    public synchronized boolean record(long epochMillis, long packed) {
+        if (size == 0) {
+            baseMillis = epochMillis;
+            start = 0;
+        } else {
+            long latest = baseMillis + offsets[slot(size - 1)];
+            if (latest - epochMillis > MAX_SPAN_MILLIS) return false;
+            long offset = epochMillis - baseMillis;
+            if (offset > Integer.MAX_VALUE || offset < Integer.MIN_VALUE) rebase(Math.max(latest, epochMillis));
+        }
+        int index = size == 0 ? 0 : indexAt(epochMillis) + 1; // after fixes at the same time
+        if (size == positions.length) {
+            if (index == 0) return false;
+            start = (start + 1) % positions.length;
+            size--;
+            index--;
+        }
+        for (int i = size; i > index; i--) {
+            int to = (start + i) % positions.length;
+            int from = (start + i - 1) % positions.length;
+            positions[to] = positions[from];
+            offsets[to] = offsets[from];
+        }
+        int slot = (start + index) % positions.length;
+        positions[slot] = packed;
+        offsets[slot] = (int) (epochMillis - baseMillis);
+        size++;
+        return true;
+    }
+
+    public boolean record(long epochMillis, GPSPosition position) {
+        return record(epochMillis, PackedPosition.pack(position));
+    }
+
+    public int capacity() {
+        return positions.length;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // Packed position of fix i, 0 being the oldest kept
+    public synchronized long getPacked(int index) {
+        return positions[slot(index)];
+    }
+
+    public synchronized long getTimestamp(int index) {
+        return baseMillis + offsets[slot(index)];
+    }
+
+    public GPSPosition getPosition(int index) {
+        return PackedPosition.toGPSPosition(getPacked(index));
+    }
+
+    /**
+     * Finds the last fix at or before a time.
+     * @return index of the fix, or -1 if all fixes are later
+     */
+    public synchronized int indexAt(long epochMillis) {
+        // Fixes are kept in time order, so binary search over the ring in logical order
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (baseMillis + offsets[slot(middle)] <= epochMillis) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Copies the fixes, oldest first, into the given arrays.
+     * @return number of fixes copied
+     */
+    public synchronized int copyTo(long[] timestamps, long[] packedPositions) {
+        int count = Math.min(size, Math.min(timestamps.length, packedPositions.length));
+        for (int i = 0; i < count; i++) {
+            int slot = (start + i) % positions.length;
+            timestamps[i] = baseMillis + offsets[slot];
+            packedPositions[i] = positions[slot];
+        }
+        return count;
+    }
+
+    // Sum of the straight distances between consecutive fixes
+    public synchronized double getTrackKm() {
+        double total = 0;
+        for (int i = 1; i < size; i++) {
+            total += PackedPosition.distanceInKm(positions[slot(i - 1)], positions[slot(i)]);
+        }
+        return total;
+    }
+
+    public synchronized void clear() {
+        start = 0;
+        size = 0;
+    }
+
+    private int slot(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Fix " + index + " of " + size);
+        return (start + index) % positions.length;
+    }
+
+    // Moves the base time, dropping the oldest fixes that no longer fit in an int offset
+    private void rebase(long newBaseMillis) {
+        while (size > 0 && baseMillis + offsets[start] - newBaseMillis < Integer.MIN_VALUE) {
+            start = (start + 1) % positions.length;
+            size--;
+        }
+        for (int i = 0; i < size; i++) {
+            int slot = (start + i) % positions.length;
+            offsets[slot] = (int) (baseMillis + offsets[slot] - newBaseMillis);
+        }
+        baseMillis = newBaseMillis;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("PositionHistory{fixes=%d/%d}", size, positions.length);
+    }
+}
@@ -0,0 +1,13 @@
+// Callback for vehicles that move, e.g. to keep a spatial index up to date.
+package Vehicles;
+
+@FunctionalInterface
+public interface PositionListener {
+    /**
+     * Called after a vehicle was moved by setPosition or drive.
+     * @param vehicle the vehicle that moved
+     * @param oldPosition where it was before
+     * @param newPosition where it is now
+     */
+    void positionChanged(Vehicle vehicle, GPSPosition oldPosition, GPSPosition newPosition);
+}
@@ -0,0 +1,134 @@
+// A list of waypoints with the distances along it computed once.
+package Vehicles;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Vehicles.Route is an ordered list of waypoints for {@link Vehicle#driveRoute}.
+ * <p>
+ * All leg distances are computed in one pass when the route is created
+ * (see {@link GeoDistance#cumulativeKm}) and kept as running totals, so the
+ * distance between any two waypoints is one subtraction and the furthest
+ * waypoint within a range is a binary search. Waypoints are stored as
+ * coordinate arrays; a GPSPosition is only created for the waypoint a
+ * vehicle stops at. Routes are immutable; {@link #prefix} shares the arrays.
+ */
+public final class Route {
+    private final GeoDistance.Points points;
+    private final double[] cumulativeKm;
+    private final int size;
+
+    private Route(GeoDistance.Points points, double[] cumulativeKm, int size) {
+        this.points = points;
+        this.cumulativeKm = cumulativeKm;
+        this.size = size;
+    }
+
+    /**
+     * Creates a route from coordinate arrays, which are copied.
+     * @param latitudes waypoint latitudes, -90 to 90
+     * @param longitudes waypoint longitudes, 0 to below 360
+     */
+    public static Route of(double[] latitudes, double[] longitudes) {
+        if (latitudes == null || longitudes == null) throw new IllegalArgumentException("Coordinates cannot be null");
+        for (double longitude : longitudes) {
+            if (!(longitude >= 0 && longitude < 360)) throw new IllegalArgumentException("Longitude must be between 0° and 360°.");
+        }
+        GeoDistance.Points points = GeoDistance.Points.of(latitudes.clone(), longitudes.clone());
+        if (points.size() == 0) throw new IllegalArgumentException("Route needs at least one waypoint");
+        return new Route(points, GeoDistance.cumulativeKm(points), points.size());
+    }
+
+    public static Route of(List<GPSPosition> waypoints) {
+        if (waypoints == null || waypoints.isEmpty()) throw new IllegalArgumentException("Route needs at least one waypoint");
+        GeoDistance.Points points = GeoDistance.Points.of(waypoints);
+        return new Route(points, GeoDistance.cumulativeKm(points), points.size());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public GPSPosition getWaypoint(int index) {
+        checkIndex(index);
+        return new GPSPosition(points.getLongitude(index), points.getLatitude(index));
+    }
+
+    public double getLatitude(int index) {
+        checkIndex(index);
+        return points.getLatitude(index);
+    }
+
+    public double getLongitude(int index) {
+        checkIndex(index);
+        return points.getLongitude(index);
+    }
+
+    /**
+     * Distance between two waypoints along the route.
+     * @param from index of the first waypoint
+     * @param to index of the later waypoint
+     * @return km from waypoint from to waypoint to
+     */
+    public double getDistanceKm(int from, int to) {
+        checkIndex(from);
+        checkIndex(to);
+        if (to < from) throw new IllegalArgumentException("Waypoint " + to + " comes before " + from);
+        return cumulativeKm[to] - cumulativeKm[from];
+    }
+
+    // km from the first to the last waypoint
+    public double getLengthKm() {
+        return cumulativeKm[size - 1];
+    }
+
+    /**
+     * Distance from a position to a waypoint: straight to the first waypoint,
+     * then along the route.
+     */
+    public double getDistanceKm(GPSPosition start, int to) {
+        checkIndex(to);
+        return distanceToFirstKm(start) + cumulativeKm[to];
+    }
+
+    /**
+     * Finds the last waypoint reachable within a distance.
+     * @param from the waypoint to start at
+     * @param rangeKm how far it is possible to go
+     * @return index of the furthest waypoint no more than rangeKm along the route from {@code from}
+     */
+    public int furthestWithin(int from, double rangeKm) {
+        checkIndex(from);
+        if (rangeKm < 0 || Double.isNaN(rangeKm)) throw new IllegalArgumentException("Range must not be negative");
+        double limit = cumulativeKm[from] + rangeKm;
+        int index = Arrays.binarySearch(cumulativeKm, from, size, limit);
+        if (index >= 0) {
+            while (index + 1 < size && cumulativeKm[index + 1] == limit) index++; // zero-length legs
+            return index;
+        }
+        return -index - 2; // insertion point - 1; never below from, since cumulativeKm[from] <= limit
+    }
+
+    /**
+     * The first waypoints as a route of their own, sharing this route's arrays.
+     * @param count number of waypoints to keep
+     */
+    public Route prefix(int count) {
+        if (count < 1 || count > size) throw new IllegalArgumentException("Prefix must keep 1 to " + size + " waypoints");
+        return new Route(points, cumulativeKm, count);
+    }
+
+    double distanceToFirstKm(GPSPosition start) {
+        return GPSPosition.distanceInKm(start.getLatitude(), start.getLongitude(), points.getLatitude(0), points.getLongitude(0));
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Waypoint " + index + " of " + size);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Route{waypoints=%d, length=%.2f km}", size, getLengthKm());
+    }
+}
@@ -0,0 +1,217 @@
+// Sources of telemetry for a TelemetryPipeline: a CSV file or a generator.
+package Vehicles;
+
+import Utils.Logger;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Vehicles.TelemetryFeed stands in for a live fleet feed. {@link #replay}
+ * reads records from a CSV file (see {@link TelemetryRecord} for the line
+ * format) and {@link Generator} produces random-walk records in process.
+ * <p>
+ * Run it to measure the pipeline:
+ * {@code java Vehicles.TelemetryFeed [--vehicles N] [--records N] [--batch N] [--window MS] [--queue N] [FILE]}
+ * registers N trucks as ids 0 to N-1, feeds the file or generated records
+ * and prints the pipeline metrics.
+ */
+public final class TelemetryFeed {
+    private static final Logger logger = new Logger(TelemetryFeed.class);
+
+    private TelemetryFeed() {
+    }
+
+    /**
+     * Submits the records of a CSV file in batches. Blank lines and lines
+     * starting with # are ignored; malformed lines are skipped and counted
+     * in one warning.
+     * @return number of records submitted
+     * @throws IOException if the file cannot be read
+     */
+    public static long replay(Path file, TelemetryPipeline pipeline, int batchSize) throws IOException, InterruptedException {
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be at least 1");
+        long submitted = 0;
+        long malformed = 0;
+        List<TelemetryRecord> batch = new ArrayList<>(batchSize);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) continue;
+                try {
+                    batch.add(TelemetryRecord.parseCsv(line));
+                } catch (IllegalArgumentException e) {
+                    malformed++;
+                    continue;
+                }
+                if (batch.size() == batchSize) {
+                    pipeline.submit(batch);
+                    submitted += batch.size();
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            pipeline.submit(batch);
+            submitted += batch.size();
+        }
+        if (malformed > 0) logger.warning("Skipped {} malformed telemetry lines in {}", malformed, file);
+        return submitted;
+    }
+
+    public static void write(Path file, List<TelemetryRecord> records) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("# vehicleId,epochMillis,longitude,latitude,tankLevel,speed");
+            writer.newLine();
+            for (TelemetryRecord record : records) {
+                writer.write(record.toCsv());
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Produces records for vehicles 0 to vehicles-1, each moving in small
+     * random steps from a random start, burning fuel and changing speed.
+     * Records are stamped with the current time. Not thread-safe.
+     */
+    public static final class Generator {
+        private static final double STEP_DEGREES = 0.001; // about 100 m
+
+        private final Random random;
+        private final double[] longitudes;
+        private final double[] latitudes;
+        private final double[] tankLevels;
+        private final double tankSize;
+        private final double maxSpeed;
+
+        /**
+         * @param tankSize tank size of the vehicles; tank levels stay within it
+         * @param maxSpeed max speed of the vehicles; speeds stay within it
+         */
+        public Generator(int vehicles, double tankSize, double maxSpeed, long seed) {
+            if (vehicles < 1) throw new IllegalArgumentException("Need at least one vehicle");
+            if (tankSize <= 0) throw new IllegalArgumentException("Tank size must be positive");
+            if (maxSpeed <= 0) throw new IllegalArgumentException("Max speed must be positive");
+            this.random = new Random(seed);
+            this.longitudes = new double[vehicles];
+            this.latitudes = new double[vehicles];
+            this.tankLevels = new double[vehicles];
+            this.tankSize = tankSize;
+            this.maxSpeed = maxSpeed;
+            for (int i = 0; i < vehicles; i++) {
+                longitudes[i] = 5 + random.nextDouble() * 10; // central Europe
+                latitudes[i] = 47 + random.nextDouble() * 8;
+                tankLevels[i] = tankSize;
+            }
+        }
+
+        public int vehicles() {
+            return longitudes.length;
+        }
+
+        // A record with position, fuel and speed for a random vehicle
+        public TelemetryRecord next() {
+            int id = random.nextInt(longitudes.length);
+            double longitude = longitudes[id] + (random.nextDouble() - 0.5) * STEP_DEGREES;
+            longitudes[id] = Math.min(Math.max(longitude, 0), 359.9);
+            latitudes[id] = Math.min(Math.max(latitudes[id] + (random.nextDouble() - 0.5) * STEP_DEGREES, -90), 90);
+            tankLevels[id] = Math.max(tankLevels[id] - random.nextDouble() * 0.01, 0);
+            return new TelemetryRecord(id, System.currentTimeMillis(),
+                    PackedPosition.pack(longitudes[id], latitudes[id]), tankLevels[id], random.nextDouble() * maxSpeed);
+        }
+
+        public List<TelemetryRecord> nextBatch(int size) {
+            List<TelemetryRecord> batch = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) batch.add(next());
+            return batch;
+        }
+
+        /**
+         * Submits batches until the given number of records has been sent.
+         * @return number of records submitted
+         */
+        public long feed(TelemetryPipeline pipeline, long records, int batchSize) throws InterruptedException {
+            if (batchSize < 1) throw new IllegalArgumentException("Batch size must be at least 1");
+            long submitted = 0;
+            while (submitted < records) {
+                List<TelemetryRecord> batch = nextBatch((int) Math.min(batchSize, records - submitted));
+                pipeline.submit(batch);
+                submitted += batch.size();
+            }
+            return submitted;
+        }
+
+        public double getTankSize() { return tankSize; }
+        public double getMaxSpeed() { return maxSpeed; }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int vehicles = 1000;
+        int records = 1_000_000;
+        int batchSize = 500;
+        int windowMillis = (int) TelemetryPipeline.DEFAULT_WINDOW_MILLIS;
+        int queueBatches = TelemetryPipeline.DEFAULT_QUEUE_BATCHES;
+        Path file = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--vehicles" -> vehicles = number(args, ++i, 1);
+                    case "--records" -> records = number(args, ++i, 1);
+                    case "--batch" -> batchSize = number(args, ++i, 1);
+                    case "--window" -> windowMillis = number(args, ++i, 0);
+                    case "--queue" -> queueBatches = number(args, ++i, 1);
+                    default -> file = Paths.get(args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(Logger.RED + "Vehicles.TelemetryFeed: " + e.getMessage() + Logger.RESET);
+            System.err.println("Usage: java Vehicles.TelemetryFeed [--vehicles N] [--records N] [--batch N] [--window MS] [--queue N] [FILE]");
+            System.exit(2);
+        }
+
+        Generator generator = new Generator(vehicles, 100, 120, 42);
+        try (TelemetryPipeline pipeline = new TelemetryPipeline(queueBatches, windowMillis)) {
+            for (int id = 0; id < vehicles; id++) {
+                pipeline.register(id, new Truck(generator.getTankSize(), generator.getMaxSpeed(),
+                        new GPSPosition(10, 50), 20));
+            }
+            long start = System.nanoTime();
+            long submitted;
+            if (file != null) {
+                try {
+                    submitted = replay(file, pipeline, batchSize);
+                } catch (IOException e) {
+                    System.err.println(Logger.RED + "Vehicles.TelemetryFeed: " + file + ": " + e.getMessage() + Logger.RESET);
+                    System.exit(1);
+                    return;
+                }
+            } else {
+                submitted = generator.feed(pipeline, records, batchSize);
+            }
+            pipeline.flush(60_000);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d records in %.2f s (%.0f records/s)%n", submitted, seconds, submitted / seconds);
+            System.out.println(pipeline.getMetrics());
+        }
+    }
+
+    private static int number(String[] args, int index, int minimum) {
+        String option = args[index - 1];
+        if (index >= args.length) throw new IllegalArgumentException(option + " needs a value");
+        try {
+            int value = Integer.parseInt(args[index]);
+            if (value >= minimum) return value;
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException(option + " must be a number of at least " + minimum + ", got " + args[index]);
+    }
+}
@@ -0,0 +1,405 @@
+// Bounded, coalescing ingestion of telemetry batches into registered vehicles.
+package Vehicles;
+
+import Utils.Logger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Vehicles.TelemetryPipeline takes batches of {@link TelemetryRecord}s from
+ * any number of producer threads and applies them to vehicles on a single
+ * worker thread.
+ * <p>
+ * Batches wait in a bounded queue: {@link #submit} blocks while it is full
+ * and {@link #offer} gives up after a timeout, so a fast feed is slowed to
+ * the rate the pipeline can apply. The worker collects batches for one
+ * window, keeps only the latest value of each field per vehicle, then
+ * applies each vehicle once with {@link Vehicle#applyTelemetry}: one check
+ * per value, one position change and one history entry per vehicle and
+ * window, however many records arrived. A value out of range for its
+ * vehicle is counted and skipped without holding back the others. Records
+ * older than what a vehicle already shows are dropped as stale.
+ * <p>
+ * Registered vehicles are changed on the worker thread, so readers on other
+ * threads should not rely on seeing the values of one window together.
+ * {@link #getMetrics} reports throughput, coalescing and lag at any time.
+ */
+public final class TelemetryPipeline implements AutoCloseable {
+    public static final int DEFAULT_QUEUE_BATCHES = 64;
+    public static final long DEFAULT_WINDOW_MILLIS = 50;
+    private static final long IDLE_POLL_MILLIS = 100; // how soon an idle worker notices close()
+
+    private final Logger logger = new Logger(TelemetryPipeline.class);
+    private final BlockingQueue<List<TelemetryRecord>> queue;
+    private final long windowMillis;
+    private final Map<Integer, Vehicle> vehicles = new ConcurrentHashMap<>();
+    private final Thread worker;
+    private volatile boolean closed = false;
+    private final AtomicInteger submitting = new AtomicInteger(); // producers between checkBatch and queueing
+
+    // Worker state, only touched on the worker thread
+    private final Map<Integer, Pending> pending = new HashMap<>();
+    private final List<Pending> dirty = new ArrayList<>();
+
+    // Metrics
+    private final long startNanos = System.nanoTime();
+    private final LongAdder recordsReceived = new LongAdder();
+    private final LongAdder batchesReceived = new LongAdder();
+    private final LongAdder blockedSubmits = new LongAdder();
+    private final LongAdder refusedBatches = new LongAdder();
+    private final AtomicLong batchesProcessed = new AtomicLong();
+    private final AtomicLong recordsCoalesced = new AtomicLong();
+    private final AtomicLong recordsStale = new AtomicLong();
+    private final AtomicLong recordsUnknown = new AtomicLong();
+    private final AtomicLong updatesApplied = new AtomicLong();
+    private final AtomicLong updatesFailed = new AtomicLong();
+    private final AtomicLong rejectedTankLevels = new AtomicLong();
+    private final AtomicLong rejectedSpeeds = new AtomicLong();
+    private final AtomicLong windows = new AtomicLong();
+    private final AtomicLong lagSumMillis = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+
+    public TelemetryPipeline() {
+        this(DEFAULT_QUEUE_BATCHES, DEFAULT_WINDOW_MILLIS);
+    }
+
+    /**
+     * @param queueBatches how many batches may wait before producers are held back
+     * @param windowMillis how long the worker collects batches before applying them
+     */
+    public TelemetryPipeline(int queueBatches, long windowMillis) {
+        if (queueBatches < 1) throw new IllegalArgumentException("Queue must hold at least one batch");
+        if (windowMillis < 0) throw new IllegalArgumentException("Window must not be negative");
+        this.queue = new ArrayBlockingQueue<>(queueBatches);
+        this.windowMillis = windowMillis;
+        this.worker = new Thread(this::run, "telemetry-pipeline");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Routes records with the given id to a vehicle. Records for ids that
+     * are not registered are counted and dropped.
+     */
+    public void register(int vehicleId, Vehicle vehicle) {
+        if (vehicle == null) throw new IllegalArgumentException("Vehicle cannot be null");
+        vehicles.put(vehicleId, vehicle);
+    }
+
+    public void unregister(int vehicleId) {
+        vehicles.remove(vehicleId);
+    }
+
+    /**
+     * Queues a batch, waiting while the queue is full. The list must not be
+     * changed after it is submitted.
+     */
+    public void submit(List<TelemetryRecord> batch) throws InterruptedException {
+        checkBatch(batch);
+        try {
+            if (!queue.offer(batch)) {
+                blockedSubmits.increment();
+                queue.put(batch);
+            }
+            received(batch);
+        } finally {
+            submitting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Queues a batch, waiting at most the given time for room.
+     * @return false if the queue stayed full and the batch was not taken
+     */
+    public boolean offer(List<TelemetryRecord> batch, long timeout, TimeUnit unit) throws InterruptedException {
+        checkBatch(batch);
+        try {
+            if (!queue.offer(batch, timeout, unit)) {
+                refusedBatches.increment();
+                return false;
+            }
+            received(batch);
+            return true;
+        } finally {
+            submitting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Waits until every batch submitted before this call has been applied.
+     * @return false if that did not happen within the timeout
+     */
+    public boolean flush(long timeoutMillis) throws InterruptedException {
+        long target = batchesReceived.sum();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (batchesProcessed) {
+            while (batchesProcessed.get() < target) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0 || !worker.isAlive()) return false;
+                batchesProcessed.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops taking batches, applies what is queued, including batches that
+     * producers were still submitting, and stops the worker.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        // Producers that passed checkBatch before close may still be queueing; apply their batches here
+        List<TelemetryRecord> batch;
+        while ((batch = queue.poll()) != null || submitting.get() > 0) {
+            if (batch == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+            merge(batch);
+            applyWindow(1);
+        }
+    }
+
+    public Metrics getMetrics() {
+        return new Metrics(this);
+    }
+
+    // Registers the caller as submitting; it must decrement submitting when done
+    private void checkBatch(List<TelemetryRecord> batch) {
+        if (batch == null) throw new IllegalArgumentException("Batch cannot be null");
+        submitting.incrementAndGet();
+        if (closed) {
+            submitting.decrementAndGet();
+            throw new IllegalStateException("Pipeline is closed");
+        }
+    }
+
+    private void received(List<TelemetryRecord> batch) {
+        recordsReceived.add(batch.size());
+        batchesReceived.increment();
+    }
+
+    private void run() {
+        while (!closed || !queue.isEmpty()) {
+            try {
+                List<TelemetryRecord> batch = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (batch == null) continue;
+                int count = 1;
+                merge(batch);
+                long windowEnd = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMillis);
+                long remaining;
+                while ((remaining = windowEnd - System.nanoTime()) > 0
+                        && (batch = queue.poll(remaining, TimeUnit.NANOSECONDS)) != null) {
+                    merge(batch);
+                    count++;
+                }
+                applyWindow(count);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void merge(List<TelemetryRecord> batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            TelemetryRecord record = batch.get(i);
+            Pending entry = pending.get(record.getVehicleId());
+            if (entry == null) {
+                entry = new Pending(record.getVehicleId());
+                pending.put(record.getVehicleId(), entry);
+            }
+            if (record.getEpochMillis() < entry.appliedMillis) {
+                recordsStale.incrementAndGet();
+                continue;
+            }
+            if (entry.records++ == 0) dirty.add(entry);
+            entry.merge(record);
+        }
+    }
+
+    private void applyWindow(int batchCount) {
+        long now = System.currentTimeMillis();
+        int rejectedTankLevels = 0;
+        int rejectedSpeeds = 0;
+        for (int i = 0; i < dirty.size(); i++) {
+            Pending entry = dirty.get(i);
+            Vehicle vehicle = vehicles.get(entry.vehicleId);
+            if (vehicle == null) {
+                recordsUnknown.addAndGet(entry.records);
+                pending.remove(entry.vehicleId);
+                continue;
+            }
+            recordsCoalesced.addAndGet(entry.records - 1);
+            entry.appliedMillis = entry.latestMillis;
+            try {
+                int rejected = vehicle.applyTelemetry(entry.positionMillis, entry.position, entry.tankLevel, entry.speed);
+                if ((rejected & TelemetryRecord.TANK_LEVEL) != 0) rejectedTankLevels++;
+                if ((rejected & TelemetryRecord.SPEED) != 0) rejectedSpeeds++;
+                updatesApplied.incrementAndGet();
+                long lag = Math.max(now - entry.latestMillis, 0);
+                lagSumMillis.addAndGet(lag);
+                if (lag > maxLagMillis.get()) maxLagMillis.set(lag);
+            } catch (RuntimeException e) {
+                // A failing position listener must not cost the rest of the window
+                logger.error("Applying telemetry to vehicle {} failed: {}", entry.vehicleId, e.getMessage());
+                updatesFailed.incrementAndGet();
+            } finally {
+                entry.reset();
+            }
+        }
+        dirty.clear();
+        windows.incrementAndGet();
+        if (rejectedTankLevels + rejectedSpeeds > 0) {
+            this.rejectedTankLevels.addAndGet(rejectedTankLevels);
+            this.rejectedSpeeds.addAndGet(rejectedSpeeds);
+            logger.warning("Rejected out-of-range telemetry: {} tank levels, {} speeds", rejectedTankLevels, rejectedSpeeds);
+        }
+        synchronized (batchesProcessed) {
+            batchesProcessed.addAndGet(batchCount);
+            batchesProcessed.notifyAll();
+        }
+    }
+
+    // Latest value of each field for one vehicle within the current window
+    private static final class Pending {
+        final int vehicleId;
+        long appliedMillis = Long.MIN_VALUE; // time of the last update applied to the vehicle
+        int records;
+        long latestMillis;
+        long position;
+        long positionMillis;
+        double tankLevel;
+        long tankMillis;
+        double speed;
+        long speedMillis;
+
+        Pending(int vehicleId) {
+            this.vehicleId = vehicleId;
+            reset();
+        }
+
+        void merge(TelemetryRecord record) {
+            long time = record.getEpochMillis();
+            latestMillis = Math.max(latestMillis, time);
+            if (record.hasPosition() && time >= positionMillis) {
+                position = record.getPackedPosition();
+                positionMillis = time;
+            }
+            if (!Double.isNaN(record.getTankLevel()) && time >= tankMillis) {
+                tankLevel = record.getTankLevel();
+                tankMillis = time;
+            }
+            if (!Double.isNaN(record.getSpeed()) && time >= speedMillis) {
+                speed = record.getSpeed();
+                speedMillis = time;
+            }
+        }
+
+        void reset() {
+            records = 0;
+            latestMillis = Long.MIN_VALUE;
+            position = TelemetryRecord.NO_POSITION;
+            positionMillis = Long.MIN_VALUE;
+            tankLevel = Double.NaN;
+            tankMillis = Long.MIN_VALUE;
+            speed = Double.NaN;
+            speedMillis = Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * A snapshot of the pipeline's counters. Lag is the time from a vehicle's
+     * latest record to the moment its update was applied.
+     */
+    public static final class Metrics {
+        private final long recordsReceived;
+        private final long batchesReceived;
+        private final long batchesProcessed;
+        private final long blockedSubmits;
+        private final long refusedBatches;
+        private final long recordsCoalesced;
+        private final long recordsStale;
+        private final long recordsUnknown;
+        private final long updatesApplied;
+        private final long updatesFailed;
+        private final long rejectedTankLevels;
+        private final long rejectedSpeeds;
+        private final long windows;
+        private final int queueDepth;
+        private final double averageLagMillis;
+        private final long maxLagMillis;
+        private final double recordsPerSecond;
+
+        private Metrics(TelemetryPipeline pipeline) {
+            this.recordsReceived = pipeline.recordsReceived.sum();
+            this.batchesReceived = pipeline.batchesReceived.sum();
+            this.batchesProcessed = pipeline.batchesProcessed.get();
+            this.blockedSubmits = pipeline.blockedSubmits.sum();
+            this.refusedBatches = pipeline.refusedBatches.sum();
+            this.recordsCoalesced = pipeline.recordsCoalesced.get();
+            this.recordsStale = pipeline.recordsStale.get();
+            this.recordsUnknown = pipeline.recordsUnknown.get();
+            this.updatesApplied = pipeline.updatesApplied.get();
+            this.updatesFailed = pipeline.updatesFailed.get();
+            this.rejectedTankLevels = pipeline.rejectedTankLevels.get();
+            this.rejectedSpeeds = pipeline.rejectedSpeeds.get();
+            this.windows = pipeline.windows.get();
+            this.queueDepth = pipeline.queue.size();
+            this.averageLagMillis = updatesApplied == 0 ? 0 : (double) pipeline.lagSumMillis.get() / updatesApplied;
+            this.maxLagMillis = pipeline.maxLagMillis.get();
+            double seconds = (System.nanoTime() - pipeline.startNanos) / 1e9;
+            this.recordsPerSecond = seconds > 0 ? recordsReceived / seconds : 0;
+        }
+
+        public long getRecordsReceived() { return recordsReceived; }
+        public long getBatchesReceived() { return batchesReceived; }
+        public long getBatchesProcessed() { return batchesProcessed; }
+        // Submits that had to wait for room in the queue
+        public long getBlockedSubmits() { return blockedSubmits; }
+        // Offers that timed out
+        public long getRefusedBatches() { return refusedBatches; }
+        // Records replaced by a later record for the same vehicle in the same window
+        public long getRecordsCoalesced() { return recordsCoalesced; }
+        public long getRecordsStale() { return recordsStale; }
+        public long getRecordsUnknown() { return recordsUnknown; }
+        public long getUpdatesApplied() { return updatesApplied; }
+        // Updates cut short by a position listener that threw
+        public long getUpdatesFailed() { return updatesFailed; }
+        // Values out of range for their vehicle; the other values of those updates were applied
+        public long getRejectedTankLevels() { return rejectedTankLevels; }
+        public long getRejectedSpeeds() { return rejectedSpeeds; }
+        public long getWindows() { return windows; }
+        public int getQueueDepth() { return queueDepth; }
+        public double getAverageLagMillis() { return averageLagMillis; }
+        public long getMaxLagMillis() { return maxLagMillis; }
+        public double getRecordsPerSecond() { return recordsPerSecond; }
+
+        @Override
+        public String toString() {
+            return String.format("TelemetryPipeline.Metrics{received=%d records/%d batches, applied=%d, coalesced=%d, "
+                            + "stale=%d, unknown=%d, failed=%d, rejected tank levels=%d, speeds=%d, windows=%d, queue=%d, "
+                            + "blocked=%d, refused=%d, "
+                            + "lag avg=%.1f ms max=%d ms, %.0f records/s}",
+                    recordsReceived, batchesReceived, updatesApplied, recordsCoalesced, recordsStale, recordsUnknown,
+                    updatesFailed, rejectedTankLevels, rejectedSpeeds, windows, queueDepth, blockedSubmits, refusedBatches, averageLagMillis,
+                    maxLagMillis, recordsPerSecond);
+        }
+    }
+}
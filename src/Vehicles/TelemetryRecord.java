@@ -0,0 +1,103 @@
+// One telemetry update for one vehicle: position, fuel and speed, each optional.
+package Vehicles;
+
+/**
+ * Vehicles.TelemetryRecord is an immutable update from the fleet feed.
+ * Absent values are {@link #NO_POSITION} for the position and NaN for
+ * tank level and speed. The position is validated when the record is
+ * created; tank level and speed depend on the vehicle and are checked by
+ * {@link Vehicle#applyTelemetry}.
+ * <p>
+ * As a CSV line: {@code vehicleId,epochMillis,longitude,latitude,tankLevel,speed},
+ * with empty fields for absent values.
+ */
+public final class TelemetryRecord {
+    public static final long NO_POSITION = Long.MIN_VALUE; // not a valid packed position
+
+    // Bits for the values of a record, as reported by Vehicle.applyTelemetry
+    public static final int TANK_LEVEL = 1;
+    public static final int SPEED = 2;
+
+    private final int vehicleId;
+    private final long epochMillis;
+    private final long packedPosition;
+    private final double tankLevel;
+    private final double speed;
+
+    /**
+     * @param packedPosition position from {@link PackedPosition#pack}, or NO_POSITION
+     * @param tankLevel tank level, or NaN
+     * @param speed current speed, or NaN
+     */
+    public TelemetryRecord(int vehicleId, long epochMillis, long packedPosition, double tankLevel, double speed) {
+        if (packedPosition != NO_POSITION) PackedPosition.of(packedPosition); // validates
+        this.vehicleId = vehicleId;
+        this.epochMillis = epochMillis;
+        this.packedPosition = packedPosition;
+        this.tankLevel = tankLevel;
+        this.speed = speed;
+    }
+
+    public static TelemetryRecord position(int vehicleId, long epochMillis, double longitude, double latitude) {
+        return new TelemetryRecord(vehicleId, epochMillis, PackedPosition.pack(longitude, latitude), Double.NaN, Double.NaN);
+    }
+
+    public static TelemetryRecord fuel(int vehicleId, long epochMillis, double tankLevel) {
+        return new TelemetryRecord(vehicleId, epochMillis, NO_POSITION, tankLevel, Double.NaN);
+    }
+
+    public static TelemetryRecord speed(int vehicleId, long epochMillis, double speed) {
+        return new TelemetryRecord(vehicleId, epochMillis, NO_POSITION, Double.NaN, speed);
+    }
+
+    /**
+     * Parses a CSV line.
+     * @throws IllegalArgumentException if the line is malformed or the position is out of range
+     */
+    public static TelemetryRecord parseCsv(String line) {
+        String[] fields = line.split(",", -1);
+        if (fields.length != 6) throw new IllegalArgumentException("Expected 6 fields, got " + fields.length + ": " + line);
+        try {
+            int vehicleId = Integer.parseInt(fields[0].trim());
+            long epochMillis = Long.parseLong(fields[1].trim());
+            boolean hasLongitude = !fields[2].isBlank();
+            if (hasLongitude != !fields[3].isBlank()) throw new IllegalArgumentException("Longitude and latitude must both be set: " + line);
+            long packed = hasLongitude
+                    ? PackedPosition.pack(Double.parseDouble(fields[2].trim()), Double.parseDouble(fields[3].trim()))
+                    : NO_POSITION;
+            return new TelemetryRecord(vehicleId, epochMillis, packed, optional(fields[4]), optional(fields[5]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number in: " + line, e);
+        }
+    }
+
+    public String toCsv() {
+        StringBuilder sb = new StringBuilder(64).append(vehicleId).append(',').append(epochMillis).append(',');
+        if (hasPosition()) {
+            sb.append(PackedPosition.longitude(packedPosition)).append(',').append(PackedPosition.latitude(packedPosition));
+        } else {
+            sb.append(',');
+        }
+        sb.append(',');
+        if (!Double.isNaN(tankLevel)) sb.append(tankLevel);
+        sb.append(',');
+        if (!Double.isNaN(speed)) sb.append(speed);
+        return sb.toString();
+    }
+
+    public int getVehicleId() { return vehicleId; }
+    public long getEpochMillis() { return epochMillis; }
+    public long getPackedPosition() { return packedPosition; }
+    public boolean hasPosition() { return packedPosition != NO_POSITION; }
+    public double getTankLevel() { return tankLevel; }
+    public double getSpeed() { return speed; }
+
+    private static double optional(String field) {
+        return field.isBlank() ? Double.NaN : Double.parseDouble(field.trim());
+    }
+
+    @Override
+    public String toString() {
+        return "TelemetryRecord{" + toCsv() + "}";
+    }
+}
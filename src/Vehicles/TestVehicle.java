@@ -4,8 +4,12 @@ import Utils.Logger;
 import Employees.Driver;
 import Employees.Employee;
 import Employees.OfficeWorker;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Comprehensive unit test suite for the Vehicle system.
@@ -53,6 +57,11 @@ public class TestVehicle {
             testPolymorphism();
             testExceptionHandling();
             testLicenseSystem();
+            testFleetIndex();
+            testGeoDistance();
+            testRoutes();
+            testPositionHistory();
+            testTelemetryPipeline();
             
         } catch (Exception e) {
             logError("Critical test failure: " + e.getMessage());
@@ -542,6 +551,462 @@ public class TestVehicle {
         });
     }
     
+    // ========== FLEET INDEX TESTS ==========
+    private static void testFleetIndex() {
+        logSection("Testing FleetIndex");
+
+        java.util.Random random = new java.util.Random(42);
+        List<Vehicle> fleet = new ArrayList<>();
+        FleetIndex index = new FleetIndex(2.0);
+        for (int i = 0; i < 400; i++) {
+            // Half of the fleet crowds around the 0°/360° meridian, some near the poles
+            double longitude = i % 2 == 0 ? random.nextDouble() * 360 : (356 + random.nextDouble() * 8) % 360;
+            double latitude = i % 10 == 0 ? 85 + random.nextDouble() * 5 : random.nextDouble() * 140 - 70;
+            Vehicle vehicle = new Truck(100.0, 120.0, new GPSPosition(longitude, latitude), 10.0);
+            fleet.add(vehicle);
+            index.add(vehicle);
+        }
+
+        assertTest("Index size and duplicates", () -> index.size() == 400 && !index.add(fleet.get(0)));
+
+        assertTest("Radius queries match a full scan", () -> {
+            GPSPosition[] centers = {
+                new GPSPosition(0.0, 10.0), new GPSPosition(359.9, -20.0), new GPSPosition(180.0, 0.0),
+                new GPSPosition(45.0, 89.5), new GPSPosition(2.0, -89.0)
+            };
+            double[] radii = {0.0, 150.0, 800.0, 2500.0, 21000.0};
+            for (GPSPosition center : centers) {
+                for (double radius : radii) {
+                    List<Vehicle> expected = new ArrayList<>();
+                    for (Vehicle vehicle : fleet) {
+                        if (distance(center, vehicle) <= radius) expected.add(vehicle);
+                    }
+                    List<Vehicle> found = index.findWithin(center, radius);
+                    if (found.size() != expected.size() || !found.containsAll(expected)) return false;
+                    for (int i = 1; i < found.size(); i++) {
+                        if (distance(center, found.get(i - 1)) > distance(center, found.get(i))) return false;
+                    }
+                }
+            }
+            return true;
+        });
+
+        assertTest("Radius query across 0°/360° reads few vehicles", () -> {
+            List<Vehicle> found = index.findWithin(new GPSPosition(359.5, 0.0), 300.0);
+            boolean bothSides = found.stream().anyMatch(v -> v.getPosition().getLongitude() < 180)
+                    && found.stream().anyMatch(v -> v.getPosition().getLongitude() > 180);
+            return bothSides && index.getLastCandidateCount() < fleet.size() / 4;
+        });
+
+        assertTest("Nearest vehicles match a full scan", () -> {
+            GPSPosition[] centers = {new GPSPosition(0.5, 5.0), new GPSPosition(200.0, -60.0), new GPSPosition(90.0, 90.0)};
+            for (GPSPosition center : centers) {
+                List<Vehicle> sorted = new ArrayList<>(fleet);
+                sorted.sort(java.util.Comparator.comparingDouble(v -> distance(center, v)));
+                List<Vehicle> nearest = index.findNearest(center, 5);
+                for (int i = 0; i < 5; i++) {
+                    if (Math.abs(distance(center, nearest.get(i)) - distance(center, sorted.get(i))) > 1e-9) return false;
+                }
+            }
+            return index.findNearest(new GPSPosition(10.0, 10.0), 1000).size() == 400;
+        });
+
+        assertTest("Index follows setPosition and drive", () -> {
+            Vehicle vehicle = fleet.get(1);
+            GPSPosition target = new GPSPosition(123.0, 45.0);
+            vehicle.setPosition(target);
+            boolean moved = index.findNearest(target, 1).get(0) == vehicle;
+            vehicle.refuel(100.0);
+            vehicle.startEngine();
+            GPSPosition next = new GPSPosition(123.5, 45.5);
+            vehicle.drive(next);
+            boolean driven = index.findWithin(next, 0.001).contains(vehicle)
+                    && !index.findWithin(target, 0.001).contains(vehicle);
+            return moved && driven;
+        });
+
+        assertTest("Removed vehicles are no longer found or followed", () -> {
+            Vehicle vehicle = fleet.get(1);
+            boolean removed = index.remove(vehicle) && !index.remove(vehicle);
+            vehicle.setPosition(new GPSPosition(300.0, 10.0));
+            return removed && index.size() == 399 && !index.findWithin(vehicle.getPosition(), 1.0).contains(vehicle);
+        });
+
+        assertExceptionTest("Cell size must divide 180", () -> new FleetIndex(7.0), IllegalArgumentException.class);
+    }
+
+    // ========== GEO DISTANCE TESTS ==========
+    private static void testGeoDistance() {
+        logSection("Testing GeoDistance");
+
+        java.util.Random random = new java.util.Random(7);
+        int size = 300; // 300 x 300 pairs, above the parallel threshold
+        double[] latitudes = new double[size];
+        double[] longitudes = new double[size];
+        for (int i = 0; i < size; i++) {
+            latitudes[i] = random.nextDouble() * 180 - 90;
+            longitudes[i] = random.nextDouble() * 360;
+        }
+        GeoDistance.Points points = GeoDistance.Points.of(latitudes, longitudes);
+
+        assertTest("Distance matrix matches distanceInKm", () -> {
+            double[] matrix = GeoDistance.manyToMany(points, points, GeoDistance.Method.HAVERSINE);
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    double expected = GPSPosition.distanceInKm(latitudes[i], longitudes[i], latitudes[j], longitudes[j]);
+                    if (Math.abs(matrix[i * size + j] - expected) > 1e-6) return false;
+                }
+            }
+            return matrix.length == size * size;
+        });
+
+        assertTest("One-to-many matches distanceInKm", () -> {
+            double[] distances = GeoDistance.oneToMany(52.5, 13.4, points, GeoDistance.Method.HAVERSINE);
+            for (int j = 0; j < size; j++) {
+                if (Math.abs(distances[j] - GPSPosition.distanceInKm(52.5, 13.4, latitudes[j], longitudes[j])) > 1e-6) return false;
+            }
+            return true;
+        });
+
+        assertTest("Distance across 0°/360° is short", () -> {
+            GeoDistance.Points meridian = GeoDistance.Points.of(new double[] {10.0}, new double[] {0.1});
+            double haversine = GeoDistance.oneToMany(10.0, 359.9, meridian, GeoDistance.Method.HAVERSINE)[0];
+            double flat = GeoDistance.oneToMany(10.0, 359.9, meridian, GeoDistance.Method.EQUIRECTANGULAR)[0];
+            return haversine > 21 && haversine < 22 && Math.abs(flat - haversine) < 1e-3;
+        });
+
+        assertTest("Equirectangular stays within its error bound", () -> {
+            double[] starts = new double[2000];
+            double[] startLons = new double[2000];
+            double[] ends = new double[2000];
+            double[] endLons = new double[2000];
+            for (int i = 0; i < starts.length; i++) {
+                starts[i] = random.nextDouble() * 150 - 75;
+                startLons[i] = random.nextDouble() * 360;
+                ends[i] = Math.max(-75, Math.min(75, starts[i] + random.nextDouble() * 1.6 - 0.8));
+                endLons[i] = (startLons[i] + random.nextDouble() * 1.6 - 0.8 + 360) % 360;
+            }
+            GeoDistance.Points targets = GeoDistance.Points.of(ends, endLons);
+            double worst = 0;
+            double longest = 0;
+            for (int i = 0; i < starts.length; i++) {
+                GeoDistance.Points one = GeoDistance.Points.of(new double[] {ends[i]}, new double[] {endLons[i]});
+                double exact = GeoDistance.oneToMany(starts[i], startLons[i], one, GeoDistance.Method.HAVERSINE)[0];
+                double flat = GeoDistance.oneToMany(starts[i], startLons[i], one, GeoDistance.Method.EQUIRECTANGULAR)[0];
+                if (exact > 0) worst = Math.max(worst, Math.abs(flat - exact) / exact);
+                longest = Math.max(longest, exact);
+            }
+            return targets.size() == 2000 && worst <= GeoDistance.equirectangularErrorBound(longest, 75);
+        });
+
+        assertExceptionTest("Coordinate arrays must match", () ->
+                GeoDistance.Points.of(new double[2], new double[3]), IllegalArgumentException.class);
+        assertExceptionTest("Latitude out of range", () ->
+                GeoDistance.Points.of(new double[] {91}, new double[] {0}), IllegalArgumentException.class);
+    }
+
+    // ========== ROUTE TESTS ==========
+    private static void testRoutes() {
+        logSection("Testing Routes");
+
+        List<GPSPosition> waypoints = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            waypoints.add(new GPSPosition((359.0 + i * 0.05) % 360, 10.0 + i * 0.02)); // crosses 0°
+        }
+        Route route = Route.of(waypoints);
+
+        assertTest("Route distances match the legs", () -> {
+            double total = 0;
+            for (int i = 1; i < waypoints.size(); i++) {
+                GPSPosition a = waypoints.get(i - 1);
+                GPSPosition b = waypoints.get(i);
+                total += GPSPosition.distanceInKm(a.getLatitude(), a.getLongitude(), b.getLatitude(), b.getLongitude());
+            }
+            return Math.abs(route.getLengthKm() - total) < 1e-6
+                    && Math.abs(route.getDistanceKm(10, 20) + route.getDistanceKm(0, 10) - route.getDistanceKm(0, 20)) < 1e-9
+                    && route.getLengthKm() < 300;
+        });
+
+        assertTest("Furthest waypoint within range", () -> {
+            double leg = route.getDistanceKm(0, 1);
+            return route.furthestWithin(0, 0) == 0
+                    && route.furthestWithin(0, route.getDistanceKm(0, 7)) == 7
+                    && route.furthestWithin(0, route.getDistanceKm(0, 7) + leg / 2) == 7
+                    && route.furthestWithin(5, 1e9) == 49;
+        });
+
+        assertTest("Route is driven to the end", () -> {
+            Truck truck = new Truck(100.0, 120.0, new GPSPosition(358.9, 10.0), 10.0);
+            truck.refuel(100.0);
+            truck.startEngine();
+            double needed = truck.getFuelNeeded(route);
+            int reached = truck.driveRoute(route);
+            GPSPosition end = truck.getPosition();
+            return reached == 50 && truck.getRoute() == null
+                    && end.getLongitude() == waypoints.get(49).getLongitude()
+                    && Math.abs(truck.getTankLevel() - (100.0 - needed)) < 1e-9;
+        });
+
+        assertTest("Short tank is refused before moving", () -> {
+            Truck truck = new Truck(100.0, 120.0, new GPSPosition(359.0, 10.0), 10.0);
+            truck.refuel(route.getDistanceKm(0, 30) / Vehicle.KM_PER_FUEL_UNIT + 0.001);
+            truck.startEngine();
+            int reachable = truck.getFurthestReachableWaypoint(route);
+            GPSPosition start = truck.getPosition();
+            try {
+                truck.driveRoute(route);
+                return false;
+            } catch (IllegalStateException e) {
+                return reachable == 30 && truck.getPosition() == start && e.getMessage().contains("30");
+            }
+        });
+
+        assertTest("Route advances in steps and keeps the fleet index in sync", () -> {
+            Truck truck = new Truck(100.0, 120.0, new GPSPosition(359.0, 10.0), 10.0);
+            FleetIndex index = new FleetIndex();
+            index.add(truck);
+            truck.refuel(100.0);
+            truck.startEngine();
+            truck.startRoute(route);
+            int first = truck.advanceRoute(10);
+            boolean atTenth = truck.getRouteIndex() == 9 && index.findWithin(waypoints.get(9), 0.001).contains(truck);
+            double before = truck.getTankLevel();
+            int second = truck.advanceRoute(5);
+            double used = (before - truck.getTankLevel()) * Vehicle.KM_PER_FUEL_UNIT;
+            int rest = truck.advanceRoute(1000);
+            return first == 10 && second == 5 && rest == 35 && atTenth
+                    && Math.abs(used - route.getDistanceKm(9, 14)) < 1e-9
+                    && index.findWithin(waypoints.get(49), 0.001).contains(truck);
+        });
+
+        assertExceptionTest("Advance without a route", () -> {
+            Truck truck = new Truck(100.0, 120.0, new GPSPosition(0.0, 0.0), 10.0);
+            truck.startEngine();
+            truck.advanceRoute(1);
+        }, IllegalStateException.class);
+        assertExceptionTest("Route needs waypoints", () -> Route.of(new ArrayList<>()), IllegalArgumentException.class);
+    }
+
+    // ========== POSITION HISTORY TESTS ==========
+    private static void testPositionHistory() {
+        logSection("Testing PackedPosition and PositionHistory");
+
+        assertTest("Packed position round trip", () -> {
+            double[][] samples = {{0.0, -90.0}, {359.9999999, 90.0}, {10.5, 52.5}, {270.123456789, -33.987654321}};
+            for (double[] sample : samples) {
+                long packed = PackedPosition.pack(sample[0], sample[1]);
+                if (Math.abs(PackedPosition.longitude(packed) - sample[0]) > PackedPosition.DEGREES_PER_STEP / 2 + 1e-12) return false;
+                if (Math.abs(PackedPosition.latitude(packed) - sample[1]) > PackedPosition.DEGREES_PER_STEP / 2 + 1e-12) return false;
+            }
+            GPSPosition pole = PackedPosition.toGPSPosition(PackedPosition.pack(0.0, 90.0));
+            return pole.getLatitude() == 90.0 && PackedPosition.longitude(PackedPosition.pack(359.99999999, 0.0)) == 0.0;
+        });
+
+        assertTest("Packed position view", () -> {
+            PackedPosition a = PackedPosition.of(new GPSPosition(10.5, 52.5));
+            PackedPosition b = PackedPosition.of(a.getPacked());
+            double distance = a.distanceInKm(PackedPosition.of(new GPSPosition(45.2, 48.8)));
+            return a.equals(b) && a.hashCode() == b.hashCode() && a.getLongitude() == 10.5
+                    && Math.abs(distance - GPSPosition.distanceInKm(52.5, 10.5, 48.8, 45.2)) < 1e-3;
+        });
+
+        assertTest("History ring keeps the latest fixes", () -> {
+            PositionHistory history = new PositionHistory(4);
+            for (int i = 0; i < 10; i++) {
+                history.record(1_000L * i, PackedPosition.pack(i, 0.0));
+            }
+            long[] times = new long[4];
+            long[] packed = new long[4];
+            int copied = history.copyTo(times, packed);
+            return history.size() == 4 && copied == 4 && times[0] == 6_000 && times[3] == 9_000
+                    && history.getPosition(0).getLongitude() == 6.0
+                    && history.indexAt(7_500) == 1 && history.indexAt(5_000) == -1 && history.indexAt(99_000) == 3;
+        });
+
+        assertTest("History keeps times across a rebase", () -> {
+            PositionHistory history = new PositionHistory(3);
+            long day = 24L * 60 * 60 * 1000;
+            history.record(0, PackedPosition.pack(1.0, 1.0));
+            history.record(20 * day, PackedPosition.pack(2.0, 1.0));
+            history.record(30 * day, PackedPosition.pack(3.0, 1.0));
+            return history.size() == 2 && history.getTimestamp(0) == 20 * day && history.getTimestamp(1) == 30 * day
+                    && history.getPosition(0).getLongitude() == 2.0;
+        });
+
+        assertTest("History orders late fixes", () -> {
+            PositionHistory history = new PositionHistory(4);
+            history.record(1_000, PackedPosition.pack(1.0, 0.0));
+            history.record(3_000, PackedPosition.pack(3.0, 0.0));
+            history.record(2_000, PackedPosition.pack(2.0, 0.0));
+            history.record(-5_000, PackedPosition.pack(0.5, 0.0)); // before the base time
+            boolean ordered = history.getTimestamp(0) == -5_000 && history.getTimestamp(1) == 1_000
+                    && history.getPosition(2).getLongitude() == 2.0 && history.indexAt(2_500) == 2;
+            boolean tooOld = !history.record(-9_000, PackedPosition.pack(9.0, 0.0)); // ring full, older than all
+            history.record(4_000, PackedPosition.pack(4.0, 0.0));
+            return ordered && tooOld && history.size() == 4 && history.getTimestamp(0) == 1_000
+                    && history.getTimestamp(3) == 4_000;
+        });
+
+        assertTest("History rejects fixes outside its span", () -> {
+            Truck truck = new Truck(100.0, 120.0, new GPSPosition(10.0, 10.0), 10.0);
+            PositionHistory history = truck.getPositionHistory();
+            long now = history.getTimestamp(0);
+            long month = 30L * 24 * 60 * 60 * 1000;
+            boolean rejected = !history.record(now - month, PackedPosition.pack(11.0, 10.0));
+            return rejected && history.size() == 1 && history.indexAt(now) == 0 && history.indexAt(now - month) == -1;
+        });
+
+        assertTest("Vehicle records its moves", () -> {
+            Truck truck = new Truck(100.0, 120.0, new GPSPosition(10.0, 10.0), 10.0);
+            truck.setPosition(new GPSPosition(11.0, 10.0));
+            truck.refuel(100.0);
+            truck.startEngine();
+            truck.drive(new GPSPosition(11.5, 10.0));
+            PositionHistory history = truck.getPositionHistory();
+            boolean recorded = history.size() == 3 && history.getPosition(2).getLongitude() == 11.5
+                    && Math.abs(history.getTrackKm() - GPSPosition.distanceInKm(10.0, 10.0, 10.0, 11.0)
+                            - GPSPosition.distanceInKm(10.0, 11.0, 10.0, 11.5)) < 1e-6;
+            truck.setPositionHistoryCapacity(2);
+            return recorded && truck.getPositionHistory().size() == 1 && truck.getPositionHistory().capacity() == 2;
+        });
+
+        assertExceptionTest("Packed longitude range", () -> PackedPosition.pack(360.0, 0.0), IllegalArgumentException.class);
+    }
+
+    // ========== TELEMETRY PIPELINE TESTS ==========
+    private static void testTelemetryPipeline() {
+        logSection("Testing TelemetryPipeline");
+
+        assertTest("Updates in one window are applied once", () -> {
+            Truck truck = new Truck(100.0, 120.0, new GPSPosition(10.0, 50.0), 10.0);
+            int[] calls = {0};
+            truck.addPositionListener((vehicle, oldPosition, newPosition) -> calls[0]++);
+            long now = System.currentTimeMillis();
+            List<TelemetryRecord> batch = new ArrayList<>();
+            for (int i = 1; i <= 5; i++) {
+                batch.add(TelemetryRecord.position(1, now + i, 10.0 + i / 10.0, 50.0));
+            }
+            batch.add(TelemetryRecord.fuel(1, now + 2, 40.0));
+            batch.add(TelemetryRecord.speed(1, now + 3, 80.0));
+            batch.add(TelemetryRecord.speed(1, now + 1, 30.0)); // older value for the same field
+            try (TelemetryPipeline pipeline = new TelemetryPipeline(4, 0)) {
+                pipeline.register(1, truck);
+                pipeline.submit(batch);
+                if (!pipeline.flush(5_000)) return false;
+                TelemetryPipeline.Metrics metrics = pipeline.getMetrics();
+                return truck.getPosition().getLongitude() == 10.5 && truck.getTankLevel() == 40.0
+                        && truck.getCurrentSpeed() == 80.0 && calls[0] == 1
+                        && truck.getPositionHistory().size() == 2
+                        && truck.getPositionHistory().getTimestamp(1) == now + 5
+                        && metrics.getRecordsReceived() == 8 && metrics.getUpdatesApplied() == 1
+                        && metrics.getRecordsCoalesced() == 7 && metrics.getQueueDepth() == 0;
+            }
+        });
+
+        assertTest("Invalid values, stale and unknown updates are dropped", () -> {
+            Truck truck = new Truck(100.0, 120.0, new GPSPosition(10.0, 50.0), 10.0);
+            long now = System.currentTimeMillis();
+            try (TelemetryPipeline pipeline = new TelemetryPipeline(4, 0)) {
+                pipeline.register(1, truck);
+                pipeline.submit(List.of(new TelemetryRecord(1, now, PackedPosition.pack(11.0, 50.0), 150.0, 50.0)));
+                if (!pipeline.flush(5_000)) return false;
+                boolean partial = truck.getPosition().getLongitude() == 11.0 && truck.getTankLevel() == 0
+                        && truck.getCurrentSpeed() == 50.0;
+                pipeline.submit(List.of(TelemetryRecord.fuel(1, now + 1_000, 60.0), TelemetryRecord.fuel(99, now, 1.0)));
+                pipeline.flush(5_000);
+                pipeline.submit(List.of(TelemetryRecord.fuel(1, now + 500, 20.0)));
+                if (!pipeline.flush(5_000)) return false;
+                TelemetryPipeline.Metrics metrics = pipeline.getMetrics();
+                return partial && truck.getTankLevel() == 60.0 && metrics.getRejectedTankLevels() == 1
+                        && metrics.getRejectedSpeeds() == 0 && metrics.getRecordsStale() == 1
+                        && metrics.getRecordsUnknown() == 1 && metrics.getUpdatesApplied() == 2;
+            }
+        });
+
+        assertTest("Full queue holds producers back", () -> {
+            Truck truck = new Truck(100.0, 120.0, new GPSPosition(10.0, 50.0), 10.0);
+            CountDownLatch applying = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            truck.addPositionListener((vehicle, oldPosition, newPosition) -> {
+                applying.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            long now = System.currentTimeMillis();
+            try (TelemetryPipeline pipeline = new TelemetryPipeline(1, 0)) {
+                pipeline.register(1, truck);
+                pipeline.submit(List.of(TelemetryRecord.position(1, now, 11.0, 50.0)));
+                if (!applying.await(5, TimeUnit.SECONDS)) return false;
+                pipeline.submit(List.of(TelemetryRecord.position(1, now + 1, 12.0, 50.0)));
+                boolean refused = !pipeline.offer(List.of(TelemetryRecord.position(1, now + 2, 13.0, 50.0)), 20, TimeUnit.MILLISECONDS);
+                TelemetryPipeline.Metrics metrics = pipeline.getMetrics(); // before the worker can take the queued batch
+                release.countDown();
+                return refused && pipeline.flush(5_000) && metrics.getRefusedBatches() == 1
+                        && metrics.getQueueDepth() == 1 && truck.getPosition().getLongitude() == 12.0;
+            }
+        });
+
+        assertTest("Generated feed replays from a file", () -> {
+            TelemetryFeed.Generator generator = new TelemetryFeed.Generator(10, 100.0, 120.0, 7);
+            List<TelemetryRecord> records = generator.nextBatch(2_000);
+            Path file = Files.createTempFile("telemetry", ".csv");
+            try (TelemetryPipeline pipeline = new TelemetryPipeline(2, 5)) {
+                TelemetryFeed.write(file, records);
+                Files.writeString(file, "not,a,record\n", java.nio.file.StandardOpenOption.APPEND);
+                List<Truck> trucks = new ArrayList<>();
+                for (int id = 0; id < generator.vehicles(); id++) {
+                    trucks.add(new Truck(100.0, 120.0, new GPSPosition(10.0, 50.0), 10.0));
+                    pipeline.register(id, trucks.get(id));
+                }
+                long submitted = TelemetryFeed.replay(file, pipeline, 64);
+                if (!pipeline.flush(10_000)) return false;
+                TelemetryPipeline.Metrics metrics = pipeline.getMetrics();
+                TelemetryRecord last = records.get(records.size() - 1);
+                Truck lastTruck = trucks.get(last.getVehicleId());
+                return submitted == 2_000 && metrics.getRecordsReceived() == 2_000
+                        && metrics.getUpdatesApplied() + metrics.getRecordsCoalesced() + metrics.getRecordsStale() == 2_000
+                        && PackedPosition.pack(lastTruck.getPosition()) == last.getPackedPosition()
+                        && lastTruck.getTankLevel() == last.getTankLevel() && isTimeOrdered(lastTruck.getPositionHistory());
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        });
+
+        assertTest("Close applies queued batches", () -> {
+            Truck truck = new Truck(100.0, 120.0, new GPSPosition(10.0, 50.0), 10.0);
+            long now = System.currentTimeMillis();
+            TelemetryPipeline pipeline = new TelemetryPipeline(8, 1_000);
+            pipeline.register(1, truck);
+            for (int i = 1; i <= 5; i++) {
+                pipeline.submit(List.of(TelemetryRecord.position(1, now + i, 10.0 + i, 50.0)));
+            }
+            pipeline.close();
+            return truck.getPosition().getLongitude() == 15.0 && pipeline.getMetrics().getBatchesProcessed() == 5;
+        });
+
+        assertExceptionTest("Telemetry line needs six fields", () -> TelemetryRecord.parseCsv("1,2,3"), IllegalArgumentException.class);
+        assertExceptionTest("Closed pipeline refuses batches", () -> {
+            TelemetryPipeline pipeline = new TelemetryPipeline();
+            pipeline.close();
+            pipeline.submit(new ArrayList<>());
+        }, IllegalStateException.class);
+    }
+
+    private static boolean isTimeOrdered(PositionHistory history) {
+        for (int i = 1; i < history.size(); i++) {
+            if (history.getTimestamp(i) < history.getTimestamp(i - 1)) return false;
+        }
+        return true;
+    }
+
+    private static double distance(GPSPosition center, Vehicle vehicle) {
+        return GPSPosition.distanceInKm(center.getLatitude(), center.getLongitude(),
+                vehicle.getPosition().getLatitude(), vehicle.getPosition().getLongitude());
+    }
+
     // ========== UTILITY METHODS ==========
     
     private static void assertTest(String testName, TestCase test) {
@@ -32,13 +32,13 @@ public class Truck extends Vehicle {
     public void load(double area) {
         if (loadedArea + area > loadingArea) throw new IllegalArgumentException("Exceeds max loading area");
         loadedArea += area;
-        logger.debug("Loaded " + area + " units. Total loaded: " + loadedArea);
+        logger.debug("Loaded {} units. Total loaded: {}", area, loadedArea);
     }
     
     public void unload(double area) {
         if (area > loadedArea) throw new IllegalArgumentException("Cannot unload more than loaded");
         loadedArea -= area;
-        logger.debug("Unloaded " + area + " units. Remaining: " + loadedArea);
+        logger.debug("Unloaded {} units. Remaining: {}", area, loadedArea);
     }
     public double getLoadedArea() { return loadedArea; }
 }
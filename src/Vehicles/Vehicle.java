@@ -1,10 +1,13 @@
 package Vehicles;
 import Employees.Driver;
 import Utils.Logger;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 public abstract class Vehicle {
-    protected Logger logger = new Logger(getClass().getSimpleName());
+    public static final double KM_PER_FUEL_UNIT = 10.0;
+    protected Logger logger = new Logger(getClass());
     protected double tankSize;
     protected double tankLevel;
     protected double currentSpeed;
@@ -14,6 +17,11 @@ public abstract class Vehicle {
     protected GPSPosition position;
     protected Driver driver;
     private HashMap<Character,Integer> licenseMap = new HashMap<>();
+    private final List<PositionListener> positionListeners = new ArrayList<>();
+    private Route route;               // route being driven, null if none
+    private int routeIndex;            // last waypoint reached, -1 before the first
+    private GPSPosition routePosition; // position set by the route, to notice moves in between
+    private PositionHistory positionHistory = new PositionHistory();
     {
         // Initialize license map with default values
         addToHashMap('A', 1);
@@ -34,6 +42,7 @@ public abstract class Vehicle {
         this.currentSpeed = 0;
         this.engineOn = false;
         this.position = position;
+        positionHistory.record(System.currentTimeMillis(), position);
     }
 
     public Vehicle(double tankSize, double maxSpeed,Driver driver, GPSPosition position, char licenseReq) {
@@ -49,6 +58,7 @@ public abstract class Vehicle {
         this.currentSpeed = 0;
         this.engineOn = false;
         this.position = position;
+        positionHistory.record(System.currentTimeMillis(), position);
         this.licenseReq = licenseReq;
         
         // Validate driver license directly
@@ -74,6 +84,7 @@ public abstract class Vehicle {
         this.currentSpeed = 0;
         this.engineOn = false;
         this.position = position;
+        positionHistory.record(System.currentTimeMillis(), position);
         this.licenseReq = licenseReq;
     }
     // Setters and Getters
@@ -103,18 +114,20 @@ public abstract class Vehicle {
 
     public void setPosition(GPSPosition position) {
         if (position == null) throw new IllegalArgumentException("Position cannot be null");
+        GPSPosition oldPosition = this.position;
         this.position = position;
+        firePositionChanged(oldPosition);
     }
 
     public void setDriver(Driver driver) {
         try {
-            logger.debug("Trying to set driver: " + (driver != null ? driver.getName() : "null"));
+            logger.debug("Trying to set driver: {}", driver != null ? driver.getName() : null);
             if(driver == null) throw new NullPointerException("Driver cannot be null");
             if (!isLicenseReqMet(driver.getLicense())) {
                 throw new IllegalArgumentException("Driver must have license " + getLicenseReq());
             }
             this.driver = driver;
-            logger.debug("Driver set successfully: " + driver.getName());
+            logger.debug("Driver set successfully: {}", driver.getName());
         } catch (NullPointerException e) {
             logger.error("Error setting driver: " + e.getMessage());
             throw new RuntimeException(e);
@@ -162,15 +175,18 @@ public abstract class Vehicle {
     // Methods
     public void refuel(double amount) {
         if (amount < 0) throw new IllegalArgumentException("Cannot refuel negative amount");
-        logger.debug("Refueling vehicle with " + amount + " units");
+        logger.debug("Refueling vehicle with {} units", amount);
         double overflow = (tankLevel + amount) - tankSize; //We dont need to do this but as some point i will surely use that value for something
         if (overflow > 0) {
             tankLevel = tankSize;
-            logger.debug("Tank is full, overflow: " + overflow);
+            logger.debug("Tank is full, overflow: {}", overflow);
         } else {
             tankLevel += amount;
         }
-        logger.debug("Tank level after refueling: " + tankLevel);
+        logger.atDebug()
+                .field("vehicleClass", getClass().getSimpleName())
+                .field("tankLevel", tankLevel)
+                .log("Tank level after refueling: {}", tankLevel);
     }
     public void startEngine() { 
         engineOn = true; 
@@ -195,23 +211,179 @@ public abstract class Vehicle {
                 position.getLatitude(), position.getLongitude(),
                 newPosition.getLatitude(), newPosition.getLongitude()
         );
-        double needed = kilometers / 10.0;
-        if (tankLevel < needed) throw new IllegalStateException("Not enough fuel");
+        double needed = kilometers / KM_PER_FUEL_UNIT;
+        logger.debug("Driving {} km, needs {} units of fuel", kilometers, needed);
+        if (tankLevel < needed) {
+            logger.error("Not enough fuel: need {} units for {} km, tank has {}", needed, kilometers, tankLevel);
+            throw new IllegalStateException("Not enough fuel");
+        }
         tankLevel -= needed;
+        GPSPosition oldPosition = position;
         position = newPosition;
+        firePositionChanged(oldPosition);
+    }
+
+    // Routes: the whole route is checked for fuel before the vehicle moves, then driven in steps
+    public double getFuelNeeded(Route route) {
+        if (route == null) throw new IllegalArgumentException("Route cannot be null");
+        return route.getDistanceKm(position, route.size() - 1) / KM_PER_FUEL_UNIT;
+    }
+
+    // Index of the last waypoint the fuel in the tank reaches, -1 if not even the first
+    public int getFurthestReachableWaypoint(Route route) {
+        if (route == null) throw new IllegalArgumentException("Route cannot be null");
+        double rangeKm = tankLevel * KM_PER_FUEL_UNIT;
+        double toFirst = route.distanceToFirstKm(position);
+        if (toFirst > rangeKm) return -1;
+        return route.furthestWithin(0, rangeKm - toFirst);
+    }
+
+    public void startRoute(Route route) {
+        if (route == null) throw new IllegalArgumentException("Route cannot be null");
+        if (!engineOn) throw new IllegalStateException("Engine must be on");
+        if (tankLevel <= 0) throw new IllegalStateException("Tank is empty");
+        double needed = getFuelNeeded(route);
+        if (tankLevel < needed) {
+            int reachable = getFurthestReachableWaypoint(route);
+            logger.error("Not enough fuel for route: need {} units for {} waypoints, tank has {}, reaches waypoint {}",
+                    needed, route.size(), tankLevel, reachable);
+            throw new IllegalStateException("Not enough fuel for route; furthest reachable waypoint is " + reachable);
+        }
+        this.route = route;
+        this.routeIndex = -1;
+        this.routePosition = position;
+        logger.debug("Starting route with {} waypoints, needs {} units of fuel", route.size(), needed);
+    }
+
+    /**
+     * Drives on to the next waypoints of the started route. Fuel is taken for the
+     * whole stretch at once and listeners are told once, about the last waypoint.
+     * @return number of waypoints reached
+     */
+    public int advanceRoute(int waypoints) {
+        if (route == null) throw new IllegalStateException("No route started");
+        if (!engineOn) throw new IllegalStateException("Engine must be on");
+        if (waypoints < 1) throw new IllegalArgumentException("Waypoints must be positive");
+        int next = routeIndex + 1;
+        int target = (int) Math.min((long) routeIndex + waypoints, route.size() - 1);
+        double kilometers;
+        if (routeIndex < 0 || position != routePosition) {
+            // Not at a waypoint: straight to the next one, then along the route
+            kilometers = GPSPosition.distanceInKm(position.getLatitude(), position.getLongitude(),
+                    route.getLatitude(next), route.getLongitude(next)) + route.getDistanceKm(next, target);
+        } else {
+            kilometers = route.getDistanceKm(routeIndex, target);
+        }
+        double needed = kilometers / KM_PER_FUEL_UNIT;
+        if (tankLevel < needed) {
+            logger.error("Not enough fuel: need {} units for {} km, tank has {}", needed, kilometers, tankLevel);
+            throw new IllegalStateException("Not enough fuel");
+        }
+        tankLevel -= needed;
+        int reached = target - routeIndex;
+        routeIndex = target;
+        GPSPosition oldPosition = position;
+        position = route.getWaypoint(target);
+        routePosition = position;
+        if (target == route.size() - 1) {
+            logger.debug("Route finished after {} waypoints", route.size());
+            route = null;
+        }
+        firePositionChanged(oldPosition);
+        return reached;
+    }
+
+    // Checks the fuel for the whole route, then drives it to the end
+    public int driveRoute(Route route) {
+        startRoute(route);
+        return advanceRoute(route.size());
+    }
+
+    public Route getRoute() { return route; }
+    public int getRouteIndex() { return routeIndex; }
+
+    // Position listeners are told after every move; changing the GPSPosition object itself is not seen
+    public void addPositionListener(PositionListener listener) {
+        if (listener == null) throw new IllegalArgumentException("Listener cannot be null");
+        positionListeners.add(listener);
+    }
+
+    public void removePositionListener(PositionListener listener) {
+        positionListeners.remove(listener);
+    }
+
+    // Recent fixes of this vehicle, recorded on every move
+    public PositionHistory getPositionHistory() {
+        return positionHistory;
+    }
+
+    // Replaces the history with an empty one of the given size, keeping the latest fix
+    public void setPositionHistoryCapacity(int capacity) {
+        PositionHistory history = new PositionHistory(capacity);
+        int size = positionHistory.size();
+        if (size > 0) history.record(positionHistory.getTimestamp(size - 1), positionHistory.getPacked(size - 1));
+        positionHistory = history;
+    }
+
+    /**
+     * Applies one coalesced telemetry update. Each value is checked on its
+     * own: one out of range is left unchanged and reported, the others are
+     * still applied. Unlike the setters this does not throw or log, so a feed
+     * can apply many updates cheaply. The fix is recorded in the history at
+     * the time it was taken; a late fix is placed among earlier ones.
+     * @param epochMillis time the position was measured
+     * @param packedPosition new position from {@link PackedPosition#pack}, or {@link TelemetryRecord#NO_POSITION} to keep it
+     * @param tankLevel new tank level, or NaN to keep it
+     * @param currentSpeed new speed, or NaN to keep it
+     * @return the rejected values as {@link TelemetryRecord#TANK_LEVEL} and {@link TelemetryRecord#SPEED} bits, 0 if none
+     */
+    public int applyTelemetry(long epochMillis, long packedPosition, double tankLevel, double currentSpeed) {
+        int rejected = 0;
+        if (!Double.isNaN(tankLevel)) {
+            if (tankLevel >= 0 && tankLevel <= tankSize) {
+                this.tankLevel = tankLevel;
+            } else {
+                rejected |= TelemetryRecord.TANK_LEVEL;
+            }
+        }
+        if (!Double.isNaN(currentSpeed)) {
+            if (currentSpeed >= 0 && currentSpeed <= maxSpeed) {
+                this.currentSpeed = currentSpeed;
+            } else {
+                rejected |= TelemetryRecord.SPEED;
+            }
+        }
+        if (packedPosition != TelemetryRecord.NO_POSITION) {
+            GPSPosition oldPosition = position;
+            position = PackedPosition.toGPSPosition(packedPosition);
+            firePositionChanged(oldPosition, epochMillis);
+        }
+        return rejected;
+    }
+
+    private void firePositionChanged(GPSPosition oldPosition) {
+        firePositionChanged(oldPosition, System.currentTimeMillis());
+    }
+
+    private void firePositionChanged(GPSPosition oldPosition, long epochMillis) {
+        positionHistory.record(epochMillis, position);
+        for (int i = 0; i < positionListeners.size(); i++) {
+            positionListeners.get(i).positionChanged(this, oldPosition, position);
+        }
     }
 
 
     public double getTankLevel() { return tankLevel; }
     public double getTankSize() { return tankSize; }
+    public double getCurrentSpeed() { return currentSpeed; }
 
 
     public Boolean isLicenseValid(char lincense) {
-        logger.debug("Checking license validity: " + lincense);
+        logger.debug("Checking license validity: {}", lincense);
         return lincense == 'A' || lincense == 'B' || lincense == 'C' || lincense == 'D';
     }
     public Boolean isLicenseReqMet(char license) {
-        logger.debug("Checking license requirement: " + license);
+        logger.debug("Checking license requirement: {}", license);
         return isLicenseValid(license) && licenseMap.get(license) >= licenseMap.get(licenseReq);
     }
     public Driver getDriver() { return driver; }